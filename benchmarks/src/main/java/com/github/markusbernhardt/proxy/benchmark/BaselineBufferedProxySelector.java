@@ -0,0 +1,105 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*****************************************************************************
+ * The cache of <code>BufferedProxySelector</code> before it was segmented, for
+ * comparison only: a ConcurrentHashMap that is scanned for expired or the
+ * oldest entries under a global lock whenever a miss finds it full. Only the
+ * host scope is kept.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+class BaselineBufferedProxySelector extends ProxySelector {
+
+	private final ProxySelector delegate;
+	private final ConcurrentHashMap<String, CacheEntry> cache;
+	private final int maxSize;
+	private final long ttl;
+
+	private static class CacheEntry {
+		final List<Proxy> result;
+		final long expireAt;
+
+		CacheEntry(List<Proxy> r, long expireAt) {
+			super();
+			this.result = Collections.unmodifiableList(new ArrayList<Proxy>(r));
+			this.expireAt = expireAt;
+		}
+
+		boolean isExpired() {
+			return System.nanoTime() >= this.expireAt;
+		}
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param maxSize
+	 *            the max size for the cache.
+	 * @param ttl
+	 *            the "time to live" for cache entries in milliseconds.
+	 * @param delegate
+	 *            the delegate to use.
+	 ************************************************************************/
+
+	BaselineBufferedProxySelector(int maxSize, long ttl, ProxySelector delegate) {
+		super();
+		this.cache = new ConcurrentHashMap<String, CacheEntry>();
+		this.maxSize = maxSize;
+		this.delegate = delegate;
+		this.ttl = ttl;
+	}
+
+	@Override
+	public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+		this.delegate.connectFailed(uri, sa, ioe);
+	}
+
+	@Override
+	public List<Proxy> select(URI uri) {
+		String cacheKey = uri.getHost();
+		CacheEntry entry = cacheKey == null ? null : this.cache.get(cacheKey);
+		if (entry == null || entry.isExpired()) {
+			entry = new CacheEntry(this.delegate.select(uri), System.nanoTime() + this.ttl * 1000 * 1000);
+			synchronized (this.cache) {
+				if (this.cache.size() >= this.maxSize) {
+					purgeCache();
+				}
+				if (cacheKey != null) {
+					this.cache.put(cacheKey, entry);
+				}
+			}
+		}
+		return entry.result;
+	}
+
+	private void purgeCache() {
+		boolean removedOne = false;
+		Entry<String, CacheEntry> oldest = null;
+		for (Iterator<Entry<String, CacheEntry>> it = this.cache.entrySet().iterator(); it.hasNext();) {
+			Entry<String, CacheEntry> entry = it.next();
+			if (entry.getValue().isExpired()) {
+				it.remove();
+				removedOne = true;
+			} else if (oldest == null || entry.getValue().expireAt < oldest.getValue().expireAt) {
+				oldest = entry;
+			}
+		}
+		if (!removedOne && oldest != null) {
+			this.cache.remove(oldest.getKey());
+		}
+	}
+
+}
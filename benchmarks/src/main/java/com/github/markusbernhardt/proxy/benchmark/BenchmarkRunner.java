@@ -0,0 +1,61 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*****************************************************************************
+ * Runs the benchmarks with 1, N and 2N threads where N is the number of
+ * available processors. All JMH command line options are supported, e.g. a
+ * regular expression to select the benchmarks. If the thread count is given
+ * with -t only that count is run.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class BenchmarkRunner {
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	private BenchmarkRunner() {
+		super();
+	}
+
+	/*************************************************************************
+	 * Main entry point
+	 *
+	 * @param args
+	 *            the JMH command line options.
+	 * @throws CommandLineOptionException
+	 *             on invalid options.
+	 * @throws RunnerException
+	 *             if a benchmark fails.
+	 * @throws IOException
+	 *             if JMH can not write its output.
+	 ************************************************************************/
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+		        || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()
+		        || commandLine.getThreads().hasValue()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = cores == 1 ? new int[] { 1, 2 } : new int[] { 1, cores, 2 * cores };
+		for (int threads : threadCounts) {
+			Options options = new OptionsBuilder().parent(commandLine).threads(threads).build();
+			new Runner(options).run();
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.markusbernhardt.proxy.selector.misc.BufferedProxySelector;
+import com.github.markusbernhardt.proxy.selector.misc.BufferedProxySelector.CacheScope;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+
+/*****************************************************************************
+ * Measures the cache of <code>BufferedProxySelector</code> with many distinct
+ * hosts. The delegate returns a constant list, so the numbers show the cost of
+ * the cache lookups, inserts and evictions. If the cache holds only a part of
+ * the hosts most lookups are misses that evict an entry. The baseline is the
+ * cache before it was segmented, which scans all entries to evict one.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BufferedProxySelectorBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	public int keys;
+
+	@Param({ "50", "100" })
+	public int cachedPercent;
+
+	@Param({ "baseline", "segmented" })
+	public String cache;
+
+	private ProxySelector selector;
+
+	private URI[] uris;
+
+	/*************************************************************************
+	 * Sets up the selector and fills the cache.
+	 ************************************************************************/
+
+	@Setup
+	public void setUp() {
+		this.uris = new URI[this.keys];
+		for (int i = 0; i < this.keys; i++) {
+			this.uris[i] = URI.create("http://host" + i + ".example.org/");
+		}
+		int cacheSize = (int) ((long) this.keys * this.cachedPercent / 100);
+		if ("baseline".equals(this.cache)) {
+			this.selector = new BaselineBufferedProxySelector(cacheSize, TimeUnit.HOURS.toMillis(1),
+			        new ConstantSelector());
+		} else {
+			this.selector = new BufferedProxySelector(cacheSize, TimeUnit.HOURS.toMillis(1), new ConstantSelector(),
+			        CacheScope.CACHE_SCOPE_HOST);
+		}
+		// Fill it up to its size only, every further insert into the baseline scans the whole cache.
+		for (int i = 0; i < cacheSize; i++) {
+			this.selector.select(this.uris[i]);
+		}
+	}
+
+	/*************************************************************************
+	 * Benchmark method
+	 *
+	 * @param cursor
+	 *            the position of this thread in the host list.
+	 * @return the selected proxies.
+	 ************************************************************************/
+
+	@Benchmark
+	public List<Proxy> select(Cursor cursor) {
+		// Walk with a large odd stride to avoid a sequential access pattern.
+		int index = (int) (((cursor.next() & 0x7FFFFFFF) * 40503L) % this.keys);
+		return this.selector.select(this.uris[index]);
+	}
+
+	private static class ConstantSelector extends ProxySelector {
+
+		@Override
+		public List<Proxy> select(URI uri) {
+			return ProxyUtil.noProxyList();
+		}
+
+		@Override
+		public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+			// Not used
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.markusbernhardt.proxy.selector.misc.BufferedProxySelector;
+import com.github.markusbernhardt.proxy.selector.misc.BufferedProxySelector.CacheScope;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+
+/*****************************************************************************
+ * Measures <code>BufferedProxySelector</code> when all threads select the same
+ * few hot hosts. Every select creates a new URI as a client would, so the host
+ * string is a new instance every time.
+ * The second benchmark reuses the URIs and shows the cost of the lookup alone.
+ * Run it with several threads to see the effect of the contention on the
+ * shared cache.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferedProxySelectorContentionBenchmark {
+
+	@Param({ "16" })
+	public int hotHosts;
+
+	private BufferedProxySelector selector;
+
+	private String[] urls;
+
+	private URI[] uris;
+
+	/*************************************************************************
+	 * Sets up the selector and fills the cache.
+	 ************************************************************************/
+
+	@Setup
+	public void setUp() {
+		this.urls = new String[this.hotHosts];
+		this.uris = new URI[this.hotHosts];
+		for (int i = 0; i < this.hotHosts; i++) {
+			this.urls[i] = "http://host" + i + ".example.org/";
+			this.uris[i] = URI.create(this.urls[i]);
+		}
+		this.selector = new BufferedProxySelector(1000, TimeUnit.HOURS.toMillis(1), new ConstantSelector(),
+		        CacheScope.CACHE_SCOPE_HOST);
+		for (String url : this.urls) {
+			this.selector.select(URI.create(url));
+		}
+	}
+
+	/*************************************************************************
+	 * Benchmark method
+	 *
+	 * @param cursor
+	 *            the position of this thread in the host list.
+	 * @return the selected proxies.
+	 ************************************************************************/
+
+	@Benchmark
+	public List<Proxy> select(Cursor cursor) {
+		return this.selector.select(URI.create(this.urls[(cursor.next() & 0x7FFFFFFF) % this.hotHosts]));
+	}
+
+	/*************************************************************************
+	 * Benchmark method, with URIs that are reused and so only measure the
+	 * cache lookup.
+	 *
+	 * @param cursor
+	 *            the position of this thread in the host list.
+	 * @return the selected proxies.
+	 ************************************************************************/
+
+	@Benchmark
+	public List<Proxy> selectSameUri(Cursor cursor) {
+		return this.selector.select(this.uris[(cursor.next() & 0x7FFFFFFF) % this.hotHosts]);
+	}
+
+	private static class ConstantSelector extends ProxySelector {
+
+		@Override
+		public List<Proxy> select(URI uri) {
+			return ProxyUtil.noProxyList();
+		}
+
+		@Override
+		public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+			// Not used
+		}
+	}
+
+}
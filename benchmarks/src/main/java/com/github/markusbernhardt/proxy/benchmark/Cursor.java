@@ -0,0 +1,43 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/*****************************************************************************
+ * Per thread position in the list of benchmark URLs. Every thread starts at a
+ * different URL so that the threads do not evaluate the same URL in lock
+ * step.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+@State(Scope.Thread)
+public class Cursor {
+
+	private static int nextStart;
+
+	private int position;
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	public Cursor() {
+		super();
+		synchronized (Cursor.class) {
+			this.position = nextStart;
+			nextStart += 37;
+		}
+	}
+
+	/*************************************************************************
+	 * Moves to the next URL.
+	 *
+	 * @return the index of the next URL, to be wrapped around by the caller.
+	 ************************************************************************/
+
+	int next() {
+		return this.position++;
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.markusbernhardt.proxy.selector.whitelist.BypassListMatcher;
+import com.github.markusbernhardt.proxy.selector.whitelist.HostnameFilter;
+import com.github.markusbernhardt.proxy.util.RequestTarget;
+import com.github.markusbernhardt.proxy.util.UriFilter;
+
+/*****************************************************************************
+ * Compares three ways to test a host against a list of REGEX host name
+ * filters: <code>String.matches</code> per filter and call as the filter did
+ * before, the precompiled pattern of every filter and the combined
+ * alternation of the BypassListMatcher. Most hosts match none of the patterns,
+ * which is the common case for a bypass list.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HostnameRegexBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int patterns;
+
+	private String[] regexes;
+
+	private List<UriFilter> filters;
+
+	private BypassListMatcher matcher;
+
+	private URI[] uris;
+
+	/*************************************************************************
+	 * Sets up the patterns and the URLs to test.
+	 ************************************************************************/
+
+	@Setup
+	public void setUp() {
+		this.regexes = new String[this.patterns];
+		this.filters = new ArrayList<UriFilter>();
+		for (int i = 0; i < this.patterns; i++) {
+			this.regexes[i] = "(app|web)[0-9]+\\.zone" + i + "\\.example\\.com";
+			this.filters.add(new HostnameFilter(HostnameFilter.Mode.REGEX, this.regexes[i]));
+		}
+		this.matcher = BypassListMatcher.compile(this.filters);
+		URI[] all = PacBenchmarkData.uris();
+		this.uris = new URI[all.length + 1];
+		System.arraycopy(all, 0, this.uris, 0, all.length);
+		this.uris[all.length] = URI.create("http://web7.zone" + (this.patterns - 1) + ".example.com/");
+	}
+
+	private URI next(Cursor cursor) {
+		return this.uris[(cursor.next() & 0x7FFFFFFF) % this.uris.length];
+	}
+
+	/*************************************************************************
+	 * Benchmark method, the filter code before the patterns were compiled.
+	 *
+	 * @param cursor
+	 *            the position of this thread in the URL list.
+	 * @return true if a pattern matches.
+	 ************************************************************************/
+
+	@Benchmark
+	public boolean stringMatches(Cursor cursor) {
+		String host = next(cursor).getHost();
+		for (String regex : this.regexes) {
+			if (host.toLowerCase().matches(regex)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*************************************************************************
+	 * Benchmark method, every filter with its own precompiled pattern.
+	 *
+	 * @param cursor
+	 *            the position of this thread in the URL list.
+	 * @return true if a pattern matches.
+	 ************************************************************************/
+
+	@Benchmark
+	public boolean precompiled(Cursor cursor) {
+		RequestTarget target = RequestTarget.of(next(cursor));
+		for (UriFilter filter : this.filters) {
+			if (filter.accept(target)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*************************************************************************
+	 * Benchmark method, all patterns in one alternation.
+	 *
+	 * @param cursor
+	 *            the position of this thread in the URL list.
+	 * @return true if a pattern matches.
+	 ************************************************************************/
+
+	@Benchmark
+	public boolean combined(Cursor cursor) {
+		return this.matcher.accept(next(cursor));
+	}
+
+}
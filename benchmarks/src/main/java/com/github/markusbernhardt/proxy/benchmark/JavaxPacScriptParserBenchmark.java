@@ -0,0 +1,75 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.markusbernhardt.proxy.selector.pac.JavaxPacScriptParser;
+import com.github.markusbernhardt.proxy.selector.pac.ProxyEvaluationException;
+
+/*****************************************************************************
+ * Measures the raw script evaluation of <code>JavaxPacScriptParser</code>.
+ * A parser is not thread safe, so every thread gets its own one. This shows
+ * the cost of the script engine without the pool and the result parsing.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaxPacScriptParserBenchmark {
+
+	@Param({ "test1.pac", "test2.pac", "test3.pac", "testMultiProxy.pac", "testProxyTypes.pac", "testLocalIP.pac",
+	        PacBenchmarkData.CORPORATE })
+	public String script;
+
+	private JavaxPacScriptParser parser;
+
+	/*************************************************************************
+	 * Sets up the parser and compiles the script.
+	 *
+	 * @throws IOException
+	 *             if the script can not be read.
+	 * @throws ProxyEvaluationException
+	 *             if the script can not be compiled.
+	 ************************************************************************/
+
+	@Setup
+	public void setUp() throws IOException, ProxyEvaluationException {
+		PacBenchmarkData.setUp();
+		this.parser = new JavaxPacScriptParser(PacBenchmarkData.source(this.script));
+		this.parser.evaluate(PacBenchmarkData.url(0), PacBenchmarkData.host(0));
+	}
+
+	/*************************************************************************
+	 * Benchmark method
+	 *
+	 * @param cursor
+	 *            the position of this thread in the URL list.
+	 * @return the script result.
+	 * @throws ProxyEvaluationException
+	 *             on script errors.
+	 ************************************************************************/
+
+	@Benchmark
+	public String evaluate(Cursor cursor) throws ProxyEvaluationException {
+		int index = cursor.next();
+		return this.parser.evaluate(PacBenchmarkData.url(index), PacBenchmarkData.host(index));
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.markusbernhardt.proxy.selector.whitelist.BypassListMatcher;
+import com.github.markusbernhardt.proxy.selector.whitelist.DefaultWhiteListParser;
+import com.github.markusbernhardt.proxy.selector.whitelist.NoProxyMatcher;
+import com.github.markusbernhardt.proxy.util.UriFilter;
+
+/*****************************************************************************
+ * Compares three ways to test an URL against a no_proxy value: the filter list
+ * of the DefaultWhiteListParser tested one filter after the other, the same
+ * list compiled into a BypassListMatcher and the NoProxyMatcher. The value
+ * mixes domains, IP ranges and entries with a port, like a large corporate
+ * no_proxy. The filter list resolves host names for its IP ranges, they are
+ * answered by the stub resolver.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoProxyBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int entries;
+
+	private List<UriFilter> filters;
+
+	private BypassListMatcher bypassList;
+
+	private NoProxyMatcher noProxy;
+
+	private URI[] uris;
+
+	/*************************************************************************
+	 * Sets up the no_proxy value and the URLs to test.
+	 ************************************************************************/
+
+	@Setup
+	public void setUp() {
+		PacBenchmarkData.setUp();
+		StringBuilder value = new StringBuilder("localhost,127.0.0.1");
+		for (int i = 0; i < this.entries; i++) {
+			switch (i % 4) {
+			case 0:
+				value.append(",.zone").append(i).append(".example.com");
+				break;
+			case 1:
+				value.append(",host").append(i).append(".intra.example.org");
+				break;
+			case 2:
+				value.append(",10.").append(i % 256).append(".0.0/16");
+				break;
+			default:
+				value.append(",svc").append(i).append(".example.net:8080");
+				break;
+			}
+		}
+		this.filters = new DefaultWhiteListParser().parseWhiteList(value.toString());
+		this.bypassList = BypassListMatcher.compile(this.filters);
+		this.noProxy = NoProxyMatcher.parse(value.toString());
+
+		URI[] all = PacBenchmarkData.uris();
+		this.uris = new URI[all.length + 3];
+		System.arraycopy(all, 0, this.uris, 0, all.length);
+		this.uris[all.length] = URI.create("http://www.zone0.example.com/");
+		this.uris[all.length + 1] = URI.create("http://10.2.7.7/");
+		this.uris[all.length + 2] = URI.create("http://localhost:8080/");
+	}
+
+	private URI next(Cursor cursor) {
+		return this.uris[(cursor.next() & 0x7FFFFFFF) % this.uris.length];
+	}
+
+	/*************************************************************************
+	 * Benchmark method, the parsed filters one after the other.
+	 *
+	 * @param cursor
+	 *            the position of this thread in the URL list.
+	 * @return true if the proxy is bypassed.
+	 ************************************************************************/
+
+	@Benchmark
+	public boolean filterList(Cursor cursor) {
+		URI uri = next(cursor);
+		for (UriFilter filter : this.filters) {
+			if (filter.accept(uri)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*************************************************************************
+	 * Benchmark method, the parsed filters compiled into a bypass list.
+	 *
+	 * @param cursor
+	 *            the position of this thread in the URL list.
+	 * @return true if the proxy is bypassed.
+	 ************************************************************************/
+
+	@Benchmark
+	public boolean bypassList(Cursor cursor) {
+		return this.bypassList.accept(next(cursor));
+	}
+
+	/*************************************************************************
+	 * Benchmark method, the no_proxy matcher.
+	 *
+	 * @param cursor
+	 *            the position of this thread in the URL list.
+	 * @return true if the proxy is bypassed.
+	 ************************************************************************/
+
+	@Benchmark
+	public boolean noProxyMatcher(Cursor cursor) {
+		return this.noProxy.accept(next(cursor));
+	}
+
+}
@@ -0,0 +1,261 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import com.github.markusbernhardt.proxy.selector.pac.PacScriptMethods;
+import com.github.markusbernhardt.proxy.selector.pac.PacScriptSource;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.StaticHostResolver;
+
+/*****************************************************************************
+ * The input data shared by all benchmarks: the PAC scripts, a fixed set of
+ * URLs and a host resolver that knows all hosts of these URLs. Nothing here
+ * needs network access and everything is generated deterministically, so runs
+ * on different machines can be compared.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+final class PacBenchmarkData {
+
+	/**
+	 * Name of the generated PAC script that mimics a large corporate PAC file.
+	 */
+	static final String CORPORATE = "corporate";
+
+	/**
+	 * The local IP address reported by myIpAddress().
+	 */
+	static final String LOCAL_IP = "10.17.4.20";
+
+	// Number of URLs to cycle through, a power of two.
+	static final int URL_COUNT = 256;
+
+	private static final int PARTNER_DOMAINS = 400;
+	private static final int CDN_DOMAINS = 120;
+	private static final int OFFICE_NETWORKS = 64;
+	private static final int DIRECT_NETWORKS = 40;
+
+	private static final String[] URLS = new String[URL_COUNT];
+	private static final String[] HOSTS = new String[URL_COUNT];
+	private static final StaticHostResolver RESOLVER = new StaticHostResolver();
+
+	static {
+		for (int i = 0; i < URL_COUNT; i++) {
+			String host;
+			switch (i % 8) {
+			case 0:
+				host = "app" + i + ".corp.example.com";
+				RESOLVER.add(host, "10." + (i % 16) + "." + (i % 7) + "." + (i % 250 + 1));
+				break;
+			case 1:
+				host = "intranet" + i;
+				break;
+			case 2:
+			case 3:
+				host = "www.partner" + (i * 7 % PARTNER_DOMAINS) + ".example";
+				RESOLVER.add(host, "172.16." + (i % 32) + "." + (i % 250 + 1));
+				break;
+			case 4:
+				host = "img" + i + ".cdn" + (i * 3 % CDN_DOMAINS) + ".example.net";
+				RESOLVER.add(host, "203.0.113." + (i % 250 + 1));
+				break;
+			case 5:
+				host = "192.168." + (i % 4) + "." + (i % 250 + 1);
+				break;
+			case 6:
+				host = "unknown" + i + ".example.org";
+				break;
+			default:
+				host = "site" + i + ".example.org";
+				RESOLVER.add(host, "198.51.100." + (i % 250 + 1), "2001:db8::" + Integer.toHexString(i));
+				break;
+			}
+			HOSTS[i] = host;
+			URLS[i] = (i % 3 == 0 ? "https://" : "http://") + host + "/path/" + i + "/index.html?q=" + i;
+		}
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	private PacBenchmarkData() {
+		super();
+	}
+
+	/*************************************************************************
+	 * Installs the stub resolver as global host resolver and fixes the local
+	 * IP address, so that the PAC scripts never touch the network.
+	 ************************************************************************/
+
+	static void setUp() {
+		ProxyUtil.setHostResolver(RESOLVER);
+		System.setProperty(PacScriptMethods.OVERRIDE_LOCAL_IP, LOCAL_IP);
+	}
+
+	/*************************************************************************
+	 * Gets the stub resolver that knows all benchmark hosts.
+	 *
+	 * @return the resolver.
+	 ************************************************************************/
+
+	static StaticHostResolver getResolver() {
+		return RESOLVER;
+	}
+
+	/*************************************************************************
+	 * Gets the host name of a benchmark URL.
+	 *
+	 * @param index
+	 *            the index, wrapped around at URL_COUNT.
+	 * @return the host name.
+	 ************************************************************************/
+
+	static String host(int index) {
+		return HOSTS[index & (URL_COUNT - 1)];
+	}
+
+	/*************************************************************************
+	 * Gets a benchmark URL.
+	 *
+	 * @param index
+	 *            the index, wrapped around at URL_COUNT.
+	 * @return the URL.
+	 ************************************************************************/
+
+	static String url(int index) {
+		return URLS[index & (URL_COUNT - 1)];
+	}
+
+	/*************************************************************************
+	 * Gets all benchmark URLs as URIs.
+	 *
+	 * @return the URIs.
+	 ************************************************************************/
+
+	static URI[] uris() {
+		URI[] uris = new URI[URL_COUNT];
+		for (int i = 0; i < URL_COUNT; i++) {
+			uris[i] = URI.create(URLS[i]);
+		}
+		return uris;
+	}
+
+	/*************************************************************************
+	 * Gets a script source for a benchmark script.
+	 *
+	 * @param name
+	 *            CORPORATE or the name of a test script in the pac folder.
+	 * @return the source.
+	 * @throws IOException
+	 *             if the script can not be read.
+	 ************************************************************************/
+
+	static PacScriptSource source(String name) throws IOException {
+		final String content = CORPORATE.equals(name) ? buildCorporateScript() : readResource("/pac/" + name);
+		return new PacScriptSource() {
+
+			@Override
+			public String getScriptContent() {
+				return content;
+			}
+
+			@Override
+			public boolean isScriptValid() {
+				return true;
+			}
+		};
+	}
+
+	private static String readResource(String name) throws IOException {
+		InputStream in = PacBenchmarkData.class.getResourceAsStream(name);
+		if (in == null) {
+			throw new IOException("Benchmark script not found: " + name);
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+
+	/*************************************************************************
+	 * Generates a PAC script in the style of the ones large companies deploy:
+	 * a long bypass list of partner domains, proxy routing for CDNs, a list of
+	 * internal networks checked against the resolved address and a choice of
+	 * the proxy by the office network the client is in.
+	 *
+	 * @return the script.
+	 ************************************************************************/
+
+	static String buildCorporateScript() {
+		StringBuilder s = new StringBuilder();
+		s.append("// Generated benchmark script, mimics a large corporate PAC file.\n");
+		s.append("var defaultProxy = \"PROXY proxy.corp.example.com:8080; PROXY proxy2.corp.example.com:8080; DIRECT\";\n\n");
+		s.append("function FindProxyForURL(url, host) {\n");
+		s.append("  host = host.toLowerCase();\n");
+		s.append("  if (isPlainHostName(host) || dnsDomainIs(host, \".corp.example.com\")\n");
+		s.append("      || localHostOrDomainIs(host, \"localhost\")) {\n");
+		s.append("    return \"DIRECT\";\n");
+		s.append("  }\n");
+		s.append("  if (shExpMatch(url, \"http://update.*/*\") || shExpMatch(url, \"*://*.windowsupdate.example/*\")) {\n");
+		s.append("    return \"PROXY update-proxy.corp.example.com:3128\";\n");
+		s.append("  }\n");
+
+		// Partner bypass list, chunked like hand maintained files are.
+		for (int i = 0; i < PARTNER_DOMAINS; i += 20) {
+			s.append("  if (");
+			for (int j = i; j < i + 20 && j < PARTNER_DOMAINS; j++) {
+				if (j > i) {
+					s.append("\n      || ");
+				}
+				s.append("dnsDomainIs(host, \".partner").append(j).append(".example\")");
+			}
+			s.append(") {\n    return \"DIRECT\";\n  }\n");
+		}
+
+		for (int i = 0; i < CDN_DOMAINS; i++) {
+			s.append("  if (shExpMatch(host, \"*.cdn").append(i).append(".example.net\")) {\n");
+			s.append("    return \"PROXY cdn-proxy").append(i % 4).append(".corp.example.com:8080\";\n");
+			s.append("  }\n");
+		}
+
+		s.append("  var ip = dnsResolve(host);\n");
+		s.append("  if (ip) {\n");
+		for (int i = 0; i < DIRECT_NETWORKS; i++) {
+			s.append("    if (isInNet(ip, \"").append(directNetwork(i)).append("\", \"255.255.255.0\")) {\n");
+			s.append("      return \"DIRECT\";\n");
+			s.append("    }\n");
+		}
+		s.append("    if (isInNet(ip, \"10.0.0.0\", \"255.0.0.0\") || isInNet(ip, \"192.168.0.0\", \"255.255.0.0\")) {\n");
+		s.append("      return \"DIRECT\";\n");
+		s.append("    }\n");
+		s.append("  }\n");
+
+		s.append("  var myIp = myIpAddress();\n");
+		for (int i = 0; i < OFFICE_NETWORKS; i++) {
+			s.append("  if (isInNet(myIp, \"10.").append(i).append(".0.0\", \"255.255.0.0\")) {\n");
+			s.append("    return \"PROXY proxy-office").append(i).append(".corp.example.com:8080; \" + defaultProxy;\n");
+			s.append("  }\n");
+		}
+		s.append("  return defaultProxy;\n");
+		s.append("}\n");
+		return s.toString();
+	}
+
+	private static String directNetwork(int index) {
+		return "172.16." + index + ".0";
+	}
+
+}
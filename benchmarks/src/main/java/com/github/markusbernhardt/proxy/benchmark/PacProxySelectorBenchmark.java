@@ -0,0 +1,93 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.markusbernhardt.proxy.selector.pac.PacProxySelector;
+
+/*****************************************************************************
+ * Measures <code>PacProxySelector.select()</code> end to end: script engine
+ * pool, script evaluation, DNS lookups through the stub resolver and parsing
+ * of the result. All threads share one selector, as in an application.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacProxySelectorBenchmark {
+
+	@Param({ "test1.pac", "test2.pac", "test3.pac", "testMultiProxy.pac", "testProxyTypes.pac", "testLocalIP.pac",
+	        PacBenchmarkData.CORPORATE })
+	public String script;
+
+	private PacProxySelector selector;
+
+	private URI[] uris;
+
+	private List<URI> batch;
+
+	/*************************************************************************
+	 * Sets up the selector.
+	 *
+	 * @throws IOException
+	 *             if the script can not be read.
+	 ************************************************************************/
+
+	@Setup
+	public void setUp() throws IOException {
+		PacBenchmarkData.setUp();
+		this.selector = new PacProxySelector(PacBenchmarkData.source(this.script));
+		this.uris = PacBenchmarkData.uris();
+		this.batch = Arrays.asList(this.uris);
+	}
+
+	/*************************************************************************
+	 * Benchmark method
+	 *
+	 * @param cursor
+	 *            the position of this thread in the URL list.
+	 * @return the selected proxies.
+	 ************************************************************************/
+
+	@Benchmark
+	public List<Proxy> select(Cursor cursor) {
+		return this.selector.select(this.uris[cursor.next() & (PacBenchmarkData.URL_COUNT - 1)]);
+	}
+
+	/*************************************************************************
+	 * Benchmark method for the batch API. The score is per URI, so it can be
+	 * compared with the one of select.
+	 *
+	 * @return the selected proxies.
+	 ************************************************************************/
+
+	@Benchmark
+	@OperationsPerInvocation(PacBenchmarkData.URL_COUNT)
+	public Map<URI, List<Proxy>> selectAll() {
+		return this.selector.selectAll(this.batch);
+	}
+
+}
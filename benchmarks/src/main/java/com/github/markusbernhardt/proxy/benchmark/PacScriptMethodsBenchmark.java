@@ -0,0 +1,133 @@
+package com.github.markusbernhardt.proxy.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.markusbernhardt.proxy.selector.pac.PacScriptMethods;
+
+/*****************************************************************************
+ * Measures the individual PAC builtin functions as they are called from a
+ * script, with the host names of the benchmark URLs as input. DNS lookups go
+ * to the stub resolver, so the numbers show the cost of the function itself.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacScriptMethodsBenchmark {
+
+	private static final String UNDEFINED = "undefined";
+
+	private PacScriptMethods methods;
+
+	/*************************************************************************
+	 * Sets up the script methods with the stub resolver.
+	 ************************************************************************/
+
+	@Setup
+	public void setUp() {
+		PacBenchmarkData.setUp();
+		this.methods = new PacScriptMethods(PacBenchmarkData.getResolver());
+	}
+
+	@Benchmark
+	public boolean isPlainHostName(Cursor cursor) {
+		return this.methods.isPlainHostName(PacBenchmarkData.host(cursor.next()));
+	}
+
+	@Benchmark
+	public boolean dnsDomainIs(Cursor cursor) {
+		return this.methods.dnsDomainIs(PacBenchmarkData.host(cursor.next()), ".example.org");
+	}
+
+	@Benchmark
+	public boolean localHostOrDomainIs(Cursor cursor) {
+		return this.methods.localHostOrDomainIs(PacBenchmarkData.host(cursor.next()), "app8.corp.example.com");
+	}
+
+	@Benchmark
+	public int dnsDomainLevels(Cursor cursor) {
+		return this.methods.dnsDomainLevels(PacBenchmarkData.host(cursor.next()));
+	}
+
+	@Benchmark
+	public boolean shExpMatch(Cursor cursor) {
+		return this.methods.shExpMatch(PacBenchmarkData.url(cursor.next()), "*://*.cdn*.example.net/*");
+	}
+
+	@Benchmark
+	public boolean isResolvable(Cursor cursor) {
+		return this.methods.isResolvable(PacBenchmarkData.host(cursor.next()));
+	}
+
+	@Benchmark
+	public String dnsResolve(Cursor cursor) {
+		return this.methods.dnsResolve(PacBenchmarkData.host(cursor.next()));
+	}
+
+	@Benchmark
+	public boolean isInNet(Cursor cursor) {
+		return this.methods.isInNet(PacBenchmarkData.host(cursor.next()), "172.16.0.0", "255.255.0.0");
+	}
+
+	@Benchmark
+	public String myIpAddress() {
+		return this.methods.myIpAddress();
+	}
+
+	@Benchmark
+	public boolean weekdayRange() {
+		return this.methods.weekdayRange("MON", "FRI", UNDEFINED);
+	}
+
+	@Benchmark
+	public boolean dateRange() {
+		return this.methods.dateRange("JAN", "JUN", UNDEFINED, UNDEFINED, UNDEFINED, UNDEFINED, UNDEFINED);
+	}
+
+	@Benchmark
+	public boolean timeRange() {
+		return this.methods.timeRange(8, 18, "GMT", UNDEFINED, UNDEFINED, UNDEFINED, UNDEFINED);
+	}
+
+	@Benchmark
+	public boolean isResolvableEx(Cursor cursor) {
+		return this.methods.isResolvableEx(PacBenchmarkData.host(cursor.next()));
+	}
+
+	@Benchmark
+	public boolean isInNetEx(Cursor cursor) {
+		return this.methods.isInNetEx(PacBenchmarkData.host(cursor.next()), "198.51.100.0/24");
+	}
+
+	@Benchmark
+	public String dnsResolveEx(Cursor cursor) {
+		return this.methods.dnsResolveEx(PacBenchmarkData.host(cursor.next()));
+	}
+
+	@Benchmark
+	public String myIpAddressEx() {
+		return this.methods.myIpAddressEx();
+	}
+
+	@Benchmark
+	public String sortIpAddressList() {
+		return this.methods.sortIpAddressList("10.2.3.9;2001:4898:28:3:201:2ff:feea:fc14;::1;127.0.0.1;::9");
+	}
+
+}
@@ -1,10 +1,18 @@
 package com.github.markusbernhardt.proxy;
 
 import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.net.ProxySelector;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.slf4j.helpers.MessageFormatter;
 
@@ -27,6 +35,8 @@ import com.github.markusbernhardt.proxy.util.Logger.LogBackEnd;
 import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
 import com.github.markusbernhardt.proxy.util.PlatformUtil;
 import com.github.markusbernhardt.proxy.util.ProxyException;
+import com.github.markusbernhardt.proxy.util.SelectorStats;
+import com.github.markusbernhardt.proxy.util.SelectorStatsMBean;
 
 /*****************************************************************************
  * Main class to setup and initialize the proxy detection system.<br>
@@ -52,6 +62,14 @@ public class ProxySearch implements ProxySearchStrategy {
 
     private static final CacheScope DEFAULT_PAC_CACHE_SCOPE = CacheScope.CACHE_SCOPE_HOST;
 
+    /**
+     * The JMX domain the statistics MBeans are registered in.
+     */
+    public static final String JMX_DOMAIN = "com.github.markusbernhardt.proxy";
+
+    // Numbers the selector chains, so that every chain gets its own MBean names.
+    private static final AtomicInteger CHAIN_COUNT = new AtomicInteger();
+
     private List<ProxySearchStrategy> strategies;
 
     private int pacCacheSize;
@@ -60,6 +78,16 @@ public class ProxySearch implements ProxySearchStrategy {
 
     private CacheScope pacCacheScope;
 
+    private File pacCacheSnapshotFile;
+
+    private long pacCacheSnapshotInterval;
+
+    private BufferedProxySelector snapshotSelector;
+
+    private boolean jmxEnabled;
+
+    private final List<ObjectName> registeredMBeans;
+
     /*****************************************************************************
      * Types of proxy detection supported by the builder.
      ****************************************************************************/
@@ -97,6 +125,7 @@ public class ProxySearch implements ProxySearchStrategy {
         this.pacCacheSize = DEFAULT_PAC_CACHE_SIZE;
         this.pacCacheTTL = DEFAULT_PAC_CACHE_TTL;
         this.pacCacheScope = DEFAULT_PAC_CACHE_SCOPE;
+        this.registeredMBeans = new ArrayList<ObjectName>();
     }
 
     /*************************************************************************
@@ -264,15 +293,91 @@ public class ProxySearch implements ProxySearchStrategy {
      * @param ttl
      *            is the time to live of the cache entries as amount of milliseconds.
      * @param cacheScope
-     *            the desired cache scope.
+     *            the desired cache scope. The custom scope is not supported here, it needs a key function.
      ************************************************************************/
 
     public void setPacCacheSettings(int size, long ttl, CacheScope cacheScope) {
+        if (cacheScope == CacheScope.CACHE_SCOPE_CUSTOM) {
+            throw new IllegalArgumentException("The custom cache scope needs a key function.");
+        }
         this.pacCacheSize = size;
         this.pacCacheTTL = ttl;
         this.pacCacheScope = cacheScope;
     }
 
+    /*************************************************************************
+     * Enables a snapshot file for the PAC selector cache. The cached proxy decisions are written to the file
+     * periodically and on shutdown. The next PAC selector built by this search reads them back, so that it does not
+     * have to evaluate the script for every host again after a restart. The snapshot is tagged with a hash of the PAC
+     * script and the cache scope and is ignored if either has changed. Only the last chain built writes the file,
+     * building a new chain stops the snapshot of the previous one. This has no effect if caching is disabled.<br>
+     * The cache keys are written as they are, with <code>CACHE_SCOPE_URL</code> these are complete URLs including
+     * query strings.
+     * 
+     * @param file
+     *            the snapshot file, null to disable the snapshot. This is the default.
+     * @param writeInterval
+     *            the interval in milliseconds to write the snapshot in, 0 to write it only on shutdown.
+     ************************************************************************/
+
+    public void setPacCacheSnapshot(File file, long writeInterval) {
+        this.pacCacheSnapshotFile = file;
+        this.pacCacheSnapshotInterval = writeInterval;
+    }
+
+    /*************************************************************************
+     * Writes the cache snapshot of the last PAC selector chain built by this search a last time and stops writing
+     * it, e.g. when the selectors are no longer used. Does nothing if there is no such snapshot.
+     ************************************************************************/
+
+    public synchronized void disablePacCacheSnapshot() {
+        if (this.snapshotSelector != null) {
+            this.snapshotSelector.disableSnapshot();
+            this.snapshotSelector = null;
+        }
+    }
+
+    /*************************************************************************
+     * Enables the JMX export of the selector statistics. If enabled, every PAC selector chain built by
+     * <code>getProxySelector</code> registers one MBean per selector in the platform MBean server, named
+     * <code>com.github.markusbernhardt.proxy:type=&lt;selector class&gt;,chain=&lt;number&gt;</code>. Disabled per
+     * default.
+     * 
+     * @param jmxEnabled
+     *            true to register the MBeans.
+     ************************************************************************/
+
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /*************************************************************************
+     * Gets the names of the statistics MBeans registered by this search.
+     * 
+     * @return the names, in the order they were registered.
+     ************************************************************************/
+
+    public synchronized List<ObjectName> getRegisteredMBeans() {
+        return new ArrayList<ObjectName>(this.registeredMBeans);
+    }
+
+    /*************************************************************************
+     * Unregisters all statistics MBeans registered by this search, e.g. when the selectors are no longer used.
+     ************************************************************************/
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : this.registeredMBeans) {
+            try {
+                server.unregisterMBean(name);
+            }
+            catch (JMException e) {
+                Logger.log(getClass(), LogLevel.DEBUG, "MBean {} was already unregistered.", name);
+            }
+        }
+        this.registeredMBeans.clear();
+    }
+
     /*************************************************************************
      * Gets the search strategy for the platforms default browser.
      * 
@@ -342,14 +447,79 @@ public class ProxySearch implements ProxySearchStrategy {
 
     private ProxySelector installBufferingAndFallbackBehaviour(ProxySelector selector) {
         if (selector instanceof PacProxySelector) {
+            int chain = this.jmxEnabled ? CHAIN_COUNT.incrementAndGet() : 0;
+            if (this.jmxEnabled) {
+                registerMBean(chain, selector, ((PacProxySelector) selector)::getStats);
+            }
             if (this.pacCacheSize > 0) {
-                selector = new BufferedProxySelector(this.pacCacheSize, this.pacCacheTTL, selector, pacCacheScope);
+                BufferedProxySelector buffered = new BufferedProxySelector(this.pacCacheSize, this.pacCacheTTL,
+                        selector, pacCacheScope);
+                // Flush the decisions of the old script when it changes.
+                ((PacProxySelector) selector).getScriptSource().addChangeListener((source, contentHash) -> {
+                    buffered.invalidateAll();
+                    buffered.setSnapshotTag(contentHash);
+                });
+                if (this.pacCacheSnapshotFile != null) {
+                    String scriptHash = ((PacProxySelector) selector).getScriptHash();
+                    if (scriptHash != null) {
+                        enablePacCacheSnapshot(buffered, scriptHash);
+                    }
+                }
+                if (this.jmxEnabled) {
+                    registerMBean(chain, buffered, buffered::getStats);
+                }
+                selector = buffered;
+            }
+            ProxyListFallbackSelector fallback = new ProxyListFallbackSelector(selector);
+            if (this.jmxEnabled) {
+                registerMBean(chain, fallback, fallback::getStats);
             }
-            selector = new ProxyListFallbackSelector(selector);
+            selector = fallback;
         }
         return selector;
     }
 
+    /*************************************************************************
+     * Moves the snapshot from the previous chain to a new one. The previous chain writes its decisions first, so
+     * the new one starts with them.
+     * 
+     * @param buffered
+     *            the cache of the new chain.
+     * @param scriptHash
+     *            the hash of the PAC script of the new chain.
+     ************************************************************************/
+
+    private synchronized void enablePacCacheSnapshot(BufferedProxySelector buffered, String scriptHash) {
+        disablePacCacheSnapshot();
+        buffered.enableSnapshot(this.pacCacheSnapshotFile, scriptHash, this.pacCacheSnapshotInterval);
+        this.snapshotSelector = buffered;
+    }
+
+    /*************************************************************************
+     * Registers the statistics MBean for a selector of a chain. Failures are logged but do not stop the search.
+     * 
+     * @param chain
+     *            the number of the chain.
+     * @param selector
+     *            the selector.
+     * @param stats
+     *            takes a snapshot of the statistics of the selector.
+     ************************************************************************/
+
+    private synchronized void registerMBean(int chain, ProxySelector selector, Supplier<? extends SelectorStats> stats) {
+        String type = selector.getClass().getSimpleName();
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=" + type + ",chain=" + chain);
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(new SelectorStatsMBean("Statistics of the " + type + " of a proxy selector chain.",
+                        stats), name);
+            this.registeredMBeans.add(name);
+        }
+        catch (JMException e) {
+            Logger.log(getClass(), LogLevel.WARNING, "Could not register statistics MBean for {}.", type, e);
+        }
+    }
+
     /*************************************************************************
      * toString
      * 
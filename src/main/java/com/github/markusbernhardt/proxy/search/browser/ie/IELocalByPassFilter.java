@@ -2,6 +2,7 @@ package com.github.markusbernhardt.proxy.search.browser.ie;
 
 import java.net.URI;
 
+import com.github.markusbernhardt.proxy.util.RequestTarget;
 import com.github.markusbernhardt.proxy.util.UriFilter;
 
 /*****************************************************************************
@@ -26,4 +27,16 @@ public class IELocalByPassFilter implements UriFilter {
 		return host != null && !host.contains(".");
 	}
 
+	/*************************************************************************
+	 * accept
+	 * 
+	 * @see com.github.markusbernhardt.proxy.util.UriFilter#accept(com.github.markusbernhardt.proxy.util.RequestTarget)
+	 ************************************************************************/
+
+	@Override
+	public boolean accept(RequestTarget target) {
+		String host = target.getHost();
+		return host != null && host.indexOf('.') == -1;
+	}
+
 }
@@ -1,13 +1,16 @@
 package com.github.markusbernhardt.proxy.search.env;
 
 import java.net.ProxySelector;
+import java.util.Collections;
 import java.util.Properties;
 
 import com.github.markusbernhardt.proxy.ProxySearchStrategy;
 import com.github.markusbernhardt.proxy.selector.misc.ProtocolDispatchSelector;
+import com.github.markusbernhardt.proxy.selector.whitelist.NoProxyMatcher;
 import com.github.markusbernhardt.proxy.selector.whitelist.ProxyBypassListSelector;
 import com.github.markusbernhardt.proxy.util.Logger;
 import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.UriFilter;
 import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
 
 /*****************************************************************************
@@ -21,6 +24,8 @@ import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
  * <li><i>ftp_proxy</i> -&gt; Used for FTP.</li>
  * <li><i>no_proxy</i> -&gt; a no proxy white list.</li>
  * </ul>
+ * The no proxy list is read with the rules of curl and Go, see
+ * NoProxyMatcher.
  * 
  * @author Markus Bernhardt, Copyright 2016
  * @author Bernd Rosstauscher, Copyright 2009
@@ -130,7 +135,8 @@ public class EnvProxySearchStrategy implements ProxySearchStrategy {
 		ProxySelector result = ps;
 		if (this.noProxy != null && this.noProxy.trim().length() > 0) {
 			Logger.log(getClass(), LogLevel.TRACE, "Using proxy bypass list: {}", this.noProxy);
-			result = new ProxyBypassListSelector(this.noProxy, ps);
+			NoProxyMatcher matcher = NoProxyMatcher.parse(this.noProxy);
+			result = new ProxyBypassListSelector(Collections.<UriFilter> singletonList(matcher), ps);
 		}
 
 		return result;
@@ -1,22 +1,45 @@
 package com.github.markusbernhardt.proxy.selector.misc;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.SocketAddress;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.github.markusbernhardt.proxy.util.ImmutableProxyList;
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+import com.github.markusbernhardt.proxy.util.PublicSuffixList;
+import com.github.markusbernhardt.proxy.util.SegmentedLruCache;
 
 /*****************************************************************************
  * Implements a cache that can be used to warp it around an existing
  * ProxySelector. You can specify a maximum cache size and a "time to live" for
- * positive resolves.
+ * positive resolves. If the cache is full the least recently used entry is
+ * evicted. Concurrent misses for the same cache key are coalesced, only one
+ * thread asks the delegate while the others wait for its result.<br>
+ * Optionally entries can be refreshed in the background shortly before they
+ * expire (refresh ahead) and expired entries can still be returned for a grace
+ * period while they are refreshed in the background (stale while revalidate).
+ * The cache can be saved to a snapshot file periodically and on shutdown and
+ * is then filled from that file on the next start.
  * 
  * @author Markus Bernhardt, Copyright 2016
  * @author Bernd Rosstauscher, Copyright 2009
@@ -47,9 +70,28 @@ public class BufferedProxySelector extends ProxySelector {
          * Cache keys are generated by <code>uri.toString()</code>.
          ********************************************************************/
 
-        CACHE_SCOPE_URL
+        CACHE_SCOPE_URL,
+
+        /*********************************************************************
+         * Cache keys are the registrable domain of <code>uri.getHost()</code>
+         * according to the public suffix list, e.g. <code>example.co.uk</code>
+         * for <code>img1.cdn.example.co.uk</code>. Use this only if the PAC
+         * script does not distinguish between the hosts of a domain.
+         ********************************************************************/
+
+        CACHE_SCOPE_DOMAIN,
+
+        /*********************************************************************
+         * Cache keys are generated by a function given by the caller. This
+         * scope is set by the constructor that takes the key function.
+         ********************************************************************/
+
+        CACHE_SCOPE_CUSTOM
     }
 
+    // Upper bound for the remembered host to domain mappings.
+    private static final int MAX_DOMAIN_KEYS = 4096;
+
     @Override
     public String toString() {
 		return "BufferedProxySelector{" +
@@ -63,26 +105,38 @@ public class BufferedProxySelector extends ProxySelector {
 
     private ProxySelector delegate;
 
-    private ConcurrentHashMap<String, CacheEntry> cache;
+    private SegmentedLruCache<String, CacheEntry> cache;
+    private final Map<String, CompletableFuture<CacheEntry>> loading;
+    private final LongAdder coalescedLoads;
+    private final LongAdder refreshCount;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder loadCount;
+    private final LongAdder loadFailureCount;
+    private final LongAdder loadTimeNanos;
+    private final AtomicLong generation;
     private int maxSize;
     private long ttl;
     private CacheScope cacheScope;
-
-    private static class CacheEntry {
+    private final Function<URI, String> keyFunction;
+    private final Map<String, String> domainKeys;
+    private volatile long refreshAheadNanos;
+    private volatile long staleNanos;
+    private volatile Executor refreshExecutor;
+    private File snapshotFile;
+    private String snapshotTag;
+    private ScheduledFuture<?> snapshotTask;
+
+    static class CacheEntry {
         List<Proxy> result;
         long expireAt;
 
         public CacheEntry(List<Proxy> r, long expireAt) {
             super();
-            this.result = new ArrayList<Proxy>(r.size());
-            this.result.addAll(r);
-            this.result = Collections.unmodifiableList(this.result);
+            // Shared immutable lists, e.g. from the PacProxySelector, are stored as they are.
+            this.result = ImmutableProxyList.copyOf(r);
             this.expireAt = expireAt;
         }
-
-        public boolean isExpired() {
-            return System.nanoTime() >= this.expireAt;
-        }
     }
 
     /*************************************************************************
@@ -100,14 +154,101 @@ public class BufferedProxySelector extends ProxySelector {
      ************************************************************************/
 
     public BufferedProxySelector(int maxSize, long ttl, ProxySelector delegate, CacheScope cacheScope) {
+        this(maxSize, ttl, delegate, cacheScope, null);
+        if (cacheScope == CacheScope.CACHE_SCOPE_CUSTOM) {
+            throw new IllegalArgumentException("The custom cache scope needs a key function.");
+        }
+    }
+
+    /*************************************************************************
+     * Constructor for a cache with custom keys.
+     * 
+     * @param maxSize
+     *            the max size for the cache.
+     * @param ttl
+     *            the "time to live" for cache entries as amount in milliseconds.
+     * @param delegate
+     *            the delegate to use.
+     * @param keyFunction
+     *            builds the cache key for an URI. URIs the function returns null for are not cached. The function is
+     *            called on every select and should be cheap.
+     ************************************************************************/
+
+    public BufferedProxySelector(int maxSize, long ttl, ProxySelector delegate, Function<URI, String> keyFunction) {
+        this(maxSize, ttl, delegate, CacheScope.CACHE_SCOPE_CUSTOM, keyFunction);
+        if (keyFunction == null) {
+            throw new IllegalArgumentException("Key function must not be null.");
+        }
+    }
+
+    private BufferedProxySelector(int maxSize, long ttl, ProxySelector delegate, CacheScope cacheScope,
+            Function<URI, String> keyFunction) {
         super();
-        this.cache = new ConcurrentHashMap<String, CacheEntry>();
+        this.keyFunction = keyFunction;
+        this.domainKeys = new ConcurrentHashMap<String, String>();
+        this.cache = new SegmentedLruCache<String, CacheEntry>(Math.max(1, maxSize));
+        this.loading = new ConcurrentHashMap<String, CompletableFuture<CacheEntry>>();
+        this.coalescedLoads = new LongAdder();
+        this.refreshCount = new LongAdder();
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.loadCount = new LongAdder();
+        this.loadFailureCount = new LongAdder();
+        this.loadTimeNanos = new LongAdder();
+        this.generation = new AtomicLong();
         this.maxSize = maxSize;
         this.delegate = delegate;
         this.ttl = ttl;
         this.cacheScope = cacheScope;
     }
 
+    /*************************************************************************
+     * Enables refresh ahead. An entry that is requested within the given time before it expires is loaded again in
+     * the background, while the callers keep getting the current entry. Set to 0 to disable, this is the default.
+     * 
+     * @param refreshAhead
+     *            the time before expiry in milliseconds.
+     ************************************************************************/
+
+    public void setRefreshAhead(long refreshAhead) {
+        this.refreshAheadNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, refreshAhead));
+    }
+
+    /*************************************************************************
+     * Enables stale while revalidate. An expired entry is still returned for the given grace period while it is
+     * loaded again in the background. If the background load fails the expired entry is still returned until the
+     * grace period ends. Set to 0 to disable, this is the default.
+     * 
+     * @param gracePeriod
+     *            the time after expiry in milliseconds.
+     ************************************************************************/
+
+    public void setStaleWhileRevalidate(long gracePeriod) {
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, gracePeriod));
+    }
+
+    /*************************************************************************
+     * Sets the executor for background refreshes. Per default a small pool of daemon threads shared by all buffered
+     * selectors is used.
+     * 
+     * @param executor
+     *            the executor, null to use the default.
+     ************************************************************************/
+
+    public void setRefreshExecutor(Executor executor) {
+        this.refreshExecutor = executor;
+    }
+
+    /*************************************************************************
+     * Gets the number of background refreshes that were started.
+     * 
+     * @return the number of refreshes.
+     ************************************************************************/
+
+    public long getRefreshCount() {
+        return this.refreshCount.sum();
+    }
+
     /*************************************************************************
      * connectFailed
      * 
@@ -139,6 +280,12 @@ public class BufferedProxySelector extends ProxySelector {
             case CACHE_SCOPE_URL:
                 cacheKey = uri.toString();
                 break;
+            case CACHE_SCOPE_DOMAIN:
+                cacheKey = getDomainKey(uri.getHost());
+                break;
+            case CACHE_SCOPE_CUSTOM:
+                cacheKey = keyFunction.apply(uri);
+                break;
             default:
                 throw new RuntimeException("FixMe: Unhandled CacheScope enum constant.");
         }
@@ -148,47 +295,371 @@ public class BufferedProxySelector extends ProxySelector {
             entry = this.cache.get(cacheKey);
         }
 
-        if (entry == null || entry.isExpired()) {
-            List<Proxy> result = this.delegate.select(uri);
-            entry = new CacheEntry(result, System.nanoTime() + this.ttl * 1000 * 1000);
+        if (entry == null) {
+            this.missCount.increment();
+            return cacheKey == null ? load(uri).result : loadOnce(cacheKey, uri).result;
+        }
+
+        long now = System.nanoTime();
+        if (now - entry.expireAt < 0) {
+            if (now - (entry.expireAt - this.refreshAheadNanos) >= 0) {
+                refresh(cacheKey, uri);
+            }
+            this.hitCount.increment();
+            return entry.result;
+        }
+        if (now - entry.expireAt < this.staleNanos) {
+            refresh(cacheKey, uri);
+            this.hitCount.increment();
+            return entry.result;
+        }
+        this.missCount.increment();
+        return loadOnce(cacheKey, uri).result;
+    }
+
+    /*************************************************************************
+     * Gets the registrable domain of a host as cache key. Hosts that are their own domain are used as they are,
+     * else the domain is remembered for the host, so that repeated lookups do not allocate.
+     * 
+     * @param host
+     *            the host name, may be null.
+     * @return the cache key.
+     ************************************************************************/
 
-            synchronized (this.cache) {
-                if (this.cache.size() >= this.maxSize) {
-                    purgeCache();
+    private String getDomainKey(String host) {
+        if (host == null) {
+            return null;
+        }
+        String key = this.domainKeys.get(host);
+        if (key != null) {
+            return key;
+        }
+        int start = PublicSuffixList.getDefault().getRegistrableDomainStart(host);
+        if (start == 0) {
+            return host;
+        }
+        key = host.substring(start);
+        if (this.domainKeys.size() >= MAX_DOMAIN_KEYS) {
+            this.domainKeys.clear();
+        }
+        this.domainKeys.put(host, key);
+        return key;
+    }
+
+    /*************************************************************************
+     * Starts a background load for a cache key unless the key is already
+     * being loaded.
+     * 
+     * @param cacheKey
+     *            the cache key.
+     * @param uri
+     *            the URI to ask the delegate for.
+     ************************************************************************/
+
+    private void refresh(final String cacheKey, final URI uri) {
+        final CompletableFuture<CacheEntry> created = new CompletableFuture<CacheEntry>();
+        if (this.loading.putIfAbsent(cacheKey, created) != null) {
+            return;
+        }
+        this.refreshCount.increment();
+        Executor executor = this.refreshExecutor;
+        try {
+            (executor != null ? executor : RefreshPool.EXECUTOR).execute(() -> {
+                try {
+                    runLoad(cacheKey, uri, created);
+                }
+                catch (RuntimeException e) {
+                    Logger.log(getClass(), LogLevel.WARNING, "Background refresh for {} failed.", cacheKey, e);
                 }
-                if (cacheKey != null) {
-                    this.cache.put(cacheKey, entry);
+            });
+        }
+        catch (RuntimeException e) {
+            this.loading.remove(cacheKey, created);
+            created.completeExceptionally(e);
+        }
+    }
+
+    /*************************************************************************
+     * Loads the entry for a cache key. If another thread is already loading the same key this waits for its result
+     * instead of asking the delegate again.
+     * 
+     * @param cacheKey
+     *            the cache key.
+     * @param uri
+     *            the URI to ask the delegate for.
+     * @return the loaded entry.
+     ************************************************************************/
+
+    private CacheEntry loadOnce(String cacheKey, URI uri) {
+        CompletableFuture<CacheEntry> created = new CompletableFuture<CacheEntry>();
+        CompletableFuture<CacheEntry> running = this.loading.putIfAbsent(cacheKey, created);
+        if (running != null) {
+            this.coalescedLoads.increment();
+            try {
+                return running.join();
+            }
+            catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
                 }
+                throw e;
             }
         }
 
-        return entry.result;
+        return runLoad(cacheKey, uri, created);
+    }
+
+    /*************************************************************************
+     * Loads an entry from the delegate, stores it in the cache and completes
+     * the future that was registered for the key in the loading map.
+     ************************************************************************/
+
+    private CacheEntry runLoad(String cacheKey, URI uri, CompletableFuture<CacheEntry> created) {
+        // The load must leave the loading map before it completes, so that later callers see the cached entry.
+        try {
+            long loadGeneration = this.generation.get();
+            CacheEntry entry = load(uri);
+            // Do not cache what the delegate answered before the cache was invalidated.
+            if (loadGeneration == this.generation.get()) {
+                this.cache.put(cacheKey, entry);
+            }
+            this.loading.remove(cacheKey, created);
+            created.complete(entry);
+            return entry;
+        }
+        catch (RuntimeException | Error e) {
+            this.loading.remove(cacheKey, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private CacheEntry load(URI uri) {
+        long start = System.nanoTime();
+        List<Proxy> result;
+        try {
+            result = this.delegate.select(uri);
+        }
+        catch (RuntimeException e) {
+            this.loadFailureCount.increment();
+            throw e;
+        }
+        finally {
+            this.loadCount.increment();
+            this.loadTimeNanos.add(System.nanoTime() - start);
+        }
+        return new CacheEntry(result, System.nanoTime() + this.ttl * 1000 * 1000);
+    }
+
+    /*************************************************************************
+     * Removes all entries, e.g. because the PAC script has changed. Loads that are running right now are not put
+     * into the cache.
+     ************************************************************************/
+
+    public void invalidateAll() {
+        this.generation.incrementAndGet();
+        this.cache.clear();
+    }
+
+    /*************************************************************************
+     * Gets the number of cache misses that did not ask the delegate but waited
+     * for another thread that was already loading the same cache key.
+     * 
+     * @return the number of coalesced loads.
+     ************************************************************************/
+
+    public long getCoalescedLoads() {
+        return this.coalescedLoads.sum();
     }
 
     /*************************************************************************
-     * Purge cache to get some free space for a new entry.
+     * Takes a snapshot of the cache statistics. The counters are striped, so
+     * collecting them does not slow down select, but the values of a snapshot
+     * taken while other threads select may not be exactly consistent.
+     * 
+     * @return the statistics.
      ************************************************************************/
 
-    private void purgeCache() {
+    public CacheStats getStats() {
+        return new CacheStats(this.hitCount.sum(), this.missCount.sum(), this.cache.getEvictionCount(),
+                this.loadCount.sum(), this.loadFailureCount.sum(), this.loadTimeNanos.sum(),
+                this.coalescedLoads.sum(), this.refreshCount.sum(), this.cache.size(), this.cache.getMaxSize());
+    }
 
-        // Remove all expired entries and find the oldest.
-        boolean removedOne = false;
-        Entry<String, CacheEntry> oldest = null;
+    /*************************************************************************
+     * Enables the snapshot file. The cache is filled from the file right away, if the file exists and was written
+     * with the same tag and cache scope. Call this right after construction, before the first select. From then on
+     * the cache is written to the file in the given interval and when the JVM shuts down.<br>
+     * Only one selector writes a file. If another selector has the snapshot of the same file enabled, it writes its
+     * cache a last time and stops, and this selector reads what it wrote.<br>
+     * The cache keys are written to the file as they are. With <code>CACHE_SCOPE_URL</code> these are complete URLs,
+     * query strings included, protect the file accordingly.
+     * 
+     * @param file
+     *            the snapshot file.
+     * @param tag
+     *            identifies what the cached decisions depend on, e.g. a hash of the PAC script. A snapshot written
+     *            with a different tag is ignored.
+     * @param writeInterval
+     *            the interval in milliseconds to write the snapshot in, 0 to write it only on shutdown.
+     * @return the number of entries read from the file.
+     ************************************************************************/
 
-        Set<Entry<String, CacheEntry>> entries = this.cache.entrySet();
-        for (Iterator<Entry<String, CacheEntry>> it = entries.iterator(); it.hasNext();) {
-            Entry<String, CacheEntry> entry = it.next();
-            if (entry.getValue().isExpired()) {
-                it.remove();
-                removedOne = true;
-			} else if (oldest == null || entry.getValue().expireAt < oldest.getValue().expireAt) {
-                oldest = entry;
+    public int enableSnapshot(File file, String tag, long writeInterval) {
+        if (file == null || tag == null) {
+            throw new IllegalArgumentException("Snapshot file and tag must not be null.");
+        }
+        disableSnapshot();
+        File path = file.getAbsoluteFile();
+        BufferedProxySelector previous = SnapshotScheduler.OWNERS.put(path, this);
+        if (previous != null && previous != this) {
+            // Outside of our lock, the previous owner writes its latest decisions for us to read.
+            previous.disableSnapshot();
+        }
+
+        synchronized (this) {
+            this.snapshotFile = path;
+            this.snapshotTag = scopedTag(tag);
+
+            int loaded = 0;
+            try {
+                long start = System.nanoTime();
+                loaded = CacheSnapshot.read(path, this.snapshotTag, this.cache);
+                Logger.log(getClass(), LogLevel.DEBUG, "Loaded {} cache entries from {} in {} ms.", loaded, path,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            catch (IOException e) {
+                Logger.log(getClass(), LogLevel.WARNING, "Could not read cache snapshot {}.", path, e);
+            }
+
+            if (writeInterval > 0) {
+                this.snapshotTask = SnapshotScheduler.EXECUTOR.scheduleWithFixedDelay(this::writeSnapshotQuietly,
+                        writeInterval, writeInterval, TimeUnit.MILLISECONDS);
             }
+            return loaded;
         }
+    }
+
+    /*************************************************************************
+     * Adds the cache scope to a snapshot tag, the keys of one scope mean something else in another one.
+     * 
+     * @param tag
+     *            the tag given by the caller.
+     * @return the tag to write.
+     ************************************************************************/
+
+    private String scopedTag(String tag) {
+        return this.cacheScope.name() + ":" + tag;
+    }
+
+    /*************************************************************************
+     * Changes the tag the snapshot is written with, e.g. after the PAC script has changed. Does nothing if the
+     * snapshot is not enabled.
+     * 
+     * @param tag
+     *            the new tag.
+     ************************************************************************/
+
+    public synchronized void setSnapshotTag(String tag) {
+        if (this.snapshotFile != null && tag != null) {
+            this.snapshotTag = scopedTag(tag);
+        }
+    }
+
+    /*************************************************************************
+     * Writes the snapshot file a last time and stops writing it, e.g. when the selector is no longer used. The file
+     * itself is kept. Does nothing if the snapshot is not enabled.
+     ************************************************************************/
+
+    public synchronized void disableSnapshot() {
+        if (this.snapshotFile == null) {
+            return;
+        }
+        if (this.snapshotTask != null) {
+            this.snapshotTask.cancel(false);
+            this.snapshotTask = null;
+        }
+        writeSnapshotQuietly();
+        SnapshotScheduler.OWNERS.remove(this.snapshotFile, this);
+        this.snapshotFile = null;
+        this.snapshotTag = null;
+    }
+
+    /*************************************************************************
+     * Writes the snapshot file now.
+     * 
+     * @return the number of written entries.
+     * @throws IOException
+     *             on write errors.
+     ************************************************************************/
+
+    public synchronized int writeSnapshot() throws IOException {
+        if (this.snapshotFile == null) {
+            throw new IllegalStateException("Snapshot is not enabled.");
+        }
+        return CacheSnapshot.write(this.snapshotFile, this.snapshotTag, this.cache);
+    }
+
+    private synchronized void writeSnapshotQuietly() {
+        if (this.snapshotFile == null) {
+            // Disabled while a periodic write was waiting for the lock.
+            return;
+        }
+        try {
+            writeSnapshot();
+        }
+        catch (IOException | RuntimeException e) {
+            Logger.log(getClass(), LogLevel.WARNING, "Could not write cache snapshot.", e);
+        }
+    }
+
+    /*****************************************************************************
+     * Holder for the timer thread that writes the snapshot files and for the owners of the files, created on first
+     * use. A single shutdown hook writes the files one after the other.
+     ****************************************************************************/
+
+    private static final class SnapshotScheduler {
+
+        static final ScheduledExecutorService EXECUTOR;
+
+        static final Map<File, BufferedProxySelector> OWNERS = new ConcurrentHashMap<File, BufferedProxySelector>();
+
+        static {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "proxy-vole-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            EXECUTOR = executor;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                for (BufferedProxySelector owner : OWNERS.values()) {
+                    owner.writeSnapshotQuietly();
+                }
+            }, "proxy-vole-snapshot-hook"));
+        }
+    }
+
+    /*****************************************************************************
+     * Holder for the default executor of background refreshes, created on first use.
+     ****************************************************************************/
+
+    private static final class RefreshPool {
+
+        private static final int THREADS = 2;
+
+        static final Executor EXECUTOR;
 
-        // Remove oldest if no expired entries were found.
-        if (!removedOne && oldest != null) {
-            this.cache.remove(oldest.getKey());
+        static {
+            final AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), r -> {
+                        Thread thread = new Thread(r, "proxy-vole-refresh-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            EXECUTOR = pool;
         }
     }
 
@@ -0,0 +1,244 @@
+package com.github.markusbernhardt.proxy.selector.misc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.github.markusbernhardt.proxy.selector.misc.BufferedProxySelector.CacheEntry;
+import com.github.markusbernhardt.proxy.util.ImmutableProxyList;
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+import com.github.markusbernhardt.proxy.util.SegmentedLruCache;
+
+/*****************************************************************************
+ * Reads and writes the entries of a BufferedProxySelector cache as a compact
+ * binary file, so that a restarted process does not have to evaluate the PAC
+ * script again for every host.<br>
+ * The file starts with a tag, e.g. a hash of the PAC script. A file with a
+ * different tag is ignored. Every distinct proxy list is written only once and
+ * referenced by index from the entries, together with the remaining time to
+ * live. Strings are stored as length prefixed UTF-8, so that they can be
+ * decoded straight from the file buffer. Every write goes to its own temporary
+ * file next to the snapshot, which then replaces the snapshot atomically where
+ * the file system supports it.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+final class CacheSnapshot {
+
+	// "PVCS" followed by the format version.
+	private static final int MAGIC = 0x50564353;
+	private static final int VERSION = 1;
+
+	private static final int TYPE_DIRECT = 0;
+	private static final int TYPE_HTTP = 1;
+	private static final int TYPE_SOCKS = 2;
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	private CacheSnapshot() {
+		super();
+	}
+
+	/*************************************************************************
+	 * Writes all entries that have not expired yet.
+	 *
+	 * @param file
+	 *            the file to write.
+	 * @param tag
+	 *            the tag to identify the snapshot with.
+	 * @param cache
+	 *            the cache to write.
+	 * @return the number of written entries.
+	 * @throws IOException
+	 *             on write errors.
+	 ************************************************************************/
+
+	static int write(File file, String tag, SegmentedLruCache<String, CacheEntry> cache) throws IOException {
+		List<Map.Entry<String, CacheEntry>> entries = cache.entries();
+		long now = System.nanoTime();
+
+		// Number the distinct proxy lists, they are shared by many entries.
+		Map<List<Proxy>, Integer> listIndex = new IdentityHashMap<List<Proxy>, Integer>();
+		List<List<Proxy>> lists = new ArrayList<List<Proxy>>();
+		List<Map.Entry<String, CacheEntry>> live = new ArrayList<Map.Entry<String, CacheEntry>>(entries.size());
+		for (Map.Entry<String, CacheEntry> e : entries) {
+			if (e.getValue().expireAt - now <= 0) {
+				continue;
+			}
+			live.add(e);
+			if (!listIndex.containsKey(e.getValue().result)) {
+				listIndex.put(e.getValue().result, lists.size());
+				lists.add(e.getValue().result);
+			}
+		}
+
+		Path tmp = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), file.getName(), ".tmp");
+		try {
+			writeEntries(tmp, tag, lists, live, listIndex, now);
+			try {
+				Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			// Only left over if the write failed.
+			Files.deleteIfExists(tmp);
+		}
+		return live.size();
+	}
+
+	private static void writeEntries(Path tmp, String tag, List<List<Proxy>> lists,
+	        List<Map.Entry<String, CacheEntry>> live, Map<List<Proxy>, Integer> listIndex, long now)
+	        throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 65536));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, tag);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(lists.size());
+			for (List<Proxy> list : lists) {
+				out.writeInt(list.size());
+				for (Proxy proxy : list) {
+					writeProxy(out, proxy);
+				}
+			}
+			out.writeInt(live.size());
+			for (Map.Entry<String, CacheEntry> e : live) {
+				writeString(out, e.getKey());
+				out.writeInt(listIndex.get(e.getValue().result));
+				out.writeLong(TimeUnit.NANOSECONDS.toMillis(e.getValue().expireAt - now));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void writeProxy(DataOutputStream out, Proxy proxy) throws IOException {
+		SocketAddress address = proxy.address();
+		if (proxy.type() == Proxy.Type.DIRECT || !(address instanceof InetSocketAddress)) {
+			out.writeByte(TYPE_DIRECT);
+			return;
+		}
+		InetSocketAddress isa = (InetSocketAddress) address;
+		out.writeByte(proxy.type() == Proxy.Type.SOCKS ? TYPE_SOCKS : TYPE_HTTP);
+		writeString(out, isa.getHostString());
+		out.writeInt(isa.getPort());
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/*************************************************************************
+	 * Reads a snapshot into a cache. Entries that expired since the snapshot
+	 * was written are skipped. Nothing is read if the file does not exist, is
+	 * not a snapshot or has a different tag.
+	 *
+	 * @param file
+	 *            the file to read.
+	 * @param tag
+	 *            the expected tag.
+	 * @param cache
+	 *            receives the entries.
+	 * @return the number of entries put into the cache.
+	 * @throws IOException
+	 *             on read errors or if the file is truncated.
+	 ************************************************************************/
+
+	static int read(File file, String tag, SegmentedLruCache<String, CacheEntry> cache) throws IOException {
+		if (!file.isFile()) {
+			return 0;
+		}
+		// Read it in one go, the file is small and parsing from memory is fast.
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		try {
+			if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+				Logger.log(CacheSnapshot.class, LogLevel.INFO, "Ignoring unknown cache snapshot format in {}", file);
+				return 0;
+			}
+			if (!readString(in).equals(tag)) {
+				Logger.log(CacheSnapshot.class, LogLevel.INFO, "Ignoring stale cache snapshot {}", file);
+				return 0;
+			}
+			long age = Math.max(0, System.currentTimeMillis() - in.getLong());
+
+			ImmutableProxyList[] lists = new ImmutableProxyList[checkCount(in.getInt(), in)];
+			for (int i = 0; i < lists.length; i++) {
+				Proxy[] proxies = new Proxy[checkCount(in.getInt(), in)];
+				for (int j = 0; j < proxies.length; j++) {
+					proxies[j] = readProxy(in);
+				}
+				lists[i] = ImmutableProxyList.of(proxies);
+			}
+
+			int count = checkCount(in.getInt(), in);
+			int loaded = 0;
+			long now = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				String key = readString(in);
+				int list = in.getInt();
+				long remaining = in.getLong() - age;
+				if (list < 0 || list >= lists.length) {
+					throw new IOException("Corrupt cache snapshot " + file);
+				}
+				if (remaining > 0) {
+					cache.put(key, new CacheEntry(lists[list], now + TimeUnit.MILLISECONDS.toNanos(remaining)));
+					loaded++;
+				}
+			}
+			return loaded;
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Corrupt cache snapshot " + file, e);
+		}
+	}
+
+	private static int checkCount(int count, ByteBuffer in) {
+		// Every element takes at least one byte, this protects against huge allocations.
+		if (count < 0 || count > in.remaining()) {
+			throw new IllegalArgumentException("Invalid count " + count);
+		}
+		return count;
+	}
+
+	private static String readString(ByteBuffer in) {
+		int length = checkCount(in.getInt(), in);
+		String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+		// Buffer.position, ByteBuffer.position(int) does not exist on Java 8.
+		((Buffer) in).position(in.position() + length);
+		return s;
+	}
+
+	private static Proxy readProxy(ByteBuffer in) {
+		int type = in.get();
+		if (type == TYPE_DIRECT) {
+			return Proxy.NO_PROXY;
+		}
+		InetSocketAddress address = InetSocketAddress.createUnresolved(readString(in), in.getInt());
+		return new Proxy(type == TYPE_SOCKS ? Proxy.Type.SOCKS : Proxy.Type.HTTP, address);
+	}
+
+}
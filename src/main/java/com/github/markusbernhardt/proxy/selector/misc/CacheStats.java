@@ -0,0 +1,201 @@
+package com.github.markusbernhardt.proxy.selector.misc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.markusbernhardt.proxy.util.SelectorStats;
+
+/*****************************************************************************
+ * An immutable snapshot of the statistics of a BufferedProxySelector.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class CacheStats implements SelectorStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long loadCount;
+	private final long loadFailureCount;
+	private final long totalLoadTimeNanos;
+	private final long coalescedLoadCount;
+	private final long refreshCount;
+	private final int size;
+	private final int maxSize;
+
+	CacheStats(long hitCount, long missCount, long evictionCount, long loadCount, long loadFailureCount,
+	        long totalLoadTimeNanos, long coalescedLoadCount, long refreshCount, int size, int maxSize) {
+		super();
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.loadCount = loadCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTimeNanos = totalLoadTimeNanos;
+		this.coalescedLoadCount = coalescedLoadCount;
+		this.refreshCount = refreshCount;
+		this.size = size;
+		this.maxSize = maxSize;
+	}
+
+	/*************************************************************************
+	 * Gets the number of selects that were answered from the cache. Stale
+	 * entries returned during the stale while revalidate grace period count as
+	 * hits.
+	 *
+	 * @return the number of hits.
+	 ************************************************************************/
+
+	public long getHitCount() {
+		return this.hitCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of selects that had to wait for a load, including the
+	 * ones that were coalesced with a load of another thread.
+	 *
+	 * @return the number of misses.
+	 ************************************************************************/
+
+	public long getMissCount() {
+		return this.missCount;
+	}
+
+	/*************************************************************************
+	 * Gets the share of selects that were answered from the cache.
+	 *
+	 * @return the hit rate between 0 and 1, 1 if nothing was selected yet.
+	 ************************************************************************/
+
+	public double getHitRate() {
+		long total = this.hitCount + this.missCount;
+		return total == 0 ? 1 : (double) this.hitCount / total;
+	}
+
+	/*************************************************************************
+	 * Gets the number of entries that were evicted because the cache was full.
+	 *
+	 * @return the number of evictions.
+	 ************************************************************************/
+
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of times the delegate was asked, in the foreground and
+	 * in the background.
+	 *
+	 * @return the number of loads.
+	 ************************************************************************/
+
+	public long getLoadCount() {
+		return this.loadCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of loads that failed with an exception.
+	 *
+	 * @return the number of failed loads.
+	 ************************************************************************/
+
+	public long getLoadFailureCount() {
+		return this.loadFailureCount;
+	}
+
+	/*************************************************************************
+	 * Gets the time spent in the delegate.
+	 *
+	 * @return the total load time in nanoseconds.
+	 ************************************************************************/
+
+	public long getTotalLoadTimeNanos() {
+		return this.totalLoadTimeNanos;
+	}
+
+	/*************************************************************************
+	 * Gets the mean time of a load.
+	 *
+	 * @return the mean load time in nanoseconds, 0 if nothing was loaded.
+	 ************************************************************************/
+
+	public double getAverageLoadTimeNanos() {
+		return this.loadCount == 0 ? 0 : (double) this.totalLoadTimeNanos / this.loadCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of misses that waited for the load of another thread.
+	 *
+	 * @return the number of coalesced loads.
+	 ************************************************************************/
+
+	public long getCoalescedLoadCount() {
+		return this.coalescedLoadCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of background refreshes that were started.
+	 *
+	 * @return the number of refreshes.
+	 ************************************************************************/
+
+	public long getRefreshCount() {
+		return this.refreshCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of cached entries.
+	 *
+	 * @return the current size.
+	 ************************************************************************/
+
+	public int getSize() {
+		return this.size;
+	}
+
+	/*************************************************************************
+	 * Gets the maximum number of cached entries.
+	 *
+	 * @return the maximum size.
+	 ************************************************************************/
+
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	@Override
+	public Map<String, Number> toMap() {
+		Map<String, Number> values = new LinkedHashMap<String, Number>();
+		values.put("HitCount", this.hitCount);
+		values.put("MissCount", this.missCount);
+		values.put("HitRate", getHitRate());
+		values.put("EvictionCount", this.evictionCount);
+		values.put("LoadCount", this.loadCount);
+		values.put("LoadFailureCount", this.loadFailureCount);
+		values.put("TotalLoadTimeNanos", this.totalLoadTimeNanos);
+		values.put("AverageLoadTimeNanos", getAverageLoadTimeNanos());
+		values.put("CoalescedLoadCount", this.coalescedLoadCount);
+		values.put("RefreshCount", this.refreshCount);
+		values.put("Size", this.size);
+		values.put("MaxSize", this.maxSize);
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats{" +
+				"hitCount=" + hitCount +
+				", missCount=" + missCount +
+				", evictionCount=" + evictionCount +
+				", loadCount=" + loadCount +
+				", loadFailureCount=" + loadFailureCount +
+				", totalLoadTimeNanos=" + totalLoadTimeNanos +
+				", coalescedLoadCount=" + coalescedLoadCount +
+				", refreshCount=" + refreshCount +
+				", size=" + size +
+				", maxSize=" + maxSize +
+				'}';
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.github.markusbernhardt.proxy.selector.misc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.markusbernhardt.proxy.util.SelectorStats;
+
+/*****************************************************************************
+ * An immutable snapshot of the statistics of a ProxyListFallbackSelector.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class FallbackStats implements SelectorStats {
+
+	private final long selectCount;
+	private final long filteredProxyCount;
+	private final long connectFailedCount;
+	private final int unresponsiveProxyCount;
+
+	FallbackStats(long selectCount, long filteredProxyCount, long connectFailedCount, int unresponsiveProxyCount) {
+		super();
+		this.selectCount = selectCount;
+		this.filteredProxyCount = filteredProxyCount;
+		this.connectFailedCount = connectFailedCount;
+		this.unresponsiveProxyCount = unresponsiveProxyCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of selects.
+	 *
+	 * @return the number of selects.
+	 ************************************************************************/
+
+	public long getSelectCount() {
+		return this.selectCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of proxies that were removed from the results of the
+	 * delegate because they did not respond.
+	 *
+	 * @return the number of filtered proxies.
+	 ************************************************************************/
+
+	public long getFilteredProxyCount() {
+		return this.filteredProxyCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of reported connection failures.
+	 *
+	 * @return the number of connectFailed calls.
+	 ************************************************************************/
+
+	public long getConnectFailedCount() {
+		return this.connectFailedCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of proxies that are currently treated as unresponsive.
+	 *
+	 * @return the current size of the failed proxy list.
+	 ************************************************************************/
+
+	public int getUnresponsiveProxyCount() {
+		return this.unresponsiveProxyCount;
+	}
+
+	@Override
+	public Map<String, Number> toMap() {
+		Map<String, Number> values = new LinkedHashMap<String, Number>();
+		values.put("SelectCount", this.selectCount);
+		values.put("FilteredProxyCount", this.filteredProxyCount);
+		values.put("ConnectFailedCount", this.connectFailedCount);
+		values.put("UnresponsiveProxyCount", this.unresponsiveProxyCount);
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return "FallbackStats{" +
+				"selectCount=" + selectCount +
+				", filteredProxyCount=" + filteredProxyCount +
+				", connectFailedCount=" + connectFailedCount +
+				", unresponsiveProxyCount=" + unresponsiveProxyCount +
+				'}';
+	}
+
+}
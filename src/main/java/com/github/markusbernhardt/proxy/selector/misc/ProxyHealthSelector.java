@@ -0,0 +1,669 @@
+package com.github.markusbernhardt.proxy.selector.misc;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.markusbernhardt.proxy.util.ImmutableProxyList;
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+
+/*****************************************************************************
+ * A selector that tracks the health of the proxies returned by its delegate
+ * and orders every proxy list by it, the healthiest proxy first. DIRECT
+ * entries keep their place, only the proxies between them are reordered, so
+ * the fallback order of the PAC script is kept.<br>
+ * For every proxy it keeps an exponentially weighted moving average (EWMA) of
+ * the connect latency and of the error rate. Failures are reported by
+ * <code>connectFailed</code> or <code>reportFailure</code>, successful
+ * connects with their latency by <code>reportSuccess</code> or by the optional
+ * background TCP connect probes.<br>
+ * Each proxy has a circuit breaker: after a number of consecutive failures
+ * the proxy is removed from the lists (open). After the open duration it is
+ * returned again, but behind all healthy proxies (half open). A success
+ * closes the circuit, another failure opens it again for twice as long. The
+ * probes also check open proxies, so a proxy that is back is noticed early.<br>
+ * As long as nothing was measured for the proxies of a list, the list of the
+ * delegate is returned as it is.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class ProxyHealthSelector extends ProxySelector {
+
+	// Weight of a new sample in the moving averages.
+	private static final double ALPHA = 0.3;
+
+	// An error rate of 1 weighs as much as this connect latency.
+	private static final double ERROR_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final int DEFAULT_FAILURE_THRESHOLD = 3;
+	private static final long DEFAULT_OPEN_DURATION = 1000 * 30;
+	private static final long MAX_OPEN_DURATION = 1000 * 60 * 10;
+	private static final int DEFAULT_PROBE_TIMEOUT = 2000;
+
+	// Upper bound for the number of tracked proxies, the one not seen for the longest time is dropped.
+	private static final int MAX_TRACKED = 256;
+
+	// The time a proxy was last returned is only updated this often, it is only used to find idle proxies.
+	private static final long LAST_SEEN_RESOLUTION = TimeUnit.SECONDS.toNanos(1);
+
+	/*****************************************************************************
+	 * The states of the circuit breaker of a proxy.
+	 ****************************************************************************/
+
+	public enum State {
+		/** The proxy works and is used. */
+		CLOSED,
+		/** The proxy failed and is not used until the open duration has passed. */
+		OPEN,
+		/** The open duration has passed, the proxy is used again after all healthy ones. */
+		HALF_OPEN
+	}
+
+	private final ProxySelector delegate;
+	private final Map<SocketAddress, Health> health;
+	private final AtomicInteger pendingProbes;
+	private volatile int failureThreshold;
+	private volatile long openDurationNanos;
+	private volatile int probeTimeout;
+	private ScheduledFuture<?> probeTask;
+
+	/*****************************************************************************
+	 * The mutable health record of one proxy, guarded by its own monitor.
+	 ****************************************************************************/
+
+	private static final class Health {
+
+		final SocketAddress address;
+		double latencyNanos = Double.NaN;
+		double errorRate;
+		int consecutiveFailures;
+		State state = State.CLOSED;
+		long openUntil;
+		long openDuration;
+		volatile long lastSeen;
+		// Set once anything was recorded, read without the lock by select.
+		volatile boolean measured;
+
+		Health(SocketAddress address, long now) {
+			super();
+			this.address = address;
+			this.lastSeen = now;
+		}
+
+		synchronized void success(long latency) {
+			this.measured = true;
+			this.latencyNanos = Double.isNaN(this.latencyNanos) ? latency
+			        : ALPHA * latency + (1 - ALPHA) * this.latencyNanos;
+			this.errorRate = (1 - ALPHA) * this.errorRate;
+			this.consecutiveFailures = 0;
+			this.state = State.CLOSED;
+			this.openDuration = 0;
+		}
+
+		synchronized void failure(int threshold, long baseOpenDuration, long now) {
+			this.measured = true;
+			this.errorRate = ALPHA + (1 - ALPHA) * this.errorRate;
+			this.consecutiveFailures++;
+			if (this.state == State.CLOSED && this.consecutiveFailures < threshold) {
+				return;
+			}
+			// Back off exponentially while the proxy keeps failing.
+			this.openDuration = this.state == State.CLOSED ? baseOpenDuration
+			        : Math.min(Math.max(baseOpenDuration, this.openDuration * 2),
+			                TimeUnit.MILLISECONDS.toNanos(MAX_OPEN_DURATION));
+			this.state = State.OPEN;
+			this.openUntil = now + this.openDuration;
+		}
+
+		synchronized State stateAt(long now) {
+			if (this.state == State.OPEN && now - this.openUntil >= 0) {
+				this.state = State.HALF_OPEN;
+			}
+			return this.state;
+		}
+
+		synchronized double score() {
+			return (Double.isNaN(this.latencyNanos) ? 0 : this.latencyNanos) + this.errorRate * ERROR_PENALTY_NANOS;
+		}
+
+		synchronized ProxyHealth snapshot(long now) {
+			return new ProxyHealth(stateAt(now), this.latencyNanos, this.errorRate, this.consecutiveFailures);
+		}
+	}
+
+	/*****************************************************************************
+	 * An immutable view on the health of one proxy.
+	 ****************************************************************************/
+
+	public static final class ProxyHealth {
+
+		private final State state;
+		private final double latencyNanos;
+		private final double errorRate;
+		private final int consecutiveFailures;
+
+		ProxyHealth(State state, double latencyNanos, double errorRate, int consecutiveFailures) {
+			super();
+			this.state = state;
+			this.latencyNanos = latencyNanos;
+			this.errorRate = errorRate;
+			this.consecutiveFailures = consecutiveFailures;
+		}
+
+		/*************************************************************************
+		 * Gets the state of the circuit breaker.
+		 *
+		 * @return the state.
+		 ************************************************************************/
+
+		public State getState() {
+			return this.state;
+		}
+
+		/*************************************************************************
+		 * Gets the moving average of the connect latency.
+		 *
+		 * @return the latency in nanoseconds, NaN if no connect succeeded yet.
+		 ************************************************************************/
+
+		public double getLatencyNanos() {
+			return this.latencyNanos;
+		}
+
+		/*************************************************************************
+		 * Gets the moving average of the error rate.
+		 *
+		 * @return the error rate between 0 and 1.
+		 ************************************************************************/
+
+		public double getErrorRate() {
+			return this.errorRate;
+		}
+
+		/*************************************************************************
+		 * Gets the number of failures since the last success.
+		 *
+		 * @return the number of failures.
+		 ************************************************************************/
+
+		public int getConsecutiveFailures() {
+			return this.consecutiveFailures;
+		}
+
+		@Override
+		public String toString() {
+			return "ProxyHealth{" +
+					"state=" + state +
+					", latencyNanos=" + (long) latencyNanos +
+					", errorRate=" + errorRate +
+					", consecutiveFailures=" + consecutiveFailures +
+					'}';
+		}
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param delegate
+	 *            the delegate to use.
+	 ************************************************************************/
+
+	public ProxyHealthSelector(ProxySelector delegate) {
+		super();
+		this.delegate = delegate;
+		this.health = new ConcurrentHashMap<SocketAddress, Health>();
+		this.pendingProbes = new AtomicInteger();
+		this.failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+		this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_DURATION);
+		this.probeTimeout = DEFAULT_PROBE_TIMEOUT;
+	}
+
+	/*************************************************************************
+	 * Sets the number of consecutive failures after which a proxy is not used
+	 * any longer. The default is 3.
+	 *
+	 * @param failureThreshold
+	 *            the number of failures, at least 1.
+	 ************************************************************************/
+
+	public void setFailureThreshold(int failureThreshold) {
+		if (failureThreshold < 1) {
+			throw new IllegalArgumentException("Failure threshold must be at least 1.");
+		}
+		this.failureThreshold = failureThreshold;
+	}
+
+	/*************************************************************************
+	 * Sets how long a failed proxy is not used before it is tried again. The
+	 * duration doubles with every failed retry, up to 10 minutes. The default
+	 * is 30 seconds.
+	 *
+	 * @param openDuration
+	 *            the duration in milliseconds.
+	 ************************************************************************/
+
+	public void setOpenDuration(long openDuration) {
+		this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openDuration));
+	}
+
+	/*************************************************************************
+	 * Sets the connect timeout of the probes. The default is 2 seconds.
+	 *
+	 * @param probeTimeout
+	 *            the timeout in milliseconds.
+	 ************************************************************************/
+
+	public void setProbeTimeout(int probeTimeout) {
+		this.probeTimeout = probeTimeout;
+	}
+
+	/*************************************************************************
+	 * Starts or stops the background probes. Every interval a TCP connection
+	 * is opened to every proxy the delegate has returned so far, and the
+	 * result is recorded like a real connect. A round of probes that has not
+	 * finished within the interval is not continued, and no new round starts
+	 * while one is running. The probes stop on their own once the selector is
+	 * no longer used.
+	 *
+	 * @param probeInterval
+	 *            the interval in milliseconds, 0 to stop the probes. This is
+	 *            the default.
+	 ************************************************************************/
+
+	public synchronized void setProbeInterval(long probeInterval) {
+		if (this.probeTask != null) {
+			this.probeTask.cancel(false);
+			this.probeTask = null;
+		}
+		if (probeInterval > 0) {
+			ProbeTask task = new ProbeTask(this, TimeUnit.MILLISECONDS.toNanos(probeInterval));
+			this.probeTask = ProbeScheduler.TIMER.scheduleWithFixedDelay(task, probeInterval, probeInterval,
+			        TimeUnit.MILLISECONDS);
+			task.future = this.probeTask;
+		}
+	}
+
+	/*************************************************************************
+	 * connectFailed
+	 *
+	 * @see java.net.ProxySelector#connectFailed(java.net.URI,
+	 *      java.net.SocketAddress, java.io.IOException)
+	 ************************************************************************/
+
+	@Override
+	public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+		reportFailure(sa);
+		this.delegate.connectFailed(uri, sa, ioe);
+	}
+
+	/*************************************************************************
+	 * Records a failed connect to a proxy.
+	 *
+	 * @param sa
+	 *            the address of the proxy.
+	 ************************************************************************/
+
+	public void reportFailure(SocketAddress sa) {
+		Health h = track(sa);
+		if (h != null) {
+			h.failure(this.failureThreshold, this.openDurationNanos, System.nanoTime());
+		}
+	}
+
+	/*************************************************************************
+	 * Records a successful connect to a proxy.
+	 *
+	 * @param sa
+	 *            the address of the proxy.
+	 * @param latencyNanos
+	 *            the time the connect took in nanoseconds.
+	 ************************************************************************/
+
+	public void reportSuccess(SocketAddress sa, long latencyNanos) {
+		Health h = track(sa);
+		if (h != null) {
+			h.success(Math.max(0, latencyNanos));
+		}
+	}
+
+	/*************************************************************************
+	 * Gets the health of a proxy.
+	 *
+	 * @param sa
+	 *            the address of the proxy.
+	 * @return the health, null if nothing is known about the proxy.
+	 ************************************************************************/
+
+	public ProxyHealth getHealth(SocketAddress sa) {
+		Health h = sa == null ? null : this.health.get(keyOf(sa));
+		return h == null ? null : h.snapshot(System.nanoTime());
+	}
+
+	/*************************************************************************
+	 * Gets the key a proxy address is tracked with. The proxies of a PAC
+	 * script have unresolved addresses, they are used as they are. A resolved
+	 * address is tracked under the unresolved address of its host name, so
+	 * that both share one record.
+	 ************************************************************************/
+
+	private static SocketAddress keyOf(SocketAddress sa) {
+		if (sa instanceof InetSocketAddress && !((InetSocketAddress) sa).isUnresolved()) {
+			InetSocketAddress isa = (InetSocketAddress) sa;
+			return InetSocketAddress.createUnresolved(isa.getHostString(), isa.getPort());
+		}
+		return sa;
+	}
+
+	private Health track(SocketAddress sa) {
+		return sa == null ? null : track(sa, System.nanoTime());
+	}
+
+	private Health track(SocketAddress sa, long now) {
+		SocketAddress key = keyOf(sa);
+		Health h = this.health.get(key);
+		if (h == null) {
+			if (this.health.size() >= MAX_TRACKED) {
+				evictIdlest(now);
+			}
+			Health created = new Health(sa, now);
+			h = this.health.putIfAbsent(key, created);
+			if (h == null) {
+				return created;
+			}
+		}
+		if (now - h.lastSeen >= LAST_SEEN_RESOLUTION) {
+			h.lastSeen = now;
+		}
+		return h;
+	}
+
+	/*************************************************************************
+	 * Stops tracking the proxy that was not seen for the longest time, to make
+	 * room for a new one, e.g. after the PAC script changed.
+	 ************************************************************************/
+
+	private void evictIdlest(long now) {
+		Map.Entry<SocketAddress, Health> idlest = null;
+		for (Map.Entry<SocketAddress, Health> entry : this.health.entrySet()) {
+			if (idlest == null || now - entry.getValue().lastSeen > now - idlest.getValue().lastSeen) {
+				idlest = entry;
+			}
+		}
+		if (idlest != null && this.health.remove(idlest.getKey(), idlest.getValue())) {
+			Logger.log(getClass(), LogLevel.DEBUG, "Tracking too many proxies, dropped the health of {}",
+			        idlest.getKey());
+		}
+	}
+
+	/*************************************************************************
+	 * select
+	 *
+	 * @see java.net.ProxySelector#select(java.net.URI)
+	 ************************************************************************/
+
+	@Override
+	public List<Proxy> select(URI uri) {
+		List<Proxy> proxyList = this.delegate.select(uri);
+		if (proxyList == null || proxyList.isEmpty()) {
+			return proxyList;
+		}
+
+		long now = System.nanoTime();
+		int size = proxyList.size();
+		boolean measured = false;
+		for (int i = 0; i < size; i++) {
+			Proxy proxy = proxyList.get(i);
+			if (proxy.type() != Proxy.Type.DIRECT && proxy.address() != null) {
+				measured |= track(proxy.address(), now).measured;
+			}
+		}
+		if (!measured) {
+			// Nothing to order by, keep the list of the delegate without copying it.
+			return proxyList;
+		}
+
+		List<Proxy> result = new ArrayList<Proxy>(size);
+		List<Proxy> healthy = new ArrayList<Proxy>(size);
+		List<Proxy> halfOpen = new ArrayList<Proxy>(2);
+		double[] scores = new double[size];
+		boolean changed = false;
+		for (int i = 0; i < size; i++) {
+			Proxy proxy = proxyList.get(i);
+			if (proxy.type() == Proxy.Type.DIRECT) {
+				// DIRECT stays in place, the proxies before it are ordered on their own.
+				changed |= addGroup(result, healthy, scores, halfOpen);
+				result.add(proxy);
+				continue;
+			}
+			Health h = proxy.address() == null ? null : this.health.get(keyOf(proxy.address()));
+			State state = h == null ? State.CLOSED : h.stateAt(now);
+			if (state == State.CLOSED) {
+				scores[healthy.size()] = h == null ? 0 : h.score();
+				healthy.add(proxy);
+			} else {
+				changed = true;
+				if (state == State.HALF_OPEN) {
+					halfOpen.add(proxy);
+				}
+			}
+		}
+		changed |= addGroup(result, healthy, scores, halfOpen);
+		if (!changed) {
+			return proxyList;
+		}
+		return result.isEmpty() ? ProxyUtil.noProxyList() : ImmutableProxyList.copyOf(result);
+	}
+
+	/*************************************************************************
+	 * Adds the proxies of one group between DIRECT entries to the result, the
+	 * healthy ones by score and then the ones on trial. The group is cleared
+	 * afterwards.
+	 *
+	 * @return true if the order of the healthy proxies changed.
+	 ************************************************************************/
+
+	private static boolean addGroup(List<Proxy> result, List<Proxy> healthy, double[] scores,
+	        List<Proxy> halfOpen) {
+		boolean changed = sortByScore(healthy, scores);
+		result.addAll(healthy);
+		result.addAll(halfOpen);
+		healthy.clear();
+		halfOpen.clear();
+		return changed;
+	}
+
+	/*************************************************************************
+	 * Sorts proxies by their scores, stable and in place. The lists are short,
+	 * so insertion sort is fine.
+	 *
+	 * @return true if the order changed.
+	 ************************************************************************/
+
+	private static boolean sortByScore(List<Proxy> proxies, double[] scores) {
+		boolean changed = false;
+		for (int i = 1; i < proxies.size(); i++) {
+			Proxy proxy = proxies.get(i);
+			double score = scores[i];
+			int j = i - 1;
+			while (j >= 0 && scores[j] > score) {
+				scores[j + 1] = scores[j];
+				proxies.set(j + 1, proxies.get(j));
+				j--;
+			}
+			if (j + 1 != i) {
+				scores[j + 1] = score;
+				proxies.set(j + 1, proxy);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/*************************************************************************
+	 * Probes all tracked proxies once and waits for the result. The probes of
+	 * all selectors share a small pool of threads, so only a few connects run
+	 * at the same time. Does nothing if the probes of the previous round are
+	 * still running.
+	 ************************************************************************/
+
+	public void probeAll() {
+		for (Future<?> probe : startProbes(Long.MAX_VALUE)) {
+			try {
+				probe.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				Logger.log(getClass(), LogLevel.WARNING, "Probe failed.", e.getCause());
+			}
+		}
+	}
+
+	/*************************************************************************
+	 * Starts a round of probes on the probe pool.
+	 *
+	 * @param maxDuration
+	 *            the time in nanoseconds after which the probes of this round
+	 *            that did not start yet are skipped.
+	 * @return the started probes, empty if the previous round is still
+	 *         running.
+	 ************************************************************************/
+
+	private List<Future<?>> startProbes(long maxDuration) {
+		List<Health> targets = new ArrayList<Health>(this.health.values());
+		if (targets.isEmpty()) {
+			return Collections.emptyList();
+		}
+		if (!this.pendingProbes.compareAndSet(0, targets.size())) {
+			Logger.log(getClass(), LogLevel.DEBUG, "Previous probes still running, skipping this round.");
+			return Collections.emptyList();
+		}
+		final long deadline = System.nanoTime() + Math.min(maxDuration, Long.MAX_VALUE / 2);
+		List<Future<?>> probes = new ArrayList<Future<?>>(targets.size());
+		for (final Health h : targets) {
+			probes.add(ProbeScheduler.POOL.submit(() -> {
+				try {
+					if (System.nanoTime() - deadline < 0) {
+						probe(h.address);
+					}
+				} finally {
+					this.pendingProbes.decrementAndGet();
+				}
+			}));
+		}
+		return probes;
+	}
+
+	private void probe(SocketAddress address) {
+		if (!(address instanceof InetSocketAddress)) {
+			return;
+		}
+		InetSocketAddress isa = (InetSocketAddress) address;
+		long start = System.nanoTime();
+		try (Socket socket = new Socket(Proxy.NO_PROXY)) {
+			InetSocketAddress target = isa.isUnresolved() ? new InetSocketAddress(isa.getHostString(), isa.getPort())
+			        : isa;
+			socket.connect(target, this.probeTimeout);
+			reportSuccess(address, System.nanoTime() - start);
+		} catch (IOException e) {
+			Logger.log(getClass(), LogLevel.DEBUG, "Probe of proxy {} failed: {}", address, e.getMessage());
+			reportFailure(address);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ProxyHealthSelector{" +
+				"delegate=" + delegate +
+				", health=" + health.size() +
+				", failureThreshold=" + failureThreshold +
+				'}';
+	}
+
+	/*****************************************************************************
+	 * Starts the rounds of probes of a selector. It holds the selector only
+	 * weakly and cancels itself once the selector is gone, so a selector that
+	 * is no longer used does not keep probing.
+	 ****************************************************************************/
+
+	private static final class ProbeTask implements Runnable {
+
+		private final WeakReference<ProxyHealthSelector> selector;
+		private final long maxDuration;
+		volatile ScheduledFuture<?> future;
+
+		ProbeTask(ProxyHealthSelector selector, long maxDuration) {
+			super();
+			this.selector = new WeakReference<ProxyHealthSelector>(selector);
+			this.maxDuration = maxDuration;
+		}
+
+		@Override
+		public void run() {
+			ProxyHealthSelector s = this.selector.get();
+			if (s != null) {
+				s.startProbes(this.maxDuration);
+			} else if (this.future != null) {
+				this.future.cancel(false);
+			}
+		}
+	}
+
+	/*****************************************************************************
+	 * Holder for the timer thread that starts the probes and the pool that
+	 * runs them, created on first use.
+	 ****************************************************************************/
+
+	private static final class ProbeScheduler {
+
+		private static final int PROBE_THREADS = 4;
+
+		static final ScheduledExecutorService TIMER;
+
+		static final ExecutorService POOL;
+
+		static {
+			ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+				Thread thread = new Thread(r, "proxy-vole-probe-timer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			timer.setRemoveOnCancelPolicy(true);
+			TIMER = timer;
+
+			final AtomicInteger count = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(PROBE_THREADS, PROBE_THREADS, 30, TimeUnit.SECONDS,
+			        new LinkedBlockingQueue<Runnable>(), r -> {
+				        Thread thread = new Thread(r, "proxy-vole-probe-" + count.incrementAndGet());
+				        thread.setDaemon(true);
+				        return thread;
+			        });
+			pool.allowCoreThreadTimeOut(true);
+			POOL = pool;
+		}
+	}
+
+}
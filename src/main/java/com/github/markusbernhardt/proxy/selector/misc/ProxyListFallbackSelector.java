@@ -1,21 +1,34 @@
 package com.github.markusbernhardt.proxy.selector.misc;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.SocketAddress;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Locale;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.markusbernhardt.proxy.util.ImmutableProxyList;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
 
 /*****************************************************************************
  * Implements a fallback selector to warp it around an existing ProxySelector.
  * This will remove proxies from a list of proxies and implement an automatic
- * retry mechanism.
- * 
+ * retry mechanism.<br>
+ * Failed proxies are kept in a queue ordered by their retry time on the
+ * monotonic clock, so expiring them does not look at the proxies that are not
+ * due yet. As long as no proxy has failed the lists of the delegate are
+ * returned as they are. Otherwise the filtered version of every immutable list
+ * is cached until the set of failed proxies changes.
+ *
  * @author Markus Bernhardt, Copyright 2016
  * @author Bernd Rosstauscher, Copyright 2009
  ****************************************************************************/
@@ -25,13 +38,62 @@ public class ProxyListFallbackSelector extends ProxySelector {
 	// Retry a unresponsive proxy after 10 minutes per default.
 	private static final int DEFAULT_RETRY_DELAY = 1000 * 60 * 10;
 
+	// Number of slots of the filtered list cache, a power of two.
+	private static final int FILTERED_CACHE_SIZE = 64;
+
 	private ProxySelector delegate;
-	private ConcurrentHashMap<SocketAddress, Long> failedDelayCache;
-	private long retryAfterMs;
+	private final ConcurrentHashMap<String, Long> failedDelayCache;
+	private final PriorityQueue<Failure> expiryQueue;
+	private final AtomicReferenceArray<Filtered> filteredCache;
+	private volatile long retryAfterNanos;
+	private volatile long nextExpiry;
+	private volatile long epoch;
+	private final LongAdder selectCount;
+	private final LongAdder filteredCount;
+	private final LongAdder connectFailedCount;
+
+	/*****************************************************************************
+	 * A failed proxy in the expiry queue.
+	 ****************************************************************************/
+
+	private static final class Failure implements Comparable<Failure> {
+
+		final String key;
+		final long retryAt;
+
+		Failure(String key, long retryAt) {
+			super();
+			this.key = key;
+			this.retryAt = retryAt;
+		}
+
+		@Override
+		public int compareTo(Failure other) {
+			return Long.signum(this.retryAt - other.retryAt);
+		}
+	}
+
+	/*****************************************************************************
+	 * The filtered version of a proxy list, valid for one failure epoch.
+	 ****************************************************************************/
+
+	private static final class Filtered {
+
+		final List<Proxy> input;
+		final long epoch;
+		final List<Proxy> output;
+
+		Filtered(List<Proxy> input, long epoch, List<Proxy> output) {
+			super();
+			this.input = input;
+			this.epoch = epoch;
+			this.output = output;
+		}
+	}
 
 	/*************************************************************************
 	 * Constructor
-	 * 
+	 *
 	 * @param delegate
 	 *            the delegate to use.
 	 ************************************************************************/
@@ -42,7 +104,7 @@ public class ProxyListFallbackSelector extends ProxySelector {
 
 	/*************************************************************************
 	 * Constructor
-	 * 
+	 *
 	 * @param retryAfterMs
 	 *            the "retry delay" as amount of milliseconds.
 	 * @param delegate
@@ -51,79 +113,143 @@ public class ProxyListFallbackSelector extends ProxySelector {
 
 	public ProxyListFallbackSelector(long retryAfterMs, ProxySelector delegate) {
 		super();
-		this.failedDelayCache = new ConcurrentHashMap<SocketAddress, Long>();
+		this.failedDelayCache = new ConcurrentHashMap<String, Long>();
+		this.expiryQueue = new PriorityQueue<Failure>();
+		this.filteredCache = new AtomicReferenceArray<Filtered>(FILTERED_CACHE_SIZE);
 		this.delegate = delegate;
-		this.retryAfterMs = retryAfterMs;
+		this.retryAfterNanos = TimeUnit.MILLISECONDS.toNanos(retryAfterMs);
+		this.nextExpiry = Long.MAX_VALUE;
+		this.selectCount = new LongAdder();
+		this.filteredCount = new LongAdder();
+		this.connectFailedCount = new LongAdder();
 	}
 
 	/*************************************************************************
 	 * connectFailed
-	 * 
+	 *
 	 * @see java.net.ProxySelector#connectFailed(java.net.URI,
 	 *      java.net.SocketAddress, java.io.IOException)
 	 ************************************************************************/
 
 	@Override
 	public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
-		this.failedDelayCache.put(sa, System.currentTimeMillis());
+		if (sa == null) {
+			return;
+		}
+		this.connectFailedCount.increment();
+		long retryAt = System.nanoTime() + this.retryAfterNanos;
+		synchronized (this.expiryQueue) {
+			markFailed(keyOf(sa), retryAt);
+			// A resolved address also blocks the proxy if the delegate names it by its IP.
+			if (sa instanceof InetSocketAddress) {
+				InetAddress address = ((InetSocketAddress) sa).getAddress();
+				if (address != null) {
+					markFailed(key(address.getHostAddress(), ((InetSocketAddress) sa).getPort()), retryAt);
+				}
+			}
+			this.nextExpiry = this.expiryQueue.peek().retryAt;
+			this.epoch++;
+		}
+	}
+
+	private void markFailed(String key, long retryAt) {
+		Long previous = this.failedDelayCache.put(key, retryAt);
+		if (previous == null || previous != retryAt) {
+			this.expiryQueue.add(new Failure(key, retryAt));
+		}
 	}
 
 	/*************************************************************************
 	 * select
-	 * 
+	 *
 	 * @see java.net.ProxySelector#select(java.net.URI)
 	 ************************************************************************/
 
 	@Override
 	public List<Proxy> select(URI uri) {
-		cleanupCache();
+		this.selectCount.increment();
 		List<Proxy> proxyList = this.delegate.select(uri);
-		List<Proxy> result = filterUnresponsiveProxiesFromList(proxyList);
-		return result;
+		if (this.failedDelayCache.isEmpty()) {
+			return proxyList;
+		}
+		if (System.nanoTime() - this.nextExpiry >= 0) {
+			cleanupCache();
+			if (this.failedDelayCache.isEmpty()) {
+				return proxyList;
+			}
+		}
+		return filterUnresponsiveProxiesFromList(proxyList);
 	}
 
 	/*************************************************************************
-	 * Cleanup the entries from the cache that are no longer unresponsive.
+	 * Removes the entries from the cache that are no longer unresponsive.
+	 * Only the entries that are due are looked at.
 	 ************************************************************************/
 
 	private void cleanupCache() {
-		Iterator<Entry<SocketAddress, Long>> it = this.failedDelayCache.entrySet().iterator();
-		while (it.hasNext()) {
-			Entry<SocketAddress, Long> e = it.next();
-			Long lastFailTime = e.getValue();
-			if (retryDelayHasPassedBy(lastFailTime)) {
-				it.remove();
+		synchronized (this.expiryQueue) {
+			long now = System.nanoTime();
+			boolean changed = false;
+			Failure head;
+			while ((head = this.expiryQueue.peek()) != null && now - head.retryAt >= 0) {
+				this.expiryQueue.poll();
+				// The proxy may have failed again in the meantime.
+				if (this.failedDelayCache.remove(head.key, head.retryAt)) {
+					changed = true;
+				}
+			}
+			this.nextExpiry = head == null ? Long.MAX_VALUE : head.retryAt;
+			if (changed) {
+				this.epoch++;
 			}
 		}
 	}
 
 	/*************************************************************************
 	 * Filters out proxies that are not reponding.
-	 * 
+	 *
 	 * @param proxyList
 	 *            a list of proxies to test.
 	 * @return the filtered list.
 	 ************************************************************************/
 
 	private List<Proxy> filterUnresponsiveProxiesFromList(List<Proxy> proxyList) {
-		if (this.failedDelayCache.isEmpty()) {
-			return proxyList;
+		long currentEpoch = this.epoch;
+		// Only immutable lists can be cached, the others may change.
+		boolean cacheable = proxyList instanceof ImmutableProxyList;
+		int slot = System.identityHashCode(proxyList) & (FILTERED_CACHE_SIZE - 1);
+		if (cacheable) {
+			Filtered filtered = this.filteredCache.get(slot);
+			if (filtered != null && filtered.input == proxyList && filtered.epoch == currentEpoch) {
+				if (filtered.output != proxyList) {
+					this.filteredCount.add(proxyList.size() - filtered.output.size());
+				}
+				return filtered.output;
+			}
 		}
+
 		List<Proxy> result = new ArrayList<Proxy>(proxyList.size());
 		for (Proxy proxy : proxyList) {
 			if (isDirect(proxy) || isNotUnresponsive(proxy)) {
 				result.add(proxy);
 			}
 		}
-		if(result.isEmpty()){
-		    result.add(Proxy.NO_PROXY);
+		List<Proxy> output;
+		if (result.size() == proxyList.size()) {
+			output = proxyList;
+		} else {
+			this.filteredCount.add(proxyList.size() - result.size());
+			output = result.isEmpty() ? ProxyUtil.noProxyList() : ImmutableProxyList.copyOf(result);
+		}
+		if (cacheable) {
+			this.filteredCache.set(slot, new Filtered(proxyList, currentEpoch, output));
 		}
-		return result;
+		return output;
 	}
 
 	/*************************************************************************
 	 * Checks if the given proxy is representing a direct connection.
-	 * 
+	 *
 	 * @param proxy
 	 *            to inspect.
 	 * @return true if it is direct else false.
@@ -135,37 +261,58 @@ public class ProxyListFallbackSelector extends ProxySelector {
 
 	/*************************************************************************
 	 * Tests that a given proxy is not "unresponsive".
-	 * 
+	 *
 	 * @param proxy
 	 *            to test.
 	 * @return true if not unresponsive.
 	 ************************************************************************/
 
 	private boolean isNotUnresponsive(Proxy proxy) {
-		Long lastFailTime = this.failedDelayCache.get(proxy.address());
-		return retryDelayHasPassedBy(lastFailTime);
+		Long retryAt = this.failedDelayCache.get(keyOf(proxy.address()));
+		return retryAt == null || System.nanoTime() - retryAt >= 0;
+	}
+
+	/*************************************************************************
+	 * Gets the key a proxy address is tracked with. Resolved and unresolved
+	 * socket addresses of the same host name and port get the same key.
+	 *
+	 * @param sa
+	 *            the socket address.
+	 * @return the key.
+	 ************************************************************************/
+
+	static String keyOf(SocketAddress sa) {
+		if (sa instanceof InetSocketAddress) {
+			InetSocketAddress isa = (InetSocketAddress) sa;
+			return key(isa.getHostString(), isa.getPort());
+		}
+		return String.valueOf(sa);
+	}
+
+	private static String key(String host, int port) {
+		return host.toLowerCase(Locale.ROOT) + ":" + port;
 	}
 
 	/*************************************************************************
-	 * Checks if the retry delay has passed.
-	 * 
-	 * @param lastFailTime
-	 * @return true if the delay has passed.
+	 * Takes a snapshot of the fallback statistics.
+	 *
+	 * @return the statistics.
 	 ************************************************************************/
 
-	private boolean retryDelayHasPassedBy(Long lastFailTime) {
-		return lastFailTime == null || lastFailTime + this.retryAfterMs < System.currentTimeMillis();
+	public FallbackStats getStats() {
+		return new FallbackStats(this.selectCount.sum(), this.filteredCount.sum(), this.connectFailedCount.sum(),
+		        this.failedDelayCache.size());
 	}
 
 	/*************************************************************************
 	 * Only used for unit testing not part of the public API.
-	 * 
+	 *
 	 * @param retryAfterMs
 	 *            The retryAfterMs to set.
 	 ************************************************************************/
 
 	final void setRetryAfterMs(long retryAfterMs) {
-		this.retryAfterMs = retryAfterMs;
+		this.retryAfterNanos = TimeUnit.MILLISECONDS.toNanos(retryAfterMs);
 	}
 
 	@Override
@@ -173,7 +320,7 @@ public class ProxyListFallbackSelector extends ProxySelector {
 		return "ProxyListFallbackSelector{" +
 				"delegate=" + delegate +
 				", failedDelayCache=" + failedDelayCache +
-				", retryAfterMs=" + retryAfterMs +
+				", retryAfterMs=" + TimeUnit.NANOSECONDS.toMillis(retryAfterNanos) +
 				'}';
 	}
 }
@@ -1,7 +1,9 @@
 package com.github.markusbernhardt.proxy.selector.pac;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 
+import org.mozilla.javascript.NativeFunction;
 import org.mozilla.javascript.Undefined;
 
 import com.github.markusbernhardt.proxy.util.Logger;
@@ -9,6 +11,8 @@ import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
 
 import delight.rhinosandox.RhinoSandbox;
 import delight.rhinosandox.RhinoSandboxes;
+import delight.rhinosandox.exceptions.ScriptCPUAbuseException;
+import delight.rhinosandox.exceptions.ScriptDurationException;
 
 /*****************************************************************************
  * PAC parser using the Rhino JavaScript engine bundled with Java 1.6<br>
@@ -26,10 +30,62 @@ public class JavaxPacScriptParser implements PacScriptParser {
 
     static final String SOURCE_NAME = JavaxPacScriptParser.class.getName();
 
+    static final String ENTRY_POINT = "FindProxyForURL";
+
+    /**
+     * System property to set the maximum time in milliseconds a single evaluation of the PAC script may take. Set it
+     * to 0 to disable the deadline.
+     */
+    public static final String MAX_EVALUATION_TIME = "com.btr.proxy.pac.maxEvaluationTime";
+
+    /**
+     * System property to set the maximum number of script instructions a single evaluation of the PAC script may
+     * execute. Set it to 0 to disable the budget.
+     */
+    public static final String INSTRUCTION_LIMIT = "com.btr.proxy.pac.instructionLimit";
+
+    static final int DEFAULT_MAX_EVALUATION_TIME = 10000;
+
+    static final int DEFAULT_INSTRUCTION_LIMIT = 0;
+
     private final PacScriptSource source;
 
+    private final int maxEvaluationTime;
+
+    private final int instructionLimit;
+
     private final RhinoSandbox engine;
 
+    private volatile CompiledScript compiledScript;
+
+    /*****************************************************************************
+     * The compiled entry point of a PAC script together with the script content it was compiled from.
+     ****************************************************************************/
+
+    private static final class CompiledScript {
+
+        final String content;
+
+        final NativeFunction function;
+
+        CompiledScript(String content, NativeFunction function) {
+            this.content = content;
+            this.function = function;
+        }
+
+        /*************************************************************************
+         * Checks if this compiled script is still up to date for the given script content.
+         * 
+         * @param scriptContent
+         *            the current content of the script source.
+         * @return true if the script does not need to be compiled again.
+         ************************************************************************/
+
+        boolean isCompiledFrom(String scriptContent) {
+            return this.content == scriptContent || this.content.equals(scriptContent);
+        }
+    }
+
     /*************************************************************************
      * Constructor
      * 
@@ -39,10 +95,50 @@ public class JavaxPacScriptParser implements PacScriptParser {
      *             on error.
      ************************************************************************/
     public JavaxPacScriptParser(PacScriptSource source) throws ProxyEvaluationException {
+        this(source, getDefaultMaxEvaluationTime(), getDefaultInstructionLimit());
+    }
+
+    /*************************************************************************
+     * Constructor
+     * 
+     * @param source
+     *            the source for the PAC script.
+     * @param maxEvaluationTime
+     *            the maximum time in milliseconds a single evaluation may take, 0 for no limit.
+     * @param instructionLimit
+     *            the maximum number of script instructions a single evaluation may execute, 0 for no limit.
+     * @throws ProxyEvaluationException
+     *             on error.
+     ************************************************************************/
+    public JavaxPacScriptParser(PacScriptSource source, int maxEvaluationTime, int instructionLimit)
+            throws ProxyEvaluationException {
+        if (maxEvaluationTime < 0 || instructionLimit < 0) {
+            throw new IllegalArgumentException("Evaluation limits must not be negative.");
+        }
         this.source = source;
+        this.maxEvaluationTime = maxEvaluationTime;
+        this.instructionLimit = instructionLimit;
         this.engine = setupEngine();
     }
 
+    /*************************************************************************
+     * Gets the evaluation deadline configured by the system property MAX_EVALUATION_TIME.
+     * 
+     * @return the deadline in milliseconds, 0 for no limit.
+     ************************************************************************/
+    static int getDefaultMaxEvaluationTime() {
+        return Math.max(0, Integer.getInteger(MAX_EVALUATION_TIME, DEFAULT_MAX_EVALUATION_TIME));
+    }
+
+    /*************************************************************************
+     * Gets the instruction budget configured by the system property INSTRUCTION_LIMIT.
+     * 
+     * @return the number of instructions, 0 for no limit.
+     ************************************************************************/
+    static int getDefaultInstructionLimit() {
+        return Math.max(0, Integer.getInteger(INSTRUCTION_LIMIT, DEFAULT_INSTRUCTION_LIMIT));
+    }
+
     /*************************************************************************
      * Initializes the JavaScript engine and adds aliases for the functions defined in ScriptMethods.
      * 
@@ -51,6 +147,10 @@ public class JavaxPacScriptParser implements PacScriptParser {
      ************************************************************************/
     private RhinoSandbox setupEngine() throws ProxyEvaluationException {
         RhinoSandbox rhinoSandbox = RhinoSandboxes.create();
+        // Both limits are checked by the sandbox every 10000 instructions. Calls into Java, e.g. dnsResolve, are
+        // not interrupted but are bounded by the timeout of the host resolver.
+        rhinoSandbox.setMaxDuration(this.maxEvaluationTime);
+        rhinoSandbox.setInstructionLimit(this.instructionLimit);
         rhinoSandbox.inject(SCRIPT_METHODS_OBJECT, new PacScriptMethods());
         // allow String
         rhinoSandbox.allow(String.class);
@@ -131,25 +231,85 @@ public class JavaxPacScriptParser implements PacScriptParser {
      * @param host
      *            the host name part of the URL.
      * @return the script result.
+     * @throws PacEvaluationTimeoutException
+     *             if the evaluation exceeds the deadline or the instruction budget.
      * @throws ProxyEvaluationException
      *             on execution error.
      ************************************************************************/
     @Override
     public String evaluate(String url, String host) throws ProxyEvaluationException {
         try {
-            StringBuilder script = new StringBuilder(this.source.getScriptContent());
-            String evalMethod = " ;FindProxyForURL (\"" + url + "\",\"" + host + "\")";
-            script.append(evalMethod);
-            Object result = this.engine.eval(SOURCE_NAME, script.toString());
+            NativeFunction findProxyForURL = getCompiledScript().function;
+            Object result = this.engine.callFunction(findProxyForURL, new Object[] { url, host });
             if (Undefined.isUndefined(result)) {
                 return null;
             }
             return (String) result;
         }
+        catch (ProxyEvaluationException e) {
+            throw e;
+        }
+        catch (ScriptDurationException e) {
+            Logger.log(getClass(), LogLevel.WARNING, "PAC script evaluation for {} exceeded {} ms.", host,
+                    this.maxEvaluationTime);
+            throw new PacEvaluationTimeoutException(
+                    "PAC script evaluation exceeded " + this.maxEvaluationTime + " ms.", e);
+        }
+        catch (ScriptCPUAbuseException e) {
+            Logger.log(getClass(), LogLevel.WARNING, "PAC script evaluation for {} exceeded {} instructions.", host,
+                    this.instructionLimit);
+            throw new PacEvaluationTimeoutException(
+                    "PAC script evaluation exceeded " + this.instructionLimit + " instructions.", e);
+        }
         catch (Exception e) {
             Logger.log(getClass(), LogLevel.ERROR, "JS evaluation error.", e);
             throw new ProxyEvaluationException("Error while executing PAC script: " + e.getMessage(), e);
         }
 
     }
+
+    /*************************************************************************
+     * Gets the compiled PAC script. The script is compiled on first use and compiled again only if the content
+     * delivered by the script source has changed.
+     * 
+     * @return the compiled script.
+     * @throws IOException
+     *             if the script content can not be read.
+     * @throws ProxyEvaluationException
+     *             if the script can not be compiled.
+     ************************************************************************/
+
+    private CompiledScript getCompiledScript() throws IOException, ProxyEvaluationException {
+        String content = this.source.getScriptContent();
+        CompiledScript current = this.compiledScript;
+        if (current == null || !current.isCompiledFrom(content)) {
+            synchronized (this) {
+                current = this.compiledScript;
+                if (current == null || !current.isCompiledFrom(content)) {
+                    current = compile(content);
+                    this.compiledScript = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /*************************************************************************
+     * Runs the top level code of the PAC script once and looks up the FindProxyForURL function defined by it.
+     * 
+     * @param content
+     *            the script content.
+     * @return the compiled script.
+     * @throws ProxyEvaluationException
+     *             if the script does not define a FindProxyForURL function.
+     ************************************************************************/
+
+    private CompiledScript compile(String content) throws ProxyEvaluationException {
+        Logger.log(getClass(), LogLevel.DEBUG, "Compiling PAC script.");
+        Object entryPoint = this.engine.eval(SOURCE_NAME, content + "\n;" + ENTRY_POINT);
+        if (!(entryPoint instanceof NativeFunction)) {
+            throw new ProxyEvaluationException("PAC script does not define a " + ENTRY_POINT + " function.");
+        }
+        return new CompiledScript(content, (NativeFunction) entryPoint);
+    }
 }
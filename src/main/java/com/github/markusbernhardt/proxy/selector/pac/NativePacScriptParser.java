@@ -0,0 +1,238 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+
+/*****************************************************************************
+ * PAC parser that evaluates scripts in plain Java without a JavaScript engine.<br>
+ * Most PAC scripts are just if / else chains over the PAC builtin functions. Such scripts are compiled into a tree of
+ * Java nodes calling the PacScriptMethods directly. Scripts that use anything outside of the supported subset are
+ * evaluated by a fallback parser, normally a JavaScript engine.
+ * <p>
+ * In shadow mode every URL is evaluated by both parsers. The result of the fallback parser is returned and results
+ * that differ are logged and counted. This can be used to check that a script behaves the same before switching to
+ * the native parser.
+ * </p>
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+public class NativePacScriptParser implements PacScriptParser {
+
+    private final PacScriptSource source;
+
+    private final PacScriptParser fallback;
+
+    private final PacScriptMethods methods;
+
+    private volatile CompiledScript compiledScript;
+
+    private volatile boolean shadowMode;
+
+    private final LongAdder nativeCount = new LongAdder();
+
+    private final LongAdder fallbackCount = new LongAdder();
+
+    private final LongAdder mismatchCount = new LongAdder();
+
+    /*****************************************************************************
+     * The compiled program together with the script content it was compiled from.
+     ****************************************************************************/
+
+    private static final class CompiledScript {
+
+        final String content;
+
+        // null if the script is not in the supported subset
+        final PacScriptCompiler.Program program;
+
+        CompiledScript(String content, PacScriptCompiler.Program program) {
+            this.content = content;
+            this.program = program;
+        }
+
+        boolean isCompiledFrom(String scriptContent) {
+            return this.content == scriptContent || this.content.equals(scriptContent);
+        }
+    }
+
+    /*************************************************************************
+     * Constructor that uses a JavaxPacScriptParser as fallback.
+     *
+     * @param source
+     *            the source for the PAC script.
+     * @throws ProxyEvaluationException
+     *             if the fallback parser can not be created.
+     ************************************************************************/
+    public NativePacScriptParser(PacScriptSource source) throws ProxyEvaluationException {
+        this(source, new JavaxPacScriptParser(source));
+    }
+
+    /*************************************************************************
+     * Constructor
+     *
+     * @param source
+     *            the source for the PAC script.
+     * @param fallback
+     *            the parser to use for scripts that can not be evaluated natively.
+     ************************************************************************/
+    public NativePacScriptParser(PacScriptSource source, PacScriptParser fallback) {
+        super();
+        this.source = source;
+        this.fallback = fallback;
+        this.methods = new PacScriptMethods();
+    }
+
+    /***************************************************************************
+     * Gets the source of the PAC script used by this parser.
+     *
+     * @return a PacScriptSource.
+     **************************************************************************/
+    @Override
+    public PacScriptSource getScriptSource() {
+        return this.source;
+    }
+
+    /*************************************************************************
+     * Evaluates the given URL and host against the PAC script. Uses the fallback parser if the script could not be
+     * compiled.
+     *
+     * @param url
+     *            the URL to evaluate.
+     * @param host
+     *            the host name part of the URL.
+     * @return the script result.
+     * @throws ProxyEvaluationException
+     *             on execution error.
+     ************************************************************************/
+    @Override
+    public String evaluate(String url, String host) throws ProxyEvaluationException {
+        PacScriptCompiler.Program program = getCompiledScript().program;
+        if (program == null || url == null || host == null) {
+            this.fallbackCount.increment();
+            return this.fallback.evaluate(url, host);
+        }
+
+        String result;
+        try {
+            result = program.evaluate(this.methods, url, host);
+        }
+        catch (RuntimeException e) {
+            Logger.log(getClass(), LogLevel.DEBUG, "Native PAC evaluation failed, using fallback: {}", e.toString());
+            this.fallbackCount.increment();
+            return this.fallback.evaluate(url, host);
+        }
+        this.nativeCount.increment();
+
+        if (this.shadowMode) {
+            String expected = this.fallback.evaluate(url, host);
+            if (expected == null ? result != null : !expected.equals(result)) {
+                this.mismatchCount.increment();
+                Logger.log(getClass(), LogLevel.WARNING, "Native PAC result differs for {}: native={}, script={}",
+                        url, result, expected);
+            }
+            return expected;
+        }
+        return result;
+    }
+
+    /*************************************************************************
+     * Gets the compiled PAC script. The script is compiled again if the content delivered by the script source has
+     * changed.
+     *
+     * @return the compiled script.
+     * @throws ProxyEvaluationException
+     *             if the script content can not be read.
+     ************************************************************************/
+
+    private CompiledScript getCompiledScript() throws ProxyEvaluationException {
+        String content;
+        try {
+            content = this.source.getScriptContent();
+        }
+        catch (IOException e) {
+            throw new ProxyEvaluationException("Error while reading PAC script: " + e.getMessage(), e);
+        }
+        CompiledScript current = this.compiledScript;
+        if (current == null || !current.isCompiledFrom(content)) {
+            synchronized (this) {
+                current = this.compiledScript;
+                if (current == null || !current.isCompiledFrom(content)) {
+                    PacScriptCompiler.Program program = PacScriptCompiler.compile(content);
+                    Logger.log(getClass(), LogLevel.INFO, program == null
+                            ? "PAC script can not be evaluated natively, using fallback parser."
+                            : "PAC script compiled for native evaluation.");
+                    current = new CompiledScript(content, program);
+                    this.compiledScript = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /*************************************************************************
+     * Checks if the current PAC script is evaluated natively.
+     *
+     * @return true if the script is in the supported subset.
+     * @throws ProxyEvaluationException
+     *             if the script content can not be read.
+     ************************************************************************/
+
+    public boolean isNative() throws ProxyEvaluationException {
+        return getCompiledScript().program != null;
+    }
+
+    /*************************************************************************
+     * Enables or disables the shadow mode. In shadow mode the fallback parser is used for every evaluation too and
+     * its result is returned.
+     *
+     * @param shadowMode
+     *            true to compare the results of both parsers.
+     ************************************************************************/
+
+    public void setShadowMode(boolean shadowMode) {
+        this.shadowMode = shadowMode;
+    }
+
+    /*************************************************************************
+     * Checks if the shadow mode is enabled.
+     *
+     * @return true if the results of both parsers are compared.
+     ************************************************************************/
+
+    public boolean isShadowMode() {
+        return this.shadowMode;
+    }
+
+    /*************************************************************************
+     * Gets the number of evaluations done natively.
+     *
+     * @return the native evaluation count.
+     ************************************************************************/
+
+    public long getNativeCount() {
+        return this.nativeCount.sum();
+    }
+
+    /*************************************************************************
+     * Gets the number of evaluations delegated to the fallback parser.
+     *
+     * @return the fallback evaluation count.
+     ************************************************************************/
+
+    public long getFallbackCount() {
+        return this.fallbackCount.sum();
+    }
+
+    /*************************************************************************
+     * Gets the number of evaluations in shadow mode where the native result differed from the fallback result.
+     *
+     * @return the mismatch count.
+     ************************************************************************/
+
+    public long getMismatchCount() {
+        return this.mismatchCount.sum();
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+/*****************************************************************************
+ * Thrown if the evaluation of a PAC script exceeds its deadline or its
+ * instruction budget.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class PacEvaluationTimeoutException extends ProxyEvaluationException {
+
+	private static final long serialVersionUID = 1L;
+
+	/*************************************************************************
+	 * Constructor
+	 * 
+	 * @param message
+	 *            the error message.
+	 * @param cause
+	 *            the causing exception for exception chaining.
+	 ************************************************************************/
+
+	public PacEvaluationTimeoutException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
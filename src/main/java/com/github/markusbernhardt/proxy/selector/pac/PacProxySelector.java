@@ -1,17 +1,29 @@
 package com.github.markusbernhardt.proxy.selector.pac;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.SocketAddress;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.github.markusbernhardt.proxy.util.LatencyHistogram;
 import com.github.markusbernhardt.proxy.util.Logger;
 import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
 import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.SegmentedLruCache;
 
 /*****************************************************************************
  * ProxySelector that will use a PAC script to find an proxy for a given URI.
@@ -21,13 +33,60 @@ import com.github.markusbernhardt.proxy.util.ProxyUtil;
  ****************************************************************************/
 public class PacProxySelector extends ProxySelector {
 
-    // private static final String PAC_PROXY = "PROXY";
-    private static final String PAC_SOCKS = "SOCKS";
+    // Evaluate the script on as many threads in parallel as we have cores per default.
+    private static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
 
-    private static final String PAC_DIRECT = "DIRECT";
+    /**
+     * Set this system property to "true" to evaluate PAC scripts natively where possible. See NativePacScriptParser.
+     */
+    public static final String USE_NATIVE_ENGINE = "com.btr.proxy.pac.nativeEngine";
+
+    /**
+     * Set this system property to "true" to compare the native results with the JavaScript engine results.
+     */
+    public static final String NATIVE_ENGINE_SHADOW_MODE = "com.btr.proxy.pac.nativeEngine.shadowMode";
+
+    // A batch is only split into chunks of at least this many URIs.
+    private static final int MIN_BATCH_CHUNK_SIZE = 8;
+
+    // Upper bound for the number of hosts we remember a last known result for. The hosts not used for the longest
+    // time are dropped first.
+    private static final int MAX_LAST_KNOWN_SIZE = 1024;
+
+    /*****************************************************************************
+     * What to return if the evaluation of the PAC script exceeds its deadline or its instruction budget.
+     ****************************************************************************/
+
+    public enum TimeoutFallback {
+        /**
+         * Return the last result the script delivered for the same host name, DIRECT if there is none. The result is
+         * remembered per host, not per URL, so a script that decides on the path falls back to whatever URL of the
+         * host was evaluated last.
+         */
+        LAST_KNOWN,
+        /** Always return DIRECT. */
+        DIRECT
+    }
+
+    private PacScriptSource pacSource;
 
     private PacScriptParser pacScriptParser;
 
+    private PacScriptParserPool parserPool;
+
+    private final PacResultInterner resultInterner = new PacResultInterner();
+
+    private final SegmentedLruCache<String, List<Proxy>> lastKnownResults = new SegmentedLruCache<String, List<Proxy>>(
+            MAX_LAST_KNOWN_SIZE);
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    private final LongAdder errorCount = new LongAdder();
+
+    private final LatencyHistogram evaluationLatency = new LatencyHistogram();
+
+    private volatile TimeoutFallback timeoutFallback = TimeoutFallback.LAST_KNOWN;
+
     private static volatile boolean enabled = true;
 
     /*************************************************************************
@@ -38,8 +97,44 @@ public class PacProxySelector extends ProxySelector {
      ************************************************************************/
 
     public PacProxySelector(PacScriptSource pacSource) {
+        this(pacSource, DEFAULT_POOL_SIZE);
+    }
+
+    /*************************************************************************
+     * Constructor
+     * 
+     * @param pacSource
+     *            the source for the PAC file.
+     * @param poolSize
+     *            the maximum number of script engines used to evaluate the PAC script in parallel.
+     ************************************************************************/
+
+    public PacProxySelector(PacScriptSource pacSource, int poolSize) {
+        this(pacSource, poolSize, JavaxPacScriptParser.getDefaultMaxEvaluationTime(),
+                JavaxPacScriptParser.getDefaultInstructionLimit());
+    }
+
+    /*************************************************************************
+     * Constructor
+     * 
+     * @param pacSource
+     *            the source for the PAC file.
+     * @param poolSize
+     *            the maximum number of script engines used to evaluate the PAC script in parallel.
+     * @param maxEvaluationTime
+     *            the maximum time in milliseconds a single evaluation may take, 0 for no limit.
+     * @param instructionLimit
+     *            the maximum number of script instructions a single evaluation may execute, 0 for no limit.
+     ************************************************************************/
+
+    public PacProxySelector(PacScriptSource pacSource, int poolSize, int maxEvaluationTime, int instructionLimit) {
         super();
-        selectEngine(pacSource);
+        this.pacSource = pacSource;
+        selectEngine(pacSource, poolSize, maxEvaluationTime, instructionLimit);
+        // The last known results were delivered by the old script.
+        if (pacSource != null) {
+            pacSource.addChangeListener((source, contentHash) -> lastKnownResults.clear());
+        }
     }
 
     /*************************************************************************
@@ -68,18 +163,155 @@ public class PacProxySelector extends ProxySelector {
      * 
      * @param pacSource
      *            to use as input.
+     * @param poolSize
+     *            the maximum number of script engines to use.
+     * @param maxEvaluationTime
+     *            the evaluation deadline in milliseconds.
+     * @param instructionLimit
+     *            the instruction budget per evaluation.
      ************************************************************************/
 
-    private void selectEngine(PacScriptSource pacSource) {
+    private void selectEngine(PacScriptSource pacSource, int poolSize, int maxEvaluationTime, int instructionLimit) {
         try {
-            Logger.log(getClass(), LogLevel.INFO, "Using javax.script JavaScript engine.");
-            pacScriptParser = new JavaxPacScriptParser(pacSource);
+            parserPool = new PacScriptParserPool(pacSource, poolSize, maxEvaluationTime, instructionLimit);
+            if (Boolean.getBoolean(USE_NATIVE_ENGINE)) {
+                Logger.log(getClass(), LogLevel.INFO, "Using native PAC engine with javax.script fallback.");
+                NativePacScriptParser nativeParser = new NativePacScriptParser(pacSource, parserPool);
+                nativeParser.setShadowMode(Boolean.getBoolean(NATIVE_ENGINE_SHADOW_MODE));
+                pacScriptParser = nativeParser;
+            }
+            else {
+                Logger.log(getClass(), LogLevel.INFO, "Using javax.script JavaScript engine.");
+                pacScriptParser = parserPool;
+            }
         }
         catch (Exception e) {
             Logger.log(getClass(), LogLevel.ERROR, "PAC parser error.", e);
         }
     }
 
+    /*************************************************************************
+     * Gets the pool of script engines used to evaluate the PAC script. This can be used to monitor the pool
+     * utilisation and the time spent waiting for a free engine.
+     * 
+     * @return the parser pool, null if no script engine could be set up.
+     ************************************************************************/
+
+    public PacScriptParserPool getParserPool() {
+        return this.parserPool;
+    }
+
+    /*************************************************************************
+     * Gets the parser used to evaluate the PAC script. This is the parser pool or a NativePacScriptParser if the
+     * native engine is enabled.
+     * 
+     * @return the parser, null if no script engine could be set up.
+     ************************************************************************/
+
+    public PacScriptParser getParser() {
+        return this.pacScriptParser;
+    }
+
+    /*************************************************************************
+     * Gets the source of the PAC script. Register a change listener there to get notified when the script changes.
+     * 
+     * @return the script source.
+     ************************************************************************/
+
+    public PacScriptSource getScriptSource() {
+        return this.pacSource;
+    }
+
+    /*************************************************************************
+     * Gets a hash of the current PAC script content. It changes whenever the script changes, so it can be used to
+     * tag data derived from the script.
+     * 
+     * @return the SHA-256 hash as hex string, null if the script can not be read.
+     ************************************************************************/
+
+    public String getScriptHash() {
+        try {
+            return hash(this.pacSource.getScriptContent());
+        }
+        catch (IOException e) {
+            Logger.log(getClass(), LogLevel.WARNING, "Could not read PAC script.", e);
+            return null;
+        }
+    }
+
+    /*************************************************************************
+     * Hashes a PAC script.
+     * 
+     * @param content
+     *            the script content.
+     * @return the SHA-256 hash as hex string.
+     ************************************************************************/
+
+    static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*************************************************************************
+     * Sets what to return if the evaluation of the PAC script exceeds its deadline or its instruction budget. The
+     * default is LAST_KNOWN, which remembers the last result per host for the 1024 most recently used hosts.
+     * 
+     * @param timeoutFallback
+     *            the fallback to use.
+     ************************************************************************/
+
+    public void setTimeoutFallback(TimeoutFallback timeoutFallback) {
+        if (timeoutFallback == null) {
+            throw new IllegalArgumentException("Timeout fallback must not be null.");
+        }
+        this.timeoutFallback = timeoutFallback;
+    }
+
+    /*************************************************************************
+     * Gets what is returned if the evaluation of the PAC script exceeds its deadline or its instruction budget.
+     * 
+     * @return the fallback.
+     ************************************************************************/
+
+    public TimeoutFallback getTimeoutFallback() {
+        return this.timeoutFallback;
+    }
+
+    /*************************************************************************
+     * Gets the number of evaluations that were aborted because they exceeded the deadline or the instruction budget.
+     * 
+     * @return the number of aborted evaluations.
+     ************************************************************************/
+
+    public long getTimeoutCount() {
+        return this.timeoutCount.sum();
+    }
+
+    /*************************************************************************
+     * Takes a snapshot of the evaluation statistics. The counters are striped, so collecting them does not slow down
+     * select.
+     * 
+     * @return the statistics.
+     ************************************************************************/
+
+    public PacStats getStats() {
+        PacScriptParserPool pool = this.parserPool;
+        return new PacStats(evaluationLatency.snapshot(), errorCount.sum(), timeoutCount.sum(),
+                pool == null ? 0 : pool.getSize(), pool == null ? 0 : pool.getMaxSize(),
+                pool == null ? 0 : pool.getBusyCount(), pool == null ? 0 : pool.getWaitCount(), resultInterner.size(),
+                lastKnownResults.size());
+    }
+
     /*************************************************************************
      * connectFailed
      * 
@@ -107,7 +339,117 @@ public class PacProxySelector extends ProxySelector {
             return ProxyUtil.noProxyList();
         }
 
-        return findProxy(uri);
+        return findProxy(pacScriptParser, uri);
+    }
+
+    /*************************************************************************
+     * Selects the proxies for many URIs at once. See selectAll(Collection, Executor), the work is spread using the
+     * common fork join pool.
+     * 
+     * @param uris
+     *            the URIs to select the proxies for.
+     * @return the proxies for every distinct URI, in the order of the given collection.
+     ************************************************************************/
+
+    public Map<URI, List<Proxy>> selectAll(Collection<URI> uris) {
+        return selectAll(uris, ForkJoinPool.commonPool());
+    }
+
+    /*************************************************************************
+     * Selects the proxies for many URIs at once. Duplicate URIs are evaluated only once. The distinct URIs are split
+     * into chunks, one per script engine of the pool, and every chunk is evaluated with a single engine taken from
+     * the pool once. The calling thread evaluates the first chunk itself, the others are run on the given executor.
+     * 
+     * @param uris
+     *            the URIs to select the proxies for.
+     * @param executor
+     *            the executor used to evaluate the chunks in parallel.
+     * @return the proxies for every distinct URI, in the order of the given collection. The result is the same as
+     *         calling select for every URI.
+     ************************************************************************/
+
+    public Map<URI, List<Proxy>> selectAll(Collection<URI> uris, Executor executor) {
+        if (uris == null) {
+            throw new IllegalArgumentException("URIs must not be null.");
+        }
+        if (uris.contains(null)) {
+            throw new IllegalArgumentException("URI must not be null.");
+        }
+        final List<URI> distinct = new ArrayList<URI>(new LinkedHashSet<URI>(uris));
+        final List<Proxy>[] results = newResultArray(distinct.size());
+
+        int chunks = 1;
+        if (enabled && parserPool != null) {
+            int chunksBySize = (distinct.size() + MIN_BATCH_CHUNK_SIZE - 1) / MIN_BATCH_CHUNK_SIZE;
+            chunks = Math.max(1, Math.min(parserPool.getMaxSize(), chunksBySize));
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(chunks - 1);
+        for (int i = 1; i < chunks; i++) {
+            final int from = distinct.size() * i / chunks;
+            final int to = distinct.size() * (i + 1) / chunks;
+            futures.add(CompletableFuture.runAsync(() -> selectChunk(distinct, results, from, to), executor));
+        }
+        selectChunk(distinct, results, 0, distinct.size() / chunks);
+        for (CompletableFuture<Void> future : futures) {
+            future.join();
+        }
+
+        Map<URI, List<Proxy>> result = new LinkedHashMap<URI, List<Proxy>>();
+        for (int i = 0; i < results.length; i++) {
+            result.put(distinct.get(i), results[i]);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Proxy>[] newResultArray(int size) {
+        return new List[size];
+    }
+
+    /*************************************************************************
+     * Evaluates a chunk of a batch. If the script is evaluated by the parser pool a single parser is taken from the
+     * pool for the whole chunk.
+     * 
+     * @param uris
+     *            all URIs of the batch.
+     * @param results
+     *            receives the result for each URI at the same index.
+     * @param from
+     *            the first index of the chunk, inclusive.
+     * @param to
+     *            the last index of the chunk, exclusive.
+     ************************************************************************/
+
+    private void selectChunk(List<URI> uris, List<Proxy>[] results, int from, int to) {
+        if (!enabled || pacScriptParser == null) {
+            for (int i = from; i < to; i++) {
+                results[i] = ProxyUtil.noProxyList();
+            }
+            return;
+        }
+        PacScriptParser parser = pacScriptParser;
+        if (parser == parserPool) {
+            try {
+                parser = parserPool.acquire();
+            }
+            catch (ProxyEvaluationException e) {
+                Logger.log(getClass(), LogLevel.ERROR, "PAC resolving error.", e);
+                for (int i = from; i < to; i++) {
+                    results[i] = ProxyUtil.noProxyList();
+                }
+                return;
+            }
+        }
+        try {
+            for (int i = from; i < to; i++) {
+                results[i] = findProxy(parser, uris.get(i));
+            }
+        }
+        finally {
+            if (parser != pacScriptParser) {
+                parserPool.release(parser);
+            }
+        }
     }
 
     /*************************************************************************
@@ -116,81 +458,72 @@ public class PacProxySelector extends ProxySelector {
      * Two cases can be handled here: DIRECT Fetch the object directly from the content HTTP server denoted by its URL
      * PROXY name:port Fetch the object via the proxy HTTP server at the given location (name and port)
      * 
+     * @param parser
+     *            the parser to evaluate the script with, null if no script engine could be set up.
      * @param uri
      *            <code>URI</code> to be evaluated.
-     * @return <code>Proxy</code>-object list as result of the evaluation.
+     * @return <code>Proxy</code>-object list as result of the evaluation. The list is immutable and shared between
+     *         all evaluations with the same result.
      ************************************************************************/
 
-    private List<Proxy> findProxy(URI uri) {
+    private List<Proxy> findProxy(PacScriptParser parser, URI uri) {
+        if (parser == null) {
+            return ProxyUtil.noProxyList();
+        }
+        long start = System.nanoTime();
         try {
-            if (pacScriptParser == null) {
-                return ProxyUtil.noProxyList();
-            }
-            String parseResult = pacScriptParser.evaluate(uri.toString(), uri.getHost());
-            if (parseResult == null) {
-                return ProxyUtil.noProxyList();
-            }
-            List<Proxy> proxies = new ArrayList<Proxy>();
-            String[] proxyDefinitions = parseResult.split("[;]");
-            for (String proxyDef : proxyDefinitions) {
-                if (proxyDef.trim().length() > 0) {
-                    proxies.add(buildProxyFromPacResult(proxyDef));
-                }
-            }
+            String host = uri.getHost();
+            String parseResult = parser.evaluate(uri.toString(), host);
+            List<Proxy> proxies = parseResult == null ? ProxyUtil.noProxyList() : resultInterner.intern(parseResult);
+            rememberResult(host, proxies);
             return proxies;
         }
+        catch (PacEvaluationTimeoutException e) {
+            timeoutCount.increment();
+            return getTimeoutResult(uri.getHost());
+        }
         catch (ProxyEvaluationException e) {
+            errorCount.increment();
             Logger.log(getClass(), LogLevel.ERROR, "PAC resolving error.", e);
             return ProxyUtil.noProxyList();
         }
+        finally {
+            evaluationLatency.record(System.nanoTime() - start);
+        }
     }
 
     /*************************************************************************
-     * The proxy evaluator will return a proxy string. This method will take this string and build a matching
-     * <code>Proxy</code> for it.
+     * Remembers the result for a host to be used as fallback if a later evaluation times out. Results are interned,
+     * so the cache is only written if the result for the host changes.
      * 
-     * @param pacResult
-     *            the result from the PAC parser.
-     * @return a Proxy
+     * @param host
+     *            the host name, may be null.
+     * @param proxies
+     *            the result of the evaluation.
      ************************************************************************/
 
-    private Proxy buildProxyFromPacResult(String pacResult) {
-        String[] words = pacResult.trim().split("\\s+");
-
-        if (words.length == 0)
-            return Proxy.NO_PROXY;
-        if (words.length == 1)
-            return Proxy.NO_PROXY;
-
-        String proxyType = words[0];
-        String host = concat(words, 1);
-
-        // Check proxy type.
-        Proxy.Type type = Proxy.Type.HTTP;
-        if (proxyType.toUpperCase().startsWith(PAC_SOCKS)) {
-            type = Proxy.Type.SOCKS;
+    private void rememberResult(String host, List<Proxy> proxies) {
+        if (host == null || timeoutFallback != TimeoutFallback.LAST_KNOWN || lastKnownResults.get(host) == proxies) {
+            return;
         }
-
-        Integer port = ProxyUtil.DEFAULT_PROXY_PORT;
-
-        // Split port from host
-        int indexOfPort = host.indexOf(':');
-        int index2 = host.lastIndexOf(']');
-        if (indexOfPort != -1 && index2 < indexOfPort) {
-            port = Integer.parseInt(host.substring(indexOfPort + 1).trim());
-            host = host.substring(0, indexOfPort).trim();
-        }
-
-        SocketAddress adr = InetSocketAddress.createUnresolved(host, port);
-        return new Proxy(type, adr);
+        lastKnownResults.put(host, proxies);
     }
 
-    private static String concat(String[] strings, int startIndex) {
-        StringBuilder b = new StringBuilder();
-        for (int i = startIndex; i < strings.length; i++) {
-            b.append(strings[i]);
-        }
-        return b.toString();
+    /*************************************************************************
+     * Gets the result to return for an evaluation that timed out.
+     * 
+     * @param host
+     *            the host name, may be null.
+     * @return the last known result for the host or DIRECT, depending on the configured fallback.
+     ************************************************************************/
 
+    private List<Proxy> getTimeoutResult(String host) {
+        if (host != null && timeoutFallback == TimeoutFallback.LAST_KNOWN) {
+            List<Proxy> lastKnown = lastKnownResults.get(host);
+            if (lastKnown != null) {
+                return lastKnown;
+            }
+        }
+        return ProxyUtil.noProxyList();
     }
 }
@@ -0,0 +1,161 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.markusbernhardt.proxy.util.ImmutableProxyList;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+
+/*****************************************************************************
+ * Converts the result strings of a PAC script into proxy lists. A PAC script
+ * returns only a handful of distinct strings, so every string is parsed once
+ * and the same immutable list is returned for it afterwards. The number of
+ * remembered strings is bounded for scripts that build their results
+ * dynamically.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+class PacResultInterner {
+
+	static final int DEFAULT_MAX_SIZE = 256;
+
+	private static final String PAC_SOCKS = "SOCKS";
+
+	private final Map<String, List<Proxy>> results;
+	private final int maxSize;
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	PacResultInterner() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param maxSize
+	 *            the maximum number of result strings to remember.
+	 ************************************************************************/
+
+	PacResultInterner(int maxSize) {
+		super();
+		this.results = new ConcurrentHashMap<String, List<Proxy>>();
+		this.maxSize = maxSize;
+	}
+
+	/*************************************************************************
+	 * Gets the proxy list for a PAC result.
+	 *
+	 * @param pacResult
+	 *            the string returned by FindProxyForURL.
+	 * @return the shared immutable proxy list.
+	 ************************************************************************/
+
+	List<Proxy> intern(String pacResult) {
+		List<Proxy> proxies = this.results.get(pacResult);
+		if (proxies == null) {
+			proxies = parse(pacResult);
+			if (this.results.size() >= this.maxSize) {
+				// The list depends on nothing but the string, so a wipe only
+				// costs parsing again and a lost identity for a list that is
+				// still in use elsewhere. Scripts return few distinct
+				// strings, the limit is hit only by generated ones.
+				this.results.clear();
+			}
+			List<Proxy> existing = this.results.putIfAbsent(pacResult, proxies);
+			if (existing != null) {
+				proxies = existing;
+			}
+		}
+		return proxies;
+	}
+
+	/*************************************************************************
+	 * Gets the number of remembered result strings.
+	 *
+	 * @return the size.
+	 ************************************************************************/
+
+	int size() {
+		return this.results.size();
+	}
+
+	/*************************************************************************
+	 * Parses a PAC result. Two cases can be handled here: DIRECT Fetch the
+	 * object directly from the content HTTP server denoted by its URL PROXY
+	 * name:port Fetch the object via the proxy HTTP server at the given
+	 * location (name and port)
+	 *
+	 * @param pacResult
+	 *            the result from the PAC parser.
+	 * @return the proxy list.
+	 ************************************************************************/
+
+	static List<Proxy> parse(String pacResult) {
+		List<Proxy> proxies = new ArrayList<Proxy>();
+		String[] proxyDefinitions = pacResult.split("[;]");
+		for (String proxyDef : proxyDefinitions) {
+			if (proxyDef.trim().length() > 0) {
+				proxies.add(buildProxyFromPacResult(proxyDef));
+			}
+		}
+		return ImmutableProxyList.copyOf(proxies);
+	}
+
+	/*************************************************************************
+	 * The proxy evaluator will return a proxy string. This method will take
+	 * this string and build a matching <code>Proxy</code> for it.
+	 *
+	 * @param pacResult
+	 *            the result from the PAC parser.
+	 * @return a Proxy
+	 ************************************************************************/
+
+	private static Proxy buildProxyFromPacResult(String pacResult) {
+		String[] words = pacResult.trim().split("\\s+");
+
+		if (words.length == 0)
+			return Proxy.NO_PROXY;
+		if (words.length == 1)
+			return Proxy.NO_PROXY;
+
+		String proxyType = words[0];
+		String host = concat(words, 1);
+
+		// Check proxy type.
+		Proxy.Type type = Proxy.Type.HTTP;
+		if (proxyType.toUpperCase().startsWith(PAC_SOCKS)) {
+			type = Proxy.Type.SOCKS;
+		}
+
+		Integer port = ProxyUtil.DEFAULT_PROXY_PORT;
+
+		// Split port from host
+		int indexOfPort = host.indexOf(':');
+		int index2 = host.lastIndexOf(']');
+		if (indexOfPort != -1 && index2 < indexOfPort) {
+			port = Integer.parseInt(host.substring(indexOfPort + 1).trim());
+			host = host.substring(0, indexOfPort).trim();
+		}
+
+		SocketAddress adr = InetSocketAddress.createUnresolved(host, port);
+		return new Proxy(type, adr);
+	}
+
+	private static String concat(String[] strings, int startIndex) {
+		StringBuilder b = new StringBuilder();
+		for (int i = startIndex; i < strings.length; i++) {
+			b.append(strings[i]);
+		}
+		return b.toString();
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+/*****************************************************************************
+ * Gets notified if the content of a PAC script source changes, e.g. because a
+ * new version of the script was downloaded.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public interface PacScriptChangeListener {
+
+	/*************************************************************************
+	 * Called after the script source delivers a new script. It is not called
+	 * if a script was loaded again with the same content.
+	 *
+	 * @param source
+	 *            the script source.
+	 * @param contentHash
+	 *            the SHA-256 hash of the new script as hex string.
+	 ************************************************************************/
+
+	public void scriptChanged(PacScriptSource source, String contentHash);
+
+}
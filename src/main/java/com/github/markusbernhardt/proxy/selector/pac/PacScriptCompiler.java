@@ -0,0 +1,1386 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.github.markusbernhardt.proxy.util.IpAddressUtil;
+import com.github.markusbernhardt.proxy.util.IpRange;
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+
+/*****************************************************************************
+ * Compiles PAC scripts that only use a common subset of JavaScript into a tree
+ * of Java nodes that calls the PacScriptMethods directly. The supported subset
+ * is:
+ * <ul>
+ * <li>a single <code>FindProxyForURL(url, host)</code> function and top level
+ * <code>var</code> constants</li>
+ * <li><code>if</code> / <code>else</code>, blocks, <code>return</code> and
+ * <code>var</code> declarations in the function body</li>
+ * <li>string, number and boolean literals, <code>!</code>, unary <code>-</code>, <code>&amp;&amp;</code>,
+ * <code>||</code>, <code>?:</code>, equality and relational operators and
+ * <code>+</code></li>
+ * <li>the PAC builtin functions except the date and time functions</li>
+ * <li>the string methods <code>toLowerCase</code>, <code>toUpperCase</code>,
+ * <code>indexOf</code>, <code>substring</code> and the <code>length</code>
+ * property</li>
+ * </ul>
+ * All expressions are statically typed. Every script that does not fit into
+ * this subset is rejected, so that the caller can fall back to a real
+ * JavaScript engine.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+final class PacScriptCompiler {
+
+	private static final Object NO_RETURN = new Object();
+
+	private enum Type {
+		STRING, BOOLEAN, NUMBER
+	}
+
+	/*************************************************************************
+	 * PAC builtin functions that can be called directly.
+	 ************************************************************************/
+
+	private enum Builtin {
+		IS_PLAIN_HOST_NAME("isPlainHostName", Type.BOOLEAN, Type.STRING),
+		DNS_DOMAIN_IS("dnsDomainIs", Type.BOOLEAN, Type.STRING, Type.STRING),
+		LOCAL_HOST_OR_DOMAIN_IS("localHostOrDomainIs", Type.BOOLEAN, Type.STRING, Type.STRING),
+		IS_RESOLVABLE("isResolvable", Type.BOOLEAN, Type.STRING),
+		IS_IN_NET("isInNet", Type.BOOLEAN, Type.STRING, Type.STRING, Type.STRING),
+		DNS_RESOLVE("dnsResolve", Type.STRING, Type.STRING),
+		MY_IP_ADDRESS("myIpAddress", Type.STRING),
+		DNS_DOMAIN_LEVELS("dnsDomainLevels", Type.NUMBER, Type.STRING),
+		SH_EXP_MATCH("shExpMatch", Type.BOOLEAN, Type.STRING, Type.STRING),
+		IS_RESOLVABLE_EX("isResolvableEx", Type.BOOLEAN, Type.STRING),
+		IS_IN_NET_EX("isInNetEx", Type.BOOLEAN, Type.STRING, Type.STRING),
+		DNS_RESOLVE_EX("dnsResolveEx", Type.STRING, Type.STRING),
+		MY_IP_ADDRESS_EX("myIpAddressEx", Type.STRING),
+		SORT_IP_ADDRESS_LIST("sortIpAddressList", Type.STRING, Type.STRING),
+		GET_CLIENT_VERSION("getClientVersion", Type.STRING);
+
+		private static final Map<String, Builtin> BY_NAME = new HashMap<String, Builtin>();
+
+		static {
+			for (Builtin builtin : values()) {
+				BY_NAME.put(builtin.jsName, builtin);
+			}
+		}
+
+		final String jsName;
+		final Type returnType;
+		final Type[] parameterTypes;
+
+		Builtin(String jsName, Type returnType, Type... parameterTypes) {
+			this.jsName = jsName;
+			this.returnType = returnType;
+			this.parameterTypes = parameterTypes;
+		}
+	}
+
+	/*************************************************************************
+	 * Thrown if the script uses a construct outside of the supported subset.
+	 ************************************************************************/
+
+	private static final class UnsupportedScriptException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		UnsupportedScriptException(String message) {
+			super(message);
+		}
+	}
+
+	private PacScriptCompiler() {
+		super();
+	}
+
+	/*************************************************************************
+	 * Compiles the given script.
+	 *
+	 * @param script
+	 *            the PAC script content.
+	 * @return the compiled program or null if the script is not in the
+	 *         supported subset.
+	 ************************************************************************/
+
+	static Program compile(String script) {
+		try {
+			return new Parser(new Lexer(script).tokenize()).parseProgram();
+		} catch (UnsupportedScriptException e) {
+			Logger.log(PacScriptCompiler.class, LogLevel.DEBUG, "PAC script not supported by native engine: {}",
+			        e.getMessage());
+			return null;
+		}
+	}
+
+	/*************************************************************************
+	 * A compiled PAC script.
+	 ************************************************************************/
+
+	static final class Program {
+
+		private final Stmt body;
+		private final int localCount;
+
+		Program(Stmt body, int localCount) {
+			this.body = body;
+			this.localCount = localCount;
+		}
+
+		/*************************************************************************
+		 * Evaluates the FindProxyForURL function of the script.
+		 *
+		 * @param methods
+		 *            the PAC builtin functions to call.
+		 * @param url
+		 *            the URL to evaluate.
+		 * @param host
+		 *            the host name part of the URL.
+		 * @return the script result, null if the function returned undefined.
+		 ************************************************************************/
+
+		String evaluate(PacScriptMethods methods, String url, String host) {
+			Frame frame = new Frame(methods, url, host, this.localCount);
+			Object result = this.body.exec(frame);
+			return result == NO_RETURN ? null : (String) result;
+		}
+	}
+
+	/*************************************************************************
+	 * The state of a single evaluation.
+	 ************************************************************************/
+
+	private static final class Frame {
+
+		final PacScriptMethods methods;
+		final String url;
+		final String host;
+		final Object[] locals;
+
+		Frame(PacScriptMethods methods, String url, String host, int localCount) {
+			this.methods = methods;
+			this.url = url;
+			this.host = host;
+			this.locals = localCount == 0 ? null : new Object[localCount];
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Lexer
+	// ------------------------------------------------------------------------
+
+	private enum TokenKind {
+		IDENT, STRING, NUMBER, PUNCT, EOF
+	}
+
+	private static final class Token {
+
+		final TokenKind kind;
+		final String text;
+		final boolean newlineBefore;
+
+		Token(TokenKind kind, String text, boolean newlineBefore) {
+			this.kind = kind;
+			this.text = text;
+			this.newlineBefore = newlineBefore;
+		}
+
+		boolean is(String punct) {
+			return this.kind == TokenKind.PUNCT && this.text.equals(punct);
+		}
+
+		boolean isKeyword(String keyword) {
+			return this.kind == TokenKind.IDENT && this.text.equals(keyword);
+		}
+
+		@Override
+		public String toString() {
+			return this.kind == TokenKind.EOF ? "end of script" : this.text;
+		}
+	}
+
+	private static final String[] PUNCTUATORS = { "===", "!==", "==", "!=", "<=", ">=", "&&", "||", "(", ")", "{",
+	        "}", ";", ",", ".", "!", "<", ">", "+", "-", "?", ":", "=" };
+
+	private static final class Lexer {
+
+		private final String src;
+		private int pos;
+
+		Lexer(String src) {
+			this.src = src;
+		}
+
+		List<Token> tokenize() throws UnsupportedScriptException {
+			List<Token> tokens = new ArrayList<Token>();
+			while (true) {
+				boolean newline = skipWhitespaceAndComments();
+				if (this.pos >= this.src.length()) {
+					tokens.add(new Token(TokenKind.EOF, "", true));
+					return tokens;
+				}
+				char c = this.src.charAt(this.pos);
+				if (Character.isJavaIdentifierStart(c)) {
+					int start = this.pos;
+					while (this.pos < this.src.length() && Character.isJavaIdentifierPart(this.src.charAt(this.pos))) {
+						this.pos++;
+					}
+					tokens.add(new Token(TokenKind.IDENT, this.src.substring(start, this.pos), newline));
+				} else if (c >= '0' && c <= '9') {
+					tokens.add(new Token(TokenKind.NUMBER, readNumber(), newline));
+				} else if (c == '"' || c == '\'') {
+					tokens.add(new Token(TokenKind.STRING, readString(c), newline));
+				} else {
+					tokens.add(new Token(TokenKind.PUNCT, readPunctuator(), newline));
+				}
+			}
+		}
+
+		private boolean skipWhitespaceAndComments() throws UnsupportedScriptException {
+			boolean newline = false;
+			while (this.pos < this.src.length()) {
+				char c = this.src.charAt(this.pos);
+				if (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029') {
+					newline = true;
+					this.pos++;
+				} else if (Character.isWhitespace(c) || Character.isSpaceChar(c) || c == '\uFEFF') {
+					this.pos++;
+				} else if (this.src.startsWith("//", this.pos)) {
+					while (this.pos < this.src.length() && this.src.charAt(this.pos) != '\n'
+					        && this.src.charAt(this.pos) != '\r') {
+						this.pos++;
+					}
+				} else if (this.src.startsWith("/*", this.pos)) {
+					int end = this.src.indexOf("*/", this.pos + 2);
+					if (end == -1) {
+						throw new UnsupportedScriptException("unterminated comment");
+					}
+					String comment = this.src.substring(this.pos, end);
+					if (comment.indexOf('\n') != -1 || comment.indexOf('\r') != -1) {
+						newline = true;
+					}
+					this.pos = end + 2;
+				} else {
+					break;
+				}
+			}
+			return newline;
+		}
+
+		private String readNumber() throws UnsupportedScriptException {
+			int start = this.pos;
+			while (this.pos < this.src.length() && Character.isDigit(this.src.charAt(this.pos))) {
+				this.pos++;
+			}
+			if (this.pos < this.src.length() && this.src.charAt(this.pos) == '.') {
+				this.pos++;
+				while (this.pos < this.src.length() && Character.isDigit(this.src.charAt(this.pos))) {
+					this.pos++;
+				}
+			}
+			if (this.pos < this.src.length() && Character.isJavaIdentifierPart(this.src.charAt(this.pos))) {
+				throw new UnsupportedScriptException("number format");
+			}
+			String number = this.src.substring(start, this.pos);
+			if (number.length() > 1 && number.charAt(0) == '0' && number.charAt(1) != '.') {
+				throw new UnsupportedScriptException("octal number");
+			}
+			return number;
+		}
+
+		private String readString(char quote) throws UnsupportedScriptException {
+			StringBuilder result = new StringBuilder();
+			this.pos++;
+			while (this.pos < this.src.length()) {
+				char c = this.src.charAt(this.pos++);
+				if (c == quote) {
+					return result.toString();
+				}
+				if (c == '\n' || c == '\r') {
+					break;
+				}
+				if (c != '\\') {
+					result.append(c);
+					continue;
+				}
+				if (this.pos >= this.src.length()) {
+					break;
+				}
+				char e = this.src.charAt(this.pos++);
+				switch (e) {
+				case 'n':
+					result.append('\n');
+					break;
+				case 't':
+					result.append('\t');
+					break;
+				case 'r':
+					result.append('\r');
+					break;
+				case 'b':
+					result.append('\b');
+					break;
+				case 'f':
+					result.append('\f');
+					break;
+				case 'v':
+					result.append('\u000B');
+					break;
+				case '\\':
+				case '\'':
+				case '"':
+				case '/':
+					result.append(e);
+					break;
+				case 'x':
+					result.append((char) readHex(2));
+					break;
+				case 'u':
+					result.append((char) readHex(4));
+					break;
+				default:
+					throw new UnsupportedScriptException("string escape \\" + e);
+				}
+			}
+			throw new UnsupportedScriptException("unterminated string");
+		}
+
+		private int readHex(int digits) throws UnsupportedScriptException {
+			if (this.pos + digits > this.src.length()) {
+				throw new UnsupportedScriptException("string escape");
+			}
+			int value = 0;
+			for (int i = 0; i < digits; i++) {
+				int digit = Character.digit(this.src.charAt(this.pos++), 16);
+				if (digit < 0) {
+					throw new UnsupportedScriptException("string escape");
+				}
+				value = value * 16 + digit;
+			}
+			return value;
+		}
+
+		private String readPunctuator() throws UnsupportedScriptException {
+			for (String punct : PUNCTUATORS) {
+				if (this.src.startsWith(punct, this.pos)) {
+					this.pos += punct.length();
+					return punct;
+				}
+			}
+			throw new UnsupportedScriptException("operator " + this.src.charAt(this.pos));
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Parser
+	// ------------------------------------------------------------------------
+
+	private static final class Parser {
+
+		private final List<Token> tokens;
+		private int pos;
+
+		private final Map<String, Expr> constants = new HashMap<String, Expr>();
+		private final Map<String, Integer> localSlots = new HashMap<String, Integer>();
+		private final List<Type> localTypes = new ArrayList<Type>();
+		private String urlParam;
+		private String hostParam;
+		private Stmt body;
+
+		Parser(List<Token> tokens) {
+			this.tokens = tokens;
+		}
+
+		Program parseProgram() throws UnsupportedScriptException {
+			// The function body is parsed after all top level constants are known.
+			int bodyStart = -1;
+			while (peek().kind != TokenKind.EOF) {
+				if (peek().isKeyword("function")) {
+					if (bodyStart != -1) {
+						throw new UnsupportedScriptException("more than one function");
+					}
+					bodyStart = skipFunction();
+				} else if (peek().isKeyword("var")) {
+					parseConstant();
+				} else if (peek().is(";")) {
+					next();
+				} else {
+					throw new UnsupportedScriptException("top level statement " + peek());
+				}
+			}
+			if (bodyStart == -1) {
+				throw new UnsupportedScriptException("FindProxyForURL not found");
+			}
+			this.pos = bodyStart;
+			this.body = parseFunctionBody();
+			return new Program(this.body, this.localTypes.size());
+		}
+
+		/*********************************************************************
+		 * Parses the function header and skips the body.
+		 *
+		 * @return the token position of the function body.
+		 ********************************************************************/
+
+		private int skipFunction() throws UnsupportedScriptException {
+			next();
+			Token name = expectIdent();
+			if (!name.text.equals(JavaxPacScriptParser.ENTRY_POINT)) {
+				throw new UnsupportedScriptException("function " + name);
+			}
+			expect("(");
+			this.urlParam = expectIdent().text;
+			expect(",");
+			this.hostParam = expectIdent().text;
+			expect(")");
+			if (this.urlParam.equals(this.hostParam)) {
+				throw new UnsupportedScriptException("duplicate parameter");
+			}
+			int bodyStart = this.pos;
+			expect("{");
+			int depth = 1;
+			while (depth > 0) {
+				Token t = next();
+				if (t.kind == TokenKind.EOF) {
+					throw new UnsupportedScriptException("unterminated function");
+				} else if (t.is("{")) {
+					depth++;
+				} else if (t.is("}")) {
+					depth--;
+				}
+			}
+			return bodyStart;
+		}
+
+		private void parseConstant() throws UnsupportedScriptException {
+			next();
+			Token name = expectIdent();
+			checkNewName(name.text);
+			expect("=");
+			Expr value = parseExpression();
+			if (!(value instanceof Literal)) {
+				throw new UnsupportedScriptException("non constant global " + name);
+			}
+			this.constants.put(name.text, value);
+			endOfStatement();
+		}
+
+		private Stmt parseFunctionBody() throws UnsupportedScriptException {
+			expect("{");
+			List<Stmt> statements = new ArrayList<Stmt>();
+			while (!peek().is("}")) {
+				if (peek().isKeyword("var")) {
+					statements.add(parseLocal());
+				} else {
+					statements.add(parseStatement());
+				}
+			}
+			next();
+			return new Block(statements);
+		}
+
+		private Stmt parseLocal() throws UnsupportedScriptException {
+			next();
+			Token name = expectIdent();
+			checkNewName(name.text);
+			if (name.text.equals(this.urlParam) || name.text.equals(this.hostParam)) {
+				throw new UnsupportedScriptException("redeclared parameter " + name);
+			}
+			expect("=");
+			Expr value = parseExpression();
+			endOfStatement();
+			int slot = this.localTypes.size();
+			this.localTypes.add(value.type);
+			this.localSlots.put(name.text, slot);
+			return new LocalDecl(slot, value);
+		}
+
+		private void checkNewName(String name) throws UnsupportedScriptException {
+			if (this.constants.containsKey(name) || this.localSlots.containsKey(name)
+			        || Builtin.BY_NAME.containsKey(name) || isReserved(name)) {
+				throw new UnsupportedScriptException("redeclared variable " + name);
+			}
+		}
+
+		private Stmt parseStatement() throws UnsupportedScriptException {
+			Token t = peek();
+			if (t.is("{")) {
+				next();
+				List<Stmt> statements = new ArrayList<Stmt>();
+				while (!peek().is("}")) {
+					statements.add(parseStatement());
+				}
+				next();
+				return new Block(statements);
+			}
+			if (t.is(";")) {
+				next();
+				return new Block(new ArrayList<Stmt>());
+			}
+			if (t.isKeyword("if")) {
+				next();
+				expect("(");
+				Expr condition = parseExpression();
+				requireType(condition, Type.BOOLEAN);
+				expect(")");
+				Stmt then = parseStatement();
+				Stmt otherwise = null;
+				if (peek().isKeyword("else")) {
+					next();
+					otherwise = parseStatement();
+				}
+				return new If(condition, then, otherwise);
+			}
+			if (t.isKeyword("return")) {
+				next();
+				if (peek().is(";") || peek().is("}") || peek().newlineBefore) {
+					endOfStatement();
+					return new Return(null);
+				}
+				Expr value = parseExpression();
+				requireType(value, Type.STRING);
+				endOfStatement();
+				return new Return(value);
+			}
+			throw new UnsupportedScriptException("statement " + t);
+		}
+
+		private void endOfStatement() throws UnsupportedScriptException {
+			if (peek().is(";")) {
+				next();
+			} else if (!peek().is("}") && !peek().newlineBefore) {
+				throw new UnsupportedScriptException("missing ; before " + peek());
+			}
+		}
+
+		// Expressions ordered by increasing precedence
+
+		private Expr parseExpression() throws UnsupportedScriptException {
+			Expr condition = parseOr();
+			if (!peek().is("?")) {
+				return condition;
+			}
+			next();
+			requireType(condition, Type.BOOLEAN);
+			Expr then = parseExpression();
+			expect(":");
+			Expr otherwise = parseExpression();
+			requireType(otherwise, then.type);
+			return new Conditional(condition, then, otherwise);
+		}
+
+		private Expr parseOr() throws UnsupportedScriptException {
+			Expr left = parseAnd();
+			while (peek().is("||")) {
+				next();
+				Expr right = parseAnd();
+				requireType(left, Type.BOOLEAN);
+				requireType(right, Type.BOOLEAN);
+				left = new Or(left, right);
+			}
+			return left;
+		}
+
+		private Expr parseAnd() throws UnsupportedScriptException {
+			Expr left = parseEquality();
+			while (peek().is("&&")) {
+				next();
+				Expr right = parseEquality();
+				requireType(left, Type.BOOLEAN);
+				requireType(right, Type.BOOLEAN);
+				left = new And(left, right);
+			}
+			return left;
+		}
+
+		private Expr parseEquality() throws UnsupportedScriptException {
+			Expr left = parseRelational();
+			while (peek().is("==") || peek().is("!=") || peek().is("===") || peek().is("!==")) {
+				boolean negate = next().text.startsWith("!");
+				Expr right = parseRelational();
+				requireType(right, left.type);
+				left = new Equals(left, right, negate);
+			}
+			return left;
+		}
+
+		private Expr parseRelational() throws UnsupportedScriptException {
+			Expr left = parseAdditive();
+			while (peek().is("<") || peek().is(">") || peek().is("<=") || peek().is(">=")) {
+				String op = next().text;
+				Expr right = parseAdditive();
+				requireType(left, Type.NUMBER);
+				requireType(right, Type.NUMBER);
+				left = new Compare(op, left, right);
+			}
+			return left;
+		}
+
+		private Expr parseAdditive() throws UnsupportedScriptException {
+			Expr left = parseUnary();
+			while (peek().is("+")) {
+				next();
+				Expr right = parseUnary();
+				requireType(right, left.type);
+				if (left.type == Type.STRING) {
+					left = Concat.of(left, right);
+				} else if (left.type == Type.NUMBER) {
+					left = new Add(left, right);
+				} else {
+					throw new UnsupportedScriptException("boolean addition");
+				}
+			}
+			return left;
+		}
+
+		private Expr parseUnary() throws UnsupportedScriptException {
+			if (peek().is("!")) {
+				next();
+				Expr operand = parseUnary();
+				requireType(operand, Type.BOOLEAN);
+				return new Not(operand);
+			}
+			if (peek().is("-")) {
+				next();
+				Expr operand = parseUnary();
+				requireType(operand, Type.NUMBER);
+				return Negate.of(operand);
+			}
+			return parsePostfix();
+		}
+
+		private Expr parsePostfix() throws UnsupportedScriptException {
+			Expr target = parsePrimary();
+			while (peek().is(".")) {
+				next();
+				Token member = expectIdent();
+				requireType(target, Type.STRING);
+				if (member.text.equals("length")) {
+					target = new StringLength(target);
+					continue;
+				}
+				List<Expr> args = parseArguments();
+				target = StringMethod.create(member.text, target, args);
+			}
+			return target;
+		}
+
+		private Expr parsePrimary() throws UnsupportedScriptException {
+			Token t = next();
+			switch (t.kind) {
+			case STRING:
+				return new Literal(Type.STRING, t.text);
+			case NUMBER:
+				return new Literal(Type.NUMBER, Double.valueOf(t.text));
+			case PUNCT:
+				if (t.is("(")) {
+					Expr inner = parseExpression();
+					expect(")");
+					return inner;
+				}
+				throw new UnsupportedScriptException("operator " + t);
+			case IDENT:
+				return parseIdentifier(t);
+			default:
+				throw new UnsupportedScriptException("unexpected " + t);
+			}
+		}
+
+		private Expr parseIdentifier(Token t) throws UnsupportedScriptException {
+			String name = t.text;
+			if (name.equals("true") || name.equals("false")) {
+				return new Literal(Type.BOOLEAN, Boolean.valueOf(name));
+			}
+			if (peek().is("(")) {
+				Builtin builtin = Builtin.BY_NAME.get(name);
+				if (builtin == null) {
+					throw new UnsupportedScriptException("function " + name);
+				}
+				List<Expr> args = parseArguments();
+				if (args.size() != builtin.parameterTypes.length) {
+					throw new UnsupportedScriptException("argument count for " + name);
+				}
+				for (int i = 0; i < args.size(); i++) {
+					requireType(args.get(i), builtin.parameterTypes[i]);
+				}
+				return new BuiltinCall(builtin, args.toArray(new Expr[args.size()]));
+			}
+			if (name.equals(this.urlParam)) {
+				return new Param(true);
+			}
+			if (name.equals(this.hostParam)) {
+				return new Param(false);
+			}
+			Integer slot = this.localSlots.get(name);
+			if (slot != null) {
+				return new Local(this.localTypes.get(slot), slot);
+			}
+			Expr constant = this.constants.get(name);
+			if (constant != null) {
+				return constant;
+			}
+			throw new UnsupportedScriptException("identifier " + name);
+		}
+
+		private List<Expr> parseArguments() throws UnsupportedScriptException {
+			expect("(");
+			List<Expr> args = new ArrayList<Expr>();
+			if (!peek().is(")")) {
+				args.add(parseExpression());
+				while (peek().is(",")) {
+					next();
+					args.add(parseExpression());
+				}
+			}
+			expect(")");
+			return args;
+		}
+
+		private void requireType(Expr expr, Type type) throws UnsupportedScriptException {
+			if (expr.type != type) {
+				throw new UnsupportedScriptException("implicit conversion from " + expr.type + " to " + type);
+			}
+		}
+
+		private static boolean isReserved(String name) {
+			return name.equals("true") || name.equals("false") || name.equals("null") || name.equals("undefined")
+			        || name.equals("function") || name.equals("var") || name.equals("if") || name.equals("else")
+			        || name.equals("return");
+		}
+
+		private Token peek() {
+			return this.tokens.get(this.pos);
+		}
+
+		private Token next() {
+			Token t = this.tokens.get(this.pos);
+			if (t.kind != TokenKind.EOF) {
+				this.pos++;
+			}
+			return t;
+		}
+
+		private void expect(String punct) throws UnsupportedScriptException {
+			Token t = next();
+			if (!t.is(punct)) {
+				throw new UnsupportedScriptException("expected " + punct + " but found " + t);
+			}
+		}
+
+		private Token expectIdent() throws UnsupportedScriptException {
+			Token t = next();
+			if (t.kind != TokenKind.IDENT || isReserved(t.text)) {
+				throw new UnsupportedScriptException("expected identifier but found " + t);
+			}
+			return t;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Statements
+	// ------------------------------------------------------------------------
+
+	private abstract static class Stmt {
+
+		/*********************************************************************
+		 * Executes the statement.
+		 *
+		 * @return the returned value or NO_RETURN if the statement completed
+		 *         normally.
+		 ********************************************************************/
+
+		abstract Object exec(Frame frame);
+	}
+
+	private static final class Block extends Stmt {
+
+		private final Stmt[] statements;
+
+		Block(List<Stmt> statements) {
+			this.statements = statements.toArray(new Stmt[statements.size()]);
+		}
+
+		@Override
+		Object exec(Frame frame) {
+			for (Stmt statement : this.statements) {
+				Object result = statement.exec(frame);
+				if (result != NO_RETURN) {
+					return result;
+				}
+			}
+			return NO_RETURN;
+		}
+	}
+
+	private static final class If extends Stmt {
+
+		private final Expr condition;
+		private final Stmt then;
+		private final Stmt otherwise;
+
+		If(Expr condition, Stmt then, Stmt otherwise) {
+			this.condition = condition;
+			this.then = then;
+			this.otherwise = otherwise;
+		}
+
+		@Override
+		Object exec(Frame frame) {
+			if (this.condition.bool(frame)) {
+				return this.then.exec(frame);
+			}
+			return this.otherwise == null ? NO_RETURN : this.otherwise.exec(frame);
+		}
+	}
+
+	private static final class Return extends Stmt {
+
+		private final Expr value;
+
+		Return(Expr value) {
+			this.value = value;
+		}
+
+		@Override
+		Object exec(Frame frame) {
+			return this.value == null ? null : this.value.str(frame);
+		}
+	}
+
+	private static final class LocalDecl extends Stmt {
+
+		private final int slot;
+		private final Expr value;
+
+		LocalDecl(int slot, Expr value) {
+			this.slot = slot;
+			this.value = value;
+		}
+
+		@Override
+		Object exec(Frame frame) {
+			frame.locals[this.slot] = this.value.value(frame);
+			return NO_RETURN;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Expressions
+	// ------------------------------------------------------------------------
+
+	private abstract static class Expr {
+
+		final Type type;
+
+		Expr(Type type) {
+			this.type = type;
+		}
+
+		String str(Frame frame) {
+			throw new IllegalStateException("Not a string expression.");
+		}
+
+		boolean bool(Frame frame) {
+			throw new IllegalStateException("Not a boolean expression.");
+		}
+
+		double num(Frame frame) {
+			throw new IllegalStateException("Not a number expression.");
+		}
+
+		Object value(Frame frame) {
+			switch (this.type) {
+			case STRING:
+				return str(frame);
+			case BOOLEAN:
+				return bool(frame);
+			default:
+				return num(frame);
+			}
+		}
+	}
+
+	private static final class Literal extends Expr {
+
+		private final Object value;
+
+		Literal(Type type, Object value) {
+			super(type);
+			this.value = value;
+		}
+
+		@Override
+		String str(Frame frame) {
+			return (String) this.value;
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			return (Boolean) this.value;
+		}
+
+		@Override
+		double num(Frame frame) {
+			return (Double) this.value;
+		}
+	}
+
+	private static final class Param extends Expr {
+
+		private final boolean url;
+
+		Param(boolean url) {
+			super(Type.STRING);
+			this.url = url;
+		}
+
+		@Override
+		String str(Frame frame) {
+			return this.url ? frame.url : frame.host;
+		}
+	}
+
+	private static final class Local extends Expr {
+
+		private final int slot;
+
+		Local(Type type, int slot) {
+			super(type);
+			this.slot = slot;
+		}
+
+		@Override
+		String str(Frame frame) {
+			return (String) frame.locals[this.slot];
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			return (Boolean) frame.locals[this.slot];
+		}
+
+		@Override
+		double num(Frame frame) {
+			return (Double) frame.locals[this.slot];
+		}
+	}
+
+	private static final class Not extends Expr {
+
+		private final Expr operand;
+
+		Not(Expr operand) {
+			super(Type.BOOLEAN);
+			this.operand = operand;
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			return !this.operand.bool(frame);
+		}
+	}
+
+	private static final class Negate extends Expr {
+
+		private final Expr operand;
+
+		private Negate(Expr operand) {
+			super(Type.NUMBER);
+			this.operand = operand;
+		}
+
+		static Expr of(Expr operand) {
+			if (operand instanceof Literal) {
+				return new Literal(Type.NUMBER, -(Double) ((Literal) operand).value);
+			}
+			return new Negate(operand);
+		}
+
+		@Override
+		double num(Frame frame) {
+			return -this.operand.num(frame);
+		}
+	}
+
+	private static final class And extends Expr {
+
+		private final Expr left;
+		private final Expr right;
+
+		And(Expr left, Expr right) {
+			super(Type.BOOLEAN);
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			return this.left.bool(frame) && this.right.bool(frame);
+		}
+	}
+
+	private static final class Or extends Expr {
+
+		private final Expr left;
+		private final Expr right;
+
+		Or(Expr left, Expr right) {
+			super(Type.BOOLEAN);
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			return this.left.bool(frame) || this.right.bool(frame);
+		}
+	}
+
+	private static final class Conditional extends Expr {
+
+		private final Expr condition;
+		private final Expr then;
+		private final Expr otherwise;
+
+		Conditional(Expr condition, Expr then, Expr otherwise) {
+			super(then.type);
+			this.condition = condition;
+			this.then = then;
+			this.otherwise = otherwise;
+		}
+
+		@Override
+		String str(Frame frame) {
+			return this.condition.bool(frame) ? this.then.str(frame) : this.otherwise.str(frame);
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			return this.condition.bool(frame) ? this.then.bool(frame) : this.otherwise.bool(frame);
+		}
+
+		@Override
+		double num(Frame frame) {
+			return this.condition.bool(frame) ? this.then.num(frame) : this.otherwise.num(frame);
+		}
+	}
+
+	private static final class Equals extends Expr {
+
+		private final Expr left;
+		private final Expr right;
+		private final boolean negate;
+
+		Equals(Expr left, Expr right, boolean negate) {
+			super(Type.BOOLEAN);
+			this.left = left;
+			this.right = right;
+			this.negate = negate;
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			boolean equal;
+			switch (this.left.type) {
+			case STRING:
+				String l = this.left.str(frame);
+				String r = this.right.str(frame);
+				equal = l == null ? r == null : l.equals(r);
+				break;
+			case BOOLEAN:
+				equal = this.left.bool(frame) == this.right.bool(frame);
+				break;
+			default:
+				equal = this.left.num(frame) == this.right.num(frame);
+				break;
+			}
+			return equal != this.negate;
+		}
+	}
+
+	private static final class Compare extends Expr {
+
+		private final String op;
+		private final Expr left;
+		private final Expr right;
+
+		Compare(String op, Expr left, Expr right) {
+			super(Type.BOOLEAN);
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			double l = this.left.num(frame);
+			double r = this.right.num(frame);
+			switch (this.op) {
+			case "<":
+				return l < r;
+			case ">":
+				return l > r;
+			case "<=":
+				return l <= r;
+			default:
+				return l >= r;
+			}
+		}
+	}
+
+	private static final class Add extends Expr {
+
+		private final Expr left;
+		private final Expr right;
+
+		Add(Expr left, Expr right) {
+			super(Type.NUMBER);
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		double num(Frame frame) {
+			return this.left.num(frame) + this.right.num(frame);
+		}
+	}
+
+	private static final class Concat extends Expr {
+
+		private final Expr left;
+		private final Expr right;
+
+		private Concat(Expr left, Expr right) {
+			super(Type.STRING);
+			this.left = left;
+			this.right = right;
+		}
+
+		static Expr of(Expr left, Expr right) {
+			if (left instanceof Literal && right instanceof Literal) {
+				return new Literal(Type.STRING, (String) ((Literal) left).value + ((Literal) right).value);
+			}
+			return new Concat(left, right);
+		}
+
+		@Override
+		String str(Frame frame) {
+			return String.valueOf(this.left.str(frame)).concat(String.valueOf(this.right.str(frame)));
+		}
+	}
+
+	private static final class StringLength extends Expr {
+
+		private final Expr target;
+
+		StringLength(Expr target) {
+			super(Type.NUMBER);
+			this.target = target;
+		}
+
+		@Override
+		double num(Frame frame) {
+			return this.target.str(frame).length();
+		}
+	}
+
+	private static final class StringMethod extends Expr {
+
+		private final String name;
+		private final Expr target;
+		private final Expr[] args;
+
+		private StringMethod(Type type, String name, Expr target, Expr[] args) {
+			super(type);
+			this.name = name;
+			this.target = target;
+			this.args = args;
+		}
+
+		static Expr create(String name, Expr target, List<Expr> args) throws UnsupportedScriptException {
+			Type[] parameterTypes;
+			Type type;
+			switch (name) {
+			case "toLowerCase":
+			case "toUpperCase":
+				type = Type.STRING;
+				parameterTypes = new Type[0];
+				break;
+			case "indexOf":
+				type = Type.NUMBER;
+				parameterTypes = args.size() == 2 ? new Type[] { Type.STRING, Type.NUMBER }
+				        : new Type[] { Type.STRING };
+				break;
+			case "substring":
+				type = Type.STRING;
+				parameterTypes = args.size() == 2 ? new Type[] { Type.NUMBER, Type.NUMBER }
+				        : new Type[] { Type.NUMBER };
+				break;
+			default:
+				throw new UnsupportedScriptException("string method " + name);
+			}
+			if (args.size() != parameterTypes.length) {
+				throw new UnsupportedScriptException("argument count for " + name);
+			}
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (args.get(i).type != parameterTypes[i]) {
+					throw new UnsupportedScriptException("argument type for " + name);
+				}
+			}
+			return new StringMethod(type, name, target, args.toArray(new Expr[args.size()]));
+		}
+
+		@Override
+		String str(Frame frame) {
+			String s = this.target.str(frame);
+			switch (this.name) {
+			case "toLowerCase":
+				return s.toLowerCase(Locale.ROOT);
+			case "toUpperCase":
+				return s.toUpperCase(Locale.ROOT);
+			default:
+				int start = clamp(this.args[0].num(frame), s.length());
+				int end = this.args.length == 2 ? clamp(this.args[1].num(frame), s.length()) : s.length();
+				return s.substring(Math.min(start, end), Math.max(start, end));
+			}
+		}
+
+		@Override
+		double num(Frame frame) {
+			String s = this.target.str(frame);
+			String search = this.args[0].str(frame);
+			int from = this.args.length == 2 ? clamp(this.args[1].num(frame), s.length()) : 0;
+			return s.indexOf(search, from);
+		}
+
+		/*********************************************************************
+		 * Converts a number into a string index like JavaScript does.
+		 ********************************************************************/
+
+		private static int clamp(double index, int length) {
+			if (Double.isNaN(index) || index <= 0) {
+				return 0;
+			}
+			if (index >= length) {
+				return length;
+			}
+			return (int) index;
+		}
+	}
+
+	private static final class BuiltinCall extends Expr {
+
+		private final Builtin builtin;
+		private final Expr[] args;
+
+		// Constant patterns are parsed once per call site
+		private final ShExpMatcher matcher;
+		private final boolean constantNet;
+		private final long netPattern;
+		private final long netMask;
+		private final IpRange netRange;
+
+		BuiltinCall(Builtin builtin, Expr[] args) {
+			super(builtin.returnType);
+			this.builtin = builtin;
+			this.args = args;
+			this.matcher = builtin == Builtin.SH_EXP_MATCH && isConstant(1)
+			        ? ShExpMatcher.compile(constant(1)) : null;
+			if (builtin == Builtin.IS_IN_NET && isConstant(1) && isConstant(2)) {
+				this.constantNet = true;
+				this.netPattern = IpAddressUtil.parseIpv4(constant(1));
+				this.netMask = IpAddressUtil.parseIpv4(constant(2));
+				this.netRange = null;
+			} else if (builtin == Builtin.IS_IN_NET_EX && isConstant(1)) {
+				this.constantNet = true;
+				this.netPattern = IpAddressUtil.INVALID;
+				this.netMask = IpAddressUtil.INVALID;
+				this.netRange = IpRange.parse(constant(1));
+			} else {
+				this.constantNet = false;
+				this.netPattern = IpAddressUtil.INVALID;
+				this.netMask = IpAddressUtil.INVALID;
+				this.netRange = null;
+			}
+		}
+
+		private boolean isConstant(int index) {
+			return this.args[index] instanceof Literal;
+		}
+
+		private String constant(int index) {
+			return (String) ((Literal) this.args[index]).value;
+		}
+
+		private String arg(Frame frame, int index) {
+			return this.args[index].str(frame);
+		}
+
+		@Override
+		boolean bool(Frame frame) {
+			PacScriptMethods m = frame.methods;
+			switch (this.builtin) {
+			case IS_PLAIN_HOST_NAME:
+				return m.isPlainHostName(arg(frame, 0));
+			case DNS_DOMAIN_IS:
+				return m.dnsDomainIs(arg(frame, 0), arg(frame, 1));
+			case LOCAL_HOST_OR_DOMAIN_IS:
+				return m.localHostOrDomainIs(arg(frame, 0), arg(frame, 1));
+			case IS_RESOLVABLE:
+				return m.isResolvable(arg(frame, 0));
+			case IS_IN_NET:
+				if (this.constantNet) {
+					return m.isInNet(arg(frame, 0), this.netPattern, this.netMask);
+				}
+				return m.isInNet(arg(frame, 0), arg(frame, 1), arg(frame, 2));
+			case SH_EXP_MATCH:
+				if (this.matcher != null) {
+					return this.matcher.matches(arg(frame, 0));
+				}
+				return m.shExpMatch(arg(frame, 0), arg(frame, 1));
+			case IS_RESOLVABLE_EX:
+				return m.isResolvableEx(arg(frame, 0));
+			case IS_IN_NET_EX:
+				if (this.constantNet) {
+					return m.isInNetEx(arg(frame, 0), this.netRange);
+				}
+				return m.isInNetEx(arg(frame, 0), arg(frame, 1));
+			default:
+				throw new IllegalStateException("Not a boolean function: " + this.builtin.jsName);
+			}
+		}
+
+		@Override
+		String str(Frame frame) {
+			PacScriptMethods m = frame.methods;
+			switch (this.builtin) {
+			case DNS_RESOLVE:
+				return m.dnsResolve(arg(frame, 0));
+			case MY_IP_ADDRESS:
+				return m.myIpAddress();
+			case DNS_RESOLVE_EX:
+				return m.dnsResolveEx(arg(frame, 0));
+			case MY_IP_ADDRESS_EX:
+				return m.myIpAddressEx();
+			case SORT_IP_ADDRESS_LIST:
+				return m.sortIpAddressList(arg(frame, 0));
+			case GET_CLIENT_VERSION:
+				return m.getClientVersion();
+			default:
+				throw new IllegalStateException("Not a string function: " + this.builtin.jsName);
+			}
+		}
+
+		@Override
+		double num(Frame frame) {
+			return frame.methods.dnsDomainLevels(arg(frame, 0));
+		}
+	}
+
+}
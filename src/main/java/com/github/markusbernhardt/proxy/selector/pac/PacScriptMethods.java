@@ -1,7 +1,6 @@
 package com.github.markusbernhardt.proxy.selector.pac;
 
 import java.io.IOException;
-import java.math.BigInteger;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
@@ -10,18 +9,19 @@ import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
 import java.util.TimeZone;
-import java.util.TreeMap;
 
+import com.github.markusbernhardt.proxy.util.HostResolver;
+import com.github.markusbernhardt.proxy.util.IpAddressUtil;
+import com.github.markusbernhardt.proxy.util.IpRange;
 import com.github.markusbernhardt.proxy.util.Logger;
 import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
 
 /***************************************************************************
  * Implementation of PAC JavaScript functions.
@@ -59,12 +59,39 @@ public class PacScriptMethods implements ScriptMethods {
 	
 	private Calendar currentTime;
 
+	private final HostResolver hostResolver;
+
 	/*************************************************************************
-	 * Constructor
+	 * Constructor that uses the global host resolver.
+	 * 
+	 * @see ProxyUtil#getHostResolver()
 	 ************************************************************************/
 
 	public PacScriptMethods() {
+		this(null);
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 * 
+	 * @param hostResolver
+	 *            the resolver to use for DNS lookups, null to use the global
+	 *            host resolver.
+	 ************************************************************************/
+
+	public PacScriptMethods(HostResolver hostResolver) {
 		super();
+		this.hostResolver = hostResolver;
+	}
+
+	/*************************************************************************
+	 * Gets the resolver to use for DNS lookups.
+	 * 
+	 * @return the host resolver.
+	 ************************************************************************/
+
+	private HostResolver getHostResolver() {
+		return this.hostResolver != null ? this.hostResolver : ProxyUtil.getHostResolver();
 	}
 
 	/*************************************************************************
@@ -117,7 +144,7 @@ public class PacScriptMethods implements ScriptMethods {
 
 	public boolean isResolvable(String host) {
 		try {
-			InetAddress.getByName(host).getHostAddress();
+			getHostResolver().resolve(host);
 			return true;
 		} catch (UnknownHostException ex) {
 			Logger.log(JavaxPacScriptParser.class, LogLevel.DEBUG, "Hostname not resolveable {}.", host);
@@ -146,36 +173,39 @@ public class PacScriptMethods implements ScriptMethods {
 	 ************************************************************************/
 
 	public boolean isInNet(String host, String pattern, String mask) {
-		host = dnsResolve(host);
-		if (host == null || host.length() == 0) {
-			return false;
-		}
-		long lhost = parseIpAddressToLong(host);
-		long lpattern = parseIpAddressToLong(pattern);
-		long lmask = parseIpAddressToLong(mask);
-		return (lhost & lmask) == lpattern;
+		return isInNet(host, IpAddressUtil.parseIpv4(pattern), IpAddressUtil.parseIpv4(mask));
 	}
 
 	/*************************************************************************
-	 * Convert a string representation of a IP to a long.
+	 * isInNet with an already parsed pattern and mask. This is used to parse
+	 * constant patterns only once.
 	 * 
-	 * @param address
-	 *            to convert.
-	 * @return the address as long.
+	 * @param host
+	 *            a DNS host name, or IP address.
+	 * @param pattern
+	 *            the IPv4 address pattern as returned by
+	 *            IpAddressUtil.parseIpv4.
+	 * @param mask
+	 *            the IPv4 mask as returned by IpAddressUtil.parseIpv4.
+	 * @return true if it matches else false.
 	 ************************************************************************/
 
-	private long parseIpAddressToLong(String address) {
-		long result = 0;
-		String[] parts = address.split("\\.");
-		long shift = 24;
-		for (String part : parts) {
-                    //Trim the string in case a space has been added to prevent exceptions
-			long lpart = Long.parseLong(part.trim());
-
-			result |= (lpart << shift);
-			shift -= 8;
+	boolean isInNet(String host, long pattern, long mask) {
+		if (pattern == IpAddressUtil.INVALID || mask == IpAddressUtil.INVALID) {
+			return false;
+		}
+		long lhost = IpAddressUtil.parseIpv4(host);
+		if (lhost == IpAddressUtil.INVALID) {
+			host = dnsResolve(host);
+			if (host == null || host.length() == 0) {
+				return false;
+			}
+			lhost = IpAddressUtil.parseIpv4(host);
+			if (lhost == IpAddressUtil.INVALID) {
+				return false;
+			}
 		}
-		return result;
+		return (lhost & mask) == pattern;
 	}
 
 	/*************************************************************************
@@ -189,7 +219,7 @@ public class PacScriptMethods implements ScriptMethods {
 
 	public String dnsResolve(String host) {
 		try {
-			InetAddress ina = InetAddress.getByName(host);
+			InetAddress ina = getHostResolver().resolve(host);
 			return ina.getHostAddress();
 		} catch (UnknownHostException e) {
 			Logger.log(JavaxPacScriptParser.class, LogLevel.DEBUG, "DNS name not resolvable {}.", host);
@@ -270,7 +300,7 @@ public class PacScriptMethods implements ScriptMethods {
 	/*************************************************************************
 	 * Returns true if the string matches the specified shell expression.
 	 * Actually, currently the patterns are shell expressions, not regular
-	 * expressions.
+	 * expressions. The only supported wildcard is <code>*</code>.
 	 * 
 	 * @param str
 	 *            is any string to compare (e.g. the URL, or the host name).
@@ -280,29 +310,7 @@ public class PacScriptMethods implements ScriptMethods {
 	 ************************************************************************/
 
 	public boolean shExpMatch(String str, String shexp) {
-		StringTokenizer tokenizer = new StringTokenizer(shexp, "*");
-		int startPos = 0;
-		while (tokenizer.hasMoreTokens()) {
-			String token = tokenizer.nextToken();
-			int temp = str.indexOf(token, startPos);
-
-			// Must start with first token
-			if (startPos == 0 && !shexp.startsWith("*") && temp != 0) {
-				return false;
-			}
-			// Last one ends with last token
-			if (!tokenizer.hasMoreTokens() && !shexp.endsWith("*") && !str.endsWith(token)) {
-				return false;
-			}
-
-			if (temp == -1) {
-				return false;
-			} else {
-				startPos = temp + token.length();
-			}
-		}
-
-		return true;
+		return ShExpMatcher.forPattern(shexp).matches(str);
 	}
 
 	/*************************************************************************
@@ -612,44 +620,40 @@ public class PacScriptMethods implements ScriptMethods {
 		return isResolvable(host);
 	}
 
-	// constants
-	private static final BigInteger HIGH_32_INT = new BigInteger(new byte[] { -1, -1, -1, -1 });
-	private static final BigInteger HIGH_128_INT = new BigInteger(
-	        new byte[] { -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1 });
-
 	/*************************************************************************
-	 * isInNetEx Implementation from
-	 * http://fhanik.blogspot.ch/2013/11/ip-magic-check-if-ipv6-address-is.html
+	 * isInNetEx
 	 * 
 	 * @see com.github.markusbernhardt.proxy.selector.pac.ScriptMethods#isInNetEx(java.lang.String,
 	 *      java.lang.String)
 	 ************************************************************************/
 
 	public boolean isInNetEx(String ipOrHost, String cidr) {
-		if (ipOrHost == null || ipOrHost.length() == 0 || cidr == null || cidr.length() == 0) {
+		if (cidr == null || cidr.length() == 0) {
 			return false;
 		}
+		return isInNetEx(ipOrHost, IpRange.parse(cidr));
+	}
 
-		try {
-			// Split CIDR, usually written like 2000::/64"
-			String[] cidrParts = cidr.split("/");
-			if (cidrParts.length != 2) {
-				return false;
-			}
-			String cidrRange = cidrParts[0];
-			int cidrBits = Integer.parseInt(cidrParts[1]);
-
-			byte[] addressBytes = InetAddress.getByName(ipOrHost).getAddress();
-			BigInteger ip = new BigInteger(addressBytes);
-			BigInteger mask = addressBytes.length == 4 ? HIGH_32_INT.shiftLeft(32 - cidrBits)
-			        : HIGH_128_INT.shiftLeft(128 - cidrBits);
-
-			byte[] rangeBytes = InetAddress.getByName(cidrRange).getAddress();
-			BigInteger range = new BigInteger(rangeBytes);
-			BigInteger lowIP = range.and(mask);
-			BigInteger highIP = lowIP.add(mask.not());
+	/*************************************************************************
+	 * isInNetEx with an already parsed range. This is used to parse constant
+	 * ranges only once.
+	 * 
+	 * @param ipOrHost
+	 *            a DNS host name, or IP address.
+	 * @param range
+	 *            the parsed range, null if it was not valid.
+	 * @return true if the address of the host is in the range.
+	 ************************************************************************/
 
-			return lowIP.compareTo(ip) <= 0 && highIP.compareTo(ip) >= 0;
+	boolean isInNetEx(String ipOrHost, IpRange range) {
+		if (ipOrHost == null || ipOrHost.length() == 0 || range == null) {
+			return false;
+		}
+		if (IpAddressUtil.isLiteral(ipOrHost)) {
+			return range.containsLiteral(ipOrHost);
+		}
+		try {
+			return range.contains(getHostResolver().resolve(ipOrHost).getAddress());
 		} catch (UnknownHostException e) {
 			return false;
 		}
@@ -664,7 +668,7 @@ public class PacScriptMethods implements ScriptMethods {
 	public String dnsResolveEx(String host) {
 		StringBuilder result = new StringBuilder();
 		try {
-			InetAddress[] list = InetAddress.getAllByName(host);
+			InetAddress[] list = getHostResolver().resolveAll(host);
 			for (InetAddress inetAddress : list) {
 				result.append(inetAddress.getHostAddress());
 				result.append("; ");
@@ -698,34 +702,76 @@ public class PacScriptMethods implements ScriptMethods {
 		if (ipAddressList == null || ipAddressList.trim().length() == 0) {
 			return "";
 		}
-		try {
-			String[] ipAddressToken = ipAddressList.split(";");
-			TreeMap<byte[], String> sorting = new TreeMap<byte[], String>(new Comparator<byte[]>() {
-				public int compare(byte[] b1, byte[] b2) {
-					if (b1.length != b2.length) {
-						return b2.length - b1.length;
-					}
-					return new BigInteger(b1).compareTo(new BigInteger(b2));
+		String[] ipAddressToken = ipAddressList.split(";");
+		int count = 0;
+		String[] ips = new String[ipAddressToken.length];
+		boolean[] ipv6 = new boolean[ipAddressToken.length];
+		long[] high = new long[ipAddressToken.length];
+		long[] low = new long[ipAddressToken.length];
+		long[] parsed = new long[2];
+		for (String ip : ipAddressToken) {
+			String cleanIP = ip.trim();
+			long ipv4 = IpAddressUtil.parseIpv4(cleanIP);
+			if (ipv4 != IpAddressUtil.INVALID) {
+				low[count] = ipv4;
+			} else if (IpAddressUtil.parseIpv6(cleanIP, parsed)) {
+				ipv6[count] = true;
+				high[count] = parsed[0];
+				low[count] = parsed[1];
+			} else {
+				try {
+					byte[] address = getHostResolver().resolve(cleanIP).getAddress();
+					ipv6[count] = address.length == 16;
+					high[count] = IpAddressUtil.toLong(address, true);
+					low[count] = IpAddressUtil.toLong(address, false);
+				} catch (UnknownHostException e) {
+					Logger.log(JavaxPacScriptParser.class, LogLevel.DEBUG, "Cannot sort invalid IP list: {}.",
+					        ipAddressList);
+					return "";
 				}
-			});
+			}
+			ips[count++] = cleanIP;
+		}
 
-			for (String ip : ipAddressToken) {
-				String cleanIP = ip.trim();
-				sorting.put(InetAddress.getByName(cleanIP).getAddress(), cleanIP);
+		// Insertion sort, the lists are short. IPv6 addresses come first, then
+		// the addresses are ordered as signed numbers.
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			int j = i;
+			while (j > 0 && compareIpAddress(ipv6, high, low, order[j - 1], i) > 0) {
+				order[j] = order[j - 1];
+				j--;
 			}
+			order[j] = i;
+		}
 
-			StringBuilder result = new StringBuilder();
-			for (String ip : sorting.values()) {
-				if (result.length() > 0) {
-					result.append(";");
-				}
-				result.append(ip);
+		// For duplicate addresses the last one in the input wins.
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i + 1 < count && compareIpAddress(ipv6, high, low, order[i], order[i + 1]) == 0) {
+				continue;
 			}
-			return result.toString();
-		} catch (Exception e) {
-			Logger.log(JavaxPacScriptParser.class, LogLevel.DEBUG, "Cannot sort invalid IP list: {}.", ipAddressList);
-			return "";
+			if (result.length() > 0) {
+				result.append(";");
+			}
+			result.append(ips[order[i]]);
+		}
+		return result.toString();
+	}
+
+	/*************************************************************************
+	 * Compares two parsed IP addresses for sortIpAddressList.
+	 ************************************************************************/
+
+	private static int compareIpAddress(boolean[] ipv6, long[] high, long[] low, int a, int b) {
+		if (ipv6[a] != ipv6[b]) {
+			return ipv6[a] ? -1 : 1;
+		}
+		if (ipv6[a]) {
+			int result = Long.compare(high[a], high[b]);
+			return result != 0 ? result : Long.compareUnsigned(low[a], low[b]);
 		}
+		return Integer.compare((int) low[a], (int) low[b]);
 	}
 
 	/*************************************************************************
@@ -0,0 +1,303 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+
+/*****************************************************************************
+ * A bounded pool of PAC script parsers. Every parser in the pool has its own
+ * script engine and global scope, so that the PAC script can be evaluated by
+ * several threads at the same time without sharing any script state.<br>
+ * Parsers are created on demand up to the maximum pool size. If all parsers are
+ * busy the caller waits until one is returned to the pool.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class PacScriptParserPool implements PacScriptParser {
+
+	private final PacScriptSource source;
+	private final int maxSize;
+	private final int maxEvaluationTime;
+	private final int instructionLimit;
+	private final BlockingQueue<PacScriptParser> idleParsers;
+	private final AtomicInteger createdCount;
+	private final AtomicInteger busyCount;
+
+	private final LongAdder acquireCount;
+	private final LongAdder waitCount;
+	private final LongAdder waitTimeNanos;
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param source
+	 *            the source for the PAC script.
+	 * @param maxSize
+	 *            the maximum number of parsers that are used in parallel.
+	 * @throws ProxyEvaluationException
+	 *             if the first parser can not be created.
+	 ************************************************************************/
+
+	public PacScriptParserPool(PacScriptSource source, int maxSize) throws ProxyEvaluationException {
+		this(source, maxSize, JavaxPacScriptParser.getDefaultMaxEvaluationTime(),
+		        JavaxPacScriptParser.getDefaultInstructionLimit());
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param source
+	 *            the source for the PAC script.
+	 * @param maxSize
+	 *            the maximum number of parsers that are used in parallel.
+	 * @param maxEvaluationTime
+	 *            the maximum time in milliseconds a single evaluation may
+	 *            take, 0 for no limit.
+	 * @param instructionLimit
+	 *            the maximum number of script instructions a single
+	 *            evaluation may execute, 0 for no limit.
+	 * @throws ProxyEvaluationException
+	 *             if the first parser can not be created.
+	 ************************************************************************/
+
+	public PacScriptParserPool(PacScriptSource source, int maxSize, int maxEvaluationTime, int instructionLimit)
+	        throws ProxyEvaluationException {
+		super();
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Pool size must be at least 1.");
+		}
+		this.source = source;
+		this.maxSize = maxSize;
+		this.maxEvaluationTime = maxEvaluationTime;
+		this.instructionLimit = instructionLimit;
+		this.idleParsers = new LinkedBlockingQueue<PacScriptParser>();
+		this.createdCount = new AtomicInteger();
+		this.busyCount = new AtomicInteger();
+		this.acquireCount = new LongAdder();
+		this.waitCount = new LongAdder();
+		this.waitTimeNanos = new LongAdder();
+
+		// Create the first one eagerly to report setup errors early.
+		this.createdCount.incrementAndGet();
+		this.idleParsers.add(createParser());
+	}
+
+	/*************************************************************************
+	 * Creates a new parser for this pool. Can be overwritten to use another
+	 * parser implementation.
+	 *
+	 * @return a new parser.
+	 * @throws ProxyEvaluationException
+	 *             if the parser can not be created.
+	 ************************************************************************/
+
+	protected PacScriptParser createParser() throws ProxyEvaluationException {
+		return new JavaxPacScriptParser(this.source, this.maxEvaluationTime, this.instructionLimit);
+	}
+
+	/*************************************************************************
+	 * getScriptSource
+	 *
+	 * @see com.github.markusbernhardt.proxy.selector.pac.PacScriptParser#getScriptSource()
+	 ************************************************************************/
+
+	@Override
+	public PacScriptSource getScriptSource() {
+		return this.source;
+	}
+
+	/*************************************************************************
+	 * Evaluates the given URL and host with one of the pooled parsers.
+	 *
+	 * @see com.github.markusbernhardt.proxy.selector.pac.PacScriptParser#evaluate(java.lang.String,
+	 *      java.lang.String)
+	 ************************************************************************/
+
+	@Override
+	public String evaluate(String url, String host) throws ProxyEvaluationException {
+		PacScriptParser parser = acquire();
+		try {
+			return parser.evaluate(url, host);
+		} finally {
+			release(parser);
+		}
+	}
+
+	/*************************************************************************
+	 * Takes a parser from the pool. A new one is created if none is idle and
+	 * the pool is not yet full, else this waits until a parser is released.
+	 *
+	 * @return a parser for exclusive use by the caller.
+	 * @throws ProxyEvaluationException
+	 *             if the parser can not be created or the wait was
+	 *             interrupted.
+	 ************************************************************************/
+
+	PacScriptParser acquire() throws ProxyEvaluationException {
+		this.acquireCount.increment();
+		PacScriptParser parser = this.idleParsers.poll();
+		if (parser == null) {
+			parser = createIfNotFull();
+		}
+		if (parser == null) {
+			long start = System.nanoTime();
+			try {
+				parser = this.idleParsers.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ProxyEvaluationException("Interrupted while waiting for a PAC script parser.", e);
+			} finally {
+				this.waitCount.increment();
+				this.waitTimeNanos.add(System.nanoTime() - start);
+			}
+		}
+		this.busyCount.incrementAndGet();
+		return parser;
+	}
+
+	/*************************************************************************
+	 * Returns a parser to the pool.
+	 *
+	 * @param parser
+	 *            the parser that was taken by <code>acquire</code>.
+	 ************************************************************************/
+
+	void release(PacScriptParser parser) {
+		this.busyCount.decrementAndGet();
+		this.idleParsers.offer(parser);
+	}
+
+	/*************************************************************************
+	 * Creates a new parser if the pool has not yet reached its maximum size.
+	 *
+	 * @return the new parser or null if the pool is full.
+	 * @throws ProxyEvaluationException
+	 *             if the parser can not be created.
+	 ************************************************************************/
+
+	private PacScriptParser createIfNotFull() throws ProxyEvaluationException {
+		int created;
+		do {
+			created = this.createdCount.get();
+			if (created >= this.maxSize) {
+				return null;
+			}
+		} while (!this.createdCount.compareAndSet(created, created + 1));
+
+		try {
+			Logger.log(getClass(), LogLevel.DEBUG, "Creating PAC script parser {} of {}.", created + 1, this.maxSize);
+			return createParser();
+		} catch (ProxyEvaluationException | RuntimeException e) {
+			this.createdCount.decrementAndGet();
+			throw e;
+		}
+	}
+
+	/*************************************************************************
+	 * Gets the maximum number of parsers in this pool.
+	 *
+	 * @return the maximum pool size.
+	 ************************************************************************/
+
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/*************************************************************************
+	 * Gets the maximum time a single evaluation may take.
+	 *
+	 * @return the deadline in milliseconds, 0 for no limit.
+	 ************************************************************************/
+
+	public int getMaxEvaluationTime() {
+		return this.maxEvaluationTime;
+	}
+
+	/*************************************************************************
+	 * Gets the maximum number of script instructions a single evaluation may
+	 * execute.
+	 *
+	 * @return the instruction budget, 0 for no limit.
+	 ************************************************************************/
+
+	public int getInstructionLimit() {
+		return this.instructionLimit;
+	}
+
+	/*************************************************************************
+	 * Gets the number of parsers created so far.
+	 *
+	 * @return the current pool size.
+	 ************************************************************************/
+
+	public int getSize() {
+		return this.createdCount.get();
+	}
+
+	/*************************************************************************
+	 * Gets the number of parsers currently evaluating a script.
+	 *
+	 * @return the number of busy parsers.
+	 ************************************************************************/
+
+	public int getBusyCount() {
+		return this.busyCount.get();
+	}
+
+	/*************************************************************************
+	 * Gets the current utilisation of the pool.
+	 *
+	 * @return the ratio of busy parsers to the maximum pool size between 0 and
+	 *         1.
+	 ************************************************************************/
+
+	public double getUtilization() {
+		return (double) this.busyCount.get() / this.maxSize;
+	}
+
+	/*************************************************************************
+	 * Gets the number of times a parser was taken from the pool.
+	 *
+	 * @return the number of evaluations started.
+	 ************************************************************************/
+
+	public long getAcquireCount() {
+		return this.acquireCount.sum();
+	}
+
+	/*************************************************************************
+	 * Gets the number of times a caller had to wait for a parser because all
+	 * were busy.
+	 *
+	 * @return the number of waits.
+	 ************************************************************************/
+
+	public long getWaitCount() {
+		return this.waitCount.sum();
+	}
+
+	/*************************************************************************
+	 * Gets the accumulated time callers spent waiting for a parser.
+	 *
+	 * @return the total wait time in nanoseconds.
+	 ************************************************************************/
+
+	public long getTotalWaitTimeNanos() {
+		return this.waitTimeNanos.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "PacScriptParserPool{" +
+				"source=" + source +
+				", maxSize=" + maxSize +
+				", size=" + createdCount +
+				", busy=" + busyCount +
+				'}';
+	}
+}
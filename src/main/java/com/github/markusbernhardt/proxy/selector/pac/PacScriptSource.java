@@ -31,4 +31,28 @@ public interface PacScriptSource {
 
 	public boolean isScriptValid();
 
+	/*************************************************************************
+	 * Registers a listener that is notified when the script content changes.
+	 * Sources that always deliver the same script do not need to support
+	 * this, the default does nothing.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 ************************************************************************/
+
+	public default void addChangeListener(PacScriptChangeListener listener) {
+		// The script never changes.
+	}
+
+	/*************************************************************************
+	 * Removes a listener registered with addChangeListener.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 ************************************************************************/
+
+	public default void removeChangeListener(PacScriptChangeListener listener) {
+		// The script never changes.
+	}
+
 }
\ No newline at end of file
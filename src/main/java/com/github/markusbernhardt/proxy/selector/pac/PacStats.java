@@ -0,0 +1,180 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.markusbernhardt.proxy.util.LatencyHistogram;
+import com.github.markusbernhardt.proxy.util.SelectorStats;
+
+/*****************************************************************************
+ * An immutable snapshot of the statistics of a PacProxySelector.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class PacStats implements SelectorStats {
+
+	private final LatencyHistogram.Snapshot evaluationLatency;
+	private final long errorCount;
+	private final long timeoutCount;
+	private final int poolSize;
+	private final int poolMaxSize;
+	private final int poolBusyCount;
+	private final long poolWaitCount;
+	private final int resultCacheSize;
+	private final int lastKnownResultsSize;
+
+	PacStats(LatencyHistogram.Snapshot evaluationLatency, long errorCount, long timeoutCount, int poolSize,
+	        int poolMaxSize, int poolBusyCount, long poolWaitCount, int resultCacheSize, int lastKnownResultsSize) {
+		super();
+		this.evaluationLatency = evaluationLatency;
+		this.errorCount = errorCount;
+		this.timeoutCount = timeoutCount;
+		this.poolSize = poolSize;
+		this.poolMaxSize = poolMaxSize;
+		this.poolBusyCount = poolBusyCount;
+		this.poolWaitCount = poolWaitCount;
+		this.resultCacheSize = resultCacheSize;
+		this.lastKnownResultsSize = lastKnownResultsSize;
+	}
+
+	/*************************************************************************
+	 * Gets the number of script evaluations, including the failed ones.
+	 *
+	 * @return the number of evaluations.
+	 ************************************************************************/
+
+	public long getEvaluationCount() {
+		return this.evaluationLatency.getCount();
+	}
+
+	/*************************************************************************
+	 * Gets the latency histogram of the script evaluations. For single
+	 * selects the latency includes the time spent waiting for a free script
+	 * engine.
+	 *
+	 * @return the histogram.
+	 ************************************************************************/
+
+	public LatencyHistogram.Snapshot getEvaluationLatency() {
+		return this.evaluationLatency;
+	}
+
+	/*************************************************************************
+	 * Gets the number of evaluations that failed with a script error.
+	 *
+	 * @return the number of errors.
+	 ************************************************************************/
+
+	public long getErrorCount() {
+		return this.errorCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of evaluations that exceeded the deadline or the
+	 * instruction budget.
+	 *
+	 * @return the number of timeouts.
+	 ************************************************************************/
+
+	public long getTimeoutCount() {
+		return this.timeoutCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of script engines created by the pool.
+	 *
+	 * @return the pool size, 0 if no script engine could be set up.
+	 ************************************************************************/
+
+	public int getPoolSize() {
+		return this.poolSize;
+	}
+
+	/*************************************************************************
+	 * Gets the maximum number of script engines of the pool.
+	 *
+	 * @return the maximum pool size, 0 if no script engine could be set up.
+	 ************************************************************************/
+
+	public int getPoolMaxSize() {
+		return this.poolMaxSize;
+	}
+
+	/*************************************************************************
+	 * Gets the number of script engines that are evaluating right now.
+	 *
+	 * @return the number of busy engines.
+	 ************************************************************************/
+
+	public int getPoolBusyCount() {
+		return this.poolBusyCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of times a caller had to wait for a free script engine.
+	 *
+	 * @return the number of waits.
+	 ************************************************************************/
+
+	public long getPoolWaitCount() {
+		return this.poolWaitCount;
+	}
+
+	/*************************************************************************
+	 * Gets the number of distinct script results that are kept as parsed
+	 * proxy lists.
+	 *
+	 * @return the size of the result cache.
+	 ************************************************************************/
+
+	public int getResultCacheSize() {
+		return this.resultCacheSize;
+	}
+
+	/*************************************************************************
+	 * Gets the number of hosts a last known result is kept for.
+	 *
+	 * @return the number of last known results.
+	 ************************************************************************/
+
+	public int getLastKnownResultsSize() {
+		return this.lastKnownResultsSize;
+	}
+
+	@Override
+	public Map<String, Number> toMap() {
+		Map<String, Number> values = new LinkedHashMap<String, Number>();
+		values.put("EvaluationCount", getEvaluationCount());
+		values.put("EvaluationMeanNanos", this.evaluationLatency.getMeanNanos());
+		values.put("EvaluationP50Nanos", this.evaluationLatency.getPercentileNanos(50));
+		values.put("EvaluationP90Nanos", this.evaluationLatency.getPercentileNanos(90));
+		values.put("EvaluationP99Nanos", this.evaluationLatency.getPercentileNanos(99));
+		values.put("EvaluationMaxNanos", this.evaluationLatency.getPercentileNanos(100));
+		values.put("ErrorCount", this.errorCount);
+		values.put("TimeoutCount", this.timeoutCount);
+		values.put("PoolSize", this.poolSize);
+		values.put("PoolMaxSize", this.poolMaxSize);
+		values.put("PoolBusyCount", this.poolBusyCount);
+		values.put("PoolWaitCount", this.poolWaitCount);
+		values.put("ResultCacheSize", this.resultCacheSize);
+		values.put("LastKnownResultsSize", this.lastKnownResultsSize);
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return "PacStats{" +
+				"evaluationLatency=" + evaluationLatency +
+				", errorCount=" + errorCount +
+				", timeoutCount=" + timeoutCount +
+				", poolSize=" + poolSize +
+				", poolMaxSize=" + poolMaxSize +
+				", poolBusyCount=" + poolBusyCount +
+				", poolWaitCount=" + poolWaitCount +
+				", resultCacheSize=" + resultCacheSize +
+				", lastKnownResultsSize=" + lastKnownResultsSize +
+				'}';
+	}
+
+}
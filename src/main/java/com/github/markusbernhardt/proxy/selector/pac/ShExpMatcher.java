@@ -0,0 +1,213 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*****************************************************************************
+ * A compiled shell expression as used by the PAC function shExpMatch. The
+ * only wildcard is <code>*</code>, which matches any sequence of characters.
+ * All other characters match literally.<br>
+ * Patterns are compiled once into the cheapest possible check (exact match,
+ * prefix, suffix, contains) or a list of literal segments. Matching does not
+ * allocate any objects. Compiled patterns are kept in a bounded cache, as PAC
+ * scripts call shExpMatch with the same few patterns over and over again.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+abstract class ShExpMatcher {
+
+	private static final int MAX_CACHE_SIZE = 1024;
+
+	private static final Map<String, ShExpMatcher> CACHE = new ConcurrentHashMap<String, ShExpMatcher>();
+
+	/*************************************************************************
+	 * Gets the compiled matcher for a pattern from the cache.
+	 *
+	 * @param pattern
+	 *            the shell expression.
+	 * @return the compiled matcher.
+	 ************************************************************************/
+
+	static ShExpMatcher forPattern(String pattern) {
+		ShExpMatcher matcher = CACHE.get(pattern);
+		if (matcher == null) {
+			matcher = compile(pattern);
+			if (CACHE.size() >= MAX_CACHE_SIZE) {
+				// Scripts use a fixed set of patterns, so this happens only if
+				// patterns are built dynamically. Just start over: a matcher
+				// depends on nothing but its pattern, so dropping them costs
+				// a recompile and never changes a match. An LRU would cost
+				// every lookup more than the rare wipe.
+				CACHE.clear();
+			}
+			CACHE.put(pattern, matcher);
+		}
+		return matcher;
+	}
+
+	/*************************************************************************
+	 * Compiles a pattern without using the cache.
+	 *
+	 * @param pattern
+	 *            the shell expression.
+	 * @return the compiled matcher.
+	 ************************************************************************/
+
+	static ShExpMatcher compile(String pattern) {
+		List<String> segments = new ArrayList<String>();
+		int start = 0;
+		int star;
+		while ((star = pattern.indexOf('*', start)) != -1) {
+			segments.add(pattern.substring(start, star));
+			start = star + 1;
+		}
+		segments.add(pattern.substring(start));
+
+		if (segments.size() == 1) {
+			return new Exact(pattern);
+		}
+		String head = segments.get(0);
+		String tail = segments.get(segments.size() - 1);
+		List<String> middle = new ArrayList<String>();
+		for (String segment : segments.subList(1, segments.size() - 1)) {
+			if (!segment.isEmpty()) {
+				middle.add(segment);
+			}
+		}
+
+		if (middle.isEmpty()) {
+			if (head.isEmpty() && tail.isEmpty()) {
+				return new Any();
+			}
+			if (tail.isEmpty()) {
+				return new Prefix(head);
+			}
+			if (head.isEmpty()) {
+				return new Suffix(tail);
+			}
+		} else if (middle.size() == 1 && head.isEmpty() && tail.isEmpty()) {
+			return new Contains(middle.get(0));
+		}
+		return new Segments(head, middle.toArray(new String[middle.size()]), tail);
+	}
+
+	/*************************************************************************
+	 * Tests a string against the pattern.
+	 *
+	 * @param str
+	 *            the string to test.
+	 * @return true if the whole string matches the pattern.
+	 ************************************************************************/
+
+	abstract boolean matches(String str);
+
+	private static final class Any extends ShExpMatcher {
+
+		@Override
+		boolean matches(String str) {
+			return true;
+		}
+	}
+
+	private static final class Exact extends ShExpMatcher {
+
+		private final String literal;
+
+		Exact(String literal) {
+			this.literal = literal;
+		}
+
+		@Override
+		boolean matches(String str) {
+			return this.literal.equals(str);
+		}
+	}
+
+	private static final class Prefix extends ShExpMatcher {
+
+		private final String prefix;
+
+		Prefix(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		boolean matches(String str) {
+			return str.startsWith(this.prefix);
+		}
+	}
+
+	private static final class Suffix extends ShExpMatcher {
+
+		private final String suffix;
+
+		Suffix(String suffix) {
+			this.suffix = suffix;
+		}
+
+		@Override
+		boolean matches(String str) {
+			return str.endsWith(this.suffix);
+		}
+	}
+
+	private static final class Contains extends ShExpMatcher {
+
+		private final String infix;
+
+		Contains(String infix) {
+			this.infix = infix;
+		}
+
+		@Override
+		boolean matches(String str) {
+			return str.indexOf(this.infix) != -1;
+		}
+	}
+
+	/*************************************************************************
+	 * General case: an anchored head, literal segments in between matched at
+	 * their leftmost position and an anchored tail. Leftmost matching is
+	 * correct here because the only wildcard matches any sequence.
+	 ************************************************************************/
+
+	private static final class Segments extends ShExpMatcher {
+
+		private final String head;
+		private final String[] middle;
+		private final String tail;
+		private final int minLength;
+
+		Segments(String head, String[] middle, String tail) {
+			this.head = head;
+			this.middle = middle;
+			this.tail = tail;
+			int length = head.length() + tail.length();
+			for (String segment : middle) {
+				length += segment.length();
+			}
+			this.minLength = length;
+		}
+
+		@Override
+		boolean matches(String str) {
+			if (str.length() < this.minLength || !str.startsWith(this.head) || !str.endsWith(this.tail)) {
+				return false;
+			}
+			int pos = this.head.length();
+			int limit = str.length() - this.tail.length();
+			for (String segment : this.middle) {
+				int index = str.indexOf(segment, pos);
+				if (index == -1 || index + segment.length() > limit) {
+					return false;
+				}
+				pos = index + segment.length();
+			}
+			return true;
+		}
+	}
+
+}
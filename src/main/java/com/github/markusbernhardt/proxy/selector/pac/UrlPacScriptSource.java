@@ -10,6 +10,8 @@ import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.github.markusbernhardt.proxy.util.Logger;
 import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
@@ -18,7 +20,11 @@ import java.nio.file.Files;
 
 /*****************************************************************************
  * Script source that will load the content of a PAC file from an webserver. The
- * script content is cached once it was downloaded.
+ * script content is cached once it was downloaded. It is downloaded again
+ * after the expiration date sent by the server. If the new download has a
+ * different content the registered change listeners are notified, if it is
+ * the same the cached content is kept. If downloading it again fails the
+ * previous content is kept as well and the download is retried later.
  *
  * @author Markus Bernhardt, Copyright 2016
  * @author Bernd Rosstauscher, Copyright 2009
@@ -30,10 +36,13 @@ public class UrlPacScriptSource implements PacScriptSource {
 	private static final int DEFAULT_READ_TIMEOUT = 20 * 1000; // seconds
 	public static final String OVERRIDE_CONNECT_TIMEOUT = "com.btr.proxy.url.connectTimeout";
 	public static final String OVERRIDE_READ_TIMEOUT = "com.btr.proxy.url.readTimeout";
+	private static final long DEFAULT_RETRY_DELAY = 60 * 1000; // milliseconds
 
 	private final String scriptUrl;
 	private String scriptContent;
 	private long expireAtMillis;
+	private long retryDelayMillis;
+	private final List<PacScriptChangeListener> listeners;
 
 	/*************************************************************************
 	 * Constructor
@@ -45,7 +54,9 @@ public class UrlPacScriptSource implements PacScriptSource {
 	public UrlPacScriptSource(String url) {
 		super();
 		this.expireAtMillis = 0;
+		this.retryDelayMillis = DEFAULT_RETRY_DELAY;
 		this.scriptUrl = url;
+		this.listeners = new CopyOnWriteArrayList<PacScriptChangeListener>();
 	}
 
 	/*************************************************************************
@@ -54,27 +65,112 @@ public class UrlPacScriptSource implements PacScriptSource {
 	 * @see com.github.markusbernhardt.proxy.selector.pac.PacScriptSource#getScriptContent()
 	 ************************************************************************/
 
-	public synchronized String getScriptContent() throws IOException {
-		if (this.scriptContent == null
-		        || (this.expireAtMillis > 0 && this.expireAtMillis < System.currentTimeMillis())) {
-			try {
-				// Reset it again with next download we should get a new expire
-				// info
-				this.expireAtMillis = 0;
-
-				if (this.scriptUrl.startsWith("file:/") || this.scriptUrl.indexOf(":/") == -1) {
-					this.scriptContent = readPacFileContent(this.scriptUrl);
-				} else {
-					this.scriptContent = downloadPacContent(this.scriptUrl);
+	public String getScriptContent() throws IOException {
+		String changed = null;
+		String content;
+		try {
+			synchronized (this) {
+				if (this.scriptContent == null
+				        || (this.expireAtMillis > 0 && this.expireAtMillis < System.currentTimeMillis())) {
+					String previous = this.scriptContent;
+					try {
+						// Reset it again with next download we should get a new expire
+						// info
+						this.expireAtMillis = 0;
+
+						if (this.scriptUrl.startsWith("file:/") || this.scriptUrl.indexOf(":/") == -1) {
+							setContent(readPacFileContent(this.scriptUrl));
+						} else {
+							setContent(downloadPacContent(this.scriptUrl));
+						}
+					} catch (IOException e) {
+						if (previous == null) {
+							Logger.log(getClass(), LogLevel.ERROR, "Loading script failed from: {} with error {}",
+							        this.scriptUrl, e);
+							setContent("");
+							throw e;
+						}
+						// Keep the script that worked so far, a network error is no script change.
+						Logger.log(getClass(), LogLevel.WARNING,
+						        "Reloading script failed from: {} with error {}, keeping the previous one.",
+						        this.scriptUrl, e);
+						this.expireAtMillis = System.currentTimeMillis() + this.retryDelayMillis;
+					} finally {
+						if (previous != null && previous != this.scriptContent) {
+							changed = this.scriptContent;
+						}
+					}
 				}
-			} catch (IOException e) {
-				Logger.log(getClass(), LogLevel.ERROR, "Loading script failed from: {} with error {}", this.scriptUrl,
-				        e);
-				this.scriptContent = "";
-				throw e;
+				content = this.scriptContent;
+			}
+		} finally {
+			if (changed != null) {
+				fireScriptChanged(changed);
 			}
 		}
-		return this.scriptContent;
+		return content;
+	}
+
+	/*************************************************************************
+	 * Sets the time to wait before a failed reload is tried again.
+	 * 
+	 * @param retryDelayMillis
+	 *            the delay in milliseconds.
+	 ************************************************************************/
+
+	void setRetryDelay(long retryDelayMillis) {
+		this.retryDelayMillis = retryDelayMillis;
+	}
+
+	/*************************************************************************
+	 * Sets a newly loaded content. The cached content is kept if it is the
+	 * same, so that the parsers can tell by identity that nothing changed.
+	 * 
+	 * @param content
+	 *            the loaded content.
+	 ************************************************************************/
+
+	private void setContent(String content) {
+		if (!content.equals(this.scriptContent)) {
+			this.scriptContent = content;
+		}
+	}
+
+	private void fireScriptChanged(String content) {
+		if (this.listeners.isEmpty()) {
+			return;
+		}
+		Logger.log(getClass(), LogLevel.INFO, "PAC script changed: {}", this.scriptUrl);
+		String hash = PacProxySelector.hash(content);
+		for (PacScriptChangeListener listener : this.listeners) {
+			try {
+				listener.scriptChanged(this, hash);
+			} catch (RuntimeException e) {
+				Logger.log(getClass(), LogLevel.WARNING, "PAC script change listener failed.", e);
+			}
+		}
+	}
+
+	/*************************************************************************
+	 * addChangeListener
+	 * 
+	 * @see com.github.markusbernhardt.proxy.selector.pac.PacScriptSource#addChangeListener(PacScriptChangeListener)
+	 ************************************************************************/
+
+	@Override
+	public void addChangeListener(PacScriptChangeListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/*************************************************************************
+	 * removeChangeListener
+	 * 
+	 * @see com.github.markusbernhardt.proxy.selector.pac.PacScriptSource#removeChangeListener(PacScriptChangeListener)
+	 ************************************************************************/
+
+	@Override
+	public void removeChangeListener(PacScriptChangeListener listener) {
+		this.listeners.remove(listener);
 	}
 
 	/*************************************************************************
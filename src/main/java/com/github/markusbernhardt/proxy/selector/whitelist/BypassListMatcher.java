@@ -0,0 +1,272 @@
+package com.github.markusbernhardt.proxy.selector.whitelist;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.github.markusbernhardt.proxy.selector.whitelist.HostnameFilter.Mode;
+import com.github.markusbernhardt.proxy.util.IpRangeTree;
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.RequestTarget;
+import com.github.markusbernhardt.proxy.util.UriFilter;
+
+/*****************************************************************************
+ * A compiled form of a list of URI filters that accepts an URI if any of the
+ * filters accepts it. The BEGINS_WITH and ENDS_WITH host name filters are put
+ * into a prefix and a suffix trie, so testing them costs O(host length) no
+ * matter how many of them the list has. The IP range filters are put into one
+ * radix tree. IP address literals are looked up in it directly, host names are
+ * resolved to an address like the IpRangeFilter does, unless that is turned
+ * off. The REGEX host name filters
+ * are merged into one alternation per protocol, so one match answers if any
+ * of them matches. All other filters are tested one after the other, as
+ * before.<br>
+ * The matcher is immutable. Changes to the filter list after compiling are not
+ * seen.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class BypassListMatcher implements UriFilter {
+
+	private static final UriFilter[] NO_FILTERS = new UriFilter[0];
+
+	// Back references and named groups refer to group numbers or names that clash in an alternation.
+	private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+
+	private final HostnameTrie prefixes;
+	private final HostnameTrie suffixes;
+	private final IpRangeTree ranges;
+	private final boolean resolveHostnames;
+	private final Pattern[] regexes;
+	private final String[] regexProtocols;
+	private final UriFilter[] others;
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	private BypassListMatcher(HostnameTrie prefixes, HostnameTrie suffixes, IpRangeTree ranges,
+	        boolean resolveHostnames, Pattern[] regexes, String[] regexProtocols, UriFilter[] others) {
+		super();
+		this.prefixes = prefixes;
+		this.suffixes = suffixes;
+		this.ranges = ranges;
+		this.resolveHostnames = resolveHostnames;
+		this.regexes = regexes;
+		this.regexProtocols = regexProtocols;
+		this.others = others;
+	}
+
+	/*************************************************************************
+	 * Compiles a list of filters.
+	 *
+	 * @param filters
+	 *            the filters, e.g. from the DefaultWhiteListParser.
+	 * @return the matcher, it resolves host names for the IP ranges.
+	 ************************************************************************/
+
+	public static BypassListMatcher compile(List<? extends UriFilter> filters) {
+		return compile(filters, true);
+	}
+
+	/*************************************************************************
+	 * Compiles a list of filters.
+	 *
+	 * @param filters
+	 *            the filters, e.g. from the DefaultWhiteListParser.
+	 * @param resolveHostnames
+	 *            true to resolve host names to test them against the IP
+	 *            ranges. This asks the host resolver on every select for a
+	 *            host that no other filter matched.
+	 * @return the matcher.
+	 ************************************************************************/
+
+	public static BypassListMatcher compile(List<? extends UriFilter> filters, boolean resolveHostnames) {
+		HostnameTrie prefixes = new HostnameTrie(false);
+		HostnameTrie suffixes = new HostnameTrie(true);
+		IpRangeTree ranges = new IpRangeTree();
+		Map<String, List<HostnameFilter>> regexFilters = new LinkedHashMap<String, List<HostnameFilter>>();
+		List<UriFilter> others = new ArrayList<UriFilter>();
+		for (UriFilter filter : filters) {
+			// Subclasses may have their own accept, they are tested as they are.
+			if (filter != null && filter.getClass() == IpRangeFilter.class) {
+				((IpRangeFilter) filter).addTo(ranges);
+				continue;
+			}
+			if (filter != null && filter.getClass() == HostnameFilter.class) {
+				HostnameFilter hostnameFilter = (HostnameFilter) filter;
+				if (hostnameFilter.getMode() == Mode.BEGINS_WITH) {
+					prefixes.add(hostnameFilter.getMatchTo(), hostnameFilter.getProtocolFilter());
+					continue;
+				}
+				if (hostnameFilter.getMode() == Mode.ENDS_WITH) {
+					suffixes.add(hostnameFilter.getMatchTo(), hostnameFilter.getProtocolFilter());
+					continue;
+				}
+				if (hostnameFilter.getMode() == Mode.REGEX) {
+					Pattern pattern = hostnameFilter.getPattern();
+					if (pattern == null) {
+						// An invalid pattern matches nothing.
+						continue;
+					}
+					if (!NOT_COMBINABLE.matcher(pattern.pattern()).find()) {
+						List<HostnameFilter> group = regexFilters.get(hostnameFilter.getProtocolFilter());
+						if (group == null) {
+							group = new ArrayList<HostnameFilter>();
+							regexFilters.put(hostnameFilter.getProtocolFilter(), group);
+						}
+						group.add(hostnameFilter);
+						continue;
+					}
+				}
+			}
+			if (filter != null) {
+				others.add(filter);
+			}
+		}
+
+		List<Pattern> regexes = new ArrayList<Pattern>();
+		List<String> regexProtocols = new ArrayList<String>();
+		for (Map.Entry<String, List<HostnameFilter>> group : regexFilters.entrySet()) {
+			Pattern combined = combine(group.getValue());
+			if (combined == null) {
+				others.addAll(group.getValue());
+			} else {
+				regexes.add(combined);
+				regexProtocols.add(group.getKey());
+			}
+		}
+		return new BypassListMatcher(prefixes.size() == 0 ? null : prefixes,
+		        suffixes.size() == 0 ? null : suffixes, ranges.isEmpty() ? null : ranges, resolveHostnames,
+		        regexes.isEmpty() ? null : regexes.toArray(new Pattern[regexes.size()]),
+		        regexProtocols.toArray(new String[regexProtocols.size()]), others.toArray(NO_FILTERS));
+	}
+
+	/*************************************************************************
+	 * Merges the patterns of some REGEX filters into one alternation.
+	 *
+	 * @return the combined pattern, null if it cannot be compiled.
+	 ************************************************************************/
+
+	private static Pattern combine(List<HostnameFilter> filters) {
+		if (filters.size() == 1) {
+			return filters.get(0).getPattern();
+		}
+		StringBuilder alternation = new StringBuilder();
+		for (HostnameFilter filter : filters) {
+			if (alternation.length() > 0) {
+				alternation.append('|');
+			}
+			alternation.append("(?:").append(filter.getPattern().pattern()).append(')');
+		}
+		try {
+			return Pattern.compile(alternation.toString());
+		} catch (PatternSyntaxException e) {
+			Logger.log(BypassListMatcher.class, LogLevel.DEBUG, "Cannot combine host name patterns: {}",
+			        e.getMessage());
+			return null;
+		}
+	}
+
+	/*************************************************************************
+	 * accept
+	 *
+	 * @see com.github.markusbernhardt.proxy.util.UriFilter#accept(java.net.URI)
+	 ************************************************************************/
+
+	@Override
+	public boolean accept(URI uri) {
+		return uri != null && accept(RequestTarget.of(uri));
+	}
+
+	/*************************************************************************
+	 * accept
+	 *
+	 * @see com.github.markusbernhardt.proxy.util.UriFilter#accept(com.github.markusbernhardt.proxy.util.RequestTarget)
+	 ************************************************************************/
+
+	@Override
+	public boolean accept(RequestTarget target) {
+		if ((this.prefixes != null || this.suffixes != null) && acceptHost(target)) {
+			return true;
+		}
+		if (this.ranges != null && acceptAddress(target)) {
+			return true;
+		}
+		if (this.regexes != null && acceptRegex(target)) {
+			return true;
+		}
+		for (UriFilter filter : this.others) {
+			if (filter.accept(target)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean acceptHost(RequestTarget target) {
+		String host = target.getHost();
+		if (host == null) {
+			return false;
+		}
+		String scheme = target.getScheme();
+		return (this.prefixes != null && this.prefixes.matches(host, 0, host.length(), scheme))
+		        || (this.suffixes != null && this.suffixes.matches(host, 0, host.length(), scheme));
+	}
+
+	private boolean acceptRegex(RequestTarget target) {
+		String host = target.getHost();
+		if (host == null) {
+			return false;
+		}
+		String scheme = target.getScheme();
+		for (int i = 0; i < this.regexes.length; i++) {
+			String protocol = this.regexProtocols[i];
+			if ((protocol == null || scheme == null || protocol.equalsIgnoreCase(scheme))
+			        && this.regexes[i].matcher(host).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean acceptAddress(RequestTarget target) {
+		if (target.isIpLiteral()) {
+			return target.isIpv6() ? this.ranges.containsIpv6(target.getAddressHi(), target.getAddressLo())
+			        : this.ranges.containsIpv4(target.getAddressLo());
+		}
+		String host = target.getUri().getHost();
+		if (!this.resolveHostnames || host == null) {
+			return false;
+		}
+		try {
+			InetAddress address = ProxyUtil.getHostResolver().resolve(host);
+			return this.ranges.contains(address.getAddress());
+		} catch (UnknownHostException e) {
+			Logger.log(getClass(), LogLevel.TRACE, "Cannot resolve {} to test it against the IP ranges.", host);
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BypassListMatcher{" +
+				"prefixes=" + (prefixes == null ? 0 : prefixes.size()) +
+				", suffixes=" + (suffixes == null ? 0 : suffixes.size()) +
+				", ranges=" + (ranges == null ? 0 : ranges.size()) +
+				", resolveHostnames=" + resolveHostnames +
+				", regexes=" + (regexes == null ? 0 : regexes.length) +
+				", others=" + others.length +
+				'}';
+	}
+
+}
@@ -1,11 +1,17 @@
 package com.github.markusbernhardt.proxy.selector.whitelist;
 
 import java.net.URI;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+import com.github.markusbernhardt.proxy.util.RequestTarget;
 import com.github.markusbernhardt.proxy.util.UriFilter;
 
 /*****************************************************************************
- * Tests if a host name of a given URI matches some criteria.
+ * Tests if a host name of a given URI matches some criteria. A regular
+ * expression is compiled once, an invalid one matches nothing.
  *
  * @author Markus Bernhardt, Copyright 2016
  * @author Bernd Rosstauscher, Copyright 2009
@@ -22,6 +28,7 @@ public class HostnameFilter implements UriFilter {
 	private String matchTo;
 	private String protocolFilter;
 	private Mode mode;
+	private Pattern pattern;
 
 	/*************************************************************************
 	 * Constructor
@@ -38,6 +45,14 @@ public class HostnameFilter implements UriFilter {
 		this.matchTo = matchTo.toLowerCase();
 
 		extractProtocolFilter();
+		if (mode == Mode.REGEX) {
+			try {
+				this.pattern = Pattern.compile(this.matchTo);
+			} catch (PatternSyntaxException e) {
+				Logger.log(getClass(), LogLevel.WARNING, "Invalid host name pattern {}: {}", this.matchTo,
+				        e.getMessage());
+			}
+		}
 	}
 
 	/*************************************************************************
@@ -52,6 +67,46 @@ public class HostnameFilter implements UriFilter {
 		}
 	}
 
+	/*************************************************************************
+	 * Gets the filter mode.
+	 * 
+	 * @return the mode.
+	 ************************************************************************/
+
+	Mode getMode() {
+		return this.mode;
+	}
+
+	/*************************************************************************
+	 * Gets the lower case match criteria, without the protocol.
+	 * 
+	 * @return the match criteria.
+	 ************************************************************************/
+
+	String getMatchTo() {
+		return this.matchTo;
+	}
+
+	/*************************************************************************
+	 * Gets the protocol the filter is limited to.
+	 * 
+	 * @return the protocol, null for all protocols.
+	 ************************************************************************/
+
+	String getProtocolFilter() {
+		return this.protocolFilter;
+	}
+
+	/*************************************************************************
+	 * Gets the compiled regular expression.
+	 * 
+	 * @return the pattern, null if the mode is not REGEX or it is invalid.
+	 ************************************************************************/
+
+	Pattern getPattern() {
+		return this.pattern;
+	}
+
 	/*************************************************************************
 	 * accept
 	 * 
@@ -82,7 +137,36 @@ public class HostnameFilter implements UriFilter {
 		case ENDS_WITH:
 			return host.toLowerCase().endsWith(this.matchTo);
 		case REGEX:
-			return host.toLowerCase().matches(this.matchTo);
+			return this.pattern != null && this.pattern.matcher(host.toLowerCase()).matches();
+		}
+		return false;
+	}
+
+	/*************************************************************************
+	 * accept
+	 * 
+	 * @see com.github.markusbernhardt.proxy.util.UriFilter#accept(com.github.markusbernhardt.proxy.util.RequestTarget)
+	 ************************************************************************/
+
+	@Override
+	public boolean accept(RequestTarget target) {
+		String host = target.getHost();
+		if (host == null) {
+			return false;
+		}
+
+		String scheme = target.getScheme();
+		if (this.protocolFilter != null && scheme != null && !scheme.equalsIgnoreCase(this.protocolFilter)) {
+			return false;
+		}
+
+		switch (this.mode) {
+		case BEGINS_WITH:
+			return host.startsWith(this.matchTo);
+		case ENDS_WITH:
+			return host.endsWith(this.matchTo);
+		case REGEX:
+			return this.pattern != null && this.pattern.matcher(host).matches();
 		}
 		return false;
 	}
@@ -0,0 +1,202 @@
+package com.github.markusbernhardt.proxy.selector.whitelist;
+
+import java.util.Arrays;
+
+/*****************************************************************************
+ * A character trie of host name patterns. A prefix trie answers if a host
+ * starts with any of the patterns, a suffix trie stores the patterns reversed
+ * and answers if the host ends with any of them. A lookup walks the host once,
+ * so it costs the same no matter how many patterns are stored.<br>
+ * A pattern can be limited to a protocol, like the protocol filter of a
+ * HostnameFilter. Host characters are compared in lower case, the patterns
+ * must be lower case already. A trie can be limited to whole labels, then a
+ * pattern only matches at a dot or the end of the host, e.g. the suffix
+ * example.com matches www.example.com but not badexample.com.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+final class HostnameTrie {
+
+	private static final char[] NO_KEYS = new char[0];
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private final boolean suffix;
+	private final boolean labels;
+	private final Node root;
+	private int size;
+
+	/*****************************************************************************
+	 * A trie node. The children are kept sorted by their character.
+	 ****************************************************************************/
+
+	private static final class Node {
+
+		char[] keys = NO_KEYS;
+		Node[] children = NO_CHILDREN;
+		boolean anyProtocol;
+		String[] protocols;
+
+		Node child(char c) {
+			char[] k = this.keys;
+			// Most nodes have one or two children, a linear search is the fastest then.
+			if (k.length <= 8) {
+				for (int i = 0; i < k.length; i++) {
+					if (k[i] == c) {
+						return this.children[i];
+					}
+				}
+				return null;
+			}
+			int index = Arrays.binarySearch(k, c);
+			return index < 0 ? null : this.children[index];
+		}
+
+		Node addChild(char c) {
+			int index = Arrays.binarySearch(this.keys, c);
+			if (index >= 0) {
+				return this.children[index];
+			}
+			index = -index - 1;
+			int length = this.keys.length;
+			char[] k = new char[length + 1];
+			Node[] n = new Node[length + 1];
+			System.arraycopy(this.keys, 0, k, 0, index);
+			System.arraycopy(this.children, 0, n, 0, index);
+			System.arraycopy(this.keys, index, k, index + 1, length - index);
+			System.arraycopy(this.children, index, n, index + 1, length - index);
+			Node created = new Node();
+			k[index] = c;
+			n[index] = created;
+			this.keys = k;
+			this.children = n;
+			return created;
+		}
+
+		boolean isTerminal(String scheme) {
+			if (this.anyProtocol) {
+				return true;
+			}
+			if (this.protocols == null) {
+				return false;
+			}
+			if (scheme == null) {
+				return true;
+			}
+			for (String protocol : this.protocols) {
+				if (protocol.equalsIgnoreCase(scheme)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param suffix
+	 *            true to match the end of the host, false to match the start.
+	 ************************************************************************/
+
+	HostnameTrie(boolean suffix) {
+		this(suffix, false);
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param suffix
+	 *            true to match the end of the host, false to match the start.
+	 * @param labels
+	 *            true to match whole labels only.
+	 ************************************************************************/
+
+	HostnameTrie(boolean suffix, boolean labels) {
+		super();
+		this.suffix = suffix;
+		this.labels = labels;
+		this.root = new Node();
+	}
+
+	/*************************************************************************
+	 * Adds a pattern.
+	 *
+	 * @param pattern
+	 *            the lower case pattern.
+	 * @param protocol
+	 *            the protocol the pattern is limited to, null for all.
+	 ************************************************************************/
+
+	void add(String pattern, String protocol) {
+		Node node = this.root;
+		int length = pattern.length();
+		for (int i = 0; i < length; i++) {
+			node = node.addChild(pattern.charAt(this.suffix ? length - 1 - i : i));
+		}
+		if (protocol == null) {
+			node.anyProtocol = true;
+		} else if (node.protocols == null) {
+			node.protocols = new String[] { protocol };
+		} else {
+			String[] protocols = Arrays.copyOf(node.protocols, node.protocols.length + 1);
+			protocols[protocols.length - 1] = protocol;
+			node.protocols = protocols;
+		}
+		this.size++;
+	}
+
+	/*************************************************************************
+	 * Tests if a host matches any pattern.
+	 *
+	 * @param host
+	 *            the string that contains the host.
+	 * @param start
+	 *            the start index of the host.
+	 * @param end
+	 *            the end index of the host, exclusive.
+	 * @param scheme
+	 *            the scheme of the URI, may be null.
+	 * @return true if a pattern matches.
+	 ************************************************************************/
+
+	boolean matches(String host, int start, int end, String scheme) {
+		Node node = this.root;
+		if (node.isTerminal(scheme)) {
+			return true;
+		}
+		int length = end - start;
+		for (int i = 0; i < length; i++) {
+			char c = host.charAt(this.suffix ? end - 1 - i : start + i);
+			node = node.child(Character.toLowerCase(c));
+			if (node == null) {
+				return false;
+			}
+			if (node.isTerminal(scheme) && (!this.labels || i + 1 == length
+			        || host.charAt(this.suffix ? end - 2 - i : start + i + 1) == '.')) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*************************************************************************
+	 * Gets the number of added patterns.
+	 *
+	 * @return the number of patterns.
+	 ************************************************************************/
+
+	int size() {
+		return this.size;
+	}
+
+	@Override
+	public String toString() {
+		return "HostnameTrie{" +
+				"suffix=" + suffix +
+				", labels=" + labels +
+				", size=" + size +
+				'}';
+	}
+
+}
@@ -4,11 +4,17 @@ import java.net.InetAddress;
 import java.net.URI;
 import java.net.UnknownHostException;
 
+import com.github.markusbernhardt.proxy.util.IpAddressUtil;
+import com.github.markusbernhardt.proxy.util.IpRangeTree;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.RequestTarget;
 import com.github.markusbernhardt.proxy.util.UriFilter;
 
 /*****************************************************************************
  * Filters an URI by inspecting it's IP address is in a given range. The range
- * as must be defined in CIDR notation. e.g. 192.0.2.1/24,
+ * as must be defined in CIDR notation. e.g. 192.0.2.1/24,<br>
+ * IP address literals are tested without asking the host resolver, only host
+ * names are resolved.
  *
  * @author Markus Bernhardt, Copyright 2016
  * @author Bernd Rosstauscher, Copyright 2009
@@ -18,6 +24,7 @@ public class IpRangeFilter implements UriFilter {
 
 	private byte[] matchTo;
 	int numOfBits;
+	private final IpRangeTree range;
 
 	/*************************************************************************
 	 * Constructor
@@ -42,6 +49,19 @@ public class IpRangeFilter implements UriFilter {
 		}
 
 		this.numOfBits = Integer.parseInt(parts[1].trim());
+		this.range = new IpRangeTree();
+		addTo(this.range);
+	}
+
+	/*************************************************************************
+	 * Adds the range of this filter to a tree of ranges.
+	 * 
+	 * @param tree
+	 *            the tree to add to.
+	 ************************************************************************/
+
+	void addTo(IpRangeTree tree) {
+		tree.add(this.matchTo, this.numOfBits);
 	}
 
 	/*************************************************************************
@@ -54,33 +74,31 @@ public class IpRangeFilter implements UriFilter {
 		if (uri == null || uri.getHost() == null) {
 			return false;
 		}
+		if (IpAddressUtil.isLiteral(uri.getHost())) {
+			return this.range.containsLiteral(uri.getHost());
+		}
 		try {
-			InetAddress address = InetAddress.getByName(uri.getHost());
-			byte[] addr = address.getAddress();
-
-			// Comparing IP6 against IP4?
-			if (addr.length != this.matchTo.length) {
-				return false;
-			}
-
-			int bit = 0;
-			for (int nibble = 0; nibble < addr.length; nibble++) {
-				for (int nibblePos = 7; nibblePos >= 0; nibblePos--) {
-					int mask = 1 << nibblePos;
-					if ((this.matchTo[nibble] & mask) != (addr[nibble] & mask)) {
-						return false;
-					}
-					bit++;
-					if (bit >= this.numOfBits) {
-						return true;
-					}
-				}
-			}
-
+			InetAddress address = ProxyUtil.getHostResolver().resolve(uri.getHost());
+			return this.range.contains(address.getAddress());
 		} catch (UnknownHostException e) {
 			// In this case we can not get the IP do not match.
 		}
 		return false;
 	}
 
+	/*************************************************************************
+	 * accept
+	 * 
+	 * @see com.github.markusbernhardt.proxy.util.UriFilter#accept(com.github.markusbernhardt.proxy.util.RequestTarget)
+	 ************************************************************************/
+
+	@Override
+	public boolean accept(RequestTarget target) {
+		if (target.isIpLiteral()) {
+			return target.isIpv6() ? this.range.containsIpv6(target.getAddressHi(), target.getAddressLo())
+			        : this.range.containsIpv4(target.getAddressLo());
+		}
+		return accept(target.getUri());
+	}
+
 }
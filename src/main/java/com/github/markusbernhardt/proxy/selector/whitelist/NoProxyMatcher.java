@@ -0,0 +1,287 @@
+package com.github.markusbernhardt.proxy.selector.whitelist;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.github.markusbernhardt.proxy.util.IpAddressUtil;
+import com.github.markusbernhardt.proxy.util.IpRangeTree;
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+import com.github.markusbernhardt.proxy.util.RequestTarget;
+import com.github.markusbernhardt.proxy.util.UriFilter;
+
+/*****************************************************************************
+ * Matches URIs against a <i>no_proxy</i> environment variable the way curl and
+ * the Go standard library read it. The entries are separated by commas or
+ * whitespace and compared without case:
+ * <ul>
+ * <li><i>*</i> alone bypasses the proxy for all hosts.</li>
+ * <li>A domain matches the host itself and all its subdomains, on whole
+ * labels only. example.com matches www.example.com but not
+ * badexample.com. A leading dot or <i>*.</i> is ignored, as curl does.</li>
+ * <li>An IP address matches that address, a CIDR range like 10.0.0.0/8 all
+ * addresses in it. IPv6 addresses may be given in square brackets.</li>
+ * <li>A domain or IP address followed by <i>:port</i> matches that port only.
+ * URIs without a port use the default port of their scheme.</li>
+ * </ul>
+ * Host names are never resolved to test them against the IP ranges, like in
+ * curl and Go. The entries are compiled into a label aware suffix trie and an
+ * IP range tree, the entries with a port into one trie and tree per port. A
+ * match costs O(host length) no matter how long the list is.<br>
+ * The matcher is immutable.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class NoProxyMatcher implements UriFilter {
+
+	private final boolean matchAll;
+	private final HostnameTrie domains;
+	private final IpRangeTree addresses;
+	private final int[] ports;
+	private final HostnameTrie[] portDomains;
+	private final IpRangeTree[] portAddresses;
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	private NoProxyMatcher(boolean matchAll, HostnameTrie domains, IpRangeTree addresses,
+	        Map<Integer, HostnameTrie> portDomains, Map<Integer, IpRangeTree> portAddresses) {
+		super();
+		this.matchAll = matchAll;
+		this.domains = domains;
+		this.addresses = addresses;
+
+		// Sorted ports with the rules at the same index, a lookup needs no boxing.
+		SortedSet<Integer> index = new TreeSet<Integer>(portDomains.keySet());
+		index.addAll(portAddresses.keySet());
+		this.ports = new int[index.size()];
+		this.portDomains = new HostnameTrie[index.size()];
+		this.portAddresses = new IpRangeTree[index.size()];
+		int i = 0;
+		for (Integer port : index) {
+			this.ports[i] = port;
+			this.portDomains[i] = portDomains.get(port);
+			this.portAddresses[i] = portAddresses.get(port);
+			i++;
+		}
+	}
+
+	/*************************************************************************
+	 * Parses a no_proxy value. Entries that cannot be parsed are logged and
+	 * ignored.
+	 *
+	 * @param noProxy
+	 *            the value of the variable, may be null.
+	 * @return the matcher.
+	 ************************************************************************/
+
+	public static NoProxyMatcher parse(String noProxy) {
+		boolean matchAll = false;
+		HostnameTrie domains = new HostnameTrie(true, true);
+		IpRangeTree addresses = new IpRangeTree();
+		Map<Integer, HostnameTrie> portDomains = new TreeMap<Integer, HostnameTrie>();
+		Map<Integer, IpRangeTree> portAddresses = new TreeMap<Integer, IpRangeTree>();
+
+		String[] entries = noProxy == null ? new String[0] : noProxy.trim().split("[,\\s]+");
+		for (String entry : entries) {
+			entry = entry.toLowerCase();
+			if (entry.isEmpty()) {
+				continue;
+			}
+			if ("*".equals(entry)) {
+				matchAll = true;
+				continue;
+			}
+			if (entry.indexOf('/') != -1) {
+				if (!addresses.add(entry)) {
+					Logger.log(NoProxyMatcher.class, LogLevel.DEBUG, "Ignoring invalid no_proxy range {}", entry);
+				}
+				continue;
+			}
+
+			// Split off the port, take special care for IPv6.
+			String host = entry;
+			String port = null;
+			if (entry.startsWith("[")) {
+				int bracket = entry.indexOf(']');
+				if (bracket == -1) {
+					Logger.log(NoProxyMatcher.class, LogLevel.DEBUG, "Ignoring invalid no_proxy entry {}", entry);
+					continue;
+				}
+				host = entry.substring(1, bracket);
+				if (entry.startsWith(":", bracket + 1)) {
+					port = entry.substring(bracket + 2);
+				}
+			} else {
+				int colon = entry.indexOf(':');
+				if (colon != -1 && colon == entry.lastIndexOf(':')) {
+					host = entry.substring(0, colon);
+					port = entry.substring(colon + 1);
+				}
+			}
+
+			Integer key = null;
+			if (port != null) {
+				try {
+					key = Integer.valueOf(port);
+				} catch (NumberFormatException e) {
+					Logger.log(NoProxyMatcher.class, LogLevel.DEBUG, "Ignoring invalid no_proxy port {}", entry);
+					continue;
+				}
+			}
+
+			if (addAddress(host, key, addresses, portAddresses)) {
+				continue;
+			}
+			if (host.startsWith("*.")) {
+				host = host.substring(2);
+			} else if (host.startsWith(".")) {
+				host = host.substring(1);
+			}
+			if (host.endsWith(".")) {
+				host = host.substring(0, host.length() - 1);
+			}
+			if (host.isEmpty()) {
+				continue;
+			}
+			if (key == null) {
+				domains.add(host, null);
+			} else {
+				HostnameTrie trie = portDomains.get(key);
+				if (trie == null) {
+					trie = new HostnameTrie(true, true);
+					portDomains.put(key, trie);
+				}
+				trie.add(host, null);
+			}
+		}
+		return new NoProxyMatcher(matchAll, domains, addresses, portDomains, portAddresses);
+	}
+
+	private static boolean addAddress(String host, Integer port, IpRangeTree addresses,
+	        Map<Integer, IpRangeTree> portAddresses) {
+		if (!IpAddressUtil.isLiteral(host)) {
+			return false;
+		}
+		long ipv4 = IpAddressUtil.parseIpv4(host);
+		long[] ipv6 = new long[2];
+		if (ipv4 == IpAddressUtil.INVALID && !IpAddressUtil.parseIpv6(host, ipv6)) {
+			return false;
+		}
+		IpRangeTree tree = addresses;
+		if (port != null) {
+			tree = portAddresses.get(port);
+			if (tree == null) {
+				tree = new IpRangeTree();
+				portAddresses.put(port, tree);
+			}
+		}
+		if (ipv4 != IpAddressUtil.INVALID) {
+			tree.addIpv4(ipv4, 32);
+			return true;
+		}
+		// The request target treats IPv4 mapped addresses as IPv4 addresses.
+		if (ipv6[0] == 0 && (ipv6[1] >>> 32) == 0xFFFFL) {
+			tree.addIpv4(ipv6[1] & 0xFFFFFFFFL, 32);
+		} else {
+			tree.addIpv6(ipv6[0], ipv6[1], 128);
+		}
+		return true;
+	}
+
+	/*************************************************************************
+	 * Gets the port an URI connects to.
+	 *
+	 * @param target
+	 *            the parsed URI.
+	 * @return the port, -1 if the URI has none and the scheme is not known.
+	 ************************************************************************/
+
+	private static int effectivePort(RequestTarget target) {
+		if (target.getPort() != -1) {
+			return target.getPort();
+		}
+		String scheme = target.getScheme();
+		if ("http".equalsIgnoreCase(scheme) || "ws".equalsIgnoreCase(scheme)) {
+			return 80;
+		}
+		if ("https".equalsIgnoreCase(scheme) || "wss".equalsIgnoreCase(scheme)) {
+			return 443;
+		}
+		if ("ftp".equalsIgnoreCase(scheme)) {
+			return 21;
+		}
+		return -1;
+	}
+
+	/*************************************************************************
+	 * accept
+	 *
+	 * @see com.github.markusbernhardt.proxy.util.UriFilter#accept(java.net.URI)
+	 ************************************************************************/
+
+	@Override
+	public boolean accept(URI uri) {
+		return uri != null && accept(RequestTarget.of(uri));
+	}
+
+	/*************************************************************************
+	 * accept
+	 *
+	 * @see com.github.markusbernhardt.proxy.util.UriFilter#accept(com.github.markusbernhardt.proxy.util.RequestTarget)
+	 ************************************************************************/
+
+	@Override
+	public boolean accept(RequestTarget target) {
+		String host = target.getHost();
+		if (host == null) {
+			return false;
+		}
+		if (this.matchAll) {
+			return true;
+		}
+		int rule = this.ports.length == 0 ? -1 : Arrays.binarySearch(this.ports, effectivePort(target));
+
+		if (target.isIpLiteral()) {
+			return containsAddress(this.addresses, target)
+			        || (rule >= 0 && containsAddress(this.portAddresses[rule], target));
+		}
+
+		// The authority may have user info and the host a trailing dot.
+		int start = host.lastIndexOf('@') + 1;
+		int end = host.endsWith(".") ? host.length() - 1 : host.length();
+		if (this.domains.matches(host, start, end, null)) {
+			return true;
+		}
+		if (rule >= 0) {
+			HostnameTrie trie = this.portDomains[rule];
+			return trie != null && trie.matches(host, start, end, null);
+		}
+		return false;
+	}
+
+	private static boolean containsAddress(IpRangeTree tree, RequestTarget target) {
+		if (tree == null) {
+			return false;
+		}
+		return target.isIpv6() ? tree.containsIpv6(target.getAddressHi(), target.getAddressLo())
+		        : tree.containsIpv4(target.getAddressLo());
+	}
+
+	@Override
+	public String toString() {
+		return "NoProxyMatcher{" +
+				"matchAll=" + matchAll +
+				", domains=" + domains.size() +
+				", addresses=" + addresses.size() +
+				", ports=" + Arrays.toString(ports) +
+				'}';
+	}
+
+}
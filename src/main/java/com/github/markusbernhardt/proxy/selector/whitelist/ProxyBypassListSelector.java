@@ -8,13 +8,16 @@ import java.net.URI;
 import java.util.List;
 
 import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.RequestTarget;
 import com.github.markusbernhardt.proxy.util.UriFilter;
 
 /*****************************************************************************
  * Special purpose ProxySelector used as Facade on top of a normal
  * ProxySelector. A wrapper that will first check the URI against a white list
  * and if it matches it will return DIRECT else it will pass the URI to an
- * delegate for inspection.
+ * delegate for inspection.<br>
+ * The white list is compiled once, so that a select does not test the
+ * filters one by one, see BypassListMatcher.
  *
  * @author Markus Bernhardt, Copyright 2016
  * @author Bernd Rosstauscher, Copyright 2009
@@ -24,6 +27,7 @@ public class ProxyBypassListSelector extends ProxySelector {
 
 	private ProxySelector delegate;
 	private List<UriFilter> whiteListFilter;
+	private volatile BypassListMatcher matcher;
 
 	/*************************************************************************
 	 * Constructor
@@ -45,6 +49,7 @@ public class ProxyBypassListSelector extends ProxySelector {
 
 		this.delegate = proxySelector;
 		this.whiteListFilter = whiteListFilter;
+		this.matcher = BypassListMatcher.compile(whiteListFilter);
 	}
 
 	/*************************************************************************
@@ -61,6 +66,20 @@ public class ProxyBypassListSelector extends ProxySelector {
 		this(new DefaultWhiteListParser().parseWhiteList(whiteList), proxySelector);
 	}
 
+	/*************************************************************************
+	 * Sets if host names are resolved to test them against the IP ranges of
+	 * the white list. This is the default, like the IpRangeFilter does it.
+	 * Turned off only IP address literals are tested, so that a select does not
+	 * wait for the name service.
+	 * 
+	 * @param resolveHostnames
+	 *            false to test IP address literals only.
+	 ************************************************************************/
+
+	public void setResolveHostnames(boolean resolveHostnames) {
+		this.matcher = BypassListMatcher.compile(this.whiteListFilter, resolveHostnames);
+	}
+
 	/*************************************************************************
 	 * connectFailed
 	 * 
@@ -90,10 +109,8 @@ public class ProxyBypassListSelector extends ProxySelector {
 	public List<Proxy> select(URI uri) {
 
 		// If in white list, use DIRECT connection.
-		for (UriFilter filter : this.whiteListFilter) {
-			if (filter.accept(uri)) {
-				return ProxyUtil.noProxyList();
-			}
+		if (uri != null && this.matcher.accept(RequestTarget.of(uri))) {
+			return ProxyUtil.noProxyList();
 		}
 
 		return this.delegate.select(uri);
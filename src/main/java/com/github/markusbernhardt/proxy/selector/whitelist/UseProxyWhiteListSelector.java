@@ -8,6 +8,7 @@ import java.net.URI;
 import java.util.List;
 
 import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.RequestTarget;
 import com.github.markusbernhardt.proxy.util.UriFilter;
 
 /*****************************************************************************
@@ -69,9 +70,10 @@ public class UseProxyWhiteListSelector extends ProxySelector {
 	@Override
 	public List<Proxy> select(URI uri) {
 
-		// If in white list, use proxy selector.
+		// If in white list, use proxy selector. The URI is parsed only once for all filters.
+		RequestTarget target = uri == null ? null : RequestTarget.of(uri);
 		for (UriFilter filter : this.whiteListFilter) {
-			if (filter.accept(uri)) {
+			if (target == null ? filter.accept(uri) : filter.accept(target)) {
 				return this.delegate.select(uri);
 			}
 		}
@@ -0,0 +1,380 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+
+/*****************************************************************************
+ * A host resolver that caches the results of another resolver.
+ * <ul>
+ * <li>Successful lookups are cached for the positive TTL, failed lookups for
+ * the negative TTL.</li>
+ * <li>Concurrent lookups of the same host are combined into a single lookup of
+ * the delegate.</li>
+ * <li>Lookups run on background threads and callers wait at most for the
+ * timeout. A lookup that timed out is treated as failed, but its result is
+ * still put into the cache when it arrives.</li>
+ * <li>Every lookup gets its own thread, so a hanging lookup does not delay the
+ * others. If too many lookups hang at the same time new ones fail right away
+ * instead of waiting in a queue.</li>
+ * </ul>
+ * IP address literals are passed to the delegate directly as they do not need
+ * a name service lookup.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class CachingHostResolver implements HostResolver {
+
+	public static final long DEFAULT_POSITIVE_TTL_MS = 60000;
+	public static final long DEFAULT_NEGATIVE_TTL_MS = 10000;
+	public static final long DEFAULT_TIMEOUT_MS = 5000;
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	private static final int MAX_LOOKUP_THREADS = 64;
+
+	private final HostResolver delegate;
+	private final long positiveTtlNanos;
+	private final long negativeTtlNanos;
+	private final long timeoutMs;
+	private final int maxEntries;
+
+	private final Map<String, CacheEntry> cache;
+	private final Map<String, CompletableFuture<InetAddress[]>> inFlight;
+	private final ExecutorService executor;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder negativeHitCount = new LongAdder();
+	private final LongAdder lookupCount = new LongAdder();
+	private final LongAdder coalescedCount = new LongAdder();
+	private final LongAdder timeoutCount = new LongAdder();
+	private final LongAdder failureCount = new LongAdder();
+
+	/*****************************************************************************
+	 * A cached lookup result. Either addresses or failure is set.
+	 ****************************************************************************/
+
+	private static final class CacheEntry {
+
+		final InetAddress[] addresses;
+		final UnknownHostException failure;
+		final long expireAt;
+
+		CacheEntry(InetAddress[] addresses, UnknownHostException failure, long expireAt) {
+			this.addresses = addresses;
+			this.failure = failure;
+			this.expireAt = expireAt;
+		}
+
+		boolean isExpired(long now) {
+			return now - this.expireAt >= 0;
+		}
+	}
+
+	/*************************************************************************
+	 * Constructor with default TTLs and timeout.
+	 *
+	 * @param delegate
+	 *            the resolver doing the real lookups.
+	 ************************************************************************/
+
+	public CachingHostResolver(HostResolver delegate) {
+		this(delegate, DEFAULT_POSITIVE_TTL_MS, DEFAULT_NEGATIVE_TTL_MS, DEFAULT_TIMEOUT_MS, DEFAULT_MAX_ENTRIES);
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param delegate
+	 *            the resolver doing the real lookups.
+	 * @param positiveTtlMs
+	 *            how long successful lookups are cached in milliseconds.
+	 * @param negativeTtlMs
+	 *            how long failed lookups are cached in milliseconds.
+	 * @param timeoutMs
+	 *            the maximum time a caller waits for a lookup in milliseconds.
+	 * @param maxEntries
+	 *            the maximum number of cached hosts.
+	 ************************************************************************/
+
+	public CachingHostResolver(HostResolver delegate, long positiveTtlMs, long negativeTtlMs, long timeoutMs,
+	        int maxEntries) {
+		super();
+		if (timeoutMs <= 0 || maxEntries < 1) {
+			throw new IllegalArgumentException("Timeout and cache size must be positive.");
+		}
+		this.delegate = delegate;
+		this.positiveTtlNanos = TimeUnit.MILLISECONDS.toNanos(positiveTtlMs);
+		this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMs);
+		this.timeoutMs = timeoutMs;
+		this.maxEntries = maxEntries;
+		this.cache = new ConcurrentHashMap<String, CacheEntry>();
+		this.inFlight = new ConcurrentHashMap<String, CompletableFuture<InetAddress[]>>();
+
+		// No queue, a lookup waiting behind hanging ones would time out without being tried.
+		this.executor = new ThreadPoolExecutor(0, MAX_LOOKUP_THREADS, 30, TimeUnit.SECONDS,
+		        new SynchronousQueue<Runnable>(), new LookupThreadFactory());
+	}
+
+	/*************************************************************************
+	 * resolveAll
+	 *
+	 * @see com.github.markusbernhardt.proxy.util.HostResolver#resolveAll(java.lang.String)
+	 ************************************************************************/
+
+	@Override
+	public InetAddress[] resolveAll(String host) throws UnknownHostException {
+		if (host == null || IpAddressUtil.isLiteral(host)) {
+			return this.delegate.resolveAll(host);
+		}
+		String key = host.toLowerCase(Locale.ROOT);
+
+		CacheEntry entry = this.cache.get(key);
+		if (entry != null && !entry.isExpired(System.nanoTime())) {
+			if (entry.failure != null) {
+				this.negativeHitCount.increment();
+				throw failureOf(host, entry.failure);
+			}
+			this.hitCount.increment();
+			return entry.addresses.clone();
+		}
+
+		return await(host, key, lookup(host, key));
+	}
+
+	/*************************************************************************
+	 * Gets the running lookup for the host or starts a new one.
+	 ************************************************************************/
+
+	private CompletableFuture<InetAddress[]> lookup(String host, String key) {
+		CompletableFuture<InetAddress[]> future = this.inFlight.get(key);
+		if (future != null) {
+			this.coalescedCount.increment();
+			return future;
+		}
+		CompletableFuture<InetAddress[]> created = new CompletableFuture<InetAddress[]>();
+		future = this.inFlight.putIfAbsent(key, created);
+		if (future != null) {
+			this.coalescedCount.increment();
+			return future;
+		}
+
+		this.lookupCount.increment();
+		try {
+			this.executor.execute(() -> {
+				// The lookup must leave the in-flight map before it completes,
+				// so that later callers see the cached result instead.
+				try {
+					InetAddress[] addresses = this.delegate.resolveAll(host);
+					store(key, new CacheEntry(addresses, null, System.nanoTime() + this.positiveTtlNanos));
+					this.inFlight.remove(key, created);
+					created.complete(addresses);
+				} catch (UnknownHostException e) {
+					store(key, new CacheEntry(null, e, System.nanoTime() + this.negativeTtlNanos));
+					this.inFlight.remove(key, created);
+					created.completeExceptionally(e);
+				} catch (RuntimeException e) {
+					this.inFlight.remove(key, created);
+					created.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			Logger.log(getClass(), LogLevel.DEBUG, "Too many DNS lookups running, not looking up {}.", host);
+			this.inFlight.remove(key, created);
+			created.completeExceptionally(new UnknownHostException(host + ": too many lookups running"));
+		} catch (RuntimeException e) {
+			this.inFlight.remove(key, created);
+			created.completeExceptionally(e);
+		}
+		return created;
+	}
+
+	/*************************************************************************
+	 * Waits for a lookup to finish within the timeout.
+	 ************************************************************************/
+
+	private InetAddress[] await(String host, String key, CompletableFuture<InetAddress[]> future)
+	        throws UnknownHostException {
+		try {
+			return future.get(this.timeoutMs, TimeUnit.MILLISECONDS).clone();
+		} catch (TimeoutException e) {
+			this.timeoutCount.increment();
+			Logger.log(getClass(), LogLevel.DEBUG, "DNS lookup for {} timed out after {} ms.", host, this.timeoutMs);
+			UnknownHostException failure = new UnknownHostException(host + ": lookup timed out");
+			// Do not ask again until the negative TTL has passed, unless the
+			// running lookup delivers a result in the meantime.
+			long now = System.nanoTime();
+			CacheEntry timedOut = new CacheEntry(null, failure, now + this.negativeTtlNanos);
+			this.cache.compute(key, (k, old) -> old == null || old.isExpired(now) ? timedOut : old);
+			throw failure;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnknownHostException(host + ": lookup interrupted");
+		} catch (ExecutionException e) {
+			this.failureCount.increment();
+			if (e.getCause() instanceof UnknownHostException) {
+				throw failureOf(host, (UnknownHostException) e.getCause());
+			}
+			UnknownHostException failure = new UnknownHostException(host + ": " + e.getCause());
+			failure.initCause(e.getCause());
+			throw failure;
+		}
+	}
+
+	/*************************************************************************
+	 * Creates a new exception for a shared failure, so that callers do not
+	 * share one exception instance and its stack trace.
+	 ************************************************************************/
+
+	private static UnknownHostException failureOf(String host, UnknownHostException cause) {
+		UnknownHostException failure = new UnknownHostException(
+		        cause.getMessage() != null ? cause.getMessage() : host);
+		failure.initCause(cause);
+		return failure;
+	}
+
+	/*************************************************************************
+	 * Puts an entry into the cache and removes old entries if the cache is
+	 * full.
+	 ************************************************************************/
+
+	private void store(String key, CacheEntry entry) {
+		if (this.cache.size() >= this.maxEntries) {
+			long now = System.nanoTime();
+			Iterator<CacheEntry> it = this.cache.values().iterator();
+			while (it.hasNext()) {
+				if (it.next().isExpired(now)) {
+					it.remove();
+				}
+			}
+			if (this.cache.size() >= this.maxEntries) {
+				this.cache.clear();
+			}
+		}
+		this.cache.put(key, entry);
+	}
+
+	/*************************************************************************
+	 * Removes all cached lookup results.
+	 ************************************************************************/
+
+	public void invalidateAll() {
+		this.cache.clear();
+	}
+
+	/*************************************************************************
+	 * Gets the number of hosts currently in the cache.
+	 *
+	 * @return the cache size.
+	 ************************************************************************/
+
+	public int getSize() {
+		return this.cache.size();
+	}
+
+	/*************************************************************************
+	 * Gets the number of lookups answered with cached addresses.
+	 *
+	 * @return the positive hit count.
+	 ************************************************************************/
+
+	public long getHitCount() {
+		return this.hitCount.sum();
+	}
+
+	/*************************************************************************
+	 * Gets the number of lookups answered with a cached failure.
+	 *
+	 * @return the negative hit count.
+	 ************************************************************************/
+
+	public long getNegativeHitCount() {
+		return this.negativeHitCount.sum();
+	}
+
+	/*************************************************************************
+	 * Gets the number of lookups passed to the delegate resolver.
+	 *
+	 * @return the lookup count.
+	 ************************************************************************/
+
+	public long getLookupCount() {
+		return this.lookupCount.sum();
+	}
+
+	/*************************************************************************
+	 * Gets the number of lookups that waited for a lookup of the same host
+	 * started by another caller.
+	 *
+	 * @return the coalesced lookup count.
+	 ************************************************************************/
+
+	public long getCoalescedCount() {
+		return this.coalescedCount.sum();
+	}
+
+	/*************************************************************************
+	 * Gets the number of lookups that did not finish within the timeout.
+	 *
+	 * @return the timeout count.
+	 ************************************************************************/
+
+	public long getTimeoutCount() {
+		return this.timeoutCount.sum();
+	}
+
+	/*************************************************************************
+	 * Gets the number of lookups that failed.
+	 *
+	 * @return the failure count.
+	 ************************************************************************/
+
+	public long getFailureCount() {
+		return this.failureCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "CachingHostResolver{" +
+				"size=" + cache.size() +
+				", hits=" + hitCount +
+				", negativeHits=" + negativeHitCount +
+				", lookups=" + lookupCount +
+				", timeouts=" + timeoutCount +
+				'}';
+	}
+
+	/*****************************************************************************
+	 * Creates daemon threads for the lookups so that they do not block the JVM
+	 * shutdown.
+	 ****************************************************************************/
+
+	private static final class LookupThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "proxy-vole-dns-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/*****************************************************************************
+ * Resolves host names to IP addresses. This is used by the PAC script methods
+ * and the whitelist filters instead of calling InetAddress directly, so that
+ * lookups can be cached, bounded by a timeout or stubbed in tests.
+ *
+ * @see ProxyUtil#setHostResolver(HostResolver)
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public interface HostResolver {
+
+	/**
+	 * Resolver that asks the system name service for every lookup.
+	 */
+	public static final HostResolver SYSTEM = InetAddress::getAllByName;
+
+	/*************************************************************************
+	 * Resolves all IP addresses of a host.
+	 *
+	 * @param host
+	 *            the host name or IP address literal.
+	 * @return the addresses of the host, never empty.
+	 * @throws UnknownHostException
+	 *             if the host can not be resolved.
+	 ************************************************************************/
+
+	public abstract InetAddress[] resolveAll(String host) throws UnknownHostException;
+
+	/*************************************************************************
+	 * Resolves the first IP address of a host.
+	 *
+	 * @param host
+	 *            the host name or IP address literal.
+	 * @return the address of the host.
+	 * @throws UnknownHostException
+	 *             if the host can not be resolved.
+	 ************************************************************************/
+
+	public default InetAddress resolve(String host) throws UnknownHostException {
+		return resolveAll(host)[0];
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.net.Proxy;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/*****************************************************************************
+ * An immutable list of proxies. Selectors that cache or share proxy lists can
+ * check for this type to avoid defensive copies.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class ImmutableProxyList extends AbstractList<Proxy> implements RandomAccess {
+
+	private final Proxy[] proxies;
+
+	private ImmutableProxyList(Proxy[] proxies) {
+		super();
+		this.proxies = proxies;
+	}
+
+	/*************************************************************************
+	 * Creates an immutable list with the given proxies.
+	 *
+	 * @param proxies
+	 *            the proxies.
+	 * @return the list.
+	 ************************************************************************/
+
+	public static ImmutableProxyList of(Proxy... proxies) {
+		return new ImmutableProxyList(proxies.clone());
+	}
+
+	/*************************************************************************
+	 * Gets an immutable copy of the given list. Returns the list itself if it
+	 * is already immutable.
+	 *
+	 * @param proxies
+	 *            the list to copy.
+	 * @return the immutable list.
+	 ************************************************************************/
+
+	public static ImmutableProxyList copyOf(List<Proxy> proxies) {
+		if (proxies instanceof ImmutableProxyList) {
+			return (ImmutableProxyList) proxies;
+		}
+		return new ImmutableProxyList(proxies.toArray(new Proxy[proxies.size()]));
+	}
+
+	@Override
+	public Proxy get(int index) {
+		return this.proxies[index];
+	}
+
+	@Override
+	public int size() {
+		return this.proxies.length;
+	}
+
+}
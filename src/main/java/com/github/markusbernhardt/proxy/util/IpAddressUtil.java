@@ -0,0 +1,304 @@
+package com.github.markusbernhardt.proxy.util;
+
+/*****************************************************************************
+ * Small helper methods to work with IP addresses without going through
+ * InetAddress. Addresses are handled as primitive values: an IPv4 address is
+ * an unsigned 32 bit value in a long, an IPv6 address is a pair of longs with
+ * the high and the low 64 bits. None of the methods allocate objects.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class IpAddressUtil {
+
+	/**
+	 * Returned by parseIpv4 for strings that are not an IPv4 address.
+	 */
+	public static final long INVALID = -1;
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	private IpAddressUtil() {
+		super();
+	}
+
+	/*************************************************************************
+	 * Checks if the given string looks like an IPv4 or IPv6 address literal.
+	 * Such strings are resolved by InetAddress without a name service lookup.
+	 * This is a cheap syntactic check only, it does not validate the address.
+	 *
+	 * @param host
+	 *            the host name or IP address.
+	 * @return true if the host is an IP address literal.
+	 ************************************************************************/
+
+	public static boolean isLiteral(String host) {
+		if (host == null || host.isEmpty()) {
+			return false;
+		}
+		if (host.indexOf(':') != -1) {
+			for (int i = 0; i < host.length(); i++) {
+				char c = host.charAt(i);
+				if (Character.digit(c, 16) == -1 && c != ':' && c != '.' && c != '[' && c != ']' && c != '%') {
+					return false;
+				}
+			}
+			return true;
+		}
+		int dots = 0;
+		boolean digit = false;
+		for (int i = 0; i < host.length(); i++) {
+			char c = host.charAt(i);
+			if (c == '.') {
+				if (!digit) {
+					return false;
+				}
+				dots++;
+				digit = false;
+			} else if (c >= '0' && c <= '9') {
+				digit = true;
+			} else {
+				return false;
+			}
+		}
+		return dots == 3 && digit;
+	}
+
+	/*************************************************************************
+	 * Parses an IPv4 address in dotted decimal notation. Whitespace around the
+	 * parts is ignored.
+	 *
+	 * @param address
+	 *            the address to parse, e.g. 192.168.0.1
+	 * @return the address as unsigned 32 bit value or INVALID.
+	 ************************************************************************/
+
+	public static long parseIpv4(String address) {
+		if (address == null) {
+			return INVALID;
+		}
+		return parseIpv4(address, 0, address.length());
+	}
+
+	/*************************************************************************
+	 * Parses an IPv4 address in dotted decimal notation from a part of a
+	 * string.
+	 *
+	 * @param s
+	 *            the string.
+	 * @param start
+	 *            the start index, inclusive.
+	 * @param end
+	 *            the end index, exclusive.
+	 * @return the address as unsigned 32 bit value or INVALID.
+	 ************************************************************************/
+
+	public static long parseIpv4(String s, int start, int end) {
+		long result = 0;
+		int parts = 0;
+		int pos = start;
+		while (true) {
+			pos = skipWhitespace(s, pos, end);
+			int digits = 0;
+			int value = 0;
+			char c;
+			while (pos < end && (c = s.charAt(pos)) >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				if (++digits > 3) {
+					return INVALID;
+				}
+				pos++;
+			}
+			if (digits == 0 || value > 255) {
+				return INVALID;
+			}
+			pos = skipWhitespace(s, pos, end);
+			result = (result << 8) | value;
+			parts++;
+			if (pos == end) {
+				break;
+			}
+			if (s.charAt(pos) != '.' || parts == 4) {
+				return INVALID;
+			}
+			pos++;
+		}
+		return parts == 4 ? result : INVALID;
+	}
+
+	/*************************************************************************
+	 * Parses an IPv6 address. Supports the compressed notation with
+	 * <code>::</code>, an embedded IPv4 address at the end, surrounding square
+	 * brackets and a zone index which is ignored.
+	 *
+	 * @param address
+	 *            the address to parse, e.g. 2001:db8::1
+	 * @param result
+	 *            an array with at least two elements that receives the high
+	 *            64 bits at index 0 and the low 64 bits at index 1.
+	 * @return true if the address is valid, else the result is undefined.
+	 ************************************************************************/
+
+	public static boolean parseIpv6(String address, long[] result) {
+		if (address == null) {
+			return false;
+		}
+		int start = skipWhitespace(address, 0, address.length());
+		int end = address.length();
+		while (end > start && address.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (end - start >= 2 && address.charAt(start) == '[' && address.charAt(end - 1) == ']') {
+			start++;
+			end--;
+		}
+		int zone = address.indexOf('%', start);
+		if (zone != -1 && zone < end) {
+			end = zone;
+		}
+		if (start >= end) {
+			return false;
+		}
+
+		// Groups before "::" go into head, the ones after into tail.
+		long headHi = 0;
+		long headLo = 0;
+		long tailHi = 0;
+		long tailLo = 0;
+		int headCount = 0;
+		int tailCount = 0;
+		boolean compressed = false;
+
+		int pos = start;
+		if (address.startsWith("::", pos)) {
+			compressed = true;
+			pos += 2;
+		} else if (address.charAt(pos) == ':') {
+			return false;
+		}
+		while (pos < end) {
+			int groupEnd = pos;
+			int value = 0;
+			while (groupEnd < end && groupEnd - pos <= 4) {
+				int digit = Character.digit(address.charAt(groupEnd), 16);
+				if (digit < 0) {
+					break;
+				}
+				value = value * 16 + digit;
+				groupEnd++;
+			}
+
+			int groups = 1;
+			long groupValue = value;
+			if (groupEnd < end && address.charAt(groupEnd) == '.') {
+				groupValue = parseIpv4(address, pos, end);
+				if (groupValue == INVALID) {
+					return false;
+				}
+				groups = 2;
+				groupEnd = end;
+			} else if (groupEnd == pos || groupEnd - pos > 4) {
+				return false;
+			}
+
+			int bits = 16 * groups;
+			if (compressed) {
+				tailHi = (tailHi << bits) | (tailLo >>> (64 - bits));
+				tailLo = (tailLo << bits) | groupValue;
+				tailCount += groups;
+			} else {
+				headHi = (headHi << bits) | (headLo >>> (64 - bits));
+				headLo = (headLo << bits) | groupValue;
+				headCount += groups;
+			}
+			if (headCount + tailCount > 8) {
+				return false;
+			}
+
+			pos = groupEnd;
+			if (pos == end) {
+				break;
+			}
+			if (address.charAt(pos) != ':') {
+				return false;
+			}
+			pos++;
+			if (pos < end && address.charAt(pos) == ':') {
+				if (compressed) {
+					return false;
+				}
+				compressed = true;
+				pos++;
+			} else if (pos == end) {
+				return false;
+			}
+		}
+
+		int count = headCount + tailCount;
+		if (compressed ? count > 7 : count != 8) {
+			return false;
+		}
+		// Move the head groups to the top.
+		int shift = 16 * (8 - headCount);
+		if (shift >= 128) {
+			headHi = 0;
+			headLo = 0;
+		} else if (shift >= 64) {
+			headHi = headLo << (shift - 64);
+			headLo = 0;
+		} else if (shift > 0) {
+			headHi = (headHi << shift) | (headLo >>> (64 - shift));
+			headLo = headLo << shift;
+		}
+		result[0] = headHi | tailHi;
+		result[1] = headLo | tailLo;
+		return true;
+	}
+
+	/*************************************************************************
+	 * Builds a network mask for a prefix length.
+	 *
+	 * @param bits
+	 *            the prefix length between 0 and 64.
+	 * @return a long with the given number of high bits set.
+	 ************************************************************************/
+
+	public static long prefixMask(int bits) {
+		return bits <= 0 ? 0 : bits >= 64 ? -1L : -1L << (64 - bits);
+	}
+
+	/*************************************************************************
+	 * Gets the high or low 64 bits of an address given as bytes, as returned
+	 * by InetAddress.getAddress(). IPv4 addresses are returned as unsigned 32
+	 * bit value in the low part.
+	 *
+	 * @param address
+	 *            the address bytes, 4 or 16 of them.
+	 * @param high
+	 *            true to get the high part.
+	 * @return the address bits.
+	 ************************************************************************/
+
+	public static long toLong(byte[] address, boolean high) {
+		if (address.length == 4) {
+			return high ? 0 : ((address[0] & 0xFFL) << 24) | ((address[1] & 0xFFL) << 16)
+			        | ((address[2] & 0xFFL) << 8) | (address[3] & 0xFFL);
+		}
+		long result = 0;
+		int offset = high ? 0 : 8;
+		for (int i = offset; i < offset + 8; i++) {
+			result = (result << 8) | (address[i] & 0xFFL);
+		}
+		return result;
+	}
+
+	private static int skipWhitespace(String s, int pos, int end) {
+		while (pos < end && s.charAt(pos) <= ' ') {
+			pos++;
+		}
+		return pos;
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.github.markusbernhardt.proxy.util;
+
+/*****************************************************************************
+ * An IPv4 or IPv6 address range in CIDR notation, e.g. 192.168.0.0/16 or
+ * 2001:db8::/32. The range is parsed once and can then be tested against
+ * addresses without any allocation.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class IpRange {
+
+	private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+	private final boolean ipv6;
+	private final int prefixLength;
+	private final long networkHi;
+	private final long networkLo;
+	private final long maskHi;
+	private final long maskLo;
+
+	private IpRange(boolean ipv6, int prefixLength, long addressHi, long addressLo) {
+		this.ipv6 = ipv6;
+		this.prefixLength = prefixLength;
+		if (ipv6) {
+			this.maskHi = IpAddressUtil.prefixMask(prefixLength);
+			this.maskLo = IpAddressUtil.prefixMask(prefixLength - 64);
+		} else {
+			this.maskHi = 0;
+			this.maskLo = IpAddressUtil.prefixMask(prefixLength) >>> 32;
+		}
+		this.networkHi = addressHi & this.maskHi;
+		this.networkLo = addressLo & this.maskLo;
+	}
+
+	/*************************************************************************
+	 * Parses a range in CIDR notation.
+	 *
+	 * @param cidr
+	 *            the range, e.g. 10.0.0.0/8
+	 * @return the range or null if it is not valid.
+	 ************************************************************************/
+
+	public static IpRange parse(String cidr) {
+		if (cidr == null) {
+			return null;
+		}
+		int slash = cidr.indexOf('/');
+		if (slash == -1 || cidr.indexOf('/', slash + 1) != -1) {
+			return null;
+		}
+		int prefixLength = parsePrefixLength(cidr, slash + 1);
+		String address = cidr.substring(0, slash);
+
+		long ipv4 = IpAddressUtil.parseIpv4(address);
+		if (ipv4 != IpAddressUtil.INVALID) {
+			return prefixLength >= 0 && prefixLength <= 32 ? new IpRange(false, prefixLength, 0, ipv4) : null;
+		}
+		long[] ipv6 = new long[2];
+		if (IpAddressUtil.parseIpv6(address, ipv6)) {
+			return prefixLength >= 0 && prefixLength <= 128 ? new IpRange(true, prefixLength, ipv6[0], ipv6[1])
+			        : null;
+		}
+		return null;
+	}
+
+	private static int parsePrefixLength(String s, int start) {
+		int value = 0;
+		int digits = 0;
+		for (int i = start; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c <= ' ') {
+				continue;
+			}
+			if (c < '0' || c > '9' || ++digits > 3) {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return digits == 0 ? -1 : value;
+	}
+
+	/*************************************************************************
+	 * Tests if an IPv4 address is in this range.
+	 *
+	 * @param address
+	 *            the address as unsigned 32 bit value.
+	 * @return true if the address is in the range.
+	 ************************************************************************/
+
+	public boolean containsIpv4(long address) {
+		return !this.ipv6 && (address & this.maskLo) == this.networkLo;
+	}
+
+	/*************************************************************************
+	 * Tests if an IPv6 address is in this range.
+	 *
+	 * @param addressHi
+	 *            the high 64 bits of the address.
+	 * @param addressLo
+	 *            the low 64 bits of the address.
+	 * @return true if the address is in the range.
+	 ************************************************************************/
+
+	public boolean containsIpv6(long addressHi, long addressLo) {
+		return this.ipv6 && (addressHi & this.maskHi) == this.networkHi && (addressLo & this.maskLo) == this.networkLo;
+	}
+
+	/*************************************************************************
+	 * Tests if an address given as bytes is in this range.
+	 *
+	 * @param address
+	 *            the address bytes as returned by InetAddress.getAddress().
+	 * @return true if the address is in the range.
+	 ************************************************************************/
+
+	public boolean contains(byte[] address) {
+		if (address.length == 4) {
+			return containsIpv4(IpAddressUtil.toLong(address, false));
+		}
+		return containsIpv6(IpAddressUtil.toLong(address, true), IpAddressUtil.toLong(address, false));
+	}
+
+	/*************************************************************************
+	 * Tests if an IP address literal is in this range.
+	 *
+	 * @param literal
+	 *            the IPv4 or IPv6 address.
+	 * @return true if the address is in the range, false if it is not or the
+	 *         string is not an IP address.
+	 ************************************************************************/
+
+	public boolean containsLiteral(String literal) {
+		long ipv4 = IpAddressUtil.parseIpv4(literal);
+		if (ipv4 != IpAddressUtil.INVALID) {
+			return containsIpv4(ipv4);
+		}
+		long[] ipv6 = SCRATCH.get();
+		return IpAddressUtil.parseIpv6(literal, ipv6) && containsIpv6(ipv6[0], ipv6[1]);
+	}
+
+	/*************************************************************************
+	 * Checks if this is an IPv6 range.
+	 *
+	 * @return true for IPv6, false for IPv4.
+	 ************************************************************************/
+
+	public boolean isIpv6() {
+		return this.ipv6;
+	}
+
+	/*************************************************************************
+	 * Gets the number of leading bits that have to match.
+	 *
+	 * @return the prefix length.
+	 ************************************************************************/
+
+	public int getPrefixLength() {
+		return this.prefixLength;
+	}
+
+	@Override
+	public String toString() {
+		return "IpRange{" +
+				"ipv6=" + ipv6 +
+				", prefixLength=" + prefixLength +
+				'}';
+	}
+
+}
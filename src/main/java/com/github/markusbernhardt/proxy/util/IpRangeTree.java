@@ -0,0 +1,307 @@
+package com.github.markusbernhardt.proxy.util;
+
+/*****************************************************************************
+ * A set of IPv4 and IPv6 address ranges in a path compressed binary radix
+ * (Patricia) tree, one tree per address family. A lookup walks the bits of the
+ * address once and answers if any of the ranges contains it, so it costs the
+ * same no matter how many ranges are stored. A range inside another range is
+ * not stored separately.<br>
+ * Addresses are handled as primitive values like in IpAddressUtil. IPv4
+ * addresses are stored in the high 32 bits of the key. The tree is not thread
+ * safe while ranges are added, it can be shared once it is filled.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class IpRangeTree {
+
+	private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+	private final Node ipv4Root;
+	private final Node ipv6Root;
+	private int size;
+
+	/*****************************************************************************
+	 * A tree node. It stands for the first <code>length</code> bits of its key,
+	 * the other bits of the key are zero.
+	 ****************************************************************************/
+
+	private static final class Node {
+
+		final long keyHi;
+		final long keyLo;
+		final int length;
+		boolean terminal;
+		Node zero;
+		Node one;
+
+		Node(long keyHi, long keyLo, int length) {
+			super();
+			this.keyHi = keyHi & IpAddressUtil.prefixMask(length);
+			this.keyLo = keyLo & IpAddressUtil.prefixMask(length - 64);
+			this.length = length;
+		}
+
+		boolean matches(long hi, long lo) {
+			return ((hi ^ this.keyHi) & IpAddressUtil.prefixMask(this.length)) == 0
+			        && ((lo ^ this.keyLo) & IpAddressUtil.prefixMask(this.length - 64)) == 0;
+		}
+
+		Node child(int bit) {
+			return bit == 0 ? this.zero : this.one;
+		}
+
+		void setChild(int bit, Node node) {
+			if (bit == 0) {
+				this.zero = node;
+			} else {
+				this.one = node;
+			}
+		}
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	public IpRangeTree() {
+		super();
+		this.ipv4Root = new Node(0, 0, 0);
+		this.ipv6Root = new Node(0, 0, 0);
+	}
+
+	/*************************************************************************
+	 * Adds a range in CIDR notation.
+	 *
+	 * @param cidr
+	 *            the range, e.g. 10.0.0.0/8 or 2001:db8::/32
+	 * @return true if added, false if it is not a valid range.
+	 ************************************************************************/
+
+	public boolean add(String cidr) {
+		IpRange range = IpRange.parse(cidr);
+		if (range == null) {
+			return false;
+		}
+		String address = cidr.substring(0, cidr.indexOf('/'));
+		if (range.isIpv6()) {
+			long[] ipv6 = new long[2];
+			IpAddressUtil.parseIpv6(address, ipv6);
+			addIpv6(ipv6[0], ipv6[1], range.getPrefixLength());
+		} else {
+			addIpv4(IpAddressUtil.parseIpv4(address), range.getPrefixLength());
+		}
+		return true;
+	}
+
+	/*************************************************************************
+	 * Adds a range given as address bytes.
+	 *
+	 * @param address
+	 *            the address bytes as returned by InetAddress.getAddress().
+	 * @param prefixLength
+	 *            the number of leading bits that have to match.
+	 ************************************************************************/
+
+	public void add(byte[] address, int prefixLength) {
+		if (address.length == 4) {
+			addIpv4(IpAddressUtil.toLong(address, false), prefixLength);
+		} else {
+			addIpv6(IpAddressUtil.toLong(address, true), IpAddressUtil.toLong(address, false), prefixLength);
+		}
+	}
+
+	/*************************************************************************
+	 * Adds an IPv4 range.
+	 *
+	 * @param address
+	 *            the address as unsigned 32 bit value.
+	 * @param prefixLength
+	 *            the prefix length between 0 and 32.
+	 ************************************************************************/
+
+	public void addIpv4(long address, int prefixLength) {
+		insert(this.ipv4Root, address << 32, 0, Math.max(0, Math.min(32, prefixLength)));
+	}
+
+	/*************************************************************************
+	 * Adds an IPv6 range.
+	 *
+	 * @param addressHi
+	 *            the high 64 bits of the address.
+	 * @param addressLo
+	 *            the low 64 bits of the address.
+	 * @param prefixLength
+	 *            the prefix length between 0 and 128.
+	 ************************************************************************/
+
+	public void addIpv6(long addressHi, long addressLo, int prefixLength) {
+		insert(this.ipv6Root, addressHi, addressLo, Math.max(0, Math.min(128, prefixLength)));
+	}
+
+	private void insert(Node root, long hi, long lo, int length) {
+		this.size++;
+		Node node = root;
+		while (true) {
+			if (node.terminal) {
+				// Already covered by a shorter range.
+				return;
+			}
+			if (node.length == length) {
+				node.terminal = true;
+				node.zero = null;
+				node.one = null;
+				return;
+			}
+			int bit = bitAt(hi, lo, node.length);
+			Node child = node.child(bit);
+			if (child == null) {
+				Node leaf = new Node(hi, lo, length);
+				leaf.terminal = true;
+				node.setChild(bit, leaf);
+				return;
+			}
+			int common = Math.min(commonPrefixLength(hi, lo, child.keyHi, child.keyLo),
+			        Math.min(length, child.length));
+			if (common == child.length) {
+				node = child;
+				continue;
+			}
+			// Split the edge to the child at the first differing bit.
+			Node middle = new Node(hi, lo, common);
+			node.setChild(bit, middle);
+			if (common == length) {
+				middle.terminal = true;
+				return;
+			}
+			middle.setChild(bitAt(child.keyHi, child.keyLo, common), child);
+			Node leaf = new Node(hi, lo, length);
+			leaf.terminal = true;
+			middle.setChild(bitAt(hi, lo, common), leaf);
+			return;
+		}
+	}
+
+	/*************************************************************************
+	 * Tests if an IPv4 address is in any of the ranges.
+	 *
+	 * @param address
+	 *            the address as unsigned 32 bit value.
+	 * @return true if a range contains the address.
+	 ************************************************************************/
+
+	public boolean containsIpv4(long address) {
+		return lookup(this.ipv4Root, address << 32, 0, 32);
+	}
+
+	/*************************************************************************
+	 * Tests if an IPv6 address is in any of the ranges.
+	 *
+	 * @param addressHi
+	 *            the high 64 bits of the address.
+	 * @param addressLo
+	 *            the low 64 bits of the address.
+	 * @return true if a range contains the address.
+	 ************************************************************************/
+
+	public boolean containsIpv6(long addressHi, long addressLo) {
+		return lookup(this.ipv6Root, addressHi, addressLo, 128);
+	}
+
+	/*************************************************************************
+	 * Tests if an address given as bytes is in any of the ranges.
+	 *
+	 * @param address
+	 *            the address bytes as returned by InetAddress.getAddress().
+	 * @return true if a range contains the address.
+	 ************************************************************************/
+
+	public boolean contains(byte[] address) {
+		if (address.length == 4) {
+			return containsIpv4(IpAddressUtil.toLong(address, false));
+		}
+		return containsIpv6(IpAddressUtil.toLong(address, true), IpAddressUtil.toLong(address, false));
+	}
+
+	/*************************************************************************
+	 * Tests if an IP address literal is in any of the ranges. No name service
+	 * is asked.
+	 *
+	 * @param literal
+	 *            the IPv4 or IPv6 address, IPv6 optionally in square brackets.
+	 *            IPv4 mapped IPv6 addresses are tested as IPv4 addresses.
+	 * @return true if a range contains the address, false if none does or the
+	 *         string is not an IP address.
+	 ************************************************************************/
+
+	public boolean containsLiteral(String literal) {
+		long ipv4 = IpAddressUtil.parseIpv4(literal);
+		if (ipv4 != IpAddressUtil.INVALID) {
+			return containsIpv4(ipv4);
+		}
+		long[] ipv6 = SCRATCH.get();
+		if (!IpAddressUtil.parseIpv6(literal, ipv6)) {
+			return false;
+		}
+		// IPv4 mapped addresses are IPv4 addresses for InetAddress as well.
+		if (ipv6[0] == 0 && (ipv6[1] >>> 32) == 0xFFFFL) {
+			return containsIpv4(ipv6[1] & 0xFFFFFFFFL);
+		}
+		return containsIpv6(ipv6[0], ipv6[1]);
+	}
+
+	private static boolean lookup(Node root, long hi, long lo, int maxLength) {
+		Node node = root;
+		while (node != null && node.matches(hi, lo)) {
+			if (node.terminal) {
+				return true;
+			}
+			if (node.length == maxLength) {
+				return false;
+			}
+			node = node.child(bitAt(hi, lo, node.length));
+		}
+		return false;
+	}
+
+	private static int bitAt(long hi, long lo, int index) {
+		return (int) (index < 64 ? (hi >>> (63 - index)) & 1 : (lo >>> (127 - index)) & 1);
+	}
+
+	private static int commonPrefixLength(long hi1, long lo1, long hi2, long lo2) {
+		long diff = hi1 ^ hi2;
+		if (diff != 0) {
+			return Long.numberOfLeadingZeros(diff);
+		}
+		return 64 + Long.numberOfLeadingZeros(lo1 ^ lo2);
+	}
+
+	/*************************************************************************
+	 * Gets the number of added ranges, including the ones that were already
+	 * covered by another range.
+	 *
+	 * @return the number of ranges.
+	 ************************************************************************/
+
+	public int size() {
+		return this.size;
+	}
+
+	/*************************************************************************
+	 * Checks if no range was added.
+	 *
+	 * @return true if the tree is empty.
+	 ************************************************************************/
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "IpRangeTree{" +
+				"size=" + size +
+				'}';
+	}
+
+}
@@ -0,0 +1,197 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*****************************************************************************
+ * A histogram of latencies with one bucket per power of two nanoseconds.
+ * Recording a value only increments striped counters, so it can be used on
+ * hot paths that are run by many threads at once. Percentiles are estimated
+ * from the buckets and are exact up to a factor of two.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class LatencyHistogram {
+
+	// Bucket i holds the values in [2^(i-1), 2^i), bucket 0 holds 0.
+	static final int BUCKETS = 64;
+
+	private final LongAdder[] buckets;
+	private final LongAdder totalNanos;
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	public LatencyHistogram() {
+		super();
+		this.buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+		this.totalNanos = new LongAdder();
+	}
+
+	/*************************************************************************
+	 * Records a latency.
+	 *
+	 * @param nanos
+	 *            the latency in nanoseconds. Negative values are recorded as
+	 *            0.
+	 ************************************************************************/
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		this.buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+		this.totalNanos.add(nanos);
+	}
+
+	/*************************************************************************
+	 * Takes a snapshot of the recorded latencies. Values recorded while the
+	 * snapshot is taken may or may not be part of it.
+	 *
+	 * @return the snapshot.
+	 ************************************************************************/
+
+	public Snapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = this.buckets[i].sum();
+		}
+		return new Snapshot(counts, this.totalNanos.sum());
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram{" +
+				"snapshot=" + snapshot() +
+				'}';
+	}
+
+	/*****************************************************************************
+	 * An immutable copy of the histogram at one point in time.
+	 ****************************************************************************/
+
+	public static final class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long totalNanos;
+
+		Snapshot(long[] counts, long totalNanos) {
+			super();
+			long count = 0;
+			for (long c : counts) {
+				count += c;
+			}
+			this.counts = counts;
+			this.count = count;
+			this.totalNanos = totalNanos;
+		}
+
+		/*************************************************************************
+		 * Gets the number of recorded values.
+		 *
+		 * @return the count.
+		 ************************************************************************/
+
+		public long getCount() {
+			return this.count;
+		}
+
+		/*************************************************************************
+		 * Gets the sum of all recorded values.
+		 *
+		 * @return the total in nanoseconds.
+		 ************************************************************************/
+
+		public long getTotalNanos() {
+			return this.totalNanos;
+		}
+
+		/*************************************************************************
+		 * Gets the mean of the recorded values.
+		 *
+		 * @return the mean in nanoseconds, 0 if nothing was recorded.
+		 ************************************************************************/
+
+		public double getMeanNanos() {
+			return this.count == 0 ? 0 : (double) this.totalNanos / this.count;
+		}
+
+		/*************************************************************************
+		 * Estimates a percentile of the recorded values.
+		 *
+		 * @param percentile
+		 *            the percentile between 0 and 100.
+		 * @return the upper bound of the bucket the percentile falls into in
+		 *         nanoseconds, 0 if nothing was recorded.
+		 ************************************************************************/
+
+		public long getPercentileNanos(double percentile) {
+			if (percentile < 0 || percentile > 100) {
+				throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+			}
+			if (this.count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(this.count * percentile / 100));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += this.counts[i];
+				if (seen >= rank) {
+					return getUpperBoundNanos(i);
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		/*************************************************************************
+		 * Gets the number of values recorded in a bucket.
+		 *
+		 * @param bucket
+		 *            the bucket index. Bucket 0 counts the value 0, bucket i
+		 *            the values up to getUpperBoundNanos(i).
+		 * @return the count.
+		 ************************************************************************/
+
+		public long getBucketCount(int bucket) {
+			return this.counts[bucket];
+		}
+
+		/*************************************************************************
+		 * Gets the number of buckets.
+		 *
+		 * @return the number of buckets.
+		 ************************************************************************/
+
+		public int getNumberOfBuckets() {
+			return this.counts.length;
+		}
+
+		/*************************************************************************
+		 * Gets the largest value that is counted in a bucket.
+		 *
+		 * @param bucket
+		 *            the bucket index.
+		 * @return the upper bound in nanoseconds, inclusive.
+		 ************************************************************************/
+
+		public static long getUpperBoundNanos(int bucket) {
+			return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+		}
+
+		@Override
+		public String toString() {
+			return "Snapshot{" +
+					"count=" + count +
+					", meanNanos=" + (long) getMeanNanos() +
+					", p50=" + getPercentileNanos(50) +
+					", p99=" + getPercentileNanos(99) +
+					'}';
+		}
+	}
+
+}
@@ -3,8 +3,6 @@ package com.github.markusbernhardt.proxy.util;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import com.github.markusbernhardt.proxy.selector.fixed.FixedProxySelector;
@@ -23,7 +21,9 @@ public class ProxyUtil {
 
 	public static final int DEFAULT_PROXY_PORT = 80;
 
-	private static List<Proxy> noProxyList;
+	private static final List<Proxy> NO_PROXY_LIST = ImmutableProxyList.of(Proxy.NO_PROXY);
+
+	private static volatile HostResolver hostResolver = new CachingHostResolver(HostResolver.SYSTEM);
 
 	/*************************************************************************
 	 * Parse host and port out of a proxy variable.
@@ -65,13 +65,32 @@ public class ProxyUtil {
 	 * @return a list with a DIRECT proxy in it.
 	 ************************************************************************/
 
-	public static synchronized List<Proxy> noProxyList() {
-		if (noProxyList == null) {
-			ArrayList<Proxy> list = new ArrayList<Proxy>(1);
-			list.add(Proxy.NO_PROXY);
-			noProxyList = Collections.unmodifiableList(list);
-		}
-		return noProxyList;
+	public static List<Proxy> noProxyList() {
+		return NO_PROXY_LIST;
+	}
+
+	/*************************************************************************
+	 * Gets the resolver used to look up host names by the PAC script methods
+	 * and the whitelist filters. Per default this is a CachingHostResolver
+	 * using the system name service.
+	 * 
+	 * @return the host resolver.
+	 ************************************************************************/
+
+	public static HostResolver getHostResolver() {
+		return hostResolver;
+	}
+
+	/*************************************************************************
+	 * Sets the resolver used to look up host names by the PAC script methods
+	 * and the whitelist filters.
+	 * 
+	 * @param resolver
+	 *            the resolver to use, null to restore the default.
+	 ************************************************************************/
+
+	public static void setHostResolver(HostResolver resolver) {
+		hostResolver = resolver != null ? resolver : new CachingHostResolver(HostResolver.SYSTEM);
 	}
 
 	/*************************************************************************
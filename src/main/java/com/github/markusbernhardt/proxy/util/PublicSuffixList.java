@@ -0,0 +1,245 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.markusbernhardt.proxy.util.Logger.LogLevel;
+
+/*****************************************************************************
+ * The public suffix list from <a href="https://publicsuffix.org/">
+ * publicsuffix.org</a>. It is used to find the registrable domain of a host,
+ * e.g. <code>example.co.uk</code> for <code>img1.cdn.example.co.uk</code>.<br>
+ * A copy of the list is bundled with this library. The rules are kept in an
+ * open addressing hash table that is probed with parts of the host name
+ * directly, so a lookup does not allocate any objects.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class PublicSuffixList {
+
+	private static final String RESOURCE = "public_suffix_list.dat";
+
+	// Rule types, a suffix can have more than one.
+	private static final byte RULE = 1;
+	private static final byte WILDCARD = 2;
+	private static final byte EXCEPTION = 4;
+
+	private final String[] suffixes;
+	private final byte[] types;
+	private final int mask;
+
+	/*****************************************************************************
+	 * Loads the bundled list on first use.
+	 ****************************************************************************/
+
+	private static final class Holder {
+		static final PublicSuffixList INSTANCE = loadBundled();
+	}
+
+	private PublicSuffixList(List<String> rules) {
+		super();
+		int capacity = Integer.highestOneBit(Math.max(16, rules.size() * 2) - 1) << 1;
+		this.suffixes = new String[capacity];
+		this.types = new byte[capacity];
+		this.mask = capacity - 1;
+		for (String rule : rules) {
+			add(rule);
+		}
+	}
+
+	/*************************************************************************
+	 * Gets the public suffix list bundled with this library.
+	 *
+	 * @return the list.
+	 ************************************************************************/
+
+	public static PublicSuffixList getDefault() {
+		return Holder.INSTANCE;
+	}
+
+	/*************************************************************************
+	 * Reads a public suffix list in the format of publicsuffix.org.
+	 *
+	 * @param in
+	 *            the list in UTF-8 encoding. The stream is not closed.
+	 * @return the list.
+	 * @throws IOException
+	 *             on read errors.
+	 ************************************************************************/
+
+	public static PublicSuffixList load(InputStream in) throws IOException {
+		List<String> rules = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			// A rule ends at the first white space.
+			int end = 0;
+			while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+				end++;
+			}
+			if (end > 0 && !line.startsWith("//")) {
+				rules.add(line.substring(0, end));
+			}
+		}
+		return new PublicSuffixList(rules);
+	}
+
+	private static PublicSuffixList loadBundled() {
+		InputStream in = PublicSuffixList.class.getResourceAsStream(RESOURCE);
+		try {
+			if (in == null) {
+				throw new IOException("Resource not found: " + RESOURCE);
+			}
+			return load(in);
+		} catch (IOException e) {
+			Logger.log(PublicSuffixList.class, LogLevel.WARNING,
+			        "Public suffix list not available, using the top level domains only.", e);
+			return new PublicSuffixList(new ArrayList<String>());
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	private void add(String rule) {
+		byte type = RULE;
+		if (rule.startsWith("!")) {
+			type = EXCEPTION;
+			rule = rule.substring(1);
+		} else if (rule.startsWith("*.")) {
+			type = WILDCARD;
+			rule = rule.substring(2);
+		}
+		try {
+			// Host names in URIs are in the ASCII form, so store the rules that way.
+			rule = IDN.toASCII(rule, IDN.ALLOW_UNASSIGNED);
+		} catch (IllegalArgumentException e) {
+			Logger.log(getClass(), LogLevel.DEBUG, "Ignoring public suffix rule {}", rule);
+			return;
+		}
+		if (rule.isEmpty()) {
+			return;
+		}
+		int slot = find(rule, 0, rule.length());
+		if (this.suffixes[slot] == null) {
+			this.suffixes[slot] = rule;
+		}
+		this.types[slot] |= type;
+	}
+
+	/*************************************************************************
+	 * Finds the slot of a suffix or the free slot where it would go.
+	 ************************************************************************/
+
+	private int find(String s, int start, int end) {
+		int slot = hash(s, start, end) & this.mask;
+		while (true) {
+			String suffix = this.suffixes[slot];
+			if (suffix == null
+			        || (suffix.length() == end - start && suffix.regionMatches(true, 0, s, start, end - start))) {
+				return slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+	}
+
+	private byte typeOf(String s, int start, int end) {
+		return this.types[find(s, start, end)];
+	}
+
+	private static int hash(String s, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+			h = 31 * h + c;
+		}
+		return h ^ (h >>> 16);
+	}
+
+	/*************************************************************************
+	 * Gets the index where the registrable domain starts in a host name. That
+	 * is the public suffix of the host plus one more label. Hosts that are
+	 * public suffixes themselves, single labels and IP addresses are returned
+	 * as a whole.
+	 *
+	 * @param host
+	 *            the host name.
+	 * @return the start index of the registrable domain, 0 for the whole host.
+	 ************************************************************************/
+
+	public int getRegistrableDomainStart(String host) {
+		int end = host.length();
+		if (end > 0 && host.charAt(end - 1) == '.') {
+			end--;
+		}
+		if (IpAddressUtil.isLiteral(host)) {
+			return 0;
+		}
+
+		// Try the suffixes from the longest to the shortest, the first match
+		// is the public suffix. Without any match the top level domain is.
+		int suffixStart = -1;
+		for (int start = 0; start < end && suffixStart == -1; start = nextLabel(host, start, end)) {
+			if ((typeOf(host, start, end) & EXCEPTION) != 0) {
+				// The exception itself is registrable.
+				return start;
+			}
+			if ((typeOf(host, start, end) & RULE) != 0) {
+				suffixStart = start;
+			} else {
+				int parent = nextLabel(host, start, end);
+				if (parent < end && (typeOf(host, parent, end) & WILDCARD) != 0) {
+					suffixStart = start;
+				}
+			}
+		}
+		if (suffixStart == -1) {
+			suffixStart = host.lastIndexOf('.', end - 1) + 1;
+		}
+		if (suffixStart < 2) {
+			return 0;
+		}
+		return host.lastIndexOf('.', suffixStart - 2) + 1;
+	}
+
+	private static int nextLabel(String host, int start, int end) {
+		int dot = host.indexOf('.', start);
+		return dot == -1 || dot >= end ? end : dot + 1;
+	}
+
+	/*************************************************************************
+	 * Gets the registrable domain of a host name.
+	 *
+	 * @param host
+	 *            the host name.
+	 * @return the registrable domain, or the host itself if it has none.
+	 * @see #getRegistrableDomainStart(String)
+	 ************************************************************************/
+
+	public String getRegistrableDomain(String host) {
+		return host.substring(getRegistrableDomainStart(host));
+	}
+
+	@Override
+	public String toString() {
+		return "PublicSuffixList{" +
+				"capacity=" + suffixes.length +
+				'}';
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.net.URI;
+
+/*****************************************************************************
+ * The parts of an URI the URI filters look at, parsed once per select so
+ * that the filters do not derive them again one by one. The host is taken
+ * from the authority without the port and is in lower case. If the host is an
+ * IP address literal the address is parsed as well, like in IpAddressUtil an
+ * IPv4 address is an unsigned 32 bit value and an IPv6 address a pair of
+ * longs. IPv4 mapped IPv6 addresses are treated as IPv4 addresses.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public final class RequestTarget {
+
+	private final URI uri;
+	private final String scheme;
+	private final String host;
+	private final int port;
+	private final boolean ipLiteral;
+	private final boolean ipv6;
+	private final long addressHi;
+	private final long addressLo;
+
+	/*************************************************************************
+	 * Constructor
+	 ************************************************************************/
+
+	private RequestTarget(URI uri, String scheme, String host, int port, boolean ipLiteral, boolean ipv6,
+	        long addressHi, long addressLo) {
+		super();
+		this.uri = uri;
+		this.scheme = scheme;
+		this.host = host;
+		this.port = port;
+		this.ipLiteral = ipLiteral;
+		this.ipv6 = ipv6;
+		this.addressHi = addressHi;
+		this.addressLo = addressLo;
+	}
+
+	/*************************************************************************
+	 * Parses an URI.
+	 *
+	 * @param uri
+	 *            the URI, not null.
+	 * @return the parsed target.
+	 ************************************************************************/
+
+	public static RequestTarget of(URI uri) {
+		String host = null;
+		String authority = uri.getAuthority();
+		if (authority != null) {
+			// Strip away port take special care for IP6.
+			int bracket = authority.lastIndexOf(']');
+			int index = bracket == -1 ? authority.indexOf(':') : authority.indexOf(':', bracket);
+			if (index != -1) {
+				authority = authority.substring(0, index);
+			}
+			host = authority.toLowerCase();
+		}
+
+		String literal = uri.getHost();
+		if (IpAddressUtil.isLiteral(literal)) {
+			long ipv4 = IpAddressUtil.parseIpv4(literal);
+			if (ipv4 != IpAddressUtil.INVALID) {
+				return new RequestTarget(uri, uri.getScheme(), host, uri.getPort(), true, false, 0, ipv4);
+			}
+			long[] ipv6 = new long[2];
+			if (IpAddressUtil.parseIpv6(literal, ipv6)) {
+				if (ipv6[0] == 0 && (ipv6[1] >>> 32) == 0xFFFFL) {
+					return new RequestTarget(uri, uri.getScheme(), host, uri.getPort(), true, false, 0,
+					        ipv6[1] & 0xFFFFFFFFL);
+				}
+				return new RequestTarget(uri, uri.getScheme(), host, uri.getPort(), true, true, ipv6[0], ipv6[1]);
+			}
+		}
+		return new RequestTarget(uri, uri.getScheme(), host, uri.getPort(), false, false, 0, 0);
+	}
+
+	/*************************************************************************
+	 * Gets the parsed URI.
+	 *
+	 * @return the URI.
+	 ************************************************************************/
+
+	public URI getUri() {
+		return this.uri;
+	}
+
+	/*************************************************************************
+	 * Gets the scheme of the URI as it is.
+	 *
+	 * @return the scheme, null for a relative URI.
+	 ************************************************************************/
+
+	public String getScheme() {
+		return this.scheme;
+	}
+
+	/*************************************************************************
+	 * Gets the host in lower case. It is the authority without the port, so
+	 * IPv6 addresses keep their square brackets.
+	 *
+	 * @return the host, null if the URI has no authority.
+	 ************************************************************************/
+
+	public String getHost() {
+		return this.host;
+	}
+
+	/*************************************************************************
+	 * Gets the port of the URI.
+	 *
+	 * @return the port, -1 if the URI has none.
+	 ************************************************************************/
+
+	public int getPort() {
+		return this.port;
+	}
+
+	/*************************************************************************
+	 * Checks if the host is an IP address literal.
+	 *
+	 * @return true for an IP address.
+	 ************************************************************************/
+
+	public boolean isIpLiteral() {
+		return this.ipLiteral;
+	}
+
+	/*************************************************************************
+	 * Checks if the host is an IPv6 address literal.
+	 *
+	 * @return true for an IPv6 address, false for an IPv4 address or a host
+	 *         name.
+	 ************************************************************************/
+
+	public boolean isIpv6() {
+		return this.ipv6;
+	}
+
+	/*************************************************************************
+	 * Gets the high 64 bits of an IPv6 address literal.
+	 *
+	 * @return the address bits, 0 for IPv4 addresses and host names.
+	 ************************************************************************/
+
+	public long getAddressHi() {
+		return this.addressHi;
+	}
+
+	/*************************************************************************
+	 * Gets the low 64 bits of an IPv6 address literal or an IPv4 address
+	 * literal as unsigned 32 bit value.
+	 *
+	 * @return the address bits, 0 for host names.
+	 ************************************************************************/
+
+	public long getAddressLo() {
+		return this.addressLo;
+	}
+
+	@Override
+	public String toString() {
+		return "RequestTarget{" +
+				"scheme=" + scheme +
+				", host=" + host +
+				", port=" + port +
+				", ipLiteral=" + ipLiteral +
+				'}';
+	}
+
+}
@@ -0,0 +1,295 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*****************************************************************************
+ * A bounded map that evicts entries which were not used recently. The keys are
+ * spread over a number of segments, each one a ConcurrentHashMap with its own
+ * lock. Lookups take no lock, they only set the reference bit of the entry.
+ * Inserts and removals lock the segment of the key. A full segment evicts with
+ * the clock algorithm: the hand walks over the entries, clears set reference
+ * bits and evicts the first entry without one. This approximates least
+ * recently used eviction in amortized constant time.<br>
+ * The size bound is per segment, so the cache may evict a little earlier than
+ * at maxSize if the keys are not evenly spread.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class SegmentedLruCache<K, V> {
+
+	// Keep the segments large enough to make the eviction order meaningful.
+	private static final int MIN_SEGMENT_SIZE = 32;
+	private static final int MAX_SEGMENTS = 64;
+
+	private final Segment<K, V>[] segments;
+	private final int segmentMask;
+	private final int maxSize;
+	private final LongAdder evictions;
+
+	/*****************************************************************************
+	 * A cached value with its reference bit and its position on the clock.
+	 ****************************************************************************/
+
+	private static final class Node<K, V> {
+
+		final K key;
+		volatile V value;
+		volatile boolean referenced;
+
+		// Guarded by the segment.
+		int slot;
+
+		Node(K key, V value) {
+			super();
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/*****************************************************************************
+	 * One part of the cache. The map is read without a lock, the clock and all
+	 * changes of the map are guarded by the segment's monitor.
+	 ****************************************************************************/
+
+	private static final class Segment<K, V> {
+
+		private static final int INITIAL_SLOTS = 16;
+
+		final ConcurrentHashMap<K, Node<K, V>> map;
+		private final int capacity;
+		private final LongAdder evictions;
+
+		// The nodes in the slots 0 to size - 1, in clock order.
+		private Node<K, V>[] clock;
+		private int size;
+		private int hand;
+
+		Segment(int capacity, LongAdder evictions) {
+			super();
+			this.map = new ConcurrentHashMap<K, Node<K, V>>();
+			this.capacity = capacity;
+			this.evictions = evictions;
+			this.clock = newSlots(Math.min(capacity, INITIAL_SLOTS));
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <K, V> Node<K, V>[] newSlots(int length) {
+			return new Node[length];
+		}
+
+		synchronized void put(K key, V value) {
+			Node<K, V> node = this.map.get(key);
+			if (node != null) {
+				node.value = value;
+				return;
+			}
+			node = new Node<K, V>(key, value);
+			if (this.size < this.capacity) {
+				if (this.size == this.clock.length) {
+					this.clock = Arrays.copyOf(this.clock, Math.min(this.capacity, this.size * 2));
+				}
+				node.slot = this.size;
+				this.clock[this.size++] = node;
+			} else {
+				int slot = advanceToVictim();
+				this.map.remove(this.clock[slot].key, this.clock[slot]);
+				this.evictions.increment();
+				node.slot = slot;
+				this.clock[slot] = node;
+				this.hand = slot + 1 == this.size ? 0 : slot + 1;
+			}
+			this.map.put(key, node);
+		}
+
+		private int advanceToVictim() {
+			// Ends after at most one round, the first round clears all bits.
+			while (true) {
+				Node<K, V> node = this.clock[this.hand];
+				if (!node.referenced) {
+					return this.hand;
+				}
+				node.referenced = false;
+				this.hand = this.hand + 1 == this.size ? 0 : this.hand + 1;
+			}
+		}
+
+		synchronized void remove(K key) {
+			Node<K, V> node = this.map.remove(key);
+			if (node == null) {
+				return;
+			}
+			// Move the last node into the free slot, the slots stay dense.
+			Node<K, V> last = this.clock[--this.size];
+			this.clock[this.size] = null;
+			if (last != node) {
+				last.slot = node.slot;
+				this.clock[node.slot] = last;
+			}
+			if (this.hand >= this.size) {
+				this.hand = 0;
+			}
+		}
+
+		synchronized void clear() {
+			this.map.clear();
+			this.clock = newSlots(Math.min(this.capacity, INITIAL_SLOTS));
+			this.size = 0;
+			this.hand = 0;
+		}
+	}
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param maxSize
+	 *            the maximum number of entries.
+	 ************************************************************************/
+
+	@SuppressWarnings("unchecked")
+	public SegmentedLruCache(int maxSize) {
+		super();
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Cache size must be at least 1.");
+		}
+		int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maxSize / MIN_SEGMENT_SIZE)));
+		this.evictions = new LongAdder();
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			this.segments[i] = new Segment<K, V>(maxSize / count + (i < maxSize % count ? 1 : 0), this.evictions);
+		}
+		this.segmentMask = count - 1;
+		this.maxSize = maxSize;
+	}
+
+	private Segment<K, V> segmentFor(Object key) {
+		int h = key.hashCode();
+		// Spread the high bits, the low ones are used by the segment map too.
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		return this.segments[(h >>> 24) & this.segmentMask];
+	}
+
+	/*************************************************************************
+	 * Gets a value and marks it as recently used. Takes no lock.
+	 *
+	 * @param key
+	 *            the key.
+	 * @return the value or null if not cached.
+	 ************************************************************************/
+
+	public V get(K key) {
+		Node<K, V> node = segmentFor(key).map.get(key);
+		if (node == null) {
+			return null;
+		}
+		// Only write if needed, hot entries then stay shared in the CPU caches.
+		if (!node.referenced) {
+			node.referenced = true;
+		}
+		return node.value;
+	}
+
+	/*************************************************************************
+	 * Stores a value. If the segment is full an entry that was not used
+	 * recently is evicted.
+	 *
+	 * @param key
+	 *            the key.
+	 * @param value
+	 *            the value.
+	 ************************************************************************/
+
+	public void put(K key, V value) {
+		segmentFor(key).put(key, value);
+	}
+
+	/*************************************************************************
+	 * Removes a value.
+	 *
+	 * @param key
+	 *            the key.
+	 ************************************************************************/
+
+	public void remove(K key) {
+		segmentFor(key).remove(key);
+	}
+
+	/*************************************************************************
+	 * Removes all values.
+	 ************************************************************************/
+
+	public void clear() {
+		for (Segment<K, V> segment : this.segments) {
+			segment.clear();
+		}
+	}
+
+	/*************************************************************************
+	 * Gets a copy of all entries. The segments are read without a lock, so
+	 * the copy is not a consistent view of the whole cache.
+	 *
+	 * @return the entries.
+	 ************************************************************************/
+
+	public List<Map.Entry<K, V>> entries() {
+		List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>();
+		for (Segment<K, V> segment : this.segments) {
+			for (Node<K, V> node : segment.map.values()) {
+				entries.add(new AbstractMap.SimpleImmutableEntry<K, V>(node.key, node.value));
+			}
+		}
+		return entries;
+	}
+
+	/*************************************************************************
+	 * Gets the number of cached values.
+	 *
+	 * @return the size.
+	 ************************************************************************/
+
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : this.segments) {
+			size += segment.map.size();
+		}
+		return size;
+	}
+
+	/*************************************************************************
+	 * Gets the maximum number of values.
+	 *
+	 * @return the maximum size.
+	 ************************************************************************/
+
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/*************************************************************************
+	 * Gets the number of values that were evicted because their segment was
+	 * full.
+	 *
+	 * @return the number of evictions.
+	 ************************************************************************/
+
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "SegmentedLruCache{" +
+				"segments=" + segments.length +
+				", maxSize=" + maxSize +
+				", size=" + size() +
+				'}';
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.util.Map;
+
+/*****************************************************************************
+ * An immutable snapshot of the statistics of a proxy selector. The snapshot
+ * classes have typed getters, this interface gives a generic view on them,
+ * e.g. for the JMX export.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public interface SelectorStats {
+
+	/*************************************************************************
+	 * Gets all values of the snapshot by name.
+	 *
+	 * @return the values in a fixed order. The names are the same for every
+	 *         snapshot of the same class.
+	 ************************************************************************/
+
+	public Map<String, Number> toMap();
+
+}
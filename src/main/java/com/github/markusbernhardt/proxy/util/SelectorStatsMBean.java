@@ -0,0 +1,104 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/*****************************************************************************
+ * Exports the statistics of a proxy selector as a JMX MBean. Every value of
+ * the statistics snapshot is a read only attribute. A new snapshot is taken
+ * for every attribute request, so the values are always current.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class SelectorStatsMBean implements DynamicMBean {
+
+	private final Supplier<? extends SelectorStats> stats;
+	private final MBeanInfo info;
+
+	/*************************************************************************
+	 * Constructor
+	 *
+	 * @param description
+	 *            the description of the MBean.
+	 * @param stats
+	 *            takes a snapshot of the statistics, e.g.
+	 *            <code>selector::getStats</code>.
+	 ************************************************************************/
+
+	public SelectorStatsMBean(String description, Supplier<? extends SelectorStats> stats) {
+		super();
+		this.stats = stats;
+		Map<String, Number> values = stats.get().toMap();
+		MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+		int i = 0;
+		for (Entry<String, Number> e : values.entrySet()) {
+			attributes[i++] = new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true,
+			        false, false);
+		}
+		this.info = new MBeanInfo(getClass().getName(), description, attributes, null,
+		        new MBeanOperationInfo[0], null);
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException, MBeanException,
+	        ReflectionException {
+		Number value = this.stats.get().toMap().get(attribute);
+		if (value == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		Map<String, Number> values = this.stats.get().toMap();
+		AttributeList result = new AttributeList();
+		for (String name : attributes) {
+			Number value = values.get(name);
+			if (value != null) {
+				result.add(new Attribute(name, value));
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Attribute " + attribute.getName() + " is read only.");
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		return this.info;
+	}
+
+	@Override
+	public String toString() {
+		return "SelectorStatsMBean{" +
+				"stats=" + stats.get() +
+				'}';
+	}
+
+}
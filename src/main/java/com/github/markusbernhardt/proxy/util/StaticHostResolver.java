@@ -0,0 +1,72 @@
+package com.github.markusbernhardt.proxy.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*****************************************************************************
+ * An in-memory host resolver that only knows the hosts added to it. IP address
+ * literals are always resolved. This can be used to run PAC scripts and
+ * filters without any network access, e.g. in tests and benchmarks.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class StaticHostResolver implements HostResolver {
+
+	private final Map<String, InetAddress[]> hosts = new ConcurrentHashMap<String, InetAddress[]>();
+
+	/*************************************************************************
+	 * Adds a host to this resolver.
+	 *
+	 * @param host
+	 *            the host name.
+	 * @param addresses
+	 *            the IP address literals the host resolves to.
+	 * @return this resolver for chaining.
+	 ************************************************************************/
+
+	public StaticHostResolver add(String host, String... addresses) {
+		if (addresses.length == 0) {
+			throw new IllegalArgumentException("At least one address is required for " + host);
+		}
+		InetAddress[] result = new InetAddress[addresses.length];
+		for (int i = 0; i < addresses.length; i++) {
+			if (!IpAddressUtil.isLiteral(addresses[i])) {
+				throw new IllegalArgumentException("Not an IP address: " + addresses[i]);
+			}
+			try {
+				InetAddress address = InetAddress.getByName(addresses[i]);
+				result[i] = InetAddress.getByAddress(host, address.getAddress());
+			} catch (UnknownHostException e) {
+				throw new IllegalArgumentException("Not an IP address: " + addresses[i], e);
+			}
+		}
+		this.hosts.put(host.toLowerCase(Locale.ROOT), result);
+		return this;
+	}
+
+	/*************************************************************************
+	 * resolveAll
+	 *
+	 * @see com.github.markusbernhardt.proxy.util.HostResolver#resolveAll(java.lang.String)
+	 ************************************************************************/
+
+	@Override
+	public InetAddress[] resolveAll(String host) throws UnknownHostException {
+		if (host == null) {
+			throw new UnknownHostException("null");
+		}
+		InetAddress[] result = this.hosts.get(host.toLowerCase(Locale.ROOT));
+		if (result != null) {
+			return result.clone();
+		}
+		if (IpAddressUtil.isLiteral(host)) {
+			return InetAddress.getAllByName(host);
+		}
+		throw new UnknownHostException(host);
+	}
+
+}
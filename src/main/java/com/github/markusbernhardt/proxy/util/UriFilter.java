@@ -21,4 +21,18 @@ public interface UriFilter {
 
 	public abstract boolean accept(URI uri);
 
+	/*************************************************************************
+	 * Tests an URI that was already parsed against a given matching criteria.
+	 * Filters should override this to use the parsed parts instead of
+	 * deriving them from the URI again.
+	 * 
+	 * @param target
+	 *            the parsed URI to test.
+	 * @return true if it matches the criteria else false.
+	 ************************************************************************/
+
+	public default boolean accept(RequestTarget target) {
+		return accept(target.getUri());
+	}
+
 }
@@ -1,11 +1,16 @@
 package com.github.markusbernhardt.proxy;
 
+import java.lang.management.ManagementFactory;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
@@ -14,6 +19,8 @@ import org.slf4j.LoggerFactory;
 import com.github.markusbernhardt.proxy.ProxySearch.Strategy;
 import com.github.markusbernhardt.proxy.selector.fixed.FixedProxySelector;
 import com.github.markusbernhardt.proxy.selector.misc.ProtocolDispatchSelector;
+import com.github.markusbernhardt.proxy.selector.pac.PacProxySelector;
+import com.github.markusbernhardt.proxy.selector.pac.PacScriptSource;
 import com.github.markusbernhardt.proxy.util.ProxyException;
 
 class ProxySearchTest {
@@ -83,4 +90,50 @@ class ProxySearchTest {
         Assertions
             .assertThat(proxies.get(0).toString()).matches("HTTP @ custom@localhost\\.com(\\/<unresolved>)?:1234");
     }
+
+    @Test
+    void testJmxExport() throws URISyntaxException, JMException {
+        final PacScriptSource source = new PacScriptSource() {
+
+            @Override
+            public String getScriptContent() {
+                return "function FindProxyForURL(url, host) { return \"PROXY proxy.unit-test.invalid:8080\"; }";
+            }
+
+            @Override
+            public boolean isScriptValid() {
+                return true;
+            }
+        };
+        ProxySearch proxySearch = new ProxySearch();
+        proxySearch.addStrategy(new ProxySearchStrategy() {
+
+            @Override
+            public ProxySelector getProxySelector() throws ProxyException {
+                return new PacProxySelector(source);
+            }
+
+            @Override
+            public String getName() {
+                return "pac";
+            }
+        }, false);
+        proxySearch.setJmxEnabled(true);
+
+        ProxySelector selector = proxySearch.getProxySelector();
+        selector.select(new URI("http://host.unit-test.invalid/"));
+        selector.select(new URI("http://host.unit-test.invalid/"));
+
+        List<ObjectName> names = proxySearch.getRegisteredMBeans();
+        Assertions.assertThat(names).hasSize(3);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName cache = names.get(1);
+        Assertions.assertThat(cache.getKeyProperty("type")).isEqualTo("BufferedProxySelector");
+        Assertions.assertThat(server.getAttribute(cache, "HitCount")).isEqualTo(1L);
+        Assertions.assertThat(server.getAttribute(names.get(0), "EvaluationCount")).isEqualTo(1L);
+        Assertions.assertThat(server.getAttribute(names.get(2), "SelectCount")).isEqualTo(2L);
+
+        proxySearch.unregisterMBeans();
+        Assertions.assertThat(server.isRegistered(cache)).isFalse();
+    }
 }
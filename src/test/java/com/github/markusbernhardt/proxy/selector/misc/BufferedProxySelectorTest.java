@@ -0,0 +1,407 @@
+package com.github.markusbernhardt.proxy.selector.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.markusbernhardt.proxy.TestUtil;
+import com.github.markusbernhardt.proxy.selector.misc.BufferedProxySelector.CacheScope;
+import com.github.markusbernhardt.proxy.util.SegmentedLruCache;
+
+/*****************************************************************************
+ * Unit Tests for the BufferedProxySelector
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class BufferedProxySelectorTest {
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testCacheHit() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(10, 60000, delegate, CacheScope.CACHE_SCOPE_HOST);
+
+		List<Proxy> result = selector.select(TestUtil.HTTP_TEST_URI);
+		assertSame(result, selector.select(TestUtil.HTTPS_TEST_URI));
+		assertEquals(1, delegate.count.get());
+		assertEquals(TestUtil.HTTP_TEST_PROXY, result.get(0));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(2, 60000, delegate, CacheScope.CACHE_SCOPE_HOST);
+
+		selector.select(URI.create("http://a.unit-test.invalid/"));
+		selector.select(URI.create("http://b.unit-test.invalid/"));
+		selector.select(URI.create("http://a.unit-test.invalid/"));
+		selector.select(URI.create("http://c.unit-test.invalid/"));
+		assertEquals(3, delegate.count.get());
+
+		// a was used after b, so b is gone.
+		selector.select(URI.create("http://a.unit-test.invalid/"));
+		assertEquals(3, delegate.count.get());
+		selector.select(URI.create("http://b.unit-test.invalid/"));
+		assertEquals(4, delegate.count.get());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testExpiredEntryIsSelectedAgain() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(10, 0, delegate, CacheScope.CACHE_SCOPE_HOST);
+
+		selector.select(TestUtil.HTTP_TEST_URI);
+		selector.select(TestUtil.HTTP_TEST_URI);
+		assertEquals(2, delegate.count.get());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testHostPortScope() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(10, 60000, delegate,
+		        CacheScope.CACHE_SCOPE_HOST_PORT);
+
+		selector.select(URI.create("http://a.unit-test.invalid:8080/x"));
+		selector.select(URI.create("http://a.unit-test.invalid:8080/y"));
+		selector.select(URI.create("http://a.unit-test.invalid:9090/x"));
+		assertEquals(2, delegate.count.get());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+	@Test
+	public void testConcurrentMissesAreCoalesced() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		CountingSelector delegate = new CountingSelector() {
+			@Override
+			public List<Proxy> select(URI uri) {
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.select(uri);
+			}
+		};
+		final BufferedProxySelector selector = new BufferedProxySelector(10, 60000, delegate,
+		        CacheScope.CACHE_SCOPE_HOST);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<Proxy>>> results = new ArrayList<Future<List<Proxy>>>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> selector.select(TestUtil.HTTP_TEST_URI)));
+			}
+			long deadline = System.currentTimeMillis() + 10000;
+			while (selector.getCoalescedLoads() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+
+			List<Proxy> first = results.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<List<Proxy>> result : results) {
+				assertSame(first, result.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, delegate.count.get());
+			assertEquals(3, selector.getCoalescedLoads());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testRefreshAhead() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(10, 60000, delegate, CacheScope.CACHE_SCOPE_HOST);
+		selector.setRefreshAhead(60000);
+		selector.setRefreshExecutor(Runnable::run);
+
+		List<Proxy> first = selector.select(TestUtil.HTTP_TEST_URI);
+		// In the refresh window, the current entry is returned and reloaded.
+		assertSame(first, selector.select(TestUtil.HTTP_TEST_URI));
+		assertEquals(2, delegate.count.get());
+		assertEquals(1, selector.getRefreshCount());
+		assertNotSame(first, selector.select(TestUtil.HTTP_TEST_URI));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testStaleWhileRevalidate() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(10, 0, delegate, CacheScope.CACHE_SCOPE_HOST);
+		selector.setStaleWhileRevalidate(60000);
+		Queue<Runnable> refreshes = new ArrayDeque<Runnable>();
+		selector.setRefreshExecutor(refreshes::add);
+
+		List<Proxy> first = selector.select(TestUtil.HTTP_TEST_URI);
+		assertSame(first, selector.select(TestUtil.HTTP_TEST_URI));
+		assertSame(first, selector.select(TestUtil.HTTP_TEST_URI));
+		// Only one refresh is started while one is pending.
+		assertEquals(1, refreshes.size());
+		assertEquals(1, delegate.count.get());
+
+		refreshes.poll().run();
+		assertEquals(2, delegate.count.get());
+		assertNotSame(first, selector.select(TestUtil.HTTP_TEST_URI));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testStaleEntryIsUsedIfDelegateFails() {
+		CountingSelector delegate = new CountingSelector() {
+			@Override
+			public List<Proxy> select(URI uri) {
+				if (this.count.get() > 0) {
+					throw new IllegalStateException("Delegate failed");
+				}
+				return super.select(uri);
+			}
+		};
+		BufferedProxySelector selector = new BufferedProxySelector(10, 0, delegate, CacheScope.CACHE_SCOPE_HOST);
+		selector.setStaleWhileRevalidate(60000);
+		selector.setRefreshExecutor(Runnable::run);
+
+		List<Proxy> first = selector.select(TestUtil.HTTP_TEST_URI);
+		assertSame(first, selector.select(TestUtil.HTTP_TEST_URI));
+		assertSame(first, selector.select(TestUtil.HTTP_TEST_URI));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testDomainScope() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(10, 60000, delegate,
+		        CacheScope.CACHE_SCOPE_DOMAIN);
+
+		List<Proxy> result = selector.select(URI.create("http://img1.cdn.example.co.uk/"));
+		assertSame(result, selector.select(URI.create("http://img2.cdn.example.co.uk/")));
+		assertSame(result, selector.select(URI.create("https://example.co.uk/")));
+		assertEquals(1, delegate.count.get());
+
+		selector.select(URI.create("http://www.other.co.uk/"));
+		assertEquals(2, delegate.count.get());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testCustomKeyFunction() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(10, 60000, delegate, uri -> uri.getScheme());
+
+		selector.select(URI.create("http://a.unit-test.invalid/"));
+		selector.select(URI.create("http://b.unit-test.invalid/"));
+		selector.select(URI.create("ftp://a.unit-test.invalid/"));
+		assertEquals(2, delegate.count.get());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testStats() {
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(2, 60000, delegate, CacheScope.CACHE_SCOPE_HOST);
+
+		selector.select(URI.create("http://a.unit-test.invalid/"));
+		selector.select(URI.create("http://a.unit-test.invalid/"));
+		selector.select(URI.create("http://b.unit-test.invalid/"));
+		selector.select(URI.create("http://c.unit-test.invalid/"));
+
+		CacheStats stats = selector.getStats();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(3, stats.getMissCount());
+		assertEquals(0.25, stats.getHitRate());
+		assertEquals(1, stats.getEvictionCount());
+		assertEquals(3, stats.getLoadCount());
+		assertEquals(0, stats.getLoadFailureCount());
+		assertEquals(2, stats.getSize());
+		assertEquals(2, stats.getMaxSize());
+		assertEquals(stats.getHitCount(), stats.toMap().get("HitCount"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @param dir
+	 *            a temporary folder.
+	 * @throws IOException
+	 *             on snapshot write errors.
+	 ************************************************************************/
+	@Test
+	public void testSnapshot(@TempDir File dir) throws IOException {
+		File file = new File(dir, "pac-cache.bin");
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector selector = new BufferedProxySelector(10, 60000, delegate, CacheScope.CACHE_SCOPE_HOST);
+		assertEquals(0, selector.enableSnapshot(file, "script-1", 0));
+		selector.select(URI.create("http://a.unit-test.invalid/"));
+		selector.select(URI.create("http://b.unit-test.invalid/"));
+		assertEquals(2, selector.writeSnapshot());
+		selector.disableSnapshot();
+
+		BufferedProxySelector restarted = new BufferedProxySelector(10, 60000, delegate,
+		        CacheScope.CACHE_SCOPE_HOST);
+		assertEquals(2, restarted.enableSnapshot(file, "script-1", 0));
+		List<Proxy> a = restarted.select(URI.create("http://a.unit-test.invalid/"));
+		assertEquals(a, restarted.select(URI.create("http://b.unit-test.invalid/")));
+		assertEquals(Arrays.asList(TestUtil.HTTP_TEST_PROXY), a);
+		assertEquals(2, delegate.count.get());
+		restarted.disableSnapshot();
+
+		// A snapshot of another script is not used.
+		BufferedProxySelector changed = new BufferedProxySelector(10, 60000, delegate, CacheScope.CACHE_SCOPE_HOST);
+		assertEquals(0, changed.enableSnapshot(file, "script-2", 0));
+		changed.select(URI.create("http://a.unit-test.invalid/"));
+		assertEquals(3, delegate.count.get());
+		changed.disableSnapshot();
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @param dir
+	 *            a temporary folder.
+	 * @throws IOException
+	 *             on snapshot write errors.
+	 ************************************************************************/
+	@Test
+	public void testSnapshotOfOtherScope(@TempDir File dir) throws IOException {
+		File file = new File(dir, "pac-cache.bin");
+		CountingSelector delegate = new CountingSelector();
+		BufferedProxySelector domain = new BufferedProxySelector(10, 60000, delegate, CacheScope.CACHE_SCOPE_DOMAIN);
+		domain.enableSnapshot(file, "script-1", 0);
+		domain.select(URI.create("http://www.example.com/"));
+		domain.disableSnapshot();
+
+		// The key example.com means something else in the host scope.
+		BufferedProxySelector host = new BufferedProxySelector(10, 60000, delegate, CacheScope.CACHE_SCOPE_HOST);
+		assertEquals(0, host.enableSnapshot(file, "script-1", 0));
+		host.disableSnapshot();
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @param dir
+	 *            a temporary folder.
+	 ************************************************************************/
+	@Test
+	public void testSnapshotHasOneOwner(@TempDir File dir) {
+		File file = new File(dir, "pac-cache.bin");
+		CountingSelector delegate = new CountingSelector();
+		final BufferedProxySelector first = new BufferedProxySelector(10, 60000, delegate,
+		        CacheScope.CACHE_SCOPE_HOST);
+		first.enableSnapshot(file, "script-1", 0);
+		first.select(URI.create("http://a.unit-test.invalid/"));
+
+		// The new selector takes the file over and starts with the decisions of the first one.
+		BufferedProxySelector second = new BufferedProxySelector(10, 60000, delegate, CacheScope.CACHE_SCOPE_HOST);
+		assertEquals(1, second.enableSnapshot(file, "script-1", 0));
+		assertThrows(IllegalStateException.class, () -> first.writeSnapshot());
+		second.disableSnapshot();
+
+		// No temporary files are left behind.
+		assertEquals(Arrays.asList("pac-cache.bin"), Arrays.asList(dir.list()));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testCacheStaysBounded() {
+		SegmentedLruCache<String, String> cache = new SegmentedLruCache<String, String>(1000);
+		for (int i = 0; i < 10000; i++) {
+			cache.put("host" + i, "value" + i);
+		}
+		assertEquals(true, cache.size() <= 1000);
+		assertEquals("value9999", cache.get("host9999"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testCacheKeepsRecentlyUsed() {
+		// A single segment, so the eviction order is predictable.
+		SegmentedLruCache<String, String> cache = new SegmentedLruCache<String, String>(32);
+		for (int i = 0; i < 32; i++) {
+			cache.put("host" + i, "value" + i);
+		}
+		assertEquals("value0", cache.get("host0"));
+		cache.put("host32", "value32");
+		assertEquals("value0", cache.get("host0"));
+		assertEquals(null, cache.get("host1"));
+		assertEquals(1, cache.getEvictionCount());
+
+		cache.remove("host2");
+		cache.put("host33", "value33");
+		assertEquals(32, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals("value31", cache.get("host31"));
+	}
+
+	private static class CountingSelector extends ProxySelector {
+
+		final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public List<Proxy> select(URI uri) {
+			this.count.incrementAndGet();
+			return Arrays.asList(TestUtil.HTTP_TEST_PROXY);
+		}
+
+		@Override
+		public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+			// Not used
+		}
+	}
+
+}
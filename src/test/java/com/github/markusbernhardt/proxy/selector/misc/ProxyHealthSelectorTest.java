@@ -0,0 +1,228 @@
+package com.github.markusbernhardt.proxy.selector.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.markusbernhardt.proxy.TestUtil;
+import com.github.markusbernhardt.proxy.selector.misc.ProxyHealthSelector.ProxyHealth;
+import com.github.markusbernhardt.proxy.selector.misc.ProxyHealthSelector.State;
+import com.github.markusbernhardt.proxy.util.ImmutableProxyList;
+
+/*****************************************************************************
+ * Unit Tests for the ProxyHealthSelector
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class ProxyHealthSelectorTest {
+
+	private static Proxy proxy(int port) {
+		return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("127.0.0.1", port));
+	}
+
+	private static ProxySelector fixed(final List<Proxy> proxies) {
+		return new ProxySelector() {
+			@Override
+			public List<Proxy> select(URI uri) {
+				return proxies;
+			}
+
+			@Override
+			public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+				// Not used on the delegate
+			}
+		};
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testOrderByLatency() {
+		Proxy slow = proxy(1001);
+		Proxy fast = proxy(1002);
+		List<Proxy> list = ImmutableProxyList.of(slow, fast, Proxy.NO_PROXY);
+		ProxyHealthSelector selector = new ProxyHealthSelector(fixed(list));
+
+		// Nothing known, the order of the delegate is kept.
+		assertSame(list, selector.select(TestUtil.HTTP_TEST_URI));
+
+		selector.reportSuccess(slow.address(), TimeUnit.MILLISECONDS.toNanos(50));
+		selector.reportSuccess(fast.address(), TimeUnit.MILLISECONDS.toNanos(1));
+		List<Proxy> result = selector.select(TestUtil.HTTP_TEST_URI);
+		assertEquals(3, result.size());
+		assertEquals(fast, result.get(0));
+		assertEquals(slow, result.get(1));
+		assertEquals(Proxy.NO_PROXY, result.get(2));
+
+		// Errors weigh more than a few milliseconds of latency.
+		selector.connectFailed(TestUtil.HTTP_TEST_URI, fast.address(), new IOException("TEST"));
+		result = selector.select(TestUtil.HTTP_TEST_URI);
+		assertEquals(slow, result.get(0));
+		assertEquals(fast, result.get(1));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testResolvedAddressSharesHealth() {
+		Proxy proxy = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("LocalHost", 1003));
+		ProxyHealthSelector selector = new ProxyHealthSelector(fixed(ImmutableProxyList.of(proxy)));
+		selector.select(TestUtil.HTTP_TEST_URI);
+
+		// The connect reports the resolved address, the PAC script the host name in another case.
+		selector.reportFailure(new InetSocketAddress("localhost", 1003));
+		assertEquals(1, selector.getHealth(proxy.address()).getConsecutiveFailures());
+		assertTrue(selector.toString().contains("health=1"), selector.toString());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testDirectKeepsItsPlace() {
+		Proxy a = proxy(1011);
+		Proxy b = proxy(1012);
+		Proxy c = proxy(1013);
+		Proxy d = proxy(1014);
+		List<Proxy> list = ImmutableProxyList.of(a, b, Proxy.NO_PROXY, c, d);
+		ProxyHealthSelector selector = new ProxyHealthSelector(fixed(list));
+		selector.setFailureThreshold(1);
+
+		// Only the proxies between the DIRECT entries are reordered.
+		selector.reportSuccess(a.address(), TimeUnit.MILLISECONDS.toNanos(50));
+		selector.reportSuccess(b.address(), TimeUnit.MILLISECONDS.toNanos(1));
+		selector.reportSuccess(d.address(), TimeUnit.MILLISECONDS.toNanos(1));
+		selector.reportSuccess(c.address(), TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(ImmutableProxyList.of(b, a, Proxy.NO_PROXY, d, c), selector.select(TestUtil.HTTP_TEST_URI));
+
+		// An open proxy is dropped, DIRECT stays before the later proxies.
+		selector.reportFailure(a.address());
+		selector.reportFailure(b.address());
+		assertEquals(ImmutableProxyList.of(Proxy.NO_PROXY, d, c), selector.select(TestUtil.HTTP_TEST_URI));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testIdleProxiesAreDropped() {
+		ProxyHealthSelector selector = new ProxyHealthSelector(fixed(ImmutableProxyList.of(Proxy.NO_PROXY)));
+		for (int i = 0; i < 300; i++) {
+			selector.reportSuccess(proxy(2000 + i).address(), 1);
+		}
+		// New proxies are still tracked, older ones made room for them.
+		assertNotNull(selector.getHealth(proxy(2299).address()));
+		assertTrue(selector.toString().contains("health=256"), selector.toString());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testCircuitBreaker() throws InterruptedException {
+		Proxy first = proxy(1001);
+		Proxy second = proxy(1002);
+		ProxyHealthSelector selector = new ProxyHealthSelector(fixed(ImmutableProxyList.of(first, second)));
+		selector.setFailureThreshold(2);
+		selector.setOpenDuration(100);
+
+		selector.reportFailure(first.address());
+		assertEquals(State.CLOSED, selector.getHealth(first.address()).getState());
+		selector.reportFailure(first.address());
+		assertEquals(State.OPEN, selector.getHealth(first.address()).getState());
+		List<Proxy> result = selector.select(TestUtil.HTTP_TEST_URI);
+		assertEquals(1, result.size());
+		assertEquals(second, result.get(0));
+
+		// After the open duration the proxy is on trial, behind the healthy one.
+		Thread.sleep(150);
+		result = selector.select(TestUtil.HTTP_TEST_URI);
+		assertEquals(2, result.size());
+		assertEquals(second, result.get(0));
+		assertEquals(first, result.get(1));
+		assertEquals(State.HALF_OPEN, selector.getHealth(first.address()).getState());
+
+		// A failed trial opens it again for longer, a success closes it.
+		selector.reportFailure(first.address());
+		assertEquals(State.OPEN, selector.getHealth(first.address()).getState());
+		Thread.sleep(150);
+		assertEquals(State.OPEN, selector.getHealth(first.address()).getState());
+		selector.reportSuccess(first.address(), 1000);
+		ProxyHealth health = selector.getHealth(first.address());
+		assertEquals(State.CLOSED, health.getState());
+		assertEquals(0, health.getConsecutiveFailures());
+
+		// Only DIRECT is left if all proxies are open.
+		selector.reportFailure(second.address());
+		selector.reportFailure(second.address());
+		selector.reportFailure(first.address());
+		selector.reportFailure(first.address());
+		result = selector.select(TestUtil.HTTP_TEST_URI);
+		assertEquals(1, result.size());
+		assertEquals(Proxy.NO_PROXY, result.get(0));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testProbes() throws IOException, InterruptedException {
+		InetAddress loopback = InetAddress.getByName("127.0.0.1");
+		try (ServerSocket up = new ServerSocket(0, 50, loopback)) {
+			ServerSocket down = new ServerSocket(0, 50, loopback);
+			Proxy upProxy = proxy(up.getLocalPort());
+			Proxy downProxy = proxy(down.getLocalPort());
+			down.close();
+
+			ProxyHealthSelector selector = new ProxyHealthSelector(fixed(ImmutableProxyList.of(downProxy, upProxy)));
+			selector.setFailureThreshold(2);
+			selector.setProbeTimeout(1000);
+			// The probes only know the proxies the delegate has returned.
+			selector.select(TestUtil.HTTP_TEST_URI);
+
+			selector.probeAll();
+			selector.probeAll();
+			ProxyHealth upHealth = selector.getHealth(upProxy.address());
+			assertNotNull(upHealth);
+			assertEquals(State.CLOSED, upHealth.getState());
+			assertFalse(Double.isNaN(upHealth.getLatencyNanos()));
+			assertEquals(State.OPEN, selector.getHealth(downProxy.address()).getState());
+
+			List<Proxy> result = selector.select(TestUtil.HTTP_TEST_URI);
+			assertEquals(1, result.size());
+			assertEquals(upProxy, result.get(0));
+
+			// The background probe notices when the proxy is back, long before the open duration.
+			try (ServerSocket back = new ServerSocket(down.getLocalPort(), 50, loopback)) {
+				selector.setProbeInterval(20);
+				long deadline = System.currentTimeMillis() + 5000;
+				while (selector.getHealth(downProxy.address()).getState() != State.CLOSED
+				        && System.currentTimeMillis() < deadline) {
+					Thread.sleep(20);
+				}
+				selector.setProbeInterval(0);
+				assertEquals(State.CLOSED, selector.getHealth(downProxy.address()).getState());
+				assertTrue(selector.select(TestUtil.HTTP_TEST_URI).contains(downProxy));
+			}
+		}
+	}
+
+}
@@ -1,8 +1,11 @@
 package com.github.markusbernhardt.proxy.selector.misc;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.SocketAddress;
@@ -16,6 +19,7 @@ import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
 
 import com.github.markusbernhardt.proxy.TestUtil;
+import com.github.markusbernhardt.proxy.util.ImmutableProxyList;
 
 /*****************************************************************************
  * Unit Tests for the ProxyListFallbackSelector
@@ -125,4 +129,91 @@ public class ProxyListFallbackSelectorTest {
         assertEquals(TestUtil.HTTPS_TEST_PROXY, result.get(1));
     }
 
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testStats() {
+		ProxyListFallbackSelector fallback = new ProxyListFallbackSelector(new ProxySelector() {
+			@Override
+			public List<Proxy> select(URI uri) {
+				return Arrays.asList(TestUtil.HTTP_TEST_PROXY, TestUtil.HTTPS_TEST_PROXY);
+			}
+
+			@Override
+			public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+				// Not used on the delegate
+			}
+		});
+		fallback.select(TestUtil.HTTP_TEST_URI);
+		fallback.connectFailed(TestUtil.HTTP_TEST_URI, TestUtil.HTTP_TEST_PROXY.address(), new IOException("TEST"));
+		fallback.select(TestUtil.HTTP_TEST_URI);
+
+		FallbackStats stats = fallback.getStats();
+		assertEquals(2, stats.getSelectCount());
+		assertEquals(1, stats.getConnectFailedCount());
+		assertEquals(1, stats.getFilteredProxyCount());
+		assertEquals(1, stats.getUnresponsiveProxyCount());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testListsArePassedThroughAndCached() {
+		final List<Proxy> proxies = ImmutableProxyList.of(TestUtil.HTTP_TEST_PROXY, TestUtil.HTTPS_TEST_PROXY);
+		ProxyListFallbackSelector fallback = new ProxyListFallbackSelector(new ProxySelector() {
+			@Override
+			public List<Proxy> select(URI uri) {
+				return proxies;
+			}
+
+			@Override
+			public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+				// Not used on the delegate
+			}
+		});
+		assertSame(proxies, fallback.select(TestUtil.HTTP_TEST_URI));
+
+		fallback.connectFailed(TestUtil.HTTP_TEST_URI, TestUtil.HTTP_TEST_PROXY.address(), new IOException("TEST"));
+		List<Proxy> filtered = fallback.select(TestUtil.HTTP_TEST_URI);
+		assertEquals(Arrays.asList(TestUtil.HTTPS_TEST_PROXY), filtered);
+		assertSame(filtered, fallback.select(TestUtil.HTTP_TEST_URI));
+		assertEquals(2, fallback.getStats().getFilteredProxyCount());
+
+		// A new failure invalidates the cached list.
+		fallback.connectFailed(TestUtil.HTTP_TEST_URI, TestUtil.HTTPS_TEST_PROXY.address(), new IOException("TEST"));
+		assertEquals(Proxy.NO_PROXY, fallback.select(TestUtil.HTTP_TEST_URI).get(0));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws IOException
+	 *             on errors creating the test address.
+	 ************************************************************************/
+	@Test
+	public void testResolvedAddressMatchesProxy() throws IOException {
+		final Proxy byHost = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("Proxy.Unit-Test.invalid",
+		        8080));
+		final Proxy byIp = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("127.0.0.1", 3128));
+		ProxyListFallbackSelector fallback = new ProxyListFallbackSelector(new ProxySelector() {
+			@Override
+			public List<Proxy> select(URI uri) {
+				return Arrays.asList(byHost, byIp, TestUtil.HTTP_TEST_PROXY);
+			}
+
+			@Override
+			public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+				// Not used on the delegate
+			}
+		});
+		InetAddress loopback = InetAddress.getByAddress("proxy.unit-test.invalid", new byte[] { 127, 0, 0, 1 });
+		fallback.connectFailed(TestUtil.HTTP_TEST_URI, new InetSocketAddress(loopback, 8080), new IOException("TEST"));
+		assertEquals(Arrays.asList(byIp, TestUtil.HTTP_TEST_PROXY), fallback.select(TestUtil.HTTP_TEST_URI));
+
+		fallback.connectFailed(TestUtil.HTTP_TEST_URI, new InetSocketAddress(loopback, 3128), new IOException("TEST"));
+		assertEquals(Arrays.asList(TestUtil.HTTP_TEST_PROXY), fallback.select(TestUtil.HTTP_TEST_URI));
+	}
+
 }
@@ -1,6 +1,7 @@
 package com.github.markusbernhardt.proxy.selector.pac;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.Calendar;
 
@@ -178,6 +179,76 @@ public class JavaxPacScriptParserTest {
         Assertions.assertThatThrownBy(()-> p.evaluate(TestUtil.HTTP_TEST_URI.toString(), "host.does.not.matter")).isInstanceOf(Exception.class);
     }
 
+    /*************************************************************************
+     * Test that the URL is passed as argument to the script and not spliced into the script text.
+     * 
+     * @throws ProxyException
+     *             on proxy detection error.
+     * @throws MalformedURLException
+     *             on URL erros
+     ************************************************************************/
+    @Test
+    public void urlShouldNotBeSplicedIntoScript() throws ProxyException, MalformedURLException {
+        PacScriptParser p = new JavaxPacScriptParser(new UrlPacScriptSource(toUrl("test1.pac")));
+        String result = p.evaluate("http://host1.unit-test.invalid/\");alert(\"", "host1.unit-test.invalid");
+        Assertions.assertThat(result).isEqualTo("PROXY http_proxy.unit-test.invalid:8090");
+    }
+
+    /*************************************************************************
+     * Test that the compiled script is reused until the script content changes.
+     * 
+     * @throws ProxyException
+     *             on proxy detection error.
+     ************************************************************************/
+    @Test
+    public void scriptShouldBeCompiledAgainOnChange() throws ProxyException {
+        StringPacScriptSource source = new StringPacScriptSource(
+                "var counter = 0; function FindProxyForURL(url, host) { counter++; return \"PROXY a:\" + counter; }");
+        PacScriptParser p = new JavaxPacScriptParser(source);
+        Assertions.assertThat(p.evaluate("http://host1/", "host1")).isEqualTo("PROXY a:1");
+        Assertions.assertThat(p.evaluate("http://host1/", "host1")).isEqualTo("PROXY a:2");
+
+        // Same content in a new string instance keeps the compiled script
+        source.content = new String(source.content);
+        Assertions.assertThat(p.evaluate("http://host1/", "host1")).isEqualTo("PROXY a:3");
+
+        source.content = "function FindProxyForURL(url, host) { return \"PROXY b:\" + host; }";
+        Assertions.assertThat(p.evaluate("http://host1/", "host1")).isEqualTo("PROXY b:host1");
+    }
+
+    /*************************************************************************
+     * Test that a script without entry point is reported as error.
+     ************************************************************************/
+    @Test
+    public void scriptWithoutEntryPointShouldFail() throws ProxyException {
+        PacScriptParser p = new JavaxPacScriptParser(new StringPacScriptSource("var FindProxyForURL = 42;"));
+        Assertions.assertThatThrownBy(() -> p.evaluate("http://host1/", "host1"))
+                .isInstanceOf(ProxyEvaluationException.class);
+    }
+
+    /*************************************************************************
+     * Simple in memory script source for the tests.
+     ************************************************************************/
+
+    private static class StringPacScriptSource implements PacScriptSource {
+
+        private String content;
+
+        StringPacScriptSource(String content) {
+            this.content = content;
+        }
+
+        @Override
+        public String getScriptContent() throws IOException {
+            return this.content;
+        }
+
+        @Override
+        public boolean isScriptValid() {
+            return true;
+        }
+    }
+
     /*************************************************************************
      * Helper method to build the url to the given test file
      * 
@@ -0,0 +1,212 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.markusbernhardt.proxy.TestUtil;
+
+/*****************************************************************************
+ * Tests for the native PAC script parser.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class NativePacScriptParserTest {
+
+    private static final String SUBSET_SCRIPT = "// Typical PAC script\n"
+            + "var PROXY = \"PROXY proxy.unit-test.invalid:8080\";\n"
+            + "var FALLBACK = PROXY + \"; DIRECT\";\n"
+            + "function FindProxyForURL(url, host) {\n"
+            + "  var lhost = host.toLowerCase();\n"
+            + "  if (isPlainHostName(lhost) || dnsDomainIs(lhost, \".intra.invalid\"))\n"
+            + "    return \"DIRECT\";\n"
+            + "  else if (shExpMatch(lhost, \"*.local\") && !shExpMatch(url, \"https:*\")) {\n"
+            + "    return 'DIRECT'\n"
+            + "  }\n"
+            + "  if (isInNet(lhost, \"10.0.0.0\", \"255.0.0.0\")) { return \"PROXY internal.invalid:3128\"; }\n"
+            + "  if (url.substring(0, 4) == \"ftp:\") return \"SOCKS socks.invalid:1080\";\n"
+            + "  if (dnsDomainLevels(lhost) > 3 && lhost.indexOf(\"deep\") != -1) return FALLBACK;\n"
+            + "  return lhost.length >= 20 ? FALLBACK : PROXY;\n"
+            + "}\n";
+
+    /*************************************************************************
+     * Test method
+     *
+     * @throws Exception
+     *             on error.
+     ************************************************************************/
+    @Test
+    public void testSubsetScriptMatchesScriptEngine() throws Exception {
+        PacScriptSource source = new StringPacScriptSource(SUBSET_SCRIPT);
+        NativePacScriptParser nativeParser = new NativePacScriptParser(source);
+        JavaxPacScriptParser scriptParser = new JavaxPacScriptParser(source);
+        assertTrue(nativeParser.isNative());
+
+        String[][] requests = { { "http://intranet/", "intranet" },
+                { "http://www.intra.invalid/", "www.intra.invalid" }, { "http://printer.local/", "printer.local" },
+                { "https://printer.local/", "PRINTER.local" }, { "http://10.1.2.3/", "10.1.2.3" },
+                { "ftp://ftp.unit-test.invalid/", "ftp.unit-test.invalid" },
+                { "http://a.deep.unit-test.invalid/", "a.deep.unit-test.invalid" },
+                { "http://www.unit-test.invalid/", "www.unit-test.invalid" }, { "http://x.invalid/", "x.invalid" } };
+        for (String[] request : requests) {
+            assertEquals(scriptParser.evaluate(request[0], request[1]), nativeParser.evaluate(request[0], request[1]),
+                    request[0]);
+        }
+        assertEquals(requests.length, nativeParser.getNativeCount());
+        assertEquals(0, nativeParser.getFallbackCount());
+    }
+
+    /*************************************************************************
+     * Test method
+     *
+     * @throws Exception
+     *             on error.
+     ************************************************************************/
+    @Test
+    public void testSimpleScriptFileIsNative() throws Exception {
+        NativePacScriptParser p = new NativePacScriptParser(new UrlPacScriptSource(toUrl("test1.pac")));
+        assertEquals("PROXY http_proxy.unit-test.invalid:8090",
+                p.evaluate(TestUtil.HTTP_TEST_URI.toString(), "host1.unit-test.invalid"));
+        assertTrue(p.isNative());
+    }
+
+    /*************************************************************************
+     * Test method
+     *
+     * @throws Exception
+     *             on error.
+     ************************************************************************/
+    @Test
+    public void testUnsupportedScriptUsesFallback() throws Exception {
+        NativePacScriptParser p = new NativePacScriptParser(new UrlPacScriptSource(toUrl("testReturnTypes.pac")));
+        assertEquals("number boolean string", p.evaluate(TestUtil.HTTP_TEST_URI.toString(), "host1.unit-test.invalid"));
+        assertFalse(p.isNative());
+        assertEquals(1, p.getFallbackCount());
+    }
+
+    /*************************************************************************
+     * Test method
+     *
+     * @throws Exception
+     *             on error.
+     ************************************************************************/
+    @Test
+    public void testUnsupportedConstructs() throws Exception {
+        String[] scripts = { "function FindProxyForURL(url, host) { alert(host); return \"DIRECT\"; }",
+                "function FindProxyForURL(url, host) { return weekdayRange(\"MON\", \"FRI\") ? \"DIRECT\" : \"\"; }",
+                "function FindProxyForURL(url, host) { return \"PROXY p:\" + 80; }",
+                "function FindProxyForURL(url, host) { if (host) return \"DIRECT\"; }",
+                "function FindProxyForURL(url, host) { for (;;) {} }",
+                "function helper() {} function FindProxyForURL(url, host) { return \"DIRECT\"; }" };
+        for (String script : scripts) {
+            NativePacScriptParser p = new NativePacScriptParser(new StringPacScriptSource(script),
+                    new FixedResultParser("FALLBACK"));
+            assertFalse(p.isNative(), script);
+            assertEquals("FALLBACK", p.evaluate("http://host/", "host"));
+        }
+    }
+
+    /*************************************************************************
+     * Test method
+     *
+     * @throws Exception
+     *             on error.
+     ************************************************************************/
+    @Test
+    public void testShadowModeReportsMismatches() throws Exception {
+        NativePacScriptParser p = new NativePacScriptParser(
+                new StringPacScriptSource("function FindProxyForURL(url, host) { return \"DIRECT\"; }"),
+                new FixedResultParser("PROXY other.invalid:80"));
+        p.setShadowMode(true);
+        assertEquals("PROXY other.invalid:80", p.evaluate("http://host/", "host"));
+        assertEquals(1, p.getMismatchCount());
+
+        p.setShadowMode(false);
+        assertEquals("DIRECT", p.evaluate("http://host/", "host"));
+        assertEquals(1, p.getMismatchCount());
+    }
+
+    /*************************************************************************
+     * Test method
+     *
+     * @throws Exception
+     *             on error.
+     ************************************************************************/
+    @Test
+    public void testScriptIsCompiledAgainOnChange() throws Exception {
+        StringPacScriptSource source = new StringPacScriptSource(
+                "function FindProxyForURL(url, host) { return \"DIRECT\"; }");
+        NativePacScriptParser p = new NativePacScriptParser(source, new FixedResultParser("FALLBACK"));
+        assertEquals("DIRECT", p.evaluate("http://host/", "host"));
+
+        source.content = "function FindProxyForURL(url, host) { return \"PROXY new.invalid:80\"; }";
+        assertEquals("PROXY new.invalid:80", p.evaluate("http://host/", "host"));
+    }
+
+    /*************************************************************************
+     * Fallback parser returning always the same result.
+     ************************************************************************/
+
+    private static class FixedResultParser implements PacScriptParser {
+
+        private final String result;
+
+        FixedResultParser(String result) {
+            this.result = result;
+        }
+
+        @Override
+        public PacScriptSource getScriptSource() {
+            return null;
+        }
+
+        @Override
+        public String evaluate(String url, String host) {
+            return this.result;
+        }
+    }
+
+    /*************************************************************************
+     * Script source for a script given as string.
+     ************************************************************************/
+
+    private static class StringPacScriptSource implements PacScriptSource {
+
+        private String content;
+
+        StringPacScriptSource(String content) {
+            this.content = content;
+        }
+
+        @Override
+        public String getScriptContent() throws IOException {
+            return this.content;
+        }
+
+        @Override
+        public boolean isScriptValid() {
+            return true;
+        }
+    }
+
+    /*************************************************************************
+     * Helper method to build the url to the given test file
+     *
+     * @param testFile
+     *            the name of the test file.
+     * @return the URL.
+     * @throws MalformedURLException
+     ************************************************************************/
+
+    private String toUrl(String testFile) throws MalformedURLException {
+        return new File(TestUtil.TEST_DATA_FOLDER + "pac", testFile).toURI().toURL().toString();
+    }
+
+}
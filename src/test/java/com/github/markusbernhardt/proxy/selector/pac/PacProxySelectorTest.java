@@ -1,6 +1,8 @@
 package com.github.markusbernhardt.proxy.selector.pac;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.File;
 import java.io.IOException;
@@ -11,7 +13,9 @@ import java.net.Proxy.Type;
 import java.net.ProxySelector;
 import java.net.SocketAddress;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -133,6 +137,134 @@ public class PacProxySelectorTest {
 		assertEquals(new Proxy(Type.SOCKS, InetSocketAddress.createUnresolved("my-proxy6.com", 80)), result.get(5));
 	}
 
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws ProxyException
+	 *             on proxy detection error.
+	 * @throws MalformedURLException
+	 *             on URL erros
+	 ************************************************************************/
+	@Test
+	public void testSameResultReturnsSharedList() throws ProxyException, MalformedURLException {
+		PacProxySelector pacProxySelector = new PacProxySelector(new UrlPacScriptSource(toUrl("testMultiProxy.pac")));
+		List<Proxy> result = pacProxySelector.select(TestUtil.HTTP_TEST_URI);
+		assertSame(result, pacProxySelector.select(TestUtil.HTTPS_TEST_URI));
+		assertThrows(UnsupportedOperationException.class, () -> result.remove(0));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws ProxyException
+	 *             on proxy detection error.
+	 * @throws MalformedURLException
+	 *             on URL erros
+	 ************************************************************************/
+	@Test
+	public void testEvaluationLimits() throws ProxyException, MalformedURLException {
+		PacScriptSource source = new UrlPacScriptSource(toUrl("testTimeout.pac"));
+		String url = TestUtil.HTTPS_TEST_URI.toString();
+		String host = TestUtil.HTTPS_TEST_URI.getHost();
+
+		JavaxPacScriptParser deadline = new JavaxPacScriptParser(source, 200, 0);
+		assertThrows(PacEvaluationTimeoutException.class, () -> deadline.evaluate(url, host));
+
+		JavaxPacScriptParser budget = new JavaxPacScriptParser(source, 0, 100000);
+		assertThrows(PacEvaluationTimeoutException.class, () -> budget.evaluate(url, host));
+		assertEquals("PROXY http_proxy.unit-test.invalid:8090",
+		        budget.evaluate(TestUtil.HTTP_TEST_URI.toString(), TestUtil.HTTP_TEST_URI.getHost()));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws ProxyException
+	 *             on proxy detection error.
+	 * @throws MalformedURLException
+	 *             on URL erros
+	 ************************************************************************/
+	@Test
+	public void testTimeoutFallback() throws ProxyException, MalformedURLException {
+		PacProxySelector pacProxySelector = new PacProxySelector(new UrlPacScriptSource(toUrl("testTimeout.pac")), 1,
+		        200, 0);
+		List<Proxy> result = pacProxySelector.select(TestUtil.HTTP_TEST_URI);
+		assertEquals(TestUtil.HTTP_TEST_PROXY, result.get(0));
+
+		assertSame(result, pacProxySelector.select(TestUtil.HTTPS_TEST_URI));
+		assertEquals(1, pacProxySelector.getTimeoutCount());
+
+		pacProxySelector.setTimeoutFallback(PacProxySelector.TimeoutFallback.DIRECT);
+		assertEquals(Proxy.NO_PROXY, pacProxySelector.select(TestUtil.HTTPS_TEST_URI).get(0));
+		assertEquals(2, pacProxySelector.getTimeoutCount());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testWithoutSource() {
+		PacProxySelector pacProxySelector = new PacProxySelector(null);
+		assertEquals(Proxy.NO_PROXY, pacProxySelector.select(TestUtil.HTTP_TEST_URI).get(0));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws ProxyException
+	 *             on proxy detection error.
+	 * @throws MalformedURLException
+	 *             on URL erros
+	 ************************************************************************/
+	@Test
+	public void testStats() throws ProxyException, MalformedURLException {
+		PacProxySelector pacProxySelector = new PacProxySelector(new UrlPacScriptSource(toUrl("testTimeout.pac")), 1,
+		        200, 0);
+		pacProxySelector.select(TestUtil.HTTP_TEST_URI);
+		pacProxySelector.select(TestUtil.HTTPS_TEST_URI);
+
+		PacStats stats = pacProxySelector.getStats();
+		assertEquals(2, stats.getEvaluationCount());
+		assertEquals(1, stats.getTimeoutCount());
+		assertEquals(0, stats.getErrorCount());
+		assertEquals(1, stats.getPoolSize());
+		assertEquals(1, stats.getPoolMaxSize());
+		assertEquals(0, stats.getPoolBusyCount());
+		assertEquals(1, stats.getResultCacheSize());
+		assertEquals(1, stats.getLastKnownResultsSize());
+		// The evaluation that timed out took at least the deadline.
+		assertEquals(true, stats.getEvaluationLatency().getPercentileNanos(100) >= 200000000L);
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws ProxyException
+	 *             on proxy detection error.
+	 * @throws MalformedURLException
+	 *             on URL erros
+	 ************************************************************************/
+	@Test
+	public void testSelectAll() throws ProxyException, MalformedURLException {
+		PacProxySelector pacProxySelector = new PacProxySelector(new UrlPacScriptSource(toUrl("testTimeout.pac")), 2,
+		        2000, 0);
+		List<URI> uris = new ArrayList<URI>();
+		for (int i = 0; i < 40; i++) {
+			uris.add(URI.create("http://site" + i + ".unit-test.invalid/"));
+		}
+		uris.add(TestUtil.HTTP_TEST_URI);
+		uris.add(URI.create(TestUtil.HTTP_TEST_URI.toString()));
+
+		Map<URI, List<Proxy>> result = pacProxySelector.selectAll(uris);
+		assertEquals(41, result.size());
+		assertEquals(uris.subList(0, 41), new ArrayList<URI>(result.keySet()));
+		for (URI uri : uris) {
+			assertSame(pacProxySelector.select(TestUtil.HTTP_TEST_URI), result.get(uri));
+		}
+		// One engine per chunk, not per URI.
+		assertEquals(2 + uris.size(), pacProxySelector.getParserPool().getAcquireCount());
+	}
+
 	/*************************************************************************
 	 * Test method for the override local IP feature.
 	 * 
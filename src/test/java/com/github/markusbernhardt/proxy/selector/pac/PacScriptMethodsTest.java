@@ -12,6 +12,7 @@ import java.util.Calendar;
 import org.junit.jupiter.api.Test;
 
 import com.github.markusbernhardt.proxy.TestUtil;
+import com.github.markusbernhardt.proxy.util.StaticHostResolver;
 
 /*****************************************************************************
  * Tests for the global PAC script methods that are used as context inside of
@@ -73,6 +74,21 @@ public class PacScriptMethodsTest {
 		assertEquals(adr.getHostAddress(), buildParser().dnsResolve(adr.getHostName()));
 	}
 
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testDnsMethodsUseHostResolver() {
+		PacScriptMethods methods = new PacScriptMethods(
+		        new StaticHostResolver().add("host1.unit-test.invalid", "10.13.75.47", "10.13.75.48"));
+		assertEquals("10.13.75.47", methods.dnsResolve("host1.unit-test.invalid"));
+		assertEquals("10.13.75.47; 10.13.75.48; ", methods.dnsResolveEx("host1.unit-test.invalid"));
+		assertEquals(true, methods.isResolvable("host1.unit-test.invalid"));
+		assertEquals(true, methods.isInNet("host1.unit-test.invalid", "10.13.72.0", "255.255.252.0"));
+		assertEquals(false, methods.isResolvable("host2.unit-test.invalid"));
+		assertEquals("", methods.dnsResolve("host2.unit-test.invalid"));
+	}
+
 	/*************************************************************************
 	 * Test method
 	 ************************************************************************/
@@ -89,6 +105,16 @@ public class PacScriptMethodsTest {
 		assertEquals(true, buildParser().isInNet("10.13.75.47", "10.13.72.0", "255.255.252.0"));
 	}
 
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testIsInNetWithInvalidPattern() {
+		assertEquals(false, buildParser().isInNet("10.13.75.47", "10.13.72", "255.255.252.0"));
+		assertEquals(false, buildParser().isInNet("10.13.75.47", "10.13.72.0", "mask"));
+		assertEquals(false, buildParser().isInNet("::1", "0.0.0.0", "0.0.0.0"));
+	}
+
 	/*************************************************************************
 	 * Test method
 	 ************************************************************************/
@@ -136,6 +162,17 @@ public class PacScriptMethodsTest {
 		        .sortIpAddressList("2001:4898:28:3:201:2ff:feea:fc14; 157.59.139.22; fe80::5efe:157.59.139.22"));
 	}
 
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testSortIpAddressListOrderAndDuplicates() {
+		assertEquals("200.1.1.1;10.0.0.1;10.0.0.2",
+		        buildParser().sortIpAddressList("10.0.0.2;200.1.1.1; 10.0.0.1 ;10.0.0.2"));
+		assertEquals("", buildParser().sortIpAddressList("10.0.0.1;not an ip"));
+		assertEquals("", buildParser().sortIpAddressList(" "));
+	}
+
 	/*************************************************************************
 	 * Test method
 	 ************************************************************************/
@@ -192,6 +229,20 @@ public class PacScriptMethodsTest {
 		assertEquals(false, buildParser().shExpMatch("202.310.65.6", "*.65"));
 	}
 
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testShExpMatchIsAnchored() {
+		assertEquals(true, buildParser().shExpMatch("unit-test.invalid", "unit-test.invalid"));
+		assertEquals(false, buildParser().shExpMatch("unit-test.invalid.unit-test.invalid", "unit-test.invalid"));
+		assertEquals(false, buildParser().shExpMatch("aba", "a*b*ba"));
+		assertEquals(true, buildParser().shExpMatch("abba", "a*b*ba"));
+		assertEquals(true, buildParser().shExpMatch("http://host/path", "*://*/*"));
+		assertEquals(true, buildParser().shExpMatch("", "*"));
+		assertEquals(false, buildParser().shExpMatch("host", ""));
+	}
+
 	/*************************************************************************
 	 * Test method
 	 ************************************************************************/
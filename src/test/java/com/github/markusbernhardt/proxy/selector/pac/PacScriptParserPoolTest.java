@@ -0,0 +1,105 @@
+package com.github.markusbernhardt.proxy.selector.pac;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.github.markusbernhardt.proxy.TestUtil;
+
+/*****************************************************************************
+ * Tests for the pool of PAC script parsers.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class PacScriptParserPoolTest {
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+	@Test
+	public void testSingleThreadUsesOneParser() throws Exception {
+		PacScriptParserPool pool = new PacScriptParserPool(new UrlPacScriptSource(toUrl("test1.pac")), 4);
+		for (int i = 0; i < 10; i++) {
+			assertEquals("PROXY http_proxy.unit-test.invalid:8090",
+			        pool.evaluate(TestUtil.HTTP_TEST_URI.toString(), "host1.unit-test.invalid"));
+		}
+		assertEquals(1, pool.getSize());
+		assertEquals(0, pool.getBusyCount());
+		assertEquals(10, pool.getAcquireCount());
+		assertEquals(0, pool.getWaitCount());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+	@Test
+	public void testConcurrentEvaluationIsBounded() throws Exception {
+		final PacScriptParserPool pool = new PacScriptParserPool(new UrlPacScriptSource(toUrl("test1.pac")), 2);
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < threads * 10; i++) {
+				results.add(executor.submit(() -> {
+					start.await();
+					return pool.evaluate(TestUtil.HTTP_TEST_URI.toString(), "host1.unit-test.invalid");
+				}));
+			}
+			start.countDown();
+			for (Future<String> result : results) {
+				assertEquals("PROXY http_proxy.unit-test.invalid:8090", result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(pool.getSize() <= 2);
+		assertEquals(0, pool.getBusyCount());
+		assertEquals(threads * 10, pool.getAcquireCount());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+	@Test
+	public void testInvalidPoolSize() throws Exception {
+		String url = toUrl("test1.pac");
+		Assertions.assertThatThrownBy(() -> new PacScriptParserPool(new UrlPacScriptSource(url), 0))
+		        .isInstanceOf(IllegalArgumentException.class);
+	}
+
+	/*************************************************************************
+	 * Helper method to build the url to the given test file
+	 *
+	 * @param testFile
+	 *            the name of the test file.
+	 * @return the URL.
+	 * @throws MalformedURLException
+	 ************************************************************************/
+
+	private String toUrl(String testFile) throws MalformedURLException {
+		return new File(TestUtil.TEST_DATA_FOLDER + "pac", testFile).toURI().toURL().toString();
+	}
+
+}
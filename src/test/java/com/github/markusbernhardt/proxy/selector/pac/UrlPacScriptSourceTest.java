@@ -1,9 +1,23 @@
 package com.github.markusbernhardt.proxy.selector.pac;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
+import com.github.markusbernhardt.proxy.selector.misc.BufferedProxySelector;
+import com.github.markusbernhardt.proxy.selector.misc.BufferedProxySelector.CacheScope;
+import com.sun.net.httpserver.HttpServer;
+
 /*****************************************************************************
  * Tests for the UrlPacScriptSource.
  * 
@@ -57,4 +71,145 @@ public class UrlPacScriptSourceTest {
 		assertEquals(1000, timeout);
 	}
 
+	/*************************************************************************
+	 * Unit Test
+	 * 
+	 * @throws IOException
+	 *             on errors of the test server.
+	 ************************************************************************/
+	@Test
+	public void testChangeListener() throws IOException {
+		ScriptServer server = new ScriptServer(script("PROXY a.unit-test.invalid:8080"));
+		try {
+			UrlPacScriptSource source = new UrlPacScriptSource(server.getUrl());
+			final List<String> hashes = new ArrayList<String>();
+			source.addChangeListener((s, contentHash) -> hashes.add(contentHash));
+
+			String first = source.getScriptContent();
+			assertSame(first, source.getScriptContent());
+			assertEquals(0, hashes.size());
+
+			server.content = script("PROXY b.unit-test.invalid:8080");
+			String second = source.getScriptContent();
+			assertEquals(1, hashes.size());
+			assertEquals(PacProxySelector.hash(second), hashes.get(0));
+		} finally {
+			server.stop();
+		}
+	}
+
+	/*************************************************************************
+	 * Unit Test
+	 * 
+	 * @throws IOException
+	 *             on errors of the test server.
+	 ************************************************************************/
+	@Test
+	public void testScriptChangeInvalidatesCache() throws IOException {
+		ScriptServer server = new ScriptServer(script("PROXY a.unit-test.invalid:8080"));
+		try {
+			UrlPacScriptSource source = new UrlPacScriptSource(server.getUrl());
+			PacProxySelector pacSelector = new PacProxySelector(source, 1);
+			final BufferedProxySelector selector = new BufferedProxySelector(10, 60000, pacSelector,
+			        CacheScope.CACHE_SCOPE_HOST);
+			source.addChangeListener((s, contentHash) -> selector.invalidateAll());
+
+			URI uri = URI.create("http://host1.unit-test.invalid/");
+			assertEquals("a.unit-test.invalid", hostOf(selector.select(uri)));
+
+			// The same script again keeps the cache.
+			selector.select(URI.create("http://host2.unit-test.invalid/"));
+			assertEquals(2, selector.getStats().getSize());
+
+			// The next miss loads the new script and flushes the cache.
+			server.content = script("PROXY b.unit-test.invalid:8080");
+			selector.select(URI.create("http://host3.unit-test.invalid/"));
+			assertEquals("b.unit-test.invalid", hostOf(selector.select(uri)));
+		} finally {
+			server.stop();
+		}
+	}
+
+	/*************************************************************************
+	 * Unit Test
+	 * 
+	 * @throws Exception
+	 *             on errors of the test server.
+	 ************************************************************************/
+	@Test
+	public void testFailedReloadKeepsScript() throws Exception {
+		ScriptServer server = new ScriptServer(script("PROXY a.unit-test.invalid:8080"));
+		try {
+			UrlPacScriptSource source = new UrlPacScriptSource(server.getUrl());
+			source.setRetryDelay(500);
+			final List<String> hashes = new ArrayList<String>();
+			source.addChangeListener((s, contentHash) -> hashes.add(contentHash));
+
+			String first = source.getScriptContent();
+			server.failures = 1;
+			assertSame(first, source.getScriptContent());
+			assertEquals(0, hashes.size());
+
+			// The reload is retried after the delay.
+			server.content = script("PROXY b.unit-test.invalid:8080");
+			assertSame(first, source.getScriptContent());
+			Thread.sleep(600);
+			String second = source.getScriptContent();
+			assertEquals(script("PROXY b.unit-test.invalid:8080"), second.trim());
+			assertEquals(1, hashes.size());
+			assertEquals(PacProxySelector.hash(second), hashes.get(0));
+		} finally {
+			server.stop();
+		}
+	}
+
+	private static String hostOf(List<java.net.Proxy> proxies) {
+		return ((InetSocketAddress) proxies.get(0).address()).getHostString();
+	}
+
+	private static String script(String result) {
+		return "function FindProxyForURL(url, host) { return \"" + result + "\"; }";
+	}
+
+	/*****************************************************************************
+	 * Serves a PAC script that expires right away, so that every access
+	 * downloads it again. It can be told to fail a number of requests.
+	 ****************************************************************************/
+
+	private static class ScriptServer {
+
+		private final HttpServer server;
+		volatile String content;
+		volatile int failures;
+
+		ScriptServer(String content) throws IOException {
+			this.content = content;
+			this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+			this.server.createContext("/proxy.pac", exchange -> {
+				if (this.failures > 0) {
+					this.failures--;
+					exchange.sendResponseHeaders(500, -1);
+					exchange.close();
+					return;
+				}
+				byte[] body = this.content.getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/x-ns-proxy-autoconfig");
+				exchange.getResponseHeaders().add("Expires", "Thu, 01 Jan 1970 00:00:01 GMT");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			});
+			this.server.start();
+		}
+
+		String getUrl() {
+			return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/proxy.pac";
+		}
+
+		void stop() {
+			this.server.stop(0);
+		}
+	}
+
 }
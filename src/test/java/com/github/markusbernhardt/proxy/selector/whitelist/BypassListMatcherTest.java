@@ -0,0 +1,145 @@
+package com.github.markusbernhardt.proxy.selector.whitelist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.markusbernhardt.proxy.selector.whitelist.HostnameFilter.Mode;
+import com.github.markusbernhardt.proxy.util.HostResolver;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.StaticHostResolver;
+import com.github.markusbernhardt.proxy.util.UriFilter;
+
+/*****************************************************************************
+ * Unit tests for the compiled bypass list.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class BypassListMatcherTest {
+
+	private static final String[] URIS = { "http://www.mynet.com/", "http://WWW.MyNet.COM:8080/x",
+	        "https://xmynet.com/", "ftp://intranet.mynet.com/", "http://www.other.org/", "http://web.intra.example/",
+	        "https://web.intra.example/", "http://intra.example:443/", "http://localhost/", "http://127.0.0.1:65/",
+	        "http://192.168.7.12/", "http://[::1]:8080/", "http://user@host.mynet.com/", "file:/tmp/x",
+	        "http://abc123.regex.test/", "http://abc.regex.test/", "http://mynet.com.evil.org/" };
+
+	private static boolean acceptLinear(List<UriFilter> filters, URI uri) {
+		for (UriFilter filter : filters) {
+			if (filter.accept(uri)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testSameResultAsFilterList() {
+		List<UriFilter> filters = new DefaultWhiteListParser()
+		        .parseWhiteList("*.mynet.com, mynet.com, http://web.intra*, localhost, 192.168.0.0/16");
+		filters.add(new HostnameFilter(Mode.REGEX, "abc[0-9]+\\.regex\\.test"));
+		BypassListMatcher matcher = BypassListMatcher.compile(filters);
+
+		for (String uri : URIS) {
+			assertEquals(acceptLinear(filters, URI.create(uri)), matcher.accept(URI.create(uri)), uri);
+		}
+		assertTrue(matcher.accept(URI.create("http://WWW.MyNet.COM:8080/x")));
+		assertTrue(matcher.accept(URI.create("http://web.intra.example/")));
+		assertFalse(matcher.accept(URI.create("https://web.intra.example/")));
+		assertTrue(matcher.accept(URI.create("http://abc123.regex.test/")));
+		assertFalse(matcher.accept(URI.create("http://mynet.com.evil.org/")));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testLargeList() {
+		StringBuilder list = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			list.append(".domain").append(i).append(".example, host").append(i).append(".*, ");
+		}
+		List<UriFilter> filters = new DefaultWhiteListParser().parseWhiteList(list.toString());
+		BypassListMatcher matcher = BypassListMatcher.compile(filters);
+		assertEquals("BypassListMatcher{prefixes=3000, suffixes=3000, ranges=0, resolveHostnames=true, regexes=0, "
+		        + "others=0}", matcher.toString());
+
+		assertTrue(matcher.accept(URI.create("http://www.domain2999.example/")));
+		assertTrue(matcher.accept(URI.create("http://host17.internal/")));
+		assertFalse(matcher.accept(URI.create("http://www.domain3000.example/")));
+		assertFalse(matcher.accept(URI.create("http://host.internal/")));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testIpRanges() {
+		List<UriFilter> filters = new DefaultWhiteListParser().parseWhiteList("10.0.0.0/8, 2001:db8::/32, .corp");
+		BypassListMatcher matcher = BypassListMatcher.compile(filters, false);
+		assertTrue(matcher.accept(URI.create("http://10.20.30.40:8080/")));
+		assertTrue(matcher.accept(URI.create("http://[2001:db8::1]/")));
+		assertFalse(matcher.accept(URI.create("http://11.0.0.1/")));
+
+		HostResolver previous = ProxyUtil.getHostResolver();
+		ProxyUtil.setHostResolver(new StaticHostResolver().add("intranet.unit-test.invalid", "10.1.1.1"));
+		try {
+			// Host names are resolved unless turned off.
+			assertFalse(matcher.accept(URI.create("http://intranet.unit-test.invalid/")));
+			BypassListMatcher resolving = BypassListMatcher.compile(filters);
+			assertTrue(resolving.accept(URI.create("http://intranet.unit-test.invalid/")));
+			assertFalse(resolving.accept(URI.create("http://other.unit-test.invalid/")));
+		} finally {
+			ProxyUtil.setHostResolver(previous);
+		}
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testRegexesAreCombined() {
+		List<UriFilter> filters = new ArrayList<UriFilter>();
+		filters.add(new HostnameFilter(Mode.REGEX, "app[0-9]+\\.example\\.org"));
+		filters.add(new HostnameFilter(Mode.REGEX, "(db|cache)-[a-z]+\\.internal"));
+		filters.add(new HostnameFilter(Mode.REGEX, "https://secure\\..*"));
+		filters.add(new HostnameFilter(Mode.REGEX, "([a-z])\\1\\.twice\\.test"));
+		filters.add(new HostnameFilter(Mode.REGEX, "broken[pattern"));
+		BypassListMatcher matcher = BypassListMatcher.compile(filters);
+		assertEquals("BypassListMatcher{prefixes=0, suffixes=0, ranges=0, resolveHostnames=true, regexes=2, "
+		        + "others=1}", matcher.toString());
+
+		String[] uris = { "http://APP12.example.org:8080/", "http://app.example.org/", "http://db-main.internal/",
+		        "http://web-main.internal/", "https://secure.corp/", "http://secure.corp/", "http://aa.twice.test/",
+		        "http://ab.twice.test/" };
+		for (String uri : uris) {
+			assertEquals(acceptLinear(filters, URI.create(uri)), matcher.accept(URI.create(uri)), uri);
+		}
+		assertTrue(matcher.accept(URI.create("http://db-main.internal/")));
+		assertTrue(matcher.accept(URI.create("http://aa.twice.test/")));
+		assertFalse(matcher.accept(URI.create("http://secure.corp/")));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testWildcardMatchesAll() {
+		List<UriFilter> filters = new ArrayList<UriFilter>();
+		filters.add(new HostnameFilter(Mode.BEGINS_WITH, ""));
+		BypassListMatcher matcher = BypassListMatcher.compile(filters);
+
+		assertTrue(matcher.accept(URI.create("http://any.host/")));
+		assertFalse(matcher.accept(URI.create("file:/tmp/x")));
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.github.markusbernhardt.proxy.selector.whitelist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+
+/*****************************************************************************
+ * Unit tests for the no_proxy matcher.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class NoProxyMatcherTest {
+
+	private static boolean accept(NoProxyMatcher matcher, String uri) {
+		return matcher.accept(URI.create(uri));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testDomains() {
+		NoProxyMatcher matcher = NoProxyMatcher.parse("example.com, .corp.local *.Internal.Test,localhost");
+
+		assertTrue(accept(matcher, "http://example.com/"));
+		assertTrue(accept(matcher, "https://WWW.Example.COM:8443/x"));
+		assertTrue(accept(matcher, "http://example.com./"));
+		assertTrue(accept(matcher, "http://user@www.example.com/"));
+		assertFalse(accept(matcher, "http://badexample.com/"));
+		assertFalse(accept(matcher, "http://example.com.evil.org/"));
+
+		// A leading dot or *. matches the domain itself as well, as in curl.
+		assertTrue(accept(matcher, "http://corp.local/"));
+		assertTrue(accept(matcher, "http://a.b.corp.local/"));
+		assertTrue(accept(matcher, "http://internal.test/"));
+		assertTrue(accept(matcher, "http://web.internal.test/"));
+		assertFalse(accept(matcher, "http://xinternal.test/"));
+
+		assertTrue(accept(matcher, "http://localhost:8080/"));
+		assertFalse(accept(matcher, "http://localhost.example.org/"));
+		assertFalse(accept(matcher, "file:/tmp/x"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testAddresses() {
+		NoProxyMatcher matcher = NoProxyMatcher.parse("10.0.0.0/8,192.168.1.5,[::1],2001:db8::/32,fe80::1");
+
+		assertTrue(accept(matcher, "http://10.20.30.40:8080/"));
+		assertFalse(accept(matcher, "http://11.0.0.1/"));
+		assertTrue(accept(matcher, "http://192.168.1.5/"));
+		assertFalse(accept(matcher, "http://192.168.1.6/"));
+		assertTrue(accept(matcher, "http://[::1]:8080/"));
+		assertTrue(accept(matcher, "http://[2001:db8::7]/"));
+		assertTrue(accept(matcher, "http://[FE80::1]/"));
+		assertTrue(accept(matcher, "http://[::ffff:10.0.0.1]/"));
+		assertFalse(accept(matcher, "http://[2001:db9::1]/"));
+
+		// Host names are not resolved.
+		assertFalse(accept(matcher, "http://intranet.unit-test.invalid/"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testPorts() {
+		NoProxyMatcher matcher = NoProxyMatcher.parse("example.com:8080, .corp:443, 10.1.1.1:80, [::1]:8443");
+
+		assertTrue(accept(matcher, "http://example.com:8080/"));
+		assertTrue(accept(matcher, "http://www.example.com:8080/"));
+		assertFalse(accept(matcher, "http://example.com/"));
+		assertTrue(accept(matcher, "https://web.corp/"));
+		assertFalse(accept(matcher, "http://web.corp/"));
+		assertTrue(accept(matcher, "http://web.corp:443/"));
+		assertTrue(accept(matcher, "http://10.1.1.1/"));
+		assertFalse(accept(matcher, "https://10.1.1.1/"));
+		assertTrue(accept(matcher, "https://[::1]:8443/"));
+		assertFalse(accept(matcher, "https://[::1]/"));
+		assertEquals("NoProxyMatcher{matchAll=false, domains=0, addresses=0, ports=[80, 443, 8080, 8443]}",
+		        matcher.toString());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testWildcardAndInvalidEntries() {
+		NoProxyMatcher all = NoProxyMatcher.parse(" * ");
+		assertTrue(accept(all, "http://any.host/"));
+		assertTrue(accept(all, "http://10.0.0.1/"));
+		assertFalse(accept(all, "file:/tmp/x"));
+
+		NoProxyMatcher matcher = NoProxyMatcher.parse("10.0.0.0/33, host:port, [::1, , ., valid.test");
+		assertEquals("NoProxyMatcher{matchAll=false, domains=1, addresses=0, ports=[]}", matcher.toString());
+		assertTrue(accept(matcher, "http://valid.test/"));
+		assertFalse(accept(matcher, "http://host/"));
+
+		NoProxyMatcher empty = NoProxyMatcher.parse(null);
+		assertFalse(accept(empty, "http://any.host/"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testLargeList() {
+		StringBuilder list = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			list.append(".domain").append(i).append(".example,10.").append(i % 256).append('.').append(i / 256)
+			        .append(".0/24,");
+		}
+		NoProxyMatcher matcher = NoProxyMatcher.parse(list.toString());
+		assertEquals("NoProxyMatcher{matchAll=false, domains=3000, addresses=3000, ports=[]}",
+		        matcher.toString());
+
+		assertTrue(accept(matcher, "http://www.domain2999.example/"));
+		assertFalse(accept(matcher, "http://www.domain3000.example/"));
+		assertFalse(accept(matcher, "http://www.xdomain17.example/"));
+		assertTrue(accept(matcher, "http://10.183.11.7/"));
+		assertFalse(accept(matcher, "http://10.184.11.7/"));
+	}
+
+}
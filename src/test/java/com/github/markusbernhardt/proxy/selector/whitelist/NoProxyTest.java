@@ -12,6 +12,9 @@ import org.junit.jupiter.api.Test;
 
 import com.github.markusbernhardt.proxy.TestUtil;
 import com.github.markusbernhardt.proxy.selector.fixed.FixedProxySelector;
+import com.github.markusbernhardt.proxy.util.HostResolver;
+import com.github.markusbernhardt.proxy.util.ProxyUtil;
+import com.github.markusbernhardt.proxy.util.StaticHostResolver;
 
 /*****************************************************************************
  * Some unit tests for the white list selector.
@@ -111,6 +114,29 @@ public class NoProxyTest {
 		assertEquals(delegate.select(TestUtil.HTTP_TEST_URI).get(0), result.get(0));
 	}
 
+	/*************************************************************************
+	 * Test method
+	 * 
+	 * @throws URISyntaxException
+	 *             on invalid URL syntax.
+	 ************************************************************************/
+	@Test
+	public void testIpRangeResolvesHostnames() throws URISyntaxException {
+		HostResolver previous = ProxyUtil.getHostResolver();
+		ProxyUtil.setHostResolver(new StaticHostResolver().add("intranet.unit-test.invalid", "192.168.0.7"));
+		try {
+			ProxySelector delegate = new FixedProxySelector(TestUtil.HTTP_TEST_PROXY);
+			ProxyBypassListSelector ps = new ProxyBypassListSelector("192.168.0.0/24", delegate);
+			URI uri = new URI("http://intranet.unit-test.invalid/test.data");
+			assertEquals(Proxy.NO_PROXY, ps.select(uri).get(0));
+
+			ps.setResolveHostnames(false);
+			assertEquals(delegate.select(TestUtil.HTTP_TEST_URI).get(0), ps.select(uri).get(0));
+		} finally {
+			ProxyUtil.setHostResolver(previous);
+		}
+	}
+
 	/*************************************************************************
 	 * Test method for issue 31
 	 * 
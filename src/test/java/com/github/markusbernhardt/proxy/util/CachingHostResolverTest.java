@@ -0,0 +1,234 @@
+package com.github.markusbernhardt.proxy.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/*****************************************************************************
+ * Unit tests for the caching host resolver.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class CachingHostResolverTest {
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+
+	@Test
+	public void testPositiveAndNegativeCaching() throws Exception {
+		CountingResolver delegate = new CountingResolver(
+		        new StaticHostResolver().add("host1.unit-test.invalid", "10.0.0.1")::resolveAll);
+		CachingHostResolver resolver = new CachingHostResolver(delegate);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals("10.0.0.1", resolver.resolve("host1.unit-test.invalid").getHostAddress());
+			Assertions.assertThatThrownBy(() -> resolver.resolve("unknown.unit-test.invalid"))
+			        .isInstanceOf(UnknownHostException.class);
+		}
+		assertEquals(2, delegate.calls.get());
+		assertEquals(2, resolver.getHitCount());
+		assertEquals(2, resolver.getNegativeHitCount());
+		assertEquals(2, resolver.getLookupCount());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+
+	@Test
+	public void testExpiredEntriesAreResolvedAgain() throws Exception {
+		CountingResolver delegate = new CountingResolver(
+		        new StaticHostResolver().add("host1.unit-test.invalid", "10.0.0.1")::resolveAll);
+		CachingHostResolver resolver = new CachingHostResolver(delegate, 0, 0, 1000, 10);
+		resolver.resolve("host1.unit-test.invalid");
+		resolver.resolve("host1.unit-test.invalid");
+		assertEquals(2, delegate.calls.get());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+
+	@Test
+	public void testConcurrentLookupsAreCoalesced() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountingResolver delegate = new CountingResolver(host -> {
+			release.await();
+			return new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 10, 0, 0, 2 }) };
+		});
+		final CachingHostResolver resolver = new CachingHostResolver(delegate);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<InetAddress>> results = new ArrayList<Future<InetAddress>>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> resolver.resolve("slow.unit-test.invalid")));
+			}
+			while (resolver.getCoalescedCount() < 3) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			for (Future<InetAddress> result : results) {
+				assertEquals("10.0.0.2", result.get(5, TimeUnit.SECONDS).getHostAddress());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, delegate.calls.get());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+
+	@Test
+	public void testSlowLookupTimesOut() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		CountingResolver delegate = new CountingResolver(host -> {
+			release.await();
+			return new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 10, 0, 0, 3 }) };
+		});
+		CachingHostResolver resolver = new CachingHostResolver(delegate, 60000, 60000, 50, 10);
+
+		Assertions.assertThatThrownBy(() -> resolver.resolve("slow.unit-test.invalid"))
+		        .isInstanceOf(UnknownHostException.class);
+		assertEquals(1, resolver.getTimeoutCount());
+
+		// The late result replaces the cached timeout.
+		release.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (true) {
+			try {
+				assertEquals("10.0.0.3", resolver.resolve("slow.unit-test.invalid").getHostAddress());
+				break;
+			} catch (UnknownHostException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				Thread.sleep(5);
+			}
+		}
+		assertEquals(1, delegate.calls.get());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+
+	@Test
+	public void testHangingLookupsDoNotBlockOthers() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		CountingResolver delegate = new CountingResolver(host -> {
+			if (host.startsWith("hang")) {
+				release.await();
+			}
+			return new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 10, 0, 0, 4 }) };
+		});
+		CachingHostResolver resolver = new CachingHostResolver(delegate, 60000, 60000, 50, 100);
+		try {
+			for (int i = 0; i < 8; i++) {
+				String host = "hang" + i + ".unit-test.invalid";
+				Assertions.assertThatThrownBy(() -> resolver.resolve(host)).isInstanceOf(UnknownHostException.class);
+			}
+			assertEquals("10.0.0.4", resolver.resolve("fast.unit-test.invalid").getHostAddress());
+			assertEquals(8, resolver.getTimeoutCount());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testCachedFailureIsNotShared() {
+		CachingHostResolver resolver = new CachingHostResolver(new StaticHostResolver());
+		Throwable first = Assertions.catchThrowable(() -> resolver.resolve("unknown.unit-test.invalid"));
+		Throwable second = Assertions.catchThrowable(() -> resolver.resolve("unknown.unit-test.invalid"));
+		Assertions.assertThat(first).isInstanceOf(UnknownHostException.class);
+		Assertions.assertThat(second).isInstanceOf(UnknownHostException.class).isNotSameAs(first);
+		Assertions.assertThat(second.getCause()).isInstanceOf(UnknownHostException.class);
+		assertEquals(1, resolver.getNegativeHitCount());
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+
+	@Test
+	public void testLiteralsAreNotCached() throws Exception {
+		CountingResolver delegate = new CountingResolver(new StaticHostResolver()::resolveAll);
+		CachingHostResolver resolver = new CachingHostResolver(delegate);
+		assertEquals("192.168.0.1", resolver.resolve("192.168.0.1").getHostAddress());
+		assertEquals(0, resolver.getSize());
+		assertEquals(0, resolver.getLookupCount());
+	}
+
+	/*************************************************************************
+	 * A resolver lookup that may block.
+	 ************************************************************************/
+
+	private interface Lookup {
+		InetAddress[] resolveAll(String host) throws UnknownHostException, InterruptedException;
+	}
+
+	/*************************************************************************
+	 * Counts the calls to the wrapped lookup.
+	 ************************************************************************/
+
+	private static class CountingResolver implements HostResolver {
+
+		final AtomicInteger calls = new AtomicInteger();
+		private final Lookup lookup;
+
+		CountingResolver(Lookup lookup) {
+			this.lookup = lookup;
+		}
+
+		@Override
+		public InetAddress[] resolveAll(String host) throws UnknownHostException {
+			if (!IpAddressUtil.isLiteral(host)) {
+				this.calls.incrementAndGet();
+			}
+			try {
+				return this.lookup.resolveAll(host);
+			} catch (InterruptedException e) {
+				throw new UnknownHostException(host);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.github.markusbernhardt.proxy.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.Test;
+
+/*****************************************************************************
+ * Unit tests for the IP address helpers.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class IpAddressUtilTest {
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testParseIpv4() {
+		assertEquals(0xC0A80001L, IpAddressUtil.parseIpv4("192.168.0.1"));
+		assertEquals(0xFFFFFF00L, IpAddressUtil.parseIpv4("255.255.255.0 "));
+		assertEquals(0L, IpAddressUtil.parseIpv4("0.0.0.0"));
+		assertEquals(IpAddressUtil.INVALID, IpAddressUtil.parseIpv4("256.0.0.1"));
+		assertEquals(IpAddressUtil.INVALID, IpAddressUtil.parseIpv4("10.0.0"));
+		assertEquals(IpAddressUtil.INVALID, IpAddressUtil.parseIpv4("10.0.0.1.2"));
+		assertEquals(IpAddressUtil.INVALID, IpAddressUtil.parseIpv4("host.invalid"));
+		assertEquals(IpAddressUtil.INVALID, IpAddressUtil.parseIpv4(""));
+		assertEquals(IpAddressUtil.INVALID, IpAddressUtil.parseIpv4(null));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 *
+	 * @throws Exception
+	 *             on error.
+	 ************************************************************************/
+
+	@Test
+	public void testParseIpv6() throws Exception {
+		String[] addresses = { "::", "::1", "2001:db8::", "2001:db8::ff00:42:8329", "fe80::5efe:157.59.139.22",
+		        "[2001:4898:28:3:201:2ff:feea:fc14]", "3ffe:8311:ffff:1111:0:0:0:0", "1:2:3:4:5:6:7::",
+		        "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff" };
+		long[] parsed = new long[2];
+		for (String address : addresses) {
+			assertTrue(IpAddressUtil.parseIpv6(address, parsed), address);
+			byte[] expected = InetAddress.getByName(address).getAddress();
+			assertArrayEquals(
+			        new long[] { IpAddressUtil.toLong(expected, true), IpAddressUtil.toLong(expected, false) }, parsed,
+			        address);
+		}
+		assertTrue(IpAddressUtil.parseIpv6("fe80::1%eth0", parsed));
+		assertEquals(1, parsed[1]);
+
+		String[] invalid = { "", ":", ":::", "1::2::3", "12345::", "1:2:3:4:5:6:7:8:9", "1:2:3", "1:2:3:4:5:6:7:",
+		        "g::1", "::1.2.3" };
+		for (String address : invalid) {
+			assertFalse(IpAddressUtil.parseIpv6(address, parsed), address);
+		}
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testIpRange() {
+		IpRange range = IpRange.parse("198.95.0.0/16");
+		assertTrue(range.containsLiteral("198.95.249.79"));
+		assertFalse(range.containsLiteral("198.96.249.80"));
+		assertFalse(range.containsLiteral("::1"));
+		assertTrue(IpRange.parse("0.0.0.0/0").containsLiteral("200.1.2.3"));
+		assertTrue(IpRange.parse("198.95.249.79/32").containsLiteral("198.95.249.79"));
+
+		IpRange range6 = IpRange.parse("3ffe:8311:ffff::/48");
+		assertTrue(range6.containsLiteral("3ffe:8311:ffff:1111::"));
+		assertFalse(range6.containsLiteral("3ffe:8312:ffff:1111::"));
+		assertFalse(range6.containsLiteral("10.0.0.1"));
+		assertTrue(IpRange.parse("2001:db8::1/128").containsLiteral("2001:db8::1"));
+		assertFalse(IpRange.parse("2001:db8::1/128").containsLiteral("2001:db8::2"));
+		assertTrue(IpRange.parse("2001:db8::/96").containsLiteral("2001:db8::ffff:1"));
+
+		assertNull(IpRange.parse("10.0.0.0/33"));
+		assertNull(IpRange.parse("10.0.0.0"));
+		assertNull(IpRange.parse("host.invalid/8"));
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.github.markusbernhardt.proxy.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*****************************************************************************
+ * Unit tests for the IP range tree.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class IpRangeTreeTest {
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testIpv4() {
+		IpRangeTree tree = new IpRangeTree();
+		assertTrue(tree.add("10.0.0.0/8"));
+		assertTrue(tree.add("192.168.1.0/24"));
+		assertTrue(tree.add("192.168.2.128/25"));
+		assertTrue(tree.add("172.16.5.4/32"));
+		assertFalse(tree.add("192.168.0.0/33"));
+		assertFalse(tree.add("no.range/8"));
+		assertEquals(4, tree.size());
+
+		assertTrue(tree.containsLiteral("10.1.2.3"));
+		assertTrue(tree.containsLiteral("192.168.1.255"));
+		assertFalse(tree.containsLiteral("192.168.2.127"));
+		assertTrue(tree.containsLiteral("192.168.2.200"));
+		assertTrue(tree.containsLiteral("172.16.5.4"));
+		assertFalse(tree.containsLiteral("172.16.5.5"));
+		assertFalse(tree.containsLiteral("11.0.0.1"));
+		assertTrue(tree.containsLiteral("::ffff:10.0.0.1"));
+		assertFalse(tree.containsLiteral("::a00:1"));
+		assertFalse(tree.containsLiteral("host.invalid"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testIpv6() {
+		IpRangeTree tree = new IpRangeTree();
+		tree.add("2001:db8::/32");
+		tree.add("fe80::/10");
+		tree.add("::1/128");
+
+		assertTrue(tree.containsLiteral("2001:db8:1::5"));
+		assertTrue(tree.containsLiteral("[2001:DB8::1]"));
+		assertFalse(tree.containsLiteral("2001:db9::1"));
+		assertTrue(tree.containsLiteral("febf::1"));
+		assertFalse(tree.containsLiteral("fec0::1"));
+		assertTrue(tree.containsLiteral("::1"));
+		assertFalse(tree.containsLiteral("::2"));
+		assertFalse(tree.containsLiteral("32.1.13.184"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testNestedAndDefaultRanges() {
+		IpRangeTree tree = new IpRangeTree();
+		tree.add("10.1.2.0/24");
+		tree.add("10.1.3.0/24");
+		assertFalse(tree.containsLiteral("10.1.4.1"));
+		// A shorter range covers the ones added before.
+		tree.add("10.1.0.0/16");
+		assertTrue(tree.containsLiteral("10.1.4.1"));
+		tree.add("10.1.2.128/25");
+		assertTrue(tree.containsLiteral("10.1.2.1"));
+
+		tree.add("0.0.0.0/0");
+		assertTrue(tree.containsLiteral("8.8.8.8"));
+		assertFalse(tree.containsLiteral("2001:db8::1"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testSameResultAsIpRange() {
+		Random random = new Random(4711);
+		IpRangeTree tree = new IpRangeTree();
+		List<IpRange> ranges = new ArrayList<IpRange>();
+		for (int i = 0; i < 500; i++) {
+			long address = random.nextInt() & 0xFFFFFFFFL;
+			String cidr = (address >>> 24) + "." + ((address >>> 16) & 0xFF) + "." + ((address >>> 8) & 0xFF) + "."
+			        + (address & 0xFF) + "/" + (4 + random.nextInt(29));
+			tree.add(cidr);
+			ranges.add(IpRange.parse(cidr));
+		}
+		for (int i = 0; i < 20000; i++) {
+			long address = random.nextInt() & 0xFFFFFFFFL;
+			boolean expected = false;
+			for (IpRange range : ranges) {
+				expected |= range.containsIpv4(address);
+			}
+			assertEquals(expected, tree.containsIpv4(address), Long.toHexString(address));
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.github.markusbernhardt.proxy.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/*****************************************************************************
+ * Unit tests for the latency histogram.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class LatencyHistogramTest {
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(1000);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(1000000);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(100, snapshot.getCount());
+		assertEquals(90 * 1000 + 10 * 1000000, snapshot.getTotalNanos());
+		assertEquals(100900.0, snapshot.getMeanNanos());
+		assertEquals(1023, snapshot.getPercentileNanos(50));
+		assertEquals(1023, snapshot.getPercentileNanos(90));
+		assertEquals(1048575, snapshot.getPercentileNanos(99));
+		assertEquals(1048575, snapshot.getPercentileNanos(100));
+		assertThrows(IllegalArgumentException.class, () -> snapshot.getPercentileNanos(101));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testBuckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(0);
+		histogram.record(1);
+		histogram.record(2);
+		histogram.record(3);
+		histogram.record(Long.MAX_VALUE);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(2, snapshot.getBucketCount(0));
+		assertEquals(1, snapshot.getBucketCount(1));
+		assertEquals(2, snapshot.getBucketCount(2));
+		assertEquals(1, snapshot.getBucketCount(snapshot.getNumberOfBuckets() - 1));
+		assertEquals(Long.MAX_VALUE, snapshot.getPercentileNanos(100));
+		assertEquals(0, new LatencyHistogram().snapshot().getPercentileNanos(50));
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.github.markusbernhardt.proxy.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*****************************************************************************
+ * Unit tests for the public suffix list.
+ *
+ * @author agent, Copyright 2026
+ ****************************************************************************/
+
+public class PublicSuffixListTest {
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testRegistrableDomain() {
+		PublicSuffixList list = PublicSuffixList.getDefault();
+		assertEquals("example.com", list.getRegistrableDomain("img123.cdn.example.com"));
+		assertEquals("example.com", list.getRegistrableDomain("example.com"));
+		assertEquals("example.co.uk", list.getRegistrableDomain("www.example.co.uk"));
+		assertEquals("Example.COM", list.getRegistrableDomain("WWW.Example.COM"));
+		assertEquals("example.com.", list.getRegistrableDomain("www.example.com."));
+
+		// Unknown top level domains fall back to the last label.
+		assertEquals("unit-test.invalid", list.getRegistrableDomain("host1.unit-test.invalid"));
+
+		// Public suffixes, single labels and IP addresses stay as they are.
+		assertEquals("co.uk", list.getRegistrableDomain("co.uk"));
+		assertEquals("intranet", list.getRegistrableDomain("intranet"));
+		assertEquals("192.168.0.1", list.getRegistrableDomain("192.168.0.1"));
+		assertEquals("::1", list.getRegistrableDomain("::1"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testWildcardAndExceptionRules() {
+		PublicSuffixList list = PublicSuffixList.getDefault();
+		// *.ck and !www.ck
+		assertEquals("example.foo.ck", list.getRegistrableDomain("a.example.foo.ck"));
+		assertEquals("www.ck", list.getRegistrableDomain("a.www.ck"));
+		// *.kawasaki.jp and !city.kawasaki.jp
+		assertEquals("city.kawasaki.jp", list.getRegistrableDomain("www.city.kawasaki.jp"));
+		assertEquals("example.foo.kawasaki.jp", list.getRegistrableDomain("www.example.foo.kawasaki.jp"));
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+
+	@Test
+	public void testInternationalizedRules() {
+		PublicSuffixList list = PublicSuffixList.getDefault();
+		// 公司.cn is a public suffix, hosts are in the ASCII form in URIs.
+		assertEquals("xn--55qx5d.cn", list.getRegistrableDomain("xn--55qx5d.cn"));
+		assertEquals("example.xn--55qx5d.cn", list.getRegistrableDomain("www.example.xn--55qx5d.cn"));
+	}
+
+}
@@ -1,5 +1,6 @@
 package com.github.markusbernhardt.proxy.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -9,6 +10,7 @@ import java.net.URISyntaxException;
 import org.junit.jupiter.api.Test;
 
 import com.github.markusbernhardt.proxy.TestUtil;
+import com.github.markusbernhardt.proxy.search.browser.ie.IELocalByPassFilter;
 import com.github.markusbernhardt.proxy.selector.whitelist.HostnameFilter;
 import com.github.markusbernhardt.proxy.selector.whitelist.HostnameFilter.Mode;
 import com.github.markusbernhardt.proxy.selector.whitelist.IpRangeFilter;
@@ -161,4 +163,54 @@ public class UriFilterTest {
 		assertFalse(filter.accept(new URI("http://192.168.1.100:81/test.data")));
 	}
 
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testParsedTargetGivesSameResult() {
+		UriFilter[] filters = { new HostnameFilter(Mode.BEGINS_WITH, "no_proxy"),
+		        new HostnameFilter(Mode.ENDS_WITH, ".unit-test.invalid"),
+		        new HostnameFilter(Mode.ENDS_WITH, "https://host1.unit-test.invalid"),
+		        new HostnameFilter(Mode.REGEX, "host[0-9]\\..*"), new IpRangeFilter("192.168.0.0/24"),
+		        new IpRangeFilter("2001:4860:0:2001::/24"), new IELocalByPassFilter() };
+		String[] uris = { "http://no_proxy.unit-test.invalid/", "HTTP://Host1.Unit-Test.Invalid:8080/x",
+		        "https://host1.unit-test.invalid/", "ftp://other.invalid/", "http://192.168.0.100:81/",
+		        "http://192.168.1.100/", "http://[2001:4860:0:2001::68]:81/", "http://[::ffff:192.168.0.7]/",
+		        "http://localhost:8080/", "file:/tmp/test.data" };
+		for (UriFilter filter : filters) {
+			for (String uri : uris) {
+				assertEquals(filter.accept(URI.create(uri)), filter.accept(RequestTarget.of(URI.create(uri))),
+				        filter + " " + uri);
+			}
+		}
+	}
+
+	/*************************************************************************
+	 * Test method
+	 ************************************************************************/
+	@Test
+	public void testRequestTarget() {
+		RequestTarget target = RequestTarget.of(URI.create("HTTPS://User@Host1.Example.ORG:8443/x"));
+		assertEquals("HTTPS", target.getScheme());
+		assertEquals("user@host1.example.org", target.getHost());
+		assertEquals(8443, target.getPort());
+		assertFalse(target.isIpLiteral());
+
+		target = RequestTarget.of(URI.create("http://192.168.0.1/"));
+		assertTrue(target.isIpLiteral());
+		assertFalse(target.isIpv6());
+		assertEquals(0xC0A80001L, target.getAddressLo());
+		assertEquals(-1, target.getPort());
+
+		target = RequestTarget.of(URI.create("http://[2001:db8::1]:81/"));
+		assertEquals("[2001:db8::1]", target.getHost());
+		assertTrue(target.isIpv6());
+		assertEquals(0x20010db800000000L, target.getAddressHi());
+		assertEquals(1L, target.getAddressLo());
+
+		target = RequestTarget.of(URI.create("file:/tmp/test.data"));
+		assertEquals(null, target.getHost());
+		assertFalse(target.isIpLiteral());
+	}
+
 }